@@ -18,10 +18,12 @@ package org.jamwiki;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import org.jamwiki.model.CacheEvent;
 import org.jamwiki.model.Category;
 import org.jamwiki.model.Interwiki;
 import org.jamwiki.model.LogItem;
@@ -100,6 +102,16 @@ public interface DataHandler {
 	 */
 	boolean canMoveTopic(Topic fromTopic, String destination) throws DataAccessException;
 
+	/**
+	 * Delete all cache events that were recorded before the specified time.
+	 * Cache events are only needed until every JAMWiki instance sharing the
+	 * database has read them, so old events should be deleted periodically.
+	 *
+	 * @param before Events recorded before this time are deleted.
+	 * @throws DataAccessException Thrown if any error occurs during method execution.
+	 */
+	void deleteCacheEvents(Timestamp before) throws DataAccessException;
+
 	/**
 	 * Delete an interwiki record from the interwiki table.
 	 *
@@ -145,6 +157,24 @@ public interface DataHandler {
 	 */
 	void executeUpgradeUpdate(String prop, Connection conn) throws SQLException;
 
+	/**
+	 * Pass the id and name of every topic in a virtual wiki to a callback,
+	 * reading topics from the database in blocks rather than loading the full
+	 * list of topic names into memory.  This method should be used in
+	 * preference to {@link #getAllTopicNames} by jobs that process every topic
+	 * in a virtual wiki, and should not be called from within a transaction.
+	 *
+	 * @param virtualWiki The virtual wiki for which topics are being
+	 *  retrieved.
+	 * @param includeDeleted Set to <code>true</code> if deleted topics
+	 *  should be included in the results.
+	 * @param callback The callback to invoke for each topic.  Iteration stops
+	 *  if the callback returns <code>false</code>.
+	 * @throws DataAccessException Thrown if any error occurs during method
+	 *  execution, including any exception thrown by the callback.
+	 */
+	void forEachTopicName(String virtualWiki, boolean includeDeleted, TopicNameCallback callback) throws DataAccessException;
+
 	/**
 	 * Return a List of all Category objects for a given virtual wiki.
 	 *
@@ -387,6 +417,46 @@ public interface DataHandler {
 	 */
 	List<RecentChange> getWatchlist(String virtualWiki, int userId, Pagination pagination) throws DataAccessException;
 
+	/**
+	 * Retrieve the watched topics that have changed since a given time for
+	 * every user, such as for sending a periodic digest of watchlist changes.
+	 * Only the current version of each topic is returned, and changes made by
+	 * the watching user are not included.
+	 *
+	 * @param changedAfter Only topics whose current version was created after
+	 *  this time are returned.
+	 * @return A map of user ID to a List of RecentChange objects for the
+	 *  changed topics in that user's watchlist, with the most recent changes
+	 *  first.
+	 * @throws DataAccessException Thrown if any error occurs during method execution.
+	 */
+	Map<Integer, List<RecentChange>> getWatchlistDigest(Timestamp changedAfter) throws DataAccessException;
+
+	/**
+	 * Load the most recent changes for all virtual wikis into memory so that
+	 * requests for the first pages of recent changes can be served without
+	 * querying the database.  This method should be called during application
+	 * startup; if it is not called the recent changes for each virtual wiki are
+	 * loaded the first time they are requested.
+	 *
+	 * @throws DataAccessException Thrown if any error occurs during method execution.
+	 */
+	void initializeRecentChanges() throws DataAccessException;
+
+	/**
+	 * Return all cache events recorded after the specified time by JAMWiki
+	 * instances other than the specified instance, sorted by the time at
+	 * which the events were recorded.
+	 *
+	 * @param after Only events recorded after this time are returned.
+	 * @param excludeNodeId Events published by the JAMWiki instance with this
+	 *  node id are not returned.
+	 * @return A List of all matching cache events, or an empty list if no
+	 *  matching events exist.
+	 * @throws DataAccessException Thrown if any error occurs during method execution.
+	 */
+	List<CacheEvent> lookupCacheEvents(Timestamp after, String excludeNodeId) throws DataAccessException;
+
 	/**
 	 * Retrieve a List of Category objects corresponding to all topics
 	 * that belong to the category, sorted by either the topic name, or
@@ -459,6 +529,21 @@ public interface DataHandler {
 	 */
 	List<Namespace> lookupNamespaces() throws DataAccessException;
 
+	/**
+	 * Return the site statistics for a virtual wiki, keyed by the statistic
+	 * names defined in {@link org.jamwiki.utils.SiteStatistics}.  Statistics
+	 * are maintained by the methods that add, update and delete topics, files
+	 * and users, so retrieving them does not require counting records.
+	 *
+	 * @param virtualWiki The virtual wiki for which statistics are being
+	 *  retrieved, or <code>null</code> if only site-wide statistics such as
+	 *  the user count are required.
+	 * @return A map of statistic name and value, including site-wide
+	 *  statistics.
+	 * @throws DataAccessException Thrown if any error occurs during method execution.
+	 */
+	Map<String, Integer> lookupStatistics(String virtualWiki) throws DataAccessException;
+
 	/**
 	 * Retrieve a Topic object that matches the given virtual wiki and topic
 	 * name.  Note that when a shared image repository is in use this method
@@ -505,6 +590,22 @@ public interface DataHandler {
 	 */
 	int lookupTopicCount(String virtualWiki, Integer namespaceId) throws DataAccessException;
 
+	/**
+	 * Return the ids of non-deleted topics in the virtual wiki in ascending
+	 * order, starting after the specified topic id.  Callers that need to
+	 * process every topic in a virtual wiki can retrieve topic ids in chunks
+	 * by passing the last id of each chunk as the starting point for the next.
+	 *
+	 * @param virtualWiki The virtual wiki for the topics being queried.
+	 * @param afterTopicId Only topic ids greater than this value are returned.
+	 *  Use zero to start from the first topic.
+	 * @param maxResults The maximum number of topic ids to return.
+	 * @return A list of topic ids in ascending order, or an empty list if no
+	 *  further topics exist.
+	 * @throws DataAccessException Thrown if any error occurs during method execution.
+	 */
+	List<Integer> lookupTopicIds(String virtualWiki, int afterTopicId, int maxResults) throws DataAccessException;
+
 	/**
 	 * Return a List of topic names for all non-deleted topics in the
 	 * virtual wiki that match a specific topic type.
@@ -540,7 +641,9 @@ public interface DataHandler {
 	String lookupTopicName(String virtualWiki, String topicName) throws DataAccessException;
 
 	/**
-	 * Retrieve a TopicVersion object for a given topic version ID.
+	 * Retrieve a TopicVersion object for a given topic version ID.  The
+	 * returned version includes the author name and the ID of the next
+	 * version, so navigating between versions requires no further queries.
 	 *
 	 * @param topicVersionId The ID of the topic version being retrieved.
 	 * @return A TopicVersion object matching the given topic version ID,
@@ -549,6 +652,17 @@ public interface DataHandler {
 	 */
 	TopicVersion lookupTopicVersion(int topicVersionId) throws DataAccessException;
 
+	/**
+	 * Return the number of versions of a topic, including versions created
+	 * by deletes, moves and other administrative actions.  Counts are cached
+	 * until a version is added to or purged from the topic.
+	 *
+	 * @param topicId The ID of the topic whose versions are being counted.
+	 * @return The number of versions of the topic.
+	 * @throws DataAccessException Thrown if any error occurs during method execution.
+	 */
+	int lookupTopicVersionCount(int topicId) throws DataAccessException;
+
 	/**
 	 * Retrieve the next topic version ID chronologically for a given topic
 	 * version, or <code>null</code> if there is no next topic version ID.
@@ -731,6 +845,16 @@ public interface DataHandler {
 	 */
 	void purgeTopicVersion(String virtualWiki, int topicVersionId, WikiUser user, String ipAddress) throws DataAccessException, WikiException;
 
+	/**
+	 * Discard the existing site statistics and re-calculate them by counting
+	 * the topic, file and user records for every virtual wiki.  This method
+	 * should not normally be needed, but will correct the statistics if they
+	 * have been affected by changes made outside of the wiki.
+	 *
+	 * @throws DataAccessException Thrown if any error occurs during method execution.
+	 */
+	void recountStatistics() throws DataAccessException;
+
 	/**
 	 * Delete all existing log entries and reload the log item table based
 	 * on the most recent topic versions, uploads, and user signups.
@@ -741,7 +865,8 @@ public interface DataHandler {
 
 	/**
 	 * Delete all existing recent changes and reload the recent changes based
-	 * on the most recent topic versions.
+	 * on the most recent topic versions.  Each virtual wiki is reloaded in a
+	 * separate transaction.
 	 *
 	 * @throws DataAccessException Thrown if any error occurs during method execution.
 	 */
@@ -827,6 +952,17 @@ public interface DataHandler {
 	 */
 	public void writeConfiguration(Map<String, String> configuration) throws DataAccessException, WikiException;
 
+	/**
+	 * Record a cache event so that it can be read by other JAMWiki instances
+	 * sharing the same database.  If this method is called during a
+	 * transaction then the event is only visible to other instances once the
+	 * transaction is committed.
+	 *
+	 * @param event The cache event to record.
+	 * @throws DataAccessException Thrown if any error occurs during method execution.
+	 */
+	void writeCacheEvent(CacheEvent event) throws DataAccessException;
+
 	/**
 	 * Add or update a WikiFile object.  This method will add a new record if
 	 * the WikiFile does not have a file ID, otherwise it will perform an update.
@@ -934,9 +1070,11 @@ public interface DataHandler {
 	 *  other information about the version being added.  If this value is <code>null</code>
 	 *  then no version is saved and no recent change record is created.
 	 * @param categories A mapping of categories and their associated sort keys (if any)
-	 *  for all categories that are associated with the current topic.
+	 *  for all categories that are associated with the current topic, or
+	 *  <code>null</code> if the existing categories should not be changed.
 	 * @param links A List of all topic names that are linked to from the
-	 *  current topic.  These will be passed to the search engine to create
+	 *  current topic, or <code>null</code> if the existing links should not be
+	 *  changed.  These will be passed to the search engine to create
 	 *  searchable metadata.
 	 * @throws DataAccessException Thrown if any error occurs during method execution.
 	 * @throws WikiException Thrown if the topic information is invalid.
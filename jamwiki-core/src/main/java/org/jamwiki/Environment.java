@@ -29,6 +29,7 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.math.NumberUtils;
 // FIXME - remove this import
 import org.apache.commons.pool.impl.GenericObjectPool;
+import org.jamwiki.utils.DiffUtil;
 import org.jamwiki.utils.SortedProperties;
 import org.jamwiki.utils.WikiLogger;
 import org.jamwiki.utils.WikiUtil;
@@ -54,15 +55,25 @@ public class Environment {
   public static final String PROP_BASE_SEARCH_SOLR_USER = "search-solr-user";
   public static final String PROP_BASE_SEARCH_SOLR_PASSWORD = "search-solr-password";
 	public static final String PROP_BASE_WIKI_VERSION = "wiki-version";
+	public static final String PROP_CACHE_HEAP = "cache-heap";
 	public static final String PROP_CACHE_INDIVIDUAL_SIZE = "cache-individual-size";
+	public static final String PROP_CACHE_INVALIDATION_ADDRESS = "cache-invalidation-address";
+	public static final String PROP_CACHE_INVALIDATION_BUS = "cache-invalidation-bus";
+	public static final String PROP_CACHE_INVALIDATION_POLL_INTERVAL = "cache-invalidation-poll-interval";
 	public static final String PROP_CACHE_MAX_AGE = "cache-max-age";
 	public static final String PROP_CACHE_MAX_IDLE_AGE = "cache-max-idle-age";
+	public static final String PROP_CACHE_PERSISTENT = "cache-persistent";
+	public static final String PROP_CACHE_PERSISTENT_MAX_AGE = "cache-persistent-max-age";
 	public static final String PROP_CACHE_TOTAL_SIZE = "cache-total-size";
+	public static final String PROP_CACHE_WARMUP_SIZE = "cache-warmup-size";
 	public static final String PROP_DATE_PATTERN_DATE_AND_TIME = "date-pattern-date-and-time";
 	public static final String PROP_DATE_PATTERN_DATE_ONLY = "date-pattern-date-only";
 	public static final String PROP_DATE_PATTERN_TIME_ONLY = "date-pattern-time-only";
+	public static final String PROP_DB_CHANGE_OUTBOX = "db-change-outbox";
 	public static final String PROP_DB_DRIVER = "driver";
 	public static final String PROP_DB_PASSWORD = "db-password";
+	public static final String PROP_DB_REPLICA_PRIMARY_WINDOW = "db-replica-primary-window";
+	public static final String PROP_DB_REPLICA_URLS = "db-replica-urls";
 	public static final String PROP_DB_TYPE = "database-type";
 	public static final String PROP_DB_URL = "url";
 	public static final String PROP_DB_USERNAME = "db-user";
@@ -77,10 +88,14 @@ public class Environment {
 	public static final String PROP_DBCP_TEST_WHILE_IDLE = "dbcp-test-while-idle";
 	public static final String PROP_DBCP_TIME_BETWEEN_EVICTION_RUNS = "dbcp-time-between-eviction-runs";
 	public static final String PROP_DBCP_WHEN_EXHAUSTED_ACTION = "dbcp-when-exhausted-action";
+	/** Diff implementation to use, either "myers" or "incava". */
+	public static final String PROP_DIFF_ALGORITHM = "diff-algorithm";
 	public static final String PROP_EMAIL_REPLY_ADDRESS = "reply-address";
 	public static final String PROP_EMAIL_SMTP_HOST = "smtp-host";
 	public static final String PROP_EMAIL_SMTP_PASSWORD = "smtp-password";
 	public static final String PROP_EMAIL_SMTP_USERNAME = "smtp-username";
+	/** Number of minutes between watchlist digest emails, or zero to disable watchlist digests. */
+	public static final String PROP_EMAIL_WATCHLIST_DIGEST_INTERVAL = "watchlist-digest-interval";
 	public static final String PROP_ENCRYPTION_ALGORITHM = "encryption-algorithm";
 	public static final String PROP_EXTERNAL_LINK_NEW_WINDOW = "external-link-new-window";
 	public static final String PROP_FILE_BLACKLIST = "file-blacklist";
@@ -103,12 +118,18 @@ public class Environment {
 	public static final String PROP_PARSER_DISPLAY_VIRTUALWIKI_LINKS_INLINE = "parser-virtualwiki-links-inline";
 	/** Maximum number of template inclusions allowed on a page. */
 	public static final String PROP_PARSER_MAX_INCLUSIONS = "parser-max-inclusions";
+	/** Maximum number of wiki syntax and HTML tags that will be parsed for a single parsing run. */
+	public static final String PROP_PARSER_MAX_NODES = "parser-max-nodes";
+	/** Maximum time (in seconds) that may be spent on a single parsing run. */
+	public static final String PROP_PARSER_MAX_PARSE_TIME = "parser-max-parse-time";
 	/** This constant controls how many infinite loops a topic can hold before parsing aborts. */
 	public static final String PROP_PARSER_MAXIMUM_INFINITE_LOOP_LIMIT = "parser-infinite-loop-limit";
 	/** Maximum number of parser iterations allowed for a single parsing run. */
 	public static final String PROP_PARSER_MAX_PARSER_ITERATIONS = "parser-max-iterations";
 	/** Maximum depth to which templates can be included for a single parsing run. */
 	public static final String PROP_PARSER_MAX_TEMPLATE_DEPTH = "parser-max-template-depth";
+	/** Maximum total size (in characters) of expanded template output for a single parsing run. */
+	public static final String PROP_PARSER_MAX_TEMPLATE_SIZE = "parser-max-template-size";
 	public static final String PROP_PARSER_SIGNATURE_DATE_PATTERN = "signature-date";
 	public static final String PROP_PARSER_SIGNATURE_USER_PATTERN = "signature-user";
 	public static final String PROP_PARSER_TOC = "allow-toc";
@@ -124,6 +145,7 @@ public class Environment {
 	public static final String PROP_RECAPTCHA_PRIVATE_KEY = "recaptcha-private-key";
 	public static final String PROP_RECAPTCHA_PUBLIC_KEY = "recaptcha-public-key";
 	public static final String PROP_RECAPTCHA_REGISTER = "recaptcha-register";
+	public static final String PROP_RECENT_CHANGES_BUFFER_SIZE = "recent-changes-buffer-size";
 	public static final String PROP_RECENT_CHANGES_NUM = "recent-changes-days";
 	public static final String PROP_RSS_ALLOWED = "rss-allowed";
 	public static final String PROP_RSS_TITLE = "rss-title";
@@ -131,6 +153,8 @@ public class Environment {
 	public static final String PROP_SHARED_UPLOAD_VIRTUAL_WIKI = "shared-upload-virtual-wiki";
 	public static final String PROP_SITE_NAME = "site-name";
 	public static final String PROP_TOPIC_EDITOR = "default-editor";
+	public static final String PROP_TOPIC_RENDER_RATE = "topic-render-rate";
+	public static final String PROP_TOPIC_RENDER_THREADS = "topic-render-threads";
 	public static final String PROP_TOPIC_SPAM_FILTER = "use-spam-filter";
 	public static final String PROP_TOPIC_USE_PREVIEW = "use-preview";
 	public static final String PROP_TOPIC_USE_SHOW_CHANGES = "use-show-changes";
@@ -211,21 +235,31 @@ public class Environment {
     this.defaults.setProperty(PROP_BASE_SEARCH_SOLR_USER, "");
     this.defaults.setProperty(PROP_BASE_SEARCH_SOLR_PASSWORD, "");
 		this.defaults.setProperty(PROP_BASE_WIKI_VERSION, "0.0.0");
+		this.defaults.setProperty(PROP_CACHE_HEAP, "false");
 		this.defaults.setProperty(PROP_CACHE_INDIVIDUAL_SIZE, "1500");
+		this.defaults.setProperty(PROP_CACHE_INVALIDATION_ADDRESS, "239.255.42.99:45588");
+		this.defaults.setProperty(PROP_CACHE_INVALIDATION_BUS, "");
+		this.defaults.setProperty(PROP_CACHE_INVALIDATION_POLL_INTERVAL, "2000");
 		this.defaults.setProperty(PROP_CACHE_MAX_AGE, "300");
 		this.defaults.setProperty(PROP_CACHE_MAX_IDLE_AGE, "150");
+		this.defaults.setProperty(PROP_CACHE_PERSISTENT, Boolean.FALSE.toString());
+		this.defaults.setProperty(PROP_CACHE_PERSISTENT_MAX_AGE, "604800");
 		this.defaults.setProperty(PROP_CACHE_TOTAL_SIZE, "5000");
+		this.defaults.setProperty(PROP_CACHE_WARMUP_SIZE, "200");
 		this.defaults.setProperty(PROP_DATE_PATTERN_DATE_AND_TIME, "dd MMMM yyyy HH:mm");
 		this.defaults.setProperty(PROP_DATE_PATTERN_DATE_ONLY, "dd MMMM yyyy");
 		this.defaults.setProperty(PROP_DATE_PATTERN_TIME_ONLY, "HH:mm");
+		this.defaults.setProperty(PROP_DB_CHANGE_OUTBOX, Boolean.FALSE.toString());
 		this.defaults.setProperty(PROP_DB_DRIVER, "");
 		this.defaults.setProperty(PROP_DB_PASSWORD, "");
+		this.defaults.setProperty(PROP_DB_REPLICA_PRIMARY_WINDOW, "10");
+		this.defaults.setProperty(PROP_DB_REPLICA_URLS, "");
 		this.defaults.setProperty(PROP_DB_TYPE, "");
 		this.defaults.setProperty(PROP_DB_URL, "");
 		this.defaults.setProperty(PROP_DB_USERNAME, "");
 		this.defaults.setProperty(PROP_DBCP_MAX_ACTIVE, "15");
 		this.defaults.setProperty(PROP_DBCP_MAX_IDLE, "15");
-		this.defaults.setProperty(PROP_DBCP_MAX_OPEN_PREPARED_STATEMENTS, "20");
+		this.defaults.setProperty(PROP_DBCP_MAX_OPEN_PREPARED_STATEMENTS, "100");
 		this.defaults.setProperty(PROP_DBCP_MIN_EVICTABLE_IDLE_TIME, "600");
 		this.defaults.setProperty(PROP_DBCP_NUM_TESTS_PER_EVICTION_RUN, "5");
 		this.defaults.setProperty(PROP_DBCP_POOL_PREPARED_STATEMENTS, Boolean.TRUE.toString());
@@ -234,10 +268,12 @@ public class Environment {
 		this.defaults.setProperty(PROP_DBCP_TEST_WHILE_IDLE, Boolean.FALSE.toString());
 		this.defaults.setProperty(PROP_DBCP_TIME_BETWEEN_EVICTION_RUNS, "120");
 		this.defaults.setProperty(PROP_DBCP_WHEN_EXHAUSTED_ACTION, String.valueOf(GenericObjectPool.WHEN_EXHAUSTED_GROW));
+		this.defaults.setProperty(PROP_DIFF_ALGORITHM, DiffUtil.DIFF_ALGORITHM_MYERS);
 		this.defaults.setProperty(PROP_EMAIL_REPLY_ADDRESS, "");
 		this.defaults.setProperty(PROP_EMAIL_SMTP_HOST, "");
 		this.defaults.setProperty(PROP_EMAIL_SMTP_PASSWORD, "");
 		this.defaults.setProperty(PROP_EMAIL_SMTP_USERNAME, "");
+		this.defaults.setProperty(PROP_EMAIL_WATCHLIST_DIGEST_INTERVAL, "0");
 		this.defaults.setProperty(PROP_ENCRYPTION_ALGORITHM, "SHA-512");
 		this.defaults.setProperty(PROP_EXTERNAL_LINK_NEW_WINDOW, Boolean.FALSE.toString());
 		this.defaults.setProperty(PROP_FILE_BLACKLIST, "bat,bin,exe,htm,html,js,jsp,php,sh");
@@ -258,9 +294,12 @@ public class Environment {
 		this.defaults.setProperty(PROP_PARSER_DISPLAY_SPECIAL_PAGE_VIRTUAL_WIKI_LINKS, Boolean.TRUE.toString());
 		this.defaults.setProperty(PROP_PARSER_DISPLAY_VIRTUALWIKI_LINKS_INLINE, Boolean.FALSE.toString());
 		this.defaults.setProperty(PROP_PARSER_MAX_INCLUSIONS, "250");
+		this.defaults.setProperty(PROP_PARSER_MAX_NODES, "100000");
+		this.defaults.setProperty(PROP_PARSER_MAX_PARSE_TIME, "20");
 		this.defaults.setProperty(PROP_PARSER_MAXIMUM_INFINITE_LOOP_LIMIT, "5");
 		this.defaults.setProperty(PROP_PARSER_MAX_PARSER_ITERATIONS, "100");
 		this.defaults.setProperty(PROP_PARSER_MAX_TEMPLATE_DEPTH, "100");
+		this.defaults.setProperty(PROP_PARSER_MAX_TEMPLATE_SIZE, "2097152");
 		this.defaults.setProperty(PROP_PARSER_SIGNATURE_DATE_PATTERN, "dd-MMM-yyyy HH:mm zzz");
 		this.defaults.setProperty(PROP_PARSER_SIGNATURE_USER_PATTERN, "[[{0}|{4}]]");
 		this.defaults.setProperty(PROP_PARSER_TOC, Boolean.TRUE.toString());
@@ -276,6 +315,7 @@ public class Environment {
 		this.defaults.setProperty(PROP_RECAPTCHA_PRIVATE_KEY, "");
 		this.defaults.setProperty(PROP_RECAPTCHA_PUBLIC_KEY, "");
 		this.defaults.setProperty(PROP_RECAPTCHA_REGISTER, "0");
+		this.defaults.setProperty(PROP_RECENT_CHANGES_BUFFER_SIZE, "500");
 		this.defaults.setProperty(PROP_RECENT_CHANGES_NUM, "100");
 		this.defaults.setProperty(PROP_RSS_ALLOWED, Boolean.TRUE.toString());
 		this.defaults.setProperty(PROP_RSS_TITLE, "Wiki Recent Changes");
@@ -284,6 +324,8 @@ public class Environment {
 		this.defaults.setProperty(PROP_SITE_NAME, "JAMWiki");
 		// FIXME - hard coding
 		this.defaults.setProperty(PROP_TOPIC_EDITOR, "toolbar");
+		this.defaults.setProperty(PROP_TOPIC_RENDER_RATE, "50");
+		this.defaults.setProperty(PROP_TOPIC_RENDER_THREADS, "2");
 		this.defaults.setProperty(PROP_TOPIC_SPAM_FILTER, Boolean.TRUE.toString());
 		this.defaults.setProperty(PROP_TOPIC_USE_PREVIEW, Boolean.TRUE.toString());
 		this.defaults.setProperty(PROP_TOPIC_USE_SHOW_CHANGES, Boolean.TRUE.toString());
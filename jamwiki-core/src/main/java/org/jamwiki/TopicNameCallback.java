@@ -0,0 +1,41 @@
+/**
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE, version 2.1, dated February 1999.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the latest version of the GNU Lesser General
+ * Public License as published by the Free Software Foundation;
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program (LICENSE.txt); if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jamwiki;
+
+/**
+ * Receives topic ids and names one at a time from
+ * {@link DataHandler#forEachTopicName}, allowing jobs that process every topic
+ * in a virtual wiki to do so without first loading the full list of topic
+ * names into memory.
+ */
+public interface TopicNameCallback {
+
+	/**
+	 * Called once for each topic, in the order that the topics are read from
+	 * the database.  The callback is invoked while the underlying result set
+	 * is still open, but it may freely use other data handler methods since
+	 * those methods retrieve their own database connections.
+	 *
+	 * @param topicId The topic id of the topic.
+	 * @param topicName The name of the topic.
+	 * @return <code>true</code> if iteration should continue, or
+	 *  <code>false</code> if no further topics should be processed.
+	 * @throws DataAccessException Thrown if an error occurs while processing
+	 *  the topic.  Iteration stops and the exception is passed to the caller.
+	 */
+	boolean processTopicName(int topicId, String topicName) throws DataAccessException;
+}
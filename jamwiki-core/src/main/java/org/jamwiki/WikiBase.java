@@ -22,6 +22,7 @@ import org.jamwiki.model.WikiGroup;
 import org.jamwiki.model.WikiUser;
 import org.jamwiki.utils.WikiUtil;
 import org.jamwiki.utils.WikiCache;
+import org.jamwiki.utils.WikiCacheKey;
 import org.jamwiki.utils.WikiLogger;
 
 /**
@@ -43,8 +44,8 @@ public class WikiBase {
 	/** The search engine instance. */
 	private static SearchEngine searchEngine = null;
 
-	/** Cache name for the cache of parsed topic content. */
-	public static final String CACHE_PARSED_TOPIC_CONTENT = "org.jamwiki.WikiBase.CACHE_PARSED_TOPIC_CONTENT";
+	/** Cache of parsed topic content, keyed by virtual wiki and topic name. */
+	public static final WikiCache<WikiCacheKey, String> CACHE_PARSED_TOPIC_CONTENT = new WikiCache<WikiCacheKey, String>("org.jamwiki.WikiBase.CACHE_PARSED_TOPIC_CONTENT");
 	/** Default group for registered users. */
 	private static WikiGroup GROUP_REGISTERED_USER = null;
 	/** Data stored using an external database */
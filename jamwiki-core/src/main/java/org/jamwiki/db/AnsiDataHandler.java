@@ -27,14 +27,15 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import net.sf.ehcache.Element;
 import org.apache.commons.lang.StringUtils;
 import org.jamwiki.DataAccessException;
 import org.jamwiki.DataHandler;
 import org.jamwiki.Environment;
+import org.jamwiki.TopicNameCallback;
 import org.jamwiki.WikiBase;
 import org.jamwiki.WikiException;
 import org.jamwiki.WikiMessage;
+import org.jamwiki.model.CacheEvent;
 import org.jamwiki.model.Category;
 import org.jamwiki.model.Interwiki;
 import org.jamwiki.model.LogItem;
@@ -56,13 +57,19 @@ import org.jamwiki.model.WikiUserDetails;
 import org.jamwiki.parser.ParserException;
 import org.jamwiki.parser.ParserOutput;
 import org.jamwiki.parser.ParserUtil;
+import org.jamwiki.utils.CacheInvalidation;
 import org.jamwiki.utils.Encryption;
 import org.jamwiki.utils.LinkUtil;
 import org.jamwiki.utils.Pagination;
+import org.jamwiki.utils.SiteStatistics;
 import org.jamwiki.utils.WikiCache;
+import org.jamwiki.utils.WikiCacheEntry;
+import org.jamwiki.utils.WikiCacheKey;
 import org.jamwiki.utils.WikiLogger;
 import org.jamwiki.utils.WikiUtil;
 import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
  * Default implementation of the {@link org.jamwiki.DataHandler} interface for
@@ -72,20 +79,25 @@ public class AnsiDataHandler implements DataHandler {
 
 	/** Any topic lookup that takes longer than the specified time (in ms) will trigger a log message. */
 	private static final int TIME_LIMIT_TOPIC_LOOKUP = 20;
-	private static final String CACHE_INTERWIKI_LIST = "org.jamwiki.db.AnsiDataHandler.CACHE_INTERWIKI_LIST";
-	private static final String CACHE_NAMESPACE_LIST = "org.jamwiki.db.AnsiDataHandler.CACHE_NAMESPACE_LIST";
-	private static final String CACHE_ROLE_MAP_GROUP = "org.jamwiki.db.AnsiDataHandler.CACHE_ROLE_MAP_GROUP";
-	private static final String CACHE_TOPIC_NAMES_BY_NAME = "org.jamwiki.db.AnsiDataHandler.CACHE_TOPIC_NAMES_BY_NAME";
-	private static final String CACHE_TOPICS_BY_ID = "org.jamwiki.db.AnsiDataHandler.CACHE_TOPICS_BY_ID";
-	private static final String CACHE_TOPICS_BY_NAME = "org.jamwiki.db.AnsiDataHandler.CACHE_TOPICS_BY_NAME";
-	private static final String CACHE_TOPIC_VERSIONS = "org.jamwiki.db.AnsiDataHandler.CACHE_TOPIC_VERSIONS";
-	private static final String CACHE_USER_BLOCKS_ACTIVE = "org.jamwiki.db.AnsiDataHandler.CACHE_USER_BLOCKS_ACTIVE";
-	private static final String CACHE_USER_BY_USER_ID = "org.jamwiki.db.AnsiDataHandler.CACHE_USER_BY_USER_ID";
-	private static final String CACHE_USER_BY_USER_NAME = "org.jamwiki.db.AnsiDataHandler.CACHE_USER_BY_USER_NAME";
-	private static final String CACHE_VIRTUAL_WIKI_LIST = "org.jamwiki.db.AnsiDataHandler.CACHE_VIRTUAL_WIKI_LIST";
+	private static final WikiCache<String, List<Interwiki>> CACHE_INTERWIKI_LIST = new WikiCache<String, List<Interwiki>>("org.jamwiki.db.AnsiDataHandler.CACHE_INTERWIKI_LIST", true);
+	private static final WikiCache<String, List<Namespace>> CACHE_NAMESPACE_LIST = new WikiCache<String, List<Namespace>>("org.jamwiki.db.AnsiDataHandler.CACHE_NAMESPACE_LIST", true);
+	private static final WikiCache<String, List<RoleMap>> CACHE_ROLE_MAP_GROUP = new WikiCache<String, List<RoleMap>>("org.jamwiki.db.AnsiDataHandler.CACHE_ROLE_MAP_GROUP", true);
+	private static final WikiCache<Integer, Map<String, Integer>> CACHE_STATISTICS = new WikiCache<Integer, Map<String, Integer>>("org.jamwiki.db.AnsiDataHandler.CACHE_STATISTICS", true);
+	private static final WikiCache<WikiCacheKey, String> CACHE_TOPIC_NAMES_BY_NAME = new WikiCache<WikiCacheKey, String>("org.jamwiki.db.AnsiDataHandler.CACHE_TOPIC_NAMES_BY_NAME", true);
+	private static final WikiCache<Integer, Topic> CACHE_TOPICS_BY_ID = new WikiCache<Integer, Topic>("org.jamwiki.db.AnsiDataHandler.CACHE_TOPICS_BY_ID", true);
+	private static final WikiCache<WikiCacheKey, Topic> CACHE_TOPICS_BY_NAME = new WikiCache<WikiCacheKey, Topic>("org.jamwiki.db.AnsiDataHandler.CACHE_TOPICS_BY_NAME", true);
+	private static final WikiCache<Integer, Integer> CACHE_TOPIC_VERSION_COUNTS = new WikiCache<Integer, Integer>("org.jamwiki.db.AnsiDataHandler.CACHE_TOPIC_VERSION_COUNTS", true);
+	private static final WikiCache<Integer, TopicVersion> CACHE_TOPIC_VERSIONS = new WikiCache<Integer, TopicVersion>("org.jamwiki.db.AnsiDataHandler.CACHE_TOPIC_VERSIONS");
+	private static final WikiCache<String, Map<Object, UserBlock>> CACHE_USER_BLOCKS_ACTIVE = new WikiCache<String, Map<Object, UserBlock>>("org.jamwiki.db.AnsiDataHandler.CACHE_USER_BLOCKS_ACTIVE", true);
+	private static final WikiCache<Integer, WikiUser> CACHE_USER_BY_USER_ID = new WikiCache<Integer, WikiUser>("org.jamwiki.db.AnsiDataHandler.CACHE_USER_BY_USER_ID", true);
+	private static final WikiCache<String, WikiUser> CACHE_USER_BY_USER_NAME = new WikiCache<String, WikiUser>("org.jamwiki.db.AnsiDataHandler.CACHE_USER_BY_USER_NAME", true);
+	private static final WikiCache<String, List<VirtualWiki>> CACHE_VIRTUAL_WIKI_LIST = new WikiCache<String, List<VirtualWiki>>("org.jamwiki.db.AnsiDataHandler.CACHE_VIRTUAL_WIKI_LIST", true);
 	private static final WikiLogger logger = WikiLogger.getLogger(AnsiDataHandler.class.getName());
+	/** Virtual wiki id used for statistics, such as the user count, that apply to all virtual wikis. */
+	private static final int SITE_STATISTICS_ID = 0;
 
 	private final QueryHandler queryHandler = new AnsiQueryHandler();
+	private final RecentChangeBuffer recentChangeBuffer = new RecentChangeBuffer(Environment.getIntValue(Environment.PROP_RECENT_CHANGES_BUFFER_SIZE));
 
 	/**
 	 *
@@ -120,6 +132,9 @@ public class AnsiDataHandler implements DataHandler {
 	private void addLogItem(LogItem logItem, Connection conn) throws DataAccessException, WikiException {
 		int virtualWikiId = this.lookupVirtualWikiId(logItem.getVirtualWiki());
 		this.validateLogItem(logItem);
+		if (this.publishToOutbox(logItem, null)) {
+			return;
+		}
 		try {
 			this.queryHandler().insertLogItem(logItem, virtualWikiId, conn);
 		} catch (SQLException e) {
@@ -133,11 +148,16 @@ public class AnsiDataHandler implements DataHandler {
 	private void addRecentChange(RecentChange change, Connection conn) throws DataAccessException, WikiException {
 		int virtualWikiId = this.lookupVirtualWikiId(change.getVirtualWiki());
 		this.validateRecentChange(change);
+		if (this.publishToOutbox(null, change)) {
+			// the recent change buffer is updated once the outbox writes the change
+			return;
+		}
 		try {
 			this.queryHandler().insertRecentChange(change, virtualWikiId, conn);
 		} catch (SQLException e) {
 			throw new DataAccessException(e);
 		}
+		this.bufferRecentChange(change);
 	}
 
 	/**
@@ -148,6 +168,7 @@ public class AnsiDataHandler implements DataHandler {
 		try {
 			this.validateTopic(topic);
 			this.queryHandler().insertTopic(topic, virtualWikiId, conn);
+			this.updateTopicStatistics(topic, virtualWikiId, null, conn);
 		} catch (SQLException e) {
 			throw new DataAccessException(e);
 		}
@@ -156,21 +177,7 @@ public class AnsiDataHandler implements DataHandler {
 	/**
 	 *
 	 */
-	private void addTopicLinks(List<String> links, String virtualWiki, int topicId, Connection conn) throws DataAccessException {
-		// strip any links longer than 200 characters and any duplicates
-		Map<String, Topic> linksMap = new HashMap<String, Topic>();
-		for (String link : links) {
-			if (link.length() <= 200) {
-				Namespace namespace = LinkUtil.retrieveTopicNamespace(virtualWiki, link);
-				String pageName = LinkUtil.retrieveTopicPageName(namespace, virtualWiki, link);
-				// FIXE - link to records are always capitalized, which will cause problems for the
-				// rare case of two topics such as "eBay" and "EBay".
-				pageName = StringUtils.capitalize(pageName);
-				Topic topic = new Topic(virtualWiki, namespace, pageName);
-				linksMap.put(topic.getName(), topic);
-			}
-		}
-		List<Topic> topicLinks = new ArrayList<Topic>(linksMap.values());
+	private void addTopicLinks(List<Topic> topicLinks, int topicId, Connection conn) throws DataAccessException {
 		try {
 			this.queryHandler().insertTopicLinks(topicLinks, topicId, conn);
 		} catch (SQLException e) {
@@ -193,6 +200,8 @@ public class AnsiDataHandler implements DataHandler {
 		} catch (SQLException e) {
 			throw new DataAccessException(e);
 		}
+		// the previous version now has a next version
+		this.cacheTopicVersionRefresh(topic.getTopicId(), topicVersion.getPreviousTopicVersionId());
 		topic.setCurrentVersionId(topicVersion.getTopicVersionId());
 	}
 
@@ -227,6 +236,10 @@ public class AnsiDataHandler implements DataHandler {
 		try {
 			this.validateVirtualWiki(virtualWiki);
 			this.queryHandler().insertVirtualWiki(virtualWiki, conn);
+			// a new virtual wiki has no topics or files
+			this.queryHandler().insertStatistic(virtualWiki.getVirtualWikiId(), SiteStatistics.STATISTIC_ARTICLES, 0, conn);
+			this.queryHandler().insertStatistic(virtualWiki.getVirtualWikiId(), SiteStatistics.STATISTIC_FILES, 0, conn);
+			this.queryHandler().insertStatistic(virtualWiki.getVirtualWikiId(), SiteStatistics.STATISTIC_TOPICS, 0, conn);
 		} catch (SQLException e) {
 			throw new DataAccessException(e);
 		}
@@ -235,10 +248,15 @@ public class AnsiDataHandler implements DataHandler {
 	/**
 	 *
 	 */
-	private void addWatchlistEntry(int virtualWikiId, String topicName, int userId, Connection conn) throws DataAccessException, WikiException {
+	private void addWatchlistEntry(String virtualWiki, int virtualWikiId, String topicName, int userId, Connection conn) throws DataAccessException, WikiException {
 		this.validateWatchlistEntry(topicName);
 		try {
 			this.queryHandler().insertWatchlistEntry(virtualWikiId, topicName, userId, conn);
+			Topic topic = this.lookupTopic(virtualWiki, topicName, true, conn);
+			if (topic != null && topic.getVirtualWiki().equals(virtualWiki) && topic.getName().equals(topicName)) {
+				// a new entry for an existing topic starts with the topic's current version
+				this.updateWatchlistChange(topic, conn);
+			}
 		} catch (SQLException e) {
 			throw new DataAccessException(e);
 		}
@@ -252,6 +270,9 @@ public class AnsiDataHandler implements DataHandler {
 			int virtualWikiId = this.lookupVirtualWikiId(wikiFile.getVirtualWiki());
 			this.validateWikiFile(wikiFile);
 			this.queryHandler().insertWikiFile(wikiFile, virtualWikiId, conn);
+			if (wikiFile.getDeleteDate() == null) {
+				this.updateStatistic(virtualWikiId, SiteStatistics.STATISTIC_FILES, 1, conn);
+			}
 		} catch (SQLException e) {
 			throw new DataAccessException(e);
 		}
@@ -288,6 +309,7 @@ public class AnsiDataHandler implements DataHandler {
 		try {
 			this.validateWikiUser(user);
 			this.queryHandler().insertWikiUser(user, conn);
+			this.updateStatistic(SITE_STATISTICS_ID, SiteStatistics.STATISTIC_USERS, 1, conn);
 		} catch (SQLException e) {
 			throw new DataAccessException(e);
 		}
@@ -324,17 +346,45 @@ public class AnsiDataHandler implements DataHandler {
 		return authorName;
 	}
 
+	/**
+	 * Add a recent change to the in-memory recent change buffer once the current
+	 * transaction (if any) has been committed.
+	 */
+	private void bufferRecentChange(final RecentChange change) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			this.recentChangeBuffer.add(change);
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			public void afterCommit() {
+				recentChangeBuffer.add(change);
+			}
+		});
+	}
+
+	/**
+	 * Call this method whenever the statistics for a virtual wiki are changed
+	 * to remove them from the cache.  Statistics are removed immediately and
+	 * again once the current transaction (if any) has committed, so that
+	 * values read by other threads before the commit are not retained.
+	 */
+	private void cacheStatisticsRefresh(final int virtualWikiId) {
+		CacheInvalidation.removeFromCache(CACHE_STATISTICS, virtualWikiId);
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				public void afterCommit() {
+					CacheInvalidation.removeFromCache(CACHE_STATISTICS, virtualWikiId);
+				}
+			});
+		}
+	}
+
 	/**
 	 * Given a virtual wiki and topic name, generate the key used for caching
 	 * the corresponding topic information.
 	 */
-	private String cacheTopicKey(String virtualWiki, Namespace namespace, String pageName) {
-		String topicName = namespace.getLabel(virtualWiki);
-		if (topicName.length() != 0) {
-			topicName += Namespace.SEPARATOR;
-		}
-		topicName += pageName;
-		return WikiCache.key(virtualWiki, topicName);
+	private WikiCacheKey cacheTopicKey(String virtualWiki, Namespace namespace, String pageName) {
+		return new WikiCacheKey(virtualWiki, namespace.getId(), pageName);
 	}
 
 	/**
@@ -342,17 +392,38 @@ public class AnsiDataHandler implements DataHandler {
 	 * for the topic.
 	 */
 	private void cacheTopicRefresh(Topic topic) {
-		String key = this.cacheTopicKey(topic.getVirtualWiki(), topic.getNamespace(), topic.getPageName());
+		WikiCacheKey key = this.cacheTopicKey(topic.getVirtualWiki(), topic.getNamespace(), topic.getPageName());
 		// because some topics may be cached in a case-insensitive manner remove all possible
 		// cache keys for the topic, regardless of case
-		WikiCache.removeFromCacheCaseInsensitive(WikiBase.CACHE_PARSED_TOPIC_CONTENT, key);
-		WikiCache.removeFromCacheCaseInsensitive(CACHE_TOPIC_NAMES_BY_NAME, key);
-		WikiCache.removeFromCacheCaseInsensitive(CACHE_TOPICS_BY_NAME, key);
+		CacheInvalidation.removeFromCacheCaseInsensitive(WikiBase.CACHE_PARSED_TOPIC_CONTENT, new WikiCacheKey(topic.getVirtualWiki(), topic.getName()));
+		CacheInvalidation.removeFromCacheCaseInsensitive(CACHE_TOPIC_NAMES_BY_NAME, key);
+		CacheInvalidation.removeFromCacheCaseInsensitive(CACHE_TOPICS_BY_NAME, key);
+		// other instances must also discard any copy of the topic cached by id
+		CacheInvalidation.removeFromCache(CACHE_TOPICS_BY_ID, topic.getTopicId());
 		if (topic.getDeleteDate() == null) {
-			WikiCache.addToCache(CACHE_TOPIC_NAMES_BY_NAME, key, topic.getName());
+			CACHE_TOPIC_NAMES_BY_NAME.addToCache(key, topic.getName());
+		}
+		CACHE_TOPICS_BY_NAME.addToCache(key, topic);
+		CACHE_TOPICS_BY_ID.addToCache(topic.getTopicId(), topic);
+	}
+
+	/**
+	 * Call this method whenever versions are added to or removed from a topic
+	 * to remove the topic's version count and any versions whose previous or
+	 * next version ids have changed from the cache.  Entries are removed
+	 * immediately and again once the current transaction (if any) has
+	 * committed, so that values read by other threads before the commit are
+	 * not retained.
+	 */
+	private void cacheTopicVersionRefresh(final int topicId, final Integer... topicVersionIds) {
+		this.removeTopicVersionsFromCache(topicId, topicVersionIds);
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				public void afterCommit() {
+					removeTopicVersionsFromCache(topicId, topicVersionIds);
+				}
+			});
 		}
-		WikiCache.addToCache(CACHE_TOPICS_BY_NAME, key, topic);
-		WikiCache.addToCache(CACHE_TOPICS_BY_ID, topic.getTopicId(), topic);
 	}
 
 	/**
@@ -384,6 +455,21 @@ public class AnsiDataHandler implements DataHandler {
 		}
 	}
 
+	/**
+	 *
+	 */
+	public void deleteCacheEvents(Timestamp before) throws DataAccessException {
+		Connection conn = null;
+		try {
+			conn = DatabaseConnection.getConnection();
+			this.queryHandler().deleteCacheEvents(before, conn);
+		} catch (SQLException e) {
+			throw new DataAccessException(e);
+		} finally {
+			DatabaseConnection.closeConnection(conn);
+		}
+	}
+
 	/**
 	 *
 	 */
@@ -397,7 +483,7 @@ public class AnsiDataHandler implements DataHandler {
 		} finally {
 			DatabaseConnection.closeConnection(conn);
 		}
-		WikiCache.removeAllFromCache(CACHE_INTERWIKI_LIST);
+		CacheInvalidation.removeAllFromCache(CACHE_INTERWIKI_LIST);
 	}
 
 	/**
@@ -409,6 +495,7 @@ public class AnsiDataHandler implements DataHandler {
 		} catch (SQLException e) {
 			throw new DataAccessException(e);
 		}
+		this.invalidateRecentChangeBuffer(topic.getVirtualWiki());
 	}
 
 	/**
@@ -427,7 +514,7 @@ public class AnsiDataHandler implements DataHandler {
 			// should be empty since no links or categories to update.
 			ParserOutput parserOutput = new ParserOutput();
 			topic.setDeleteDate(new Timestamp(System.currentTimeMillis()));
-			this.writeTopic(topic, topicVersion, parserOutput.getCategories(), parserOutput.getLinks());
+			this.writeTopic(topic, topicVersion, (parserOutput.getIncomplete()) ? null : parserOutput.getCategories(), (parserOutput.getIncomplete()) ? null : parserOutput.getLinks());
 		} catch (DataAccessException e) {
 			DatabaseConnection.rollbackOnException(status, e);
 			throw e;
@@ -500,6 +587,18 @@ public class AnsiDataHandler implements DataHandler {
 		return namespaceEnd;
 	}
 
+	/**
+	 *
+	 */
+	public void forEachTopicName(String virtualWiki, boolean includeDeleted, TopicNameCallback callback) throws DataAccessException {
+		int virtualWikiId = this.lookupVirtualWikiId(virtualWiki);
+		try {
+			this.queryHandler().forEachTopicName(virtualWikiId, includeDeleted, callback);
+		} catch (SQLException e) {
+			throw new DataAccessException(e);
+		}
+	}
+
 	/**
 	 *
 	 */
@@ -571,6 +670,14 @@ public class AnsiDataHandler implements DataHandler {
 	 */
 	public List<RecentChange> getRecentChanges(String virtualWiki, Pagination pagination, boolean descending) throws DataAccessException {
 		try {
+			if (descending) {
+				// the most recent changes can usually be served from memory
+				this.loadRecentChangeBuffer(virtualWiki);
+				List<RecentChange> recentChanges = this.recentChangeBuffer.getRecentChanges(virtualWiki, pagination);
+				if (recentChanges != null) {
+					return recentChanges;
+				}
+			}
 			return this.queryHandler().getRecentChanges(virtualWiki, pagination, descending);
 		} catch (SQLException e) {
 			throw new DataAccessException(e);
@@ -593,9 +700,9 @@ public class AnsiDataHandler implements DataHandler {
 	 */
 	public List<RoleMap> getRoleMapByRole(String authority) throws DataAccessException {
 		// first check the cache
-		Element cacheElement = WikiCache.retrieveFromCache(CACHE_ROLE_MAP_GROUP, authority);
-		if (cacheElement != null) {
-			return (List<RoleMap>)cacheElement.getObjectValue();
+		WikiCacheEntry<List<RoleMap>> cacheEntry = CACHE_ROLE_MAP_GROUP.retrieveFromCache(authority);
+		if (cacheEntry != null) {
+			return cacheEntry.getValue();
 		}
 		// if not in the cache, go to the database
 		List<RoleMap> roleMapList = null;
@@ -604,7 +711,7 @@ public class AnsiDataHandler implements DataHandler {
 		} catch (SQLException e) {
 			throw new DataAccessException(e);
 		}
-		WikiCache.addToCache(CACHE_ROLE_MAP_GROUP, authority, roleMapList);
+		CACHE_ROLE_MAP_GROUP.addToCache(authority, roleMapList);
 		return roleMapList;
 	}
 
@@ -676,11 +783,11 @@ public class AnsiDataHandler implements DataHandler {
 		// rather than hit the database for every page request to verify whether
 		// or not the user is blocked it is far more efficient to cache the few
 		// active blocks and query against that cached list.
-		Element cacheElement = WikiCache.retrieveFromCache(CACHE_USER_BLOCKS_ACTIVE, CACHE_USER_BLOCKS_ACTIVE);
-		if (cacheElement != null) {
+		WikiCacheEntry<Map<Object, UserBlock>> cacheEntry = CACHE_USER_BLOCKS_ACTIVE.retrieveFromCache(CACHE_USER_BLOCKS_ACTIVE.getCacheName());
+		if (cacheEntry != null) {
 			// note that due to caching some blocks may have expired, so the caller
 			// should be sure to check whether a result is still active or not
-			return (Map<Object, UserBlock>)cacheElement.getObjectValue();
+			return cacheEntry.getValue();
 		}
 		Map<Object, UserBlock> userBlocks = new LinkedHashMap<Object, UserBlock>();
 		Connection conn = null;
@@ -692,7 +799,7 @@ public class AnsiDataHandler implements DataHandler {
 		} finally {
 			DatabaseConnection.closeConnection(conn);
 		}
-		WikiCache.addToCache(CACHE_USER_BLOCKS_ACTIVE, CACHE_USER_BLOCKS_ACTIVE, userBlocks);
+		CACHE_USER_BLOCKS_ACTIVE.addToCache(CACHE_USER_BLOCKS_ACTIVE.getCacheName(), userBlocks);
 		return userBlocks;
 	}
 
@@ -715,9 +822,9 @@ public class AnsiDataHandler implements DataHandler {
 	 * Return a List of all VirtualWiki objects that exist for the Wiki.
 	 */
 	public List<VirtualWiki> getVirtualWikiList() throws DataAccessException {
-		Element cacheElement = WikiCache.retrieveFromCache(CACHE_VIRTUAL_WIKI_LIST, CACHE_VIRTUAL_WIKI_LIST);
-		if (cacheElement != null) {
-			return (List<VirtualWiki>)cacheElement.getObjectValue();
+		WikiCacheEntry<List<VirtualWiki>> cacheEntry = CACHE_VIRTUAL_WIKI_LIST.retrieveFromCache(CACHE_VIRTUAL_WIKI_LIST.getCacheName());
+		if (cacheEntry != null) {
+			return cacheEntry.getValue();
 		}
 		List<VirtualWiki> virtualWikis = new ArrayList<VirtualWiki>();
 		Connection conn = null;
@@ -729,7 +836,7 @@ public class AnsiDataHandler implements DataHandler {
 		} finally {
 			DatabaseConnection.closeConnection(conn);
 		}
-		WikiCache.addToCache(CACHE_VIRTUAL_WIKI_LIST, CACHE_VIRTUAL_WIKI_LIST, virtualWikis);
+		CACHE_VIRTUAL_WIKI_LIST.addToCache(CACHE_VIRTUAL_WIKI_LIST.getCacheName(), virtualWikis);
 		return virtualWikis;
 	}
 
@@ -761,6 +868,72 @@ public class AnsiDataHandler implements DataHandler {
 		}
 	}
 
+	/**
+	 *
+	 */
+	public Map<Integer, List<RecentChange>> getWatchlistDigest(Timestamp changedAfter) throws DataAccessException {
+		try {
+			return this.queryHandler().getWatchlistDigest(changedAfter);
+		} catch (SQLException e) {
+			throw new DataAccessException(e);
+		}
+	}
+
+	/**
+	 *
+	 */
+	public void initializeRecentChanges() throws DataAccessException {
+		List<VirtualWiki> virtualWikis = this.getVirtualWikiList();
+		for (VirtualWiki virtualWiki : virtualWikis) {
+			try {
+				this.loadRecentChangeBuffer(virtualWiki.getName());
+			} catch (SQLException e) {
+				throw new DataAccessException(e);
+			}
+		}
+	}
+
+	/**
+	 * Discard the in-memory recent changes for a virtual wiki.  Since a concurrent
+	 * request may re-load the buffer before the current transaction commits the
+	 * buffer is invalidated both immediately and after the commit.
+	 */
+	private void invalidateRecentChangeBuffer(final String virtualWiki) {
+		this.recentChangeBuffer.invalidate(virtualWiki);
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				public void afterCommit() {
+					recentChangeBuffer.invalidate(virtualWiki);
+				}
+			});
+		}
+	}
+
+	/**
+	 * If the in-memory recent changes for a virtual wiki have not yet been loaded
+	 * then load them from the database.
+	 */
+	private void loadRecentChangeBuffer(String virtualWiki) throws SQLException {
+		if (this.recentChangeBuffer.isLoaded(virtualWiki)) {
+			return;
+		}
+		int modificationCount = this.recentChangeBuffer.startLoad(virtualWiki);
+		Pagination pagination = new Pagination(this.recentChangeBuffer.getCapacity(), 0);
+		List<RecentChange> recentChanges = this.queryHandler().getRecentChanges(virtualWiki, pagination, true);
+		this.recentChangeBuffer.load(virtualWiki, recentChanges, modificationCount);
+	}
+
+	/**
+	 *
+	 */
+	public List<CacheEvent> lookupCacheEvents(Timestamp after, String excludeNodeId) throws DataAccessException {
+		try {
+			return this.queryHandler().lookupCacheEvents(after, excludeNodeId);
+		} catch (SQLException e) {
+			throw new DataAccessException(e);
+		}
+	}
+
 	/**
 	 *
 	 */
@@ -807,9 +980,9 @@ public class AnsiDataHandler implements DataHandler {
 	 */
 	public List<Interwiki> lookupInterwikis() throws DataAccessException {
 		// first check the cache
-		Element cacheElement = WikiCache.retrieveFromCache(CACHE_INTERWIKI_LIST, CACHE_INTERWIKI_LIST);
-		if (cacheElement != null) {
-			return (List<Interwiki>)cacheElement.getObjectValue();
+		WikiCacheEntry<List<Interwiki>> cacheEntry = CACHE_INTERWIKI_LIST.retrieveFromCache(CACHE_INTERWIKI_LIST.getCacheName());
+		if (cacheEntry != null) {
+			return cacheEntry.getValue();
 		}
 		// if not in the cache, go to the database
 		List<Interwiki> interwikis = null;
@@ -822,7 +995,7 @@ public class AnsiDataHandler implements DataHandler {
 		} finally {
 			DatabaseConnection.closeConnection(conn);
 		}
-		WikiCache.addToCache(CACHE_INTERWIKI_LIST, CACHE_INTERWIKI_LIST, interwikis);
+		CACHE_INTERWIKI_LIST.addToCache(CACHE_INTERWIKI_LIST.getCacheName(), interwikis);
 		return interwikis;
 	}
 
@@ -864,9 +1037,9 @@ public class AnsiDataHandler implements DataHandler {
 	 */
 	public List<Namespace> lookupNamespaces() throws DataAccessException {
 		// first check the cache
-		Element cacheElement = WikiCache.retrieveFromCache(CACHE_NAMESPACE_LIST, CACHE_NAMESPACE_LIST);
-		if (cacheElement != null) {
-			return (List<Namespace>)cacheElement.getObjectValue();
+		WikiCacheEntry<List<Namespace>> cacheEntry = CACHE_NAMESPACE_LIST.retrieveFromCache(CACHE_NAMESPACE_LIST.getCacheName());
+		if (cacheEntry != null) {
+			return cacheEntry.getValue();
 		}
 		// if not in the cache, go to the database
 		List<Namespace> namespaces = null;
@@ -879,10 +1052,45 @@ public class AnsiDataHandler implements DataHandler {
 		} finally {
 			DatabaseConnection.closeConnection(conn);
 		}
-		WikiCache.addToCache(CACHE_NAMESPACE_LIST, CACHE_NAMESPACE_LIST, namespaces);
+		CACHE_NAMESPACE_LIST.addToCache(CACHE_NAMESPACE_LIST.getCacheName(), namespaces);
 		return namespaces;
 	}
 
+	/**
+	 *
+	 */
+	public Map<String, Integer> lookupStatistics(String virtualWiki) throws DataAccessException {
+		Map<String, Integer> statistics = new HashMap<String, Integer>(this.lookupStatistics(SITE_STATISTICS_ID));
+		if (virtualWiki != null) {
+			statistics.putAll(this.lookupStatistics(this.lookupVirtualWikiId(virtualWiki)));
+		}
+		return statistics;
+	}
+
+	/**
+	 * Retrieve the statistics for a virtual wiki id.  If no statistics have
+	 * been recorded (such as after a failed upgrade or a database migration)
+	 * then records are counted and the counts cached, but nothing is written
+	 * to the database; the statistics are saved by {@link #recountStatistics()}.
+	 */
+	private Map<String, Integer> lookupStatistics(int virtualWikiId) throws DataAccessException {
+		WikiCacheEntry<Map<String, Integer>> cacheEntry = CACHE_STATISTICS.retrieveFromCache(virtualWikiId);
+		if (cacheEntry != null) {
+			return cacheEntry.getValue();
+		}
+		Map<String, Integer> statistics = null;
+		try {
+			statistics = this.queryHandler().lookupStatistics(virtualWikiId);
+			if (statistics.isEmpty()) {
+				statistics = this.countStatistics(virtualWikiId);
+			}
+		} catch (SQLException e) {
+			throw new DataAccessException(e);
+		}
+		CACHE_STATISTICS.addToCache(virtualWikiId, statistics);
+		return statistics;
+	}
+
 	/**
 	 *
 	 */
@@ -907,24 +1115,24 @@ public class AnsiDataHandler implements DataHandler {
 	 */
 	private Topic lookupTopic(String virtualWiki, Namespace namespace, String pageName, boolean deleteOK, Connection conn) throws DataAccessException {
 		long start = System.currentTimeMillis();
-		String key = this.cacheTopicKey(virtualWiki, namespace, pageName);
+		WikiCacheKey key = this.cacheTopicKey(virtualWiki, namespace, pageName);
 		if (conn == null) {
 			// retrieve topic from the cache only if this call is not currently a part
 			// of a transaction to avoid retrieving data that might have been updated
 			// as part of this transaction and would thus now be out of date
-			Element cacheElement = WikiCache.retrieveFromCache(CACHE_TOPICS_BY_NAME, key);
-			if (cacheElement != null) {
-				Topic cacheTopic = (Topic)cacheElement.getObjectValue();
+			WikiCacheEntry<Topic> cacheEntry = CACHE_TOPICS_BY_NAME.retrieveFromCache(key);
+			if (cacheEntry != null) {
+				Topic cacheTopic = cacheEntry.getValue();
 				return (cacheTopic == null || (!deleteOK && cacheTopic.getDeleteDate() != null)) ? null : new Topic(cacheTopic);
 			}
 		}
 		boolean checkSharedVirtualWiki = this.useSharedVirtualWiki(virtualWiki, namespace);
 		String sharedVirtualWiki = Environment.getValue(Environment.PROP_SHARED_UPLOAD_VIRTUAL_WIKI);
 		if (conn == null && checkSharedVirtualWiki) {
-			String sharedKey = this.cacheTopicKey(sharedVirtualWiki, namespace, pageName);
-			Element cacheElement = WikiCache.retrieveFromCache(CACHE_TOPICS_BY_NAME, sharedKey);
-			if (cacheElement != null) {
-				Topic cacheTopic = (Topic)cacheElement.getObjectValue();
+			WikiCacheKey sharedKey = this.cacheTopicKey(sharedVirtualWiki, namespace, pageName);
+			WikiCacheEntry<Topic> cacheEntry = CACHE_TOPICS_BY_NAME.retrieveFromCache(sharedKey);
+			if (cacheEntry != null) {
+				Topic cacheTopic = cacheEntry.getValue();
 				return (cacheTopic == null || (!deleteOK && cacheTopic.getDeleteDate() != null)) ? null : new Topic(cacheTopic);
 			}
 		}
@@ -943,9 +1151,9 @@ public class AnsiDataHandler implements DataHandler {
 				// add topic to the cache only if it is not currently a part of a transaction
 				// to avoid caching something that might need to be rolled back
 				Topic cacheTopic = (topic == null) ? null : new Topic(topic);
-				WikiCache.addToCache(CACHE_TOPICS_BY_NAME, key, cacheTopic);
+				CACHE_TOPICS_BY_NAME.addToCache(key, cacheTopic);
 				// do not cache deleted topics
-				WikiCache.addToCache(CACHE_TOPIC_NAMES_BY_NAME, key, (cacheTopic == null || cacheTopic.getDeleteDate() != null) ? null : cacheTopic.getName());
+				CACHE_TOPIC_NAMES_BY_NAME.addToCache(key, (cacheTopic == null || cacheTopic.getDeleteDate() != null) ? null : cacheTopic.getName());
 			}
 		} catch (SQLException e) {
 			throw new DataAccessException(e);
@@ -963,9 +1171,9 @@ public class AnsiDataHandler implements DataHandler {
 	 *
 	 */
 	public Topic lookupTopicById(String virtualWiki, int topicId) throws DataAccessException {
-		Element cacheElement = WikiCache.retrieveFromCache(CACHE_TOPICS_BY_ID, topicId);
-		if (cacheElement != null) {
-			return (Topic)cacheElement.getObjectValue();
+		WikiCacheEntry<Topic> cacheEntry = CACHE_TOPICS_BY_ID.retrieveFromCache(topicId);
+		if (cacheEntry != null) {
+			return cacheEntry.getValue();
 		}
 		int virtualWikiId = this.lookupVirtualWikiId(virtualWiki);
 		Topic result = null;
@@ -974,7 +1182,7 @@ public class AnsiDataHandler implements DataHandler {
 		} catch (SQLException e) {
 			throw new DataAccessException(e);
 		}
-		WikiCache.addToCache(CACHE_TOPICS_BY_ID, topicId, result);
+		CACHE_TOPICS_BY_ID.addToCache(topicId, result);
 		return result;
 	}
 
@@ -996,6 +1204,18 @@ public class AnsiDataHandler implements DataHandler {
 		}
 	}
 
+	/**
+	 *
+	 */
+	public List<Integer> lookupTopicIds(String virtualWiki, int afterTopicId, int maxResults) throws DataAccessException {
+		int virtualWikiId = this.lookupVirtualWikiId(virtualWiki);
+		try {
+			return this.queryHandler().lookupTopicIds(virtualWikiId, afterTopicId, maxResults);
+		} catch (SQLException e) {
+			throw new DataAccessException(e);
+		}
+	}
+
 	/**
 	 *
 	 */
@@ -1027,18 +1247,18 @@ public class AnsiDataHandler implements DataHandler {
 	 */
 	private String lookupTopicName(String virtualWiki, Namespace namespace, String pageName) throws DataAccessException {
 		long start = System.currentTimeMillis();
-		String key = this.cacheTopicKey(virtualWiki, namespace, pageName);
-		Element cacheElement = WikiCache.retrieveFromCache(CACHE_TOPIC_NAMES_BY_NAME, key);
-		if (cacheElement != null) {
-			return (String)cacheElement.getObjectValue();
+		WikiCacheKey key = this.cacheTopicKey(virtualWiki, namespace, pageName);
+		WikiCacheEntry<String> cacheEntry = CACHE_TOPIC_NAMES_BY_NAME.retrieveFromCache(key);
+		if (cacheEntry != null) {
+			return cacheEntry.getValue();
 		}
 		boolean checkSharedVirtualWiki = this.useSharedVirtualWiki(virtualWiki, namespace);
 		String sharedVirtualWiki = Environment.getValue(Environment.PROP_SHARED_UPLOAD_VIRTUAL_WIKI);
 		if (checkSharedVirtualWiki) {
-			String sharedKey = this.cacheTopicKey(sharedVirtualWiki, namespace, pageName);
-			cacheElement = WikiCache.retrieveFromCache(CACHE_TOPIC_NAMES_BY_NAME, sharedKey);
-			if (cacheElement != null) {
-				return (String)cacheElement.getObjectValue();
+			WikiCacheKey sharedKey = this.cacheTopicKey(sharedVirtualWiki, namespace, pageName);
+			cacheEntry = CACHE_TOPIC_NAMES_BY_NAME.retrieveFromCache(sharedKey);
+			if (cacheEntry != null) {
+				return cacheEntry.getValue();
 			}
 		}
 		String topicName = null;
@@ -1048,7 +1268,7 @@ public class AnsiDataHandler implements DataHandler {
 			if (topicName == null && checkSharedVirtualWiki) {
 				topicName = this.lookupTopicName(sharedVirtualWiki, namespace, pageName);
 			}
-			WikiCache.addToCache(CACHE_TOPIC_NAMES_BY_NAME, key, topicName);
+			CACHE_TOPIC_NAMES_BY_NAME.addToCache(key, topicName);
 		} catch (SQLException e) {
 			throw new DataAccessException(e);
 		}
@@ -1095,9 +1315,9 @@ public class AnsiDataHandler implements DataHandler {
 	 *
 	 */
 	public TopicVersion lookupTopicVersion(int topicVersionId) throws DataAccessException {
-		Element cacheElement = WikiCache.retrieveFromCache(CACHE_TOPIC_VERSIONS, topicVersionId);
-		if (cacheElement != null) {
-			return (TopicVersion)cacheElement.getObjectValue();
+		WikiCacheEntry<TopicVersion> cacheEntry = CACHE_TOPIC_VERSIONS.retrieveFromCache(topicVersionId);
+		if (cacheEntry != null) {
+			return cacheEntry.getValue();
 		}
 		TopicVersion topicVersion = null;
 		try {
@@ -1105,10 +1325,28 @@ public class AnsiDataHandler implements DataHandler {
 		} catch (SQLException e) {
 			throw new DataAccessException(e);
 		}
-		WikiCache.addToCache(CACHE_TOPIC_VERSIONS, topicVersionId, topicVersion);
+		CACHE_TOPIC_VERSIONS.addToCache(topicVersionId, topicVersion);
 		return topicVersion;
 	}
 
+	/**
+	 *
+	 */
+	public int lookupTopicVersionCount(int topicId) throws DataAccessException {
+		WikiCacheEntry<Integer> cacheEntry = CACHE_TOPIC_VERSION_COUNTS.retrieveFromCache(topicId);
+		if (cacheEntry != null) {
+			return cacheEntry.getValue();
+		}
+		int count = 0;
+		try {
+			count = this.queryHandler().lookupTopicVersionCount(topicId);
+		} catch (SQLException e) {
+			throw new DataAccessException(e);
+		}
+		CACHE_TOPIC_VERSION_COUNTS.addToCache(topicId, count);
+		return count;
+	}
+
 	/**
 	 *
 	 */
@@ -1226,9 +1464,9 @@ public class AnsiDataHandler implements DataHandler {
 	 *
 	 */
 	public WikiUser lookupWikiUser(int userId) throws DataAccessException {
-		Element cacheElement = WikiCache.retrieveFromCache(CACHE_USER_BY_USER_ID, userId);
-		if (cacheElement != null) {
-			return (WikiUser)cacheElement.getObjectValue();
+		WikiCacheEntry<WikiUser> cacheEntry = CACHE_USER_BY_USER_ID.retrieveFromCache(userId);
+		if (cacheEntry != null) {
+			return cacheEntry.getValue();
 		}
 		WikiUser user = null;
 		try {
@@ -1236,7 +1474,7 @@ public class AnsiDataHandler implements DataHandler {
 		} catch (SQLException e) {
 			throw new DataAccessException(e);
 		}
-		WikiCache.addToCache(CACHE_USER_BY_USER_ID, userId, user);
+		CACHE_USER_BY_USER_ID.addToCache(userId, user);
 		return user;
 	}
 
@@ -1244,9 +1482,9 @@ public class AnsiDataHandler implements DataHandler {
 	 *
 	 */
 	public WikiUser lookupWikiUser(String username) throws DataAccessException {
-		Element cacheElement = WikiCache.retrieveFromCache(CACHE_USER_BY_USER_NAME, username);
-		if (cacheElement != null) {
-			return (WikiUser)cacheElement.getObjectValue();
+		WikiCacheEntry<WikiUser> cacheEntry = CACHE_USER_BY_USER_NAME.retrieveFromCache(username);
+		if (cacheEntry != null) {
+			return cacheEntry.getValue();
 		}
 		WikiUser result = null;
 		TransactionStatus status = null;
@@ -1262,7 +1500,7 @@ public class AnsiDataHandler implements DataHandler {
 			throw new DataAccessException(e);
 		}
 		DatabaseConnection.commit(status);
-		WikiCache.addToCache(CACHE_USER_BY_USER_NAME, username, result);
+		CACHE_USER_BY_USER_NAME.addToCache(username, result);
 		return result;
 	}
 
@@ -1328,7 +1566,7 @@ public class AnsiDataHandler implements DataHandler {
 			fromVersion.setRecentChangeAllowed(false);
 			// handle categories
 			ParserOutput fromParserOutput = ParserUtil.parserOutput(fromTopic.getTopicContent(), fromTopic.getVirtualWiki(), fromTopic.getName());
-			writeTopic(fromTopic, fromVersion, fromParserOutput.getCategories(), fromParserOutput.getLinks());
+			writeTopic(fromTopic, fromVersion, (fromParserOutput.getIncomplete()) ? null : fromParserOutput.getCategories(), (fromParserOutput.getIncomplete()) ? null : fromParserOutput.getLinks());
 			// now either create a new topic that is a redirect with the
 			// source topic's old name, or else undelete the new topic and
 			// rename.
@@ -1352,7 +1590,7 @@ public class AnsiDataHandler implements DataHandler {
 			toVersion.setVersionContent(content);
 			toVersion.setRecentChangeAllowed(true);
 			ParserOutput toParserOutput = ParserUtil.parserOutput(toTopic.getTopicContent(), toTopic.getVirtualWiki(), toTopic.getName());
-			writeTopic(toTopic, toVersion, toParserOutput.getCategories(), toParserOutput.getLinks());
+			writeTopic(toTopic, toVersion, (toParserOutput.getIncomplete()) ? null : toParserOutput.getCategories(), (toParserOutput.getIncomplete()) ? null : toParserOutput.getLinks());
 		} catch (DataAccessException e) {
 			DatabaseConnection.rollbackOnException(status, e);
 			throw e;
@@ -1382,6 +1620,37 @@ public class AnsiDataHandler implements DataHandler {
 		this.cacheTopicRefresh(topic);
 	}
 
+	/**
+	 * If {@link Environment#PROP_DB_CHANGE_OUTBOX} is enabled then publish a
+	 * log item or recent change to the change outbox once the current
+	 * transaction commits rather than writing it as part of the transaction.
+	 * The outbox entry is saved before the transaction commits so that it is
+	 * not lost if the application stops immediately after the commit.
+	 *
+	 * @return <code>true</code> if the record will be written by the change
+	 *  outbox, <code>false</code> if it should be written immediately.
+	 */
+	private boolean publishToOutbox(final LogItem logItem, final RecentChange change) {
+		if (!Environment.getBooleanValue(Environment.PROP_DB_CHANGE_OUTBOX) || !TransactionSynchronizationManager.isSynchronizationActive()) {
+			return false;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			private ChangeOutbox.Entry entry = null;
+			public void beforeCommit(boolean readOnly) {
+				this.entry = ChangeOutbox.prepare(logItem, change);
+			}
+			public void afterCommit() {
+				ChangeOutbox.publish(this.entry);
+			}
+			public void afterCompletion(int status) {
+				if (status != STATUS_COMMITTED && this.entry != null) {
+					ChangeOutbox.discard(this.entry);
+				}
+			}
+		});
+		return true;
+	}
+
 	/**
 	 *
 	 */
@@ -1411,7 +1680,8 @@ public class AnsiDataHandler implements DataHandler {
 			// current_version_id, and update with the value from #2.
 			if (topicVersionId == topic.getCurrentVersionId().intValue()) {
 				topic.setCurrentVersionId(replacementTopicVersionId);
-				this.updateTopic(topic, conn);
+				this.updateTopic(topic, false, conn);
+				this.updateWatchlistChange(topic, conn);
 			}
 			// 4. if there is a topic version with this version as its
 			// previous_topic_version_id update it with the value from #2
@@ -1422,12 +1692,14 @@ public class AnsiDataHandler implements DataHandler {
 			}
 			// 5. delete the topic version record from all tables
 			this.queryHandler().deleteTopicVersion(topicVersionId, topicVersion.getPreviousTopicVersionId(), conn);
+			this.invalidateRecentChangeBuffer(topic.getVirtualWiki());
 			// 6. create a log record
 			LogItem logItem = LogItem.initLogItemPurge(topic, topicVersion, user, ipAddress);
 			this.addLogItem(logItem, conn);
 			RecentChange change = RecentChange.initRecentChange(logItem);
 			this.addRecentChange(change, conn);
-			WikiCache.removeFromCache(CACHE_TOPIC_VERSIONS, topicVersionId);
+			// the versions before and after the purged version now refer to each other
+			this.cacheTopicVersionRefresh(topic.getTopicId(), topicVersionId, previousTopicVersionId, nextTopicVersionId);
 		} catch (SQLException e) {
 			DatabaseConnection.rollbackOnException(status, e);
 			throw new DataAccessException(e);
@@ -1445,15 +1717,67 @@ public class AnsiDataHandler implements DataHandler {
 	/**
 	 *
 	 */
-	public void reloadLogItems() throws DataAccessException {
+	public void recountStatistics() throws DataAccessException {
+		List<VirtualWiki> virtualWikis = this.getVirtualWikiList();
+		for (VirtualWiki virtualWiki : virtualWikis) {
+			this.recountStatistics(virtualWiki.getVirtualWikiId());
+		}
+		this.recountStatistics(SITE_STATISTICS_ID);
+	}
+
+	/**
+	 * Replace the statistics for a virtual wiki id with values calculated by
+	 * counting records.  If another node adds missing statistic records at the
+	 * same time then inserting them fails with a duplicate key, in which case
+	 * the recount is retried once and updates the records that were added.
+	 */
+	private synchronized void recountStatistics(int virtualWikiId) throws DataAccessException {
+		try {
+			this.writeStatistics(virtualWikiId);
+		} catch (DataAccessException e) {
+			logger.info("Failure while saving statistics for virtual wiki " + virtualWikiId + ", retrying: " + e.getMessage());
+			this.writeStatistics(virtualWikiId);
+		}
+	}
+
+	/**
+	 * Calculate the statistics for a virtual wiki id by counting records.
+	 */
+	private Map<String, Integer> countStatistics(int virtualWikiId) throws DataAccessException, SQLException {
+		Map<String, Integer> statistics = new HashMap<String, Integer>();
+		if (virtualWikiId == SITE_STATISTICS_ID) {
+			statistics.put(SiteStatistics.STATISTIC_USERS, this.queryHandler().lookupWikiUserCount());
+		} else {
+			statistics.put(SiteStatistics.STATISTIC_ARTICLES, this.queryHandler().lookupTopicCount(virtualWikiId, Namespace.MAIN_ID, Namespace.MAIN_ID));
+			statistics.put(SiteStatistics.STATISTIC_FILES, this.queryHandler().lookupWikiFileCount(virtualWikiId));
+			statistics.put(SiteStatistics.STATISTIC_TOPICS, this.queryHandler().lookupTopicCount(virtualWikiId, 0, this.findMaxNamespaceId()));
+		}
+		return statistics;
+	}
+
+	/**
+	 * Save counted statistics for a virtual wiki id, updating existing records
+	 * in place and adding any that are missing.  Records are never deleted and
+	 * re-added, so concurrent writers do not find them missing and skip their
+	 * increments.
+	 */
+	private void writeStatistics(int virtualWikiId) throws DataAccessException {
+		Map<String, Integer> statistics = null;
+		try {
+			statistics = this.countStatistics(virtualWikiId);
+		} catch (SQLException e) {
+			throw new DataAccessException(e);
+		}
 		TransactionStatus status = null;
 		try {
 			status = DatabaseConnection.startTransaction();
 			Connection conn = DatabaseConnection.getConnection();
-			List<VirtualWiki> virtualWikis = this.getVirtualWikiList();
-			for (VirtualWiki virtualWiki : virtualWikis) {
-				this.queryHandler().reloadLogItems(virtualWiki.getVirtualWikiId(), conn);
+			for (Map.Entry<String, Integer> statistic : statistics.entrySet()) {
+				if (this.queryHandler().updateStatisticValue(virtualWikiId, statistic.getKey(), statistic.getValue(), conn) == 0) {
+					this.queryHandler().insertStatistic(virtualWikiId, statistic.getKey(), statistic.getValue(), conn);
+				}
 			}
+			this.cacheStatisticsRefresh(virtualWikiId);
 		} catch (SQLException e) {
 			DatabaseConnection.rollbackOnException(status, e);
 			throw new DataAccessException(e);
@@ -1464,13 +1788,17 @@ public class AnsiDataHandler implements DataHandler {
 	/**
 	 *
 	 */
-	public void reloadRecentChanges() throws DataAccessException {
-		int limit = Environment.getIntValue(Environment.PROP_MAX_RECENT_CHANGES);
+	public void reloadLogItems() throws DataAccessException {
+		// write any outbox entries first so that they are not duplicated by the reload
+		ChangeOutbox.flush();
 		TransactionStatus status = null;
 		try {
 			status = DatabaseConnection.startTransaction();
 			Connection conn = DatabaseConnection.getConnection();
-			this.queryHandler().reloadRecentChanges(conn, limit);
+			List<VirtualWiki> virtualWikis = this.getVirtualWikiList();
+			for (VirtualWiki virtualWiki : virtualWikis) {
+				this.queryHandler().reloadLogItems(virtualWiki.getVirtualWikiId(), conn);
+			}
 		} catch (SQLException e) {
 			DatabaseConnection.rollbackOnException(status, e);
 			throw new DataAccessException(e);
@@ -1478,6 +1806,43 @@ public class AnsiDataHandler implements DataHandler {
 		DatabaseConnection.commit(status);
 	}
 
+	/**
+	 *
+	 */
+	public void reloadRecentChanges() throws DataAccessException {
+		// write any outbox entries first so that they are not duplicated by the reload
+		ChangeOutbox.flush();
+		int limit = Environment.getIntValue(Environment.PROP_MAX_RECENT_CHANGES);
+		// reload each virtual wiki in a separate transaction to avoid holding locks on
+		// the entire recent changes table for the duration of the reload.
+		List<VirtualWiki> virtualWikis = this.getVirtualWikiList();
+		for (VirtualWiki virtualWiki : virtualWikis) {
+			TransactionStatus status = null;
+			try {
+				status = DatabaseConnection.startTransaction();
+				Connection conn = DatabaseConnection.getConnection();
+				this.queryHandler().reloadRecentChanges(virtualWiki.getVirtualWikiId(), limit, conn);
+				this.invalidateRecentChangeBuffer(virtualWiki.getName());
+			} catch (SQLException e) {
+				DatabaseConnection.rollbackOnException(status, e);
+				throw new DataAccessException(e);
+			}
+			DatabaseConnection.commit(status);
+		}
+	}
+
+	/**
+	 *
+	 */
+	private void removeTopicVersionsFromCache(int topicId, Integer[] topicVersionIds) {
+		CacheInvalidation.removeFromCache(CACHE_TOPIC_VERSION_COUNTS, topicId);
+		for (Integer topicVersionId : topicVersionIds) {
+			if (topicVersionId != null) {
+				CacheInvalidation.removeFromCache(CACHE_TOPIC_VERSIONS, topicVersionId);
+			}
+		}
+	}
+
 	/**
 	 *
 	 */
@@ -1536,7 +1901,7 @@ public class AnsiDataHandler implements DataHandler {
 			// also needed.
 			ParserOutput parserOutput = ParserUtil.parserOutput(topic.getTopicContent(), topic.getVirtualWiki(), topic.getName());
 			topic.setDeleteDate(null);
-			this.writeTopic(topic, topicVersion, parserOutput.getCategories(), parserOutput.getLinks());
+			this.writeTopic(topic, topicVersion, (parserOutput.getIncomplete()) ? null : parserOutput.getCategories(), (parserOutput.getIncomplete()) ? null : parserOutput.getLinks());
 		} catch (DataAccessException e) {
 			DatabaseConnection.rollbackOnException(status, e);
 			throw e;
@@ -1569,7 +1934,7 @@ public class AnsiDataHandler implements DataHandler {
 			// FIXME - hard coding
 			TopicVersion topicVersion = new TopicVersion(null, userDisplay, "Automatically updated by system upgrade", contents, charactersChanged);
 			ParserOutput parserOutput = ParserUtil.parserOutput(topic.getTopicContent(), virtualWiki, topicName);
-			writeTopic(topic, topicVersion, parserOutput.getCategories(), parserOutput.getLinks());
+			writeTopic(topic, topicVersion, (parserOutput.getIncomplete()) ? null : parserOutput.getCategories(), (parserOutput.getIncomplete()) ? null : parserOutput.getLinks());
 		} catch (DataAccessException e) {
 			DatabaseConnection.rollbackOnException(status, e);
 			throw e;
@@ -1590,18 +1955,165 @@ public class AnsiDataHandler implements DataHandler {
 	}
 
 	/**
+	 * Add a value to a statistic within the current transaction.  If no
+	 * statistics have been recorded for the virtual wiki then nothing is
+	 * updated, since all statistics will be counted when they are next
+	 * retrieved.
+	 */
+	private void updateStatistic(int virtualWikiId, String statistic, int delta, Connection conn) throws SQLException {
+		if (delta == 0) {
+			return;
+		}
+		this.queryHandler().updateStatistic(virtualWikiId, statistic, delta, conn);
+		this.cacheStatisticsRefresh(virtualWikiId);
+	}
+
+	/**
+	 * Update a topic record.
 	 *
+	 * @param updateStatistics Set to <code>true</code> if the update may change
+	 *  whether the topic is deleted, a redirect or in the main namespace, in
+	 *  which case the previously stored values are retrieved and the article
+	 *  and topic counts are updated.  Set to <code>false</code> to skip this
+	 *  lookup when the caller knows that none of these values have changed.
 	 */
-	private void updateTopic(Topic topic, Connection conn) throws DataAccessException, WikiException {
+	private void updateTopic(Topic topic, boolean updateStatistics, Connection conn) throws DataAccessException, WikiException {
 		int virtualWikiId = this.lookupVirtualWikiId(topic.getVirtualWiki());
 		this.validateTopic(topic);
 		try {
+			if (!updateStatistics) {
+				this.queryHandler().updateTopic(topic, virtualWikiId, conn);
+				return;
+			}
+			Integer previousNamespaceId = this.queryHandler().lookupTopicCountedNamespace(topic.getTopicId(), conn);
 			this.queryHandler().updateTopic(topic, virtualWikiId, conn);
+			this.updateTopicStatistics(topic, virtualWikiId, previousNamespaceId, conn);
 		} catch (SQLException e) {
 			throw new DataAccessException(e);
 		}
 	}
 
+	/**
+	 * Return a key that uniquely identifies a topic link record.
+	 */
+	private static String topicLinkKey(Topic topicLink) {
+		return topicLink.getNamespace().getId() + ":" + topicLink.getPageName();
+	}
+
+	/**
+	 * Update the category records for a topic.  Existing records are compared
+	 * with the new category list so that only categories that have been added,
+	 * removed, or whose sort key has changed are written, and all inserts and
+	 * deletes are executed as batches.
+	 */
+	private void updateTopicCategories(Topic topic, boolean newTopic, LinkedHashMap<String, String> categories, Connection conn) throws DataAccessException, WikiException {
+		Map<String, Category> categoryMap = new LinkedHashMap<String, Category>();
+		if (topic.getDeleteDate() == null) {
+			for (String categoryName : categories.keySet()) {
+				Category category = new Category();
+				category.setName(categoryName);
+				category.setSortKey(categories.get(categoryName));
+				category.setVirtualWiki(topic.getVirtualWiki());
+				category.setChildTopicName(topic.getName());
+				categoryMap.put(categoryName, category);
+			}
+		}
+		try {
+			if (!newTopic) {
+				LinkedHashMap<String, String> existing = this.queryHandler().lookupTopicCategories(topic.getTopicId(), conn);
+				if (categoryMap.isEmpty() && !existing.isEmpty()) {
+					this.deleteTopicCategories(topic, conn);
+				} else {
+					List<String> removed = new ArrayList<String>();
+					for (Map.Entry<String, String> entry : existing.entrySet()) {
+						Category category = categoryMap.get(entry.getKey());
+						if (category != null && StringUtils.equals(category.getSortKey(), entry.getValue())) {
+							// unchanged, no need to re-write
+							categoryMap.remove(entry.getKey());
+						} else {
+							// deleted or sort key changed
+							removed.add(entry.getKey());
+						}
+					}
+					if (!removed.isEmpty()) {
+						this.queryHandler().deleteTopicCategories(topic.getTopicId(), removed, conn);
+					}
+				}
+			}
+		} catch (SQLException e) {
+			throw new DataAccessException(e);
+		}
+		if (!categoryMap.isEmpty()) {
+			this.addCategories(new ArrayList<Category>(categoryMap.values()), topic.getTopicId(), conn);
+		}
+	}
+
+	/**
+	 * Update the link records for a topic.  Existing records are compared with
+	 * the new link list so that only links that have been added or removed are
+	 * written, and all inserts and deletes are executed as batches.
+	 */
+	private void updateTopicLinks(Topic topic, boolean newTopic, List<String> links, Connection conn) throws DataAccessException {
+		String virtualWiki = topic.getVirtualWiki();
+		// strip any links longer than 200 characters and any duplicates
+		Map<String, Topic> linksMap = new LinkedHashMap<String, Topic>();
+		if (topic.getDeleteDate() == null) {
+			// retrieve the namespace list once rather than once per link
+			List<Namespace> namespaces = this.lookupNamespaces();
+			for (String link : links) {
+				if (link.length() <= 200) {
+					Namespace namespace = LinkUtil.retrieveTopicNamespace(namespaces, virtualWiki, link);
+					String pageName = LinkUtil.retrieveTopicPageName(namespace, virtualWiki, link);
+					// FIXE - link to records are always capitalized, which will cause problems for the
+					// rare case of two topics such as "eBay" and "EBay".
+					pageName = StringUtils.capitalize(pageName);
+					Topic topicLink = new Topic(virtualWiki, namespace, pageName);
+					linksMap.put(topicLinkKey(topicLink), topicLink);
+				}
+			}
+		}
+		try {
+			if (!newTopic) {
+				List<Topic> existing = this.queryHandler().lookupTopicLinkTargets(topic.getTopicId(), virtualWiki, conn);
+				if (linksMap.isEmpty() && !existing.isEmpty()) {
+					this.deleteTopicLinks(topic.getTopicId(), conn);
+				} else {
+					List<Topic> removed = new ArrayList<Topic>();
+					for (Topic topicLink : existing) {
+						if (linksMap.remove(topicLinkKey(topicLink)) == null) {
+							removed.add(topicLink);
+						}
+					}
+					if (!removed.isEmpty()) {
+						this.queryHandler().deleteTopicLinks(topic.getTopicId(), removed, conn);
+					}
+				}
+			}
+		} catch (SQLException e) {
+			throw new DataAccessException(e);
+		}
+		if (!linksMap.isEmpty()) {
+			this.addTopicLinks(new ArrayList<Topic>(linksMap.values()), topic.getTopicId(), conn);
+		}
+	}
+
+	/**
+	 * Update the article and topic counts after a topic has been added or
+	 * updated.  Only topics that are neither deleted nor redirects are counted,
+	 * so the counts change only when a topic is created, deleted, undeleted,
+	 * changed to or from a redirect, or moved to or from the main namespace.
+	 *
+	 * @param previousNamespaceId The namespace id of the topic prior to the
+	 *  change if the topic was previously counted, otherwise <code>null</code>.
+	 */
+	private void updateTopicStatistics(Topic topic, int virtualWikiId, Integer previousNamespaceId, Connection conn) throws SQLException {
+		Integer namespaceId = (topic.getDeleteDate() == null && topic.getTopicType() != TopicType.REDIRECT) ? topic.getNamespace().getId() : null;
+		int topicDelta = ((namespaceId != null) ? 1 : 0) - ((previousNamespaceId != null) ? 1 : 0);
+		int articleDelta = ((namespaceId != null && namespaceId == Namespace.MAIN_ID) ? 1 : 0) - ((previousNamespaceId != null && previousNamespaceId == Namespace.MAIN_ID) ? 1 : 0);
+		this.updateStatistic(virtualWikiId, SiteStatistics.STATISTIC_ARTICLES, articleDelta, conn);
+		this.updateStatistic(virtualWikiId, SiteStatistics.STATISTIC_TOPICS, topicDelta, conn);
+	}
+
 	/**
 	 *
 	 */
@@ -1638,6 +2150,19 @@ public class AnsiDataHandler implements DataHandler {
 		}
 	}
 
+	/**
+	 * Record the current version of a topic in the watchlist entries of all
+	 * users watching the topic, so that each user's watchlist can be read as
+	 * a range of their own entries ordered by change date.
+	 */
+	private void updateWatchlistChange(Topic topic, Connection conn) throws DataAccessException, SQLException {
+		if (topic.getCurrentVersionId() == null) {
+			return;
+		}
+		int virtualWikiId = this.lookupVirtualWikiId(topic.getVirtualWiki());
+		this.queryHandler().updateWatchlistChange(virtualWikiId, topic.getName(), topic.getTopicId(), topic.getCurrentVersionId(), conn);
+	}
+
 	/**
 	 *
 	 */
@@ -1645,7 +2170,10 @@ public class AnsiDataHandler implements DataHandler {
 		int virtualWikiId = this.lookupVirtualWikiId(wikiFile.getVirtualWiki());
 		this.validateWikiFile(wikiFile);
 		try {
+			boolean previouslyCounted = this.queryHandler().lookupWikiFileCounted(wikiFile.getFileId(), conn);
 			this.queryHandler().updateWikiFile(wikiFile, virtualWikiId, conn);
+			int fileDelta = ((wikiFile.getDeleteDate() == null) ? 1 : 0) - ((previouslyCounted) ? 1 : 0);
+			this.updateStatistic(virtualWikiId, SiteStatistics.STATISTIC_FILES, fileDelta, conn);
 		} catch (SQLException e) {
 			throw new DataAccessException(e);
 		}
@@ -1858,6 +2386,51 @@ public class AnsiDataHandler implements DataHandler {
 		checkLength(user.getSignature(), 255);
 	}
 
+	/**
+	 *
+	 */
+	public void writeCacheEvent(CacheEvent event) throws DataAccessException {
+		Connection conn = null;
+		try {
+			// if a transaction is active the event is recorded as part of that transaction
+			conn = DatabaseConnection.getConnection();
+			this.queryHandler().insertCacheEvent(event, conn);
+		} catch (SQLException e) {
+			throw new DataAccessException(e);
+		} finally {
+			DatabaseConnection.closeConnection(conn);
+		}
+	}
+
+	/**
+	 * Write log items and recent changes from the change outbox in a single
+	 * transaction, updating the recent change buffer once the transaction
+	 * has committed.
+	 */
+	void writeChanges(List<LogItem> logItems, List<RecentChange> recentChanges) throws DataAccessException {
+		TransactionStatus status = null;
+		try {
+			status = DatabaseConnection.startTransaction();
+			Connection conn = DatabaseConnection.getConnection();
+			for (LogItem logItem : logItems) {
+				this.queryHandler().insertLogItem(logItem, this.lookupVirtualWikiId(logItem.getVirtualWiki()), conn);
+			}
+			for (RecentChange change : recentChanges) {
+				this.queryHandler().insertRecentChange(change, this.lookupVirtualWikiId(change.getVirtualWiki()), conn);
+			}
+		} catch (DataAccessException e) {
+			DatabaseConnection.rollbackOnException(status, e);
+			throw e;
+		} catch (SQLException e) {
+			DatabaseConnection.rollbackOnException(status, e);
+			throw new DataAccessException(e);
+		}
+		DatabaseConnection.commit(status);
+		for (RecentChange change : recentChanges) {
+			this.bufferRecentChange(change);
+		}
+	}
+
 	/**
 	 *
 	 */
@@ -1921,7 +2494,7 @@ public class AnsiDataHandler implements DataHandler {
 			throw new DataAccessException(e);
 		}
 		DatabaseConnection.commit(status);
-		WikiCache.removeAllFromCache(CACHE_INTERWIKI_LIST);
+		CacheInvalidation.removeAllFromCache(CACHE_INTERWIKI_LIST);
 	}
 
 	/**
@@ -1939,7 +2512,7 @@ public class AnsiDataHandler implements DataHandler {
 			throw new DataAccessException(e);
 		}
 		DatabaseConnection.commit(status);
-		WikiCache.removeAllFromCache(CACHE_NAMESPACE_LIST);
+		CacheInvalidation.removeAllFromCache(CACHE_NAMESPACE_LIST);
 	}
 
 	/**
@@ -1960,7 +2533,7 @@ public class AnsiDataHandler implements DataHandler {
 			throw new DataAccessException(e);
 		}
 		DatabaseConnection.commit(status);
-		WikiCache.removeAllFromCache(CACHE_NAMESPACE_LIST);
+		CacheInvalidation.removeAllFromCache(CACHE_NAMESPACE_LIST);
 	}
 
 	/**
@@ -2002,7 +2575,7 @@ public class AnsiDataHandler implements DataHandler {
 				this.queryHandler().insertGroupAuthority(groupId, authority, conn);
 			}
 			// flush the cache
-			WikiCache.removeAllFromCache(CACHE_ROLE_MAP_GROUP);
+			CacheInvalidation.removeAllFromCache(CACHE_ROLE_MAP_GROUP);
 		} catch (SQLException e) {
 			DatabaseConnection.rollbackOnException(status, e);
 			throw new DataAccessException(e);
@@ -2059,19 +2632,21 @@ public class AnsiDataHandler implements DataHandler {
 		try {
 			status = DatabaseConnection.startTransaction();
 			Connection conn = DatabaseConnection.getConnection();
-			if (topic.getTopicId() <= 0) {
+			boolean newTopic = (topic.getTopicId() <= 0);
+			if (newTopic) {
 				// create the initial topic record
 				addTopic(topic, conn);
 			} else if (topicVersion == null) {
 				// if there is no version record then update the topic.  if there is a version
 				// record then the topic will be updated AFTER the version record is created.
-				this.updateTopic(topic, conn);
+				this.updateTopic(topic, true, conn);
 			}
 			if (topicVersion != null) {
 				// write version
 				addTopicVersion(topic, topicVersion, conn);
-				// update the topic AFTER creating the version so that the current_topic_version_id parameter is set properly
-				this.updateTopic(topic, conn);
+				// update the topic AFTER creating the version so that the current_topic_version_id parameter is set properly.
+				// a new topic was counted when it was added, so its counts cannot have changed.
+				this.updateTopic(topic, !newTopic, conn);
 				String authorName = this.authorName(topicVersion.getAuthorId(), topicVersion.getAuthorDisplay());
 				LogItem logItem = LogItem.initLogItem(topic, topicVersion, authorName);
 				RecentChange change = null;
@@ -2087,27 +2662,14 @@ public class AnsiDataHandler implements DataHandler {
 			}
 			if (categories != null) {
 				// add / remove categories associated with the topic
-				this.deleteTopicCategories(topic, conn);
-				if (topic.getDeleteDate() == null && !categories.isEmpty()) {
-					List<Category> categoryList = new ArrayList<Category>();
-					for (String categoryName : categories.keySet()) {
-						Category category = new Category();
-						category.setName(categoryName);
-						category.setSortKey(categories.get(categoryName));
-						category.setVirtualWiki(topic.getVirtualWiki());
-						category.setChildTopicName(topic.getName());
-						categoryList.add(category);
-					}
-					this.addCategories(categoryList, topic.getTopicId(), conn);
-				}
+				this.updateTopicCategories(topic, newTopic, categories, conn);
 			}
 			if (links != null) {
 				// add / remove links associated with the topic
-				this.deleteTopicLinks(topic.getTopicId(), conn);
-				if (topic.getDeleteDate() == null && !links.isEmpty()) {
-					this.addTopicLinks(links, topic.getVirtualWiki(), topic.getTopicId(), conn);
-				}
+				this.updateTopicLinks(topic, newTopic, links, conn);
 			}
+			// the topic name or current version may have changed, so update the watchlist change feed
+			this.updateWatchlistChange(topic, conn);
 			if (topicVersion != null) {
 				// topic version is only null during changes that aren't user visible
 				WikiBase.getSearchEngine().updateInIndex(topic);
@@ -2176,7 +2738,7 @@ public class AnsiDataHandler implements DataHandler {
 		}
 		DatabaseConnection.commit(status);
 		// flush the cache
-		WikiCache.removeAllFromCache(CACHE_USER_BLOCKS_ACTIVE);
+		CacheInvalidation.removeAllFromCache(CACHE_USER_BLOCKS_ACTIVE);
 	}
 
 	/**
@@ -2205,7 +2767,7 @@ public class AnsiDataHandler implements DataHandler {
 		}
 		DatabaseConnection.commit(status);
 		// flush the cache
-		WikiCache.removeAllFromCache(CACHE_VIRTUAL_WIKI_LIST);
+		CacheInvalidation.removeAllFromCache(CACHE_VIRTUAL_WIKI_LIST);
 	}
 
 	/**
@@ -2227,8 +2789,8 @@ public class AnsiDataHandler implements DataHandler {
 				watchlist.remove(comments);
 			} else {
 				// add to watchlist
-				this.addWatchlistEntry(virtualWikiId, article, userId, conn);
-				this.addWatchlistEntry(virtualWikiId, comments, userId, conn);
+				this.addWatchlistEntry(virtualWiki, virtualWikiId, article, userId, conn);
+				this.addWatchlistEntry(virtualWiki, virtualWikiId, comments, userId, conn);
 				watchlist.add(article);
 				watchlist.add(comments);
 			}
@@ -2313,7 +2875,9 @@ public class AnsiDataHandler implements DataHandler {
 		}
 		DatabaseConnection.commit(status);
 		// update the cache AFTER the commit
-		WikiCache.addToCache(CACHE_USER_BY_USER_ID, user.getUserId(), user);
-		WikiCache.addToCache(CACHE_USER_BY_USER_NAME, user.getUsername(), user);
+		CacheInvalidation.removeFromCache(CACHE_USER_BY_USER_ID, user.getUserId());
+		CacheInvalidation.removeFromCache(CACHE_USER_BY_USER_NAME, user.getUsername());
+		CACHE_USER_BY_USER_ID.addToCache(user.getUserId(), user);
+		CACHE_USER_BY_USER_NAME.addToCache(user.getUsername(), user);
 	}
 }
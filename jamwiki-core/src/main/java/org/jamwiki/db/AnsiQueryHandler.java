@@ -23,7 +23,6 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
 import java.sql.Types;
-import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -32,7 +31,10 @@ import java.util.Map;
 import java.util.TreeMap;
 import java.util.Properties;
 import org.apache.commons.lang.StringUtils;
+import org.jamwiki.DataAccessException;
 import org.jamwiki.Environment;
+import org.jamwiki.TopicNameCallback;
+import org.jamwiki.model.CacheEvent;
 import org.jamwiki.model.Category;
 import org.jamwiki.model.Interwiki;
 import org.jamwiki.model.LogItem;
@@ -62,21 +64,30 @@ public class AnsiQueryHandler implements QueryHandler {
 
 	private static final WikiLogger logger = WikiLogger.getLogger(AnsiQueryHandler.class.getName());
 	protected static final String SQL_PROPERTY_FILE_NAME = "sql/sql.ansi.properties";
+	/** Number of rows retrieved from the database at a time when reading large result sets. */
+	protected static final int STREAMING_FETCH_SIZE = 500;
 
 	protected static String STATEMENT_CONNECTION_VALIDATION_QUERY = null;
 	protected static String STATEMENT_CREATE_AUTHORITIES_TABLE = null;
+	protected static String STATEMENT_CREATE_CACHE_EVENT_INDEX = null;
+	protected static String STATEMENT_CREATE_CACHE_EVENT_TABLE = null;
 	protected static String STATEMENT_CREATE_CATEGORY_TABLE = null;
 	protected static String STATEMENT_CREATE_CATEGORY_INDEX = null;
+	protected static String STATEMENT_CREATE_CATEGORY_NAME_LOWER_INDEX = null;
 	protected static String STATEMENT_CREATE_CONFIGURATION_TABLE = null;
 	protected static String STATEMENT_CREATE_GROUP_AUTHORITIES_TABLE = null;
 	protected static String STATEMENT_CREATE_GROUP_MEMBERS_TABLE = null;
 	protected static String STATEMENT_CREATE_GROUP_TABLE = null;
 	protected static String STATEMENT_CREATE_INTERWIKI_TABLE = null;
+	protected static String STATEMENT_CREATE_LOG_DATE_INDEX = null;
 	protected static String STATEMENT_CREATE_LOG_TABLE = null;
+	protected static String STATEMENT_CREATE_LOG_TYPE_INDEX = null;
 	protected static String STATEMENT_CREATE_NAMESPACE_TABLE = null;
 	protected static String STATEMENT_CREATE_NAMESPACE_TRANSLATION_TABLE = null;
+	protected static String STATEMENT_CREATE_RECENT_CHANGE_DATE_INDEX = null;
 	protected static String STATEMENT_CREATE_RECENT_CHANGE_TABLE = null;
 	protected static String STATEMENT_CREATE_ROLE_TABLE = null;
+	protected static String STATEMENT_CREATE_STATISTICS_TABLE = null;
 	protected static String STATEMENT_CREATE_TOPIC_CURRENT_VERSION_CONSTRAINT = null;
 	protected static String STATEMENT_CREATE_TOPIC_TABLE = null;
 	protected static String STATEMENT_CREATE_TOPIC_LINKS_TABLE = null;
@@ -90,16 +101,21 @@ public class AnsiQueryHandler implements QueryHandler {
 	protected static String STATEMENT_CREATE_TOPIC_VERSION_TOPIC_INDEX = null;
 	protected static String STATEMENT_CREATE_TOPIC_VERSION_PREVIOUS_INDEX = null;
 	protected static String STATEMENT_CREATE_TOPIC_VERSION_USER_DISPLAY_INDEX = null;
+	protected static String STATEMENT_CREATE_TOPIC_VERSION_USER_DATE_INDEX = null;
+	protected static String STATEMENT_CREATE_TOPIC_VERSION_USER_DISPLAY_DATE_INDEX = null;
 	protected static String STATEMENT_CREATE_TOPIC_VERSION_USER_ID_INDEX = null;
 	protected static String STATEMENT_CREATE_USER_BLOCK_TABLE = null;
 	protected static String STATEMENT_CREATE_USERS_TABLE = null;
 	protected static String STATEMENT_CREATE_VIRTUAL_WIKI_TABLE = null;
 	protected static String STATEMENT_CREATE_WATCHLIST_TABLE = null;
+	protected static String STATEMENT_CREATE_WATCHLIST_TOPIC_INDEX = null;
+	protected static String STATEMENT_CREATE_WATCHLIST_USER_DATE_INDEX = null;
 	protected static String STATEMENT_CREATE_WIKI_FILE_TABLE = null;
 	protected static String STATEMENT_CREATE_WIKI_FILE_VERSION_TABLE = null;
 	protected static String STATEMENT_CREATE_WIKI_USER_TABLE = null;
 	protected static String STATEMENT_CREATE_WIKI_USER_LOGIN_INDEX = null;
 	protected static String STATEMENT_DELETE_AUTHORITIES = null;
+	protected static String STATEMENT_DELETE_CACHE_EVENTS = null;
 	protected static String STATEMENT_DELETE_CONFIGURATION = null;
 	protected static String STATEMENT_DELETE_GROUP_AUTHORITIES = null;
 	protected static String STATEMENT_DELETE_INTERWIKI = null;
@@ -110,10 +126,13 @@ public class AnsiQueryHandler implements QueryHandler {
 	protected static String STATEMENT_DELETE_RECENT_CHANGES_TOPIC = null;
 	protected static String STATEMENT_DELETE_RECENT_CHANGES_TOPIC_VERSION = null;
 	protected static String STATEMENT_DELETE_TOPIC_CATEGORIES = null;
+	protected static String STATEMENT_DELETE_TOPIC_CATEGORY = null;
+	protected static String STATEMENT_DELETE_TOPIC_LINK = null;
 	protected static String STATEMENT_DELETE_TOPIC_LINKS = null;
 	protected static String STATEMENT_DELETE_TOPIC_VERSION = null;
 	protected static String STATEMENT_DELETE_WATCHLIST_ENTRY = null;
 	protected static String STATEMENT_DROP_AUTHORITIES_TABLE = null;
+	protected static String STATEMENT_DROP_CACHE_EVENT_TABLE = null;
 	protected static String STATEMENT_DROP_CATEGORY_TABLE = null;
 	protected static String STATEMENT_DROP_CONFIGURATION_TABLE = null;
 	protected static String STATEMENT_DROP_GROUP_AUTHORITIES_TABLE = null;
@@ -125,6 +144,7 @@ public class AnsiQueryHandler implements QueryHandler {
 	protected static String STATEMENT_DROP_NAMESPACE_TRANSLATION_TABLE = null;
 	protected static String STATEMENT_DROP_RECENT_CHANGE_TABLE = null;
 	protected static String STATEMENT_DROP_ROLE_TABLE = null;
+	protected static String STATEMENT_DROP_STATISTICS_TABLE = null;
 	protected static String STATEMENT_DROP_TOPIC_CURRENT_VERSION_CONSTRAINT = null;
 	protected static String STATEMENT_DROP_TOPIC_TABLE = null;
 	protected static String STATEMENT_DROP_TOPIC_LINKS_TABLE = null;
@@ -137,6 +157,7 @@ public class AnsiQueryHandler implements QueryHandler {
 	protected static String STATEMENT_DROP_WIKI_FILE_VERSION_TABLE = null;
 	protected static String STATEMENT_DROP_WIKI_USER_TABLE = null;
 	protected static String STATEMENT_INSERT_AUTHORITY = null;
+	protected static String STATEMENT_INSERT_CACHE_EVENT = null;
 	protected static String STATEMENT_INSERT_CATEGORY = null;
 	protected static String STATEMENT_INSERT_CONFIGURATION = null;
 	protected static String STATEMENT_INSERT_GROUP = null;
@@ -159,6 +180,7 @@ public class AnsiQueryHandler implements QueryHandler {
 	protected static String STATEMENT_INSERT_RECENT_CHANGES_LOGS = null;
 	protected static String STATEMENT_INSERT_RECENT_CHANGES_VERSIONS = null;
 	protected static String STATEMENT_INSERT_ROLE = null;
+	protected static String STATEMENT_INSERT_STATISTIC = null;
 	protected static String STATEMENT_INSERT_TOPIC = null;
 	protected static String STATEMENT_INSERT_TOPIC_AUTO_INCREMENT = null;
 	protected static String STATEMENT_INSERT_TOPIC_LINKS = null;
@@ -179,6 +201,7 @@ public class AnsiQueryHandler implements QueryHandler {
 	protected static String STATEMENT_SELECT_AUTHORITIES_AUTHORITY = null;
 	protected static String STATEMENT_SELECT_AUTHORITIES_LOGIN = null;
 	protected static String STATEMENT_SELECT_AUTHORITIES_USER = null;
+	protected static String STATEMENT_SELECT_CACHE_EVENTS = null;
 	protected static String STATEMENT_SELECT_CATEGORIES = null;
 	protected static String STATEMENT_SELECT_CATEGORY_TOPICS = null;
 	protected static String STATEMENT_SELECT_CONFIGURATION = null;
@@ -194,20 +217,29 @@ public class AnsiQueryHandler implements QueryHandler {
 	protected static String STATEMENT_SELECT_NAMESPACES = null;
 	protected static String STATEMENT_SELECT_RECENT_CHANGES = null;
 	protected static String STATEMENT_SELECT_ROLES = null;
+	protected static String STATEMENT_SELECT_STATISTICS = null;
 	protected static String STATEMENT_SELECT_TOPIC_BY_ID = null;
 	protected static String STATEMENT_SELECT_TOPIC_BY_TYPE = null;
+	protected static String STATEMENT_SELECT_TOPIC_BY_TYPE_KEYSET = null;
+	protected static String STATEMENT_SELECT_TOPIC_CATEGORIES = null;
 	protected static String STATEMENT_SELECT_TOPIC_COUNT = null;
+	protected static String STATEMENT_SELECT_TOPIC_COUNTED_NAMESPACE = null;
 	protected static String STATEMENT_SELECT_TOPIC = null;
 	protected static String STATEMENT_SELECT_TOPIC_HISTORY = null;
+	protected static String STATEMENT_SELECT_TOPIC_HISTORY_KEYSET = null;
+	protected static String STATEMENT_SELECT_TOPIC_IDS = null;
 	protected static String STATEMENT_SELECT_TOPIC_LINK_ORPHANS = null;
+	protected static String STATEMENT_SELECT_TOPIC_LINK_TARGETS = null;
 	protected static String STATEMENT_SELECT_TOPIC_LINKS = null;
 	protected static String STATEMENT_SELECT_TOPIC_LOWER = null;
 	protected static String STATEMENT_SELECT_TOPIC_NAME = null;
 	protected static String STATEMENT_SELECT_TOPIC_NAME_LOWER = null;
 	protected static String STATEMENT_SELECT_TOPIC_NAMES = null;
 	protected static String STATEMENT_SELECT_TOPICS_ADMIN = null;
+	protected static String STATEMENT_SELECT_TOPICS_ADMIN_KEYSET = null;
 	protected static String STATEMENT_SELECT_TOPIC_SEQUENCE = null;
 	protected static String STATEMENT_SELECT_TOPIC_VERSION = null;
+	protected static String STATEMENT_SELECT_TOPIC_VERSION_COUNT = null;
 	protected static String STATEMENT_SELECT_TOPIC_VERSION_NEXT_ID = null;
 	protected static String STATEMENT_SELECT_TOPIC_VERSION_SEQUENCE = null;
 	protected static String STATEMENT_SELECT_USER_BLOCKS = null;
@@ -217,21 +249,28 @@ public class AnsiQueryHandler implements QueryHandler {
 	protected static String STATEMENT_SELECT_VIRTUAL_WIKI_SEQUENCE = null;
 	protected static String STATEMENT_SELECT_WATCHLIST = null;
 	protected static String STATEMENT_SELECT_WATCHLIST_CHANGES = null;
+	protected static String STATEMENT_SELECT_WATCHLIST_DIGEST = null;
 	protected static String STATEMENT_SELECT_WIKI_FILE = null;
 	protected static String STATEMENT_SELECT_WIKI_FILE_COUNT = null;
+	protected static String STATEMENT_SELECT_WIKI_FILE_COUNTED = null;
 	protected static String STATEMENT_SELECT_WIKI_FILE_SEQUENCE = null;
 	protected static String STATEMENT_SELECT_WIKI_FILE_VERSION_SEQUENCE = null;
 	protected static String STATEMENT_SELECT_WIKI_FILE_VERSIONS = null;
 	protected static String STATEMENT_SELECT_WIKI_USER = null;
 	protected static String STATEMENT_SELECT_WIKI_USER_CHANGES_ANONYMOUS = null;
+	protected static String STATEMENT_SELECT_WIKI_USER_CHANGES_ANONYMOUS_KEYSET = null;
 	protected static String STATEMENT_SELECT_WIKI_USER_CHANGES_LOGIN = null;
+	protected static String STATEMENT_SELECT_WIKI_USER_CHANGES_LOGIN_KEYSET = null;
 	protected static String STATEMENT_SELECT_WIKI_USER_COUNT = null;
 	protected static String STATEMENT_SELECT_WIKI_USER_DETAILS_PASSWORD = null;
 	protected static String STATEMENT_SELECT_WIKI_USER_LOGIN = null;
 	protected static String STATEMENT_SELECT_WIKI_USER_SEQUENCE = null;
 	protected static String STATEMENT_SELECT_WIKI_USERS = null;
+	protected static String STATEMENT_SELECT_WIKI_USERS_KEYSET = null;
 	protected static String STATEMENT_UPDATE_GROUP = null;
 	protected static String STATEMENT_UPDATE_ROLE = null;
+	protected static String STATEMENT_UPDATE_STATISTIC = null;
+	protected static String STATEMENT_UPDATE_STATISTIC_VALUE = null;
 	protected static String STATEMENT_UPDATE_NAMESPACE = null;
 	protected static String STATEMENT_UPDATE_RECENT_CHANGES_PREVIOUS_VERSION_ID = null;
 	protected static String STATEMENT_UPDATE_TOPIC = null;
@@ -241,6 +280,7 @@ public class AnsiQueryHandler implements QueryHandler {
 	protected static String STATEMENT_UPDATE_USER = null;
 	protected static String STATEMENT_UPDATE_USER_BLOCK = null;
 	protected static String STATEMENT_UPDATE_VIRTUAL_WIKI = null;
+	protected static String STATEMENT_UPDATE_WATCHLIST_CHANGE = null;
 	protected static String STATEMENT_UPDATE_WIKI_FILE = null;
 	protected static String STATEMENT_UPDATE_WIKI_USER = null;
 	private Properties props = null;
@@ -259,7 +299,7 @@ public class AnsiQueryHandler implements QueryHandler {
 	public boolean authenticateUser(String username, String encryptedPassword, Connection conn) throws SQLException {
 		PreparedStatement stmt = null;
 		try {
-			stmt = conn.prepareStatement(STATEMENT_SELECT_USERS_AUTHENTICATION);
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_USERS_AUTHENTICATION);
 			stmt.setString(1, username);
 			stmt.setString(2, encryptedPassword);
 			return (stmt.executeQuery().next());
@@ -282,6 +322,27 @@ public class AnsiQueryHandler implements QueryHandler {
 		return STATEMENT_CONNECTION_VALIDATION_QUERY;
 	}
 
+	/**
+	 * Return the change date specified by the continuation token of a
+	 * pagination object for queries that are ordered by change date and
+	 * topic version id.
+	 *
+	 * @return The change date of the last result of the previous page, or
+	 *  <code>null</code> if no valid continuation token was specified, in
+	 *  which case results should be retrieved by offset.
+	 */
+	private static Timestamp continuationDate(Pagination pagination) {
+		if (!pagination.isKeyset()) {
+			return null;
+		}
+		try {
+			return Timestamp.valueOf(pagination.getContinuationValue());
+		} catch (IllegalArgumentException e) {
+			logger.info("Ignoring invalid pagination continuation date: " + pagination.getContinuationValue());
+			return null;
+		}
+	}
+
 	/**
 	 *
 	 */
@@ -303,6 +364,8 @@ public class AnsiQueryHandler implements QueryHandler {
 		DatabaseConnection.executeUpdate(STATEMENT_CREATE_TOPIC_VERSION_PREVIOUS_INDEX, conn);
 		DatabaseConnection.executeUpdate(STATEMENT_CREATE_TOPIC_VERSION_USER_DISPLAY_INDEX, conn);
 		DatabaseConnection.executeUpdate(STATEMENT_CREATE_TOPIC_VERSION_USER_ID_INDEX, conn);
+		DatabaseConnection.executeUpdate(STATEMENT_CREATE_TOPIC_VERSION_USER_DATE_INDEX, conn);
+		DatabaseConnection.executeUpdate(STATEMENT_CREATE_TOPIC_VERSION_USER_DISPLAY_DATE_INDEX, conn);
 		DatabaseConnection.executeUpdate(STATEMENT_CREATE_TOPIC_CURRENT_VERSION_CONSTRAINT, conn);
 		DatabaseConnection.executeUpdate(STATEMENT_CREATE_TOPIC_LINKS_TABLE, conn);
 		DatabaseConnection.executeUpdate(STATEMENT_CREATE_TOPIC_LINKS_INDEX, conn);
@@ -310,17 +373,40 @@ public class AnsiQueryHandler implements QueryHandler {
 		DatabaseConnection.executeUpdate(STATEMENT_CREATE_WIKI_FILE_VERSION_TABLE, conn);
 		DatabaseConnection.executeUpdate(STATEMENT_CREATE_CATEGORY_TABLE, conn);
 		DatabaseConnection.executeUpdate(STATEMENT_CREATE_CATEGORY_INDEX, conn);
+		DatabaseConnection.executeUpdate(STATEMENT_CREATE_CATEGORY_NAME_LOWER_INDEX, conn);
 		DatabaseConnection.executeUpdate(STATEMENT_CREATE_GROUP_TABLE, conn);
 		DatabaseConnection.executeUpdate(STATEMENT_CREATE_GROUP_MEMBERS_TABLE, conn);
 		DatabaseConnection.executeUpdate(STATEMENT_CREATE_ROLE_TABLE, conn);
 		DatabaseConnection.executeUpdate(STATEMENT_CREATE_AUTHORITIES_TABLE, conn);
 		DatabaseConnection.executeUpdate(STATEMENT_CREATE_GROUP_AUTHORITIES_TABLE, conn);
 		DatabaseConnection.executeUpdate(STATEMENT_CREATE_LOG_TABLE, conn);
+		DatabaseConnection.executeUpdate(STATEMENT_CREATE_LOG_DATE_INDEX, conn);
+		DatabaseConnection.executeUpdate(STATEMENT_CREATE_LOG_TYPE_INDEX, conn);
 		DatabaseConnection.executeUpdate(STATEMENT_CREATE_RECENT_CHANGE_TABLE, conn);
+		DatabaseConnection.executeUpdate(STATEMENT_CREATE_RECENT_CHANGE_DATE_INDEX, conn);
 		DatabaseConnection.executeUpdate(STATEMENT_CREATE_WATCHLIST_TABLE, conn);
+		DatabaseConnection.executeUpdate(STATEMENT_CREATE_WATCHLIST_TOPIC_INDEX, conn);
+		DatabaseConnection.executeUpdate(STATEMENT_CREATE_WATCHLIST_USER_DATE_INDEX, conn);
 		DatabaseConnection.executeUpdate(STATEMENT_CREATE_INTERWIKI_TABLE, conn);
 		DatabaseConnection.executeUpdate(STATEMENT_CREATE_CONFIGURATION_TABLE, conn);
 		DatabaseConnection.executeUpdate(STATEMENT_CREATE_USER_BLOCK_TABLE, conn);
+		DatabaseConnection.executeUpdate(STATEMENT_CREATE_CACHE_EVENT_TABLE, conn);
+		DatabaseConnection.executeUpdate(STATEMENT_CREATE_CACHE_EVENT_INDEX, conn);
+		DatabaseConnection.executeUpdate(STATEMENT_CREATE_STATISTICS_TABLE, conn);
+	}
+
+	/**
+	 *
+	 */
+	public void deleteCacheEvents(Timestamp before, Connection conn) throws SQLException {
+		PreparedStatement stmt = null;
+		try {
+			stmt = this.prepareStatement(conn, STATEMENT_DELETE_CACHE_EVENTS);
+			stmt.setTimestamp(1, before);
+			stmt.executeUpdate();
+		} finally {
+			DatabaseConnection.closeStatement(stmt);
+		}
 	}
 
 	/**
@@ -329,7 +415,7 @@ public class AnsiQueryHandler implements QueryHandler {
 	public void deleteGroupAuthorities(int groupId, Connection conn) throws SQLException {
 		PreparedStatement stmt = null;
 		try {
-			stmt = conn.prepareStatement(STATEMENT_DELETE_GROUP_AUTHORITIES);
+			stmt = this.prepareStatement(conn, STATEMENT_DELETE_GROUP_AUTHORITIES);
 			stmt.setInt(1, groupId);
 			stmt.executeUpdate();
 		} finally {
@@ -343,7 +429,7 @@ public class AnsiQueryHandler implements QueryHandler {
 	public void deleteInterwiki(Interwiki interwiki, Connection conn) throws SQLException {
 		PreparedStatement stmt = null;
 		try {
-			stmt = conn.prepareStatement(STATEMENT_DELETE_INTERWIKI);
+			stmt = this.prepareStatement(conn, STATEMENT_DELETE_INTERWIKI);
 			stmt.setString(1, interwiki.getInterwikiPrefix());
 			stmt.executeUpdate();
 		} finally {
@@ -357,7 +443,7 @@ public class AnsiQueryHandler implements QueryHandler {
 	public void deleteRecentChanges(int topicId, Connection conn) throws SQLException {
 		PreparedStatement stmt = null;
 		try {
-			stmt = conn.prepareStatement(STATEMENT_DELETE_RECENT_CHANGES_TOPIC);
+			stmt = this.prepareStatement(conn, STATEMENT_DELETE_RECENT_CHANGES_TOPIC);
 			stmt.setInt(1, topicId);
 			stmt.executeUpdate();
 		} finally {
@@ -371,7 +457,7 @@ public class AnsiQueryHandler implements QueryHandler {
 	public void deleteTopicCategories(int childTopicId, Connection conn) throws SQLException {
 		PreparedStatement stmt = null;
 		try {
-			stmt = conn.prepareStatement(STATEMENT_DELETE_TOPIC_CATEGORIES);
+			stmt = this.prepareStatement(conn, STATEMENT_DELETE_TOPIC_CATEGORIES);
 			stmt.setInt(1, childTopicId);
 			stmt.executeUpdate();
 		} finally {
@@ -379,13 +465,31 @@ public class AnsiQueryHandler implements QueryHandler {
 		}
 	}
 
+	/**
+	 *
+	 */
+	public void deleteTopicCategories(int childTopicId, List<String> categoryNames, Connection conn) throws SQLException {
+		PreparedStatement stmt = null;
+		try {
+			stmt = this.prepareStatement(conn, STATEMENT_DELETE_TOPIC_CATEGORY);
+			for (String categoryName : categoryNames) {
+				stmt.setInt(1, childTopicId);
+				stmt.setString(2, categoryName);
+				stmt.addBatch();
+			}
+			stmt.executeBatch();
+		} finally {
+			DatabaseConnection.closeStatement(stmt);
+		}
+	}
+
 	/**
 	 *
 	 */
 	public void deleteTopicLinks(int topicId, Connection conn) throws SQLException {
 		PreparedStatement stmt = null;
 		try {
-			stmt = conn.prepareStatement(STATEMENT_DELETE_TOPIC_LINKS);
+			stmt = this.prepareStatement(conn, STATEMENT_DELETE_TOPIC_LINKS);
 			stmt.setInt(1, topicId);
 			stmt.executeUpdate();
 		} finally {
@@ -393,6 +497,25 @@ public class AnsiQueryHandler implements QueryHandler {
 		}
 	}
 
+	/**
+	 *
+	 */
+	public void deleteTopicLinks(int topicId, List<Topic> topicLinks, Connection conn) throws SQLException {
+		PreparedStatement stmt = null;
+		try {
+			stmt = this.prepareStatement(conn, STATEMENT_DELETE_TOPIC_LINK);
+			for (Topic topicLink : topicLinks) {
+				stmt.setInt(1, topicId);
+				stmt.setInt(2, topicLink.getNamespace().getId());
+				stmt.setString(3, topicLink.getPageName());
+				stmt.addBatch();
+			}
+			stmt.executeBatch();
+		} finally {
+			DatabaseConnection.closeStatement(stmt);
+		}
+	}
+
 	/**
 	 *
 	 */
@@ -400,7 +523,7 @@ public class AnsiQueryHandler implements QueryHandler {
 		PreparedStatement stmt = null;
 		try {
 			// delete references to the topic version from the log table
-			stmt = conn.prepareStatement(STATEMENT_DELETE_LOG_ITEMS_BY_TOPIC_VERSION);
+			stmt = this.prepareStatement(conn, STATEMENT_DELETE_LOG_ITEMS_BY_TOPIC_VERSION);
 			stmt.setInt(1, topicVersionId);
 			stmt.executeUpdate();
 		} finally {
@@ -408,7 +531,7 @@ public class AnsiQueryHandler implements QueryHandler {
 		}
 		try {
 			// delete references to the topic version from the recent changes table
-			stmt = conn.prepareStatement(STATEMENT_DELETE_RECENT_CHANGES_TOPIC_VERSION);
+			stmt = this.prepareStatement(conn, STATEMENT_DELETE_RECENT_CHANGES_TOPIC_VERSION);
 			stmt.setInt(1, topicVersionId);
 			stmt.executeUpdate();
 		} finally {
@@ -416,7 +539,7 @@ public class AnsiQueryHandler implements QueryHandler {
 		}
 		try {
 			// update any recent changes that refer to this record as the previous record
-			stmt = conn.prepareStatement(STATEMENT_UPDATE_RECENT_CHANGES_PREVIOUS_VERSION_ID);
+			stmt = this.prepareStatement(conn, STATEMENT_UPDATE_RECENT_CHANGES_PREVIOUS_VERSION_ID);
 			if (previousTopicVersionId != null) {
 				stmt.setInt(1, previousTopicVersionId);
 			} else {
@@ -429,7 +552,7 @@ public class AnsiQueryHandler implements QueryHandler {
 		}
 		try {
 			// delete the topic version record
-			stmt = conn.prepareStatement(STATEMENT_DELETE_TOPIC_VERSION);
+			stmt = this.prepareStatement(conn, STATEMENT_DELETE_TOPIC_VERSION);
 			stmt.setInt(1, topicVersionId);
 			stmt.executeUpdate();
 		} finally {
@@ -443,7 +566,7 @@ public class AnsiQueryHandler implements QueryHandler {
 	public void deleteUserAuthorities(String username, Connection conn) throws SQLException {
 		PreparedStatement stmt = null;
 		try {
-			stmt = conn.prepareStatement(STATEMENT_DELETE_AUTHORITIES);
+			stmt = this.prepareStatement(conn, STATEMENT_DELETE_AUTHORITIES);
 			stmt.setString(1, username);
 			stmt.executeUpdate();
 		} finally {
@@ -457,7 +580,7 @@ public class AnsiQueryHandler implements QueryHandler {
 	public void deleteWatchlistEntry(int virtualWikiId, String topicName, int userId, Connection conn) throws SQLException {
 		PreparedStatement stmt = null;
 		try {
-			stmt = conn.prepareStatement(STATEMENT_DELETE_WATCHLIST_ENTRY);
+			stmt = this.prepareStatement(conn, STATEMENT_DELETE_WATCHLIST_ENTRY);
 			stmt.setInt(1, virtualWikiId);
 			stmt.setString(2, topicName);
 			stmt.setInt(3, userId);
@@ -475,6 +598,12 @@ public class AnsiQueryHandler implements QueryHandler {
 		// catch errors that might result from a partial failure during install.  also
 		// note that the coding style violation here is intentional since it makes the
 		// actual work of the method more obvious.
+		try {
+			DatabaseConnection.executeUpdate(STATEMENT_DROP_STATISTICS_TABLE, conn);
+		} catch (SQLException e) { logger.error(e.getMessage()); }
+		try {
+			DatabaseConnection.executeUpdate(STATEMENT_DROP_CACHE_EVENT_TABLE, conn);
+		} catch (SQLException e) { logger.error(e.getMessage()); }
 		try {
 			DatabaseConnection.executeUpdate(STATEMENT_DROP_USER_BLOCK_TABLE, conn);
 		} catch (SQLException e) { logger.error(e.getMessage()); }
@@ -556,7 +685,7 @@ public class AnsiQueryHandler implements QueryHandler {
 		}
 		PreparedStatement stmt = null;
 		try {
-			stmt = conn.prepareStatement(sql);
+			stmt = this.prepareStatement(conn, sql);
 			stmt.executeQuery();
 		} finally {
 			DatabaseConnection.closeStatement(stmt);
@@ -573,7 +702,7 @@ public class AnsiQueryHandler implements QueryHandler {
 		}
 		PreparedStatement stmt = null;
 		try {
-			stmt = conn.prepareStatement(sql);
+			stmt = this.prepareStatement(conn, sql);
 			stmt.executeUpdate();
 		} finally {
 			DatabaseConnection.closeStatement(stmt);
@@ -591,6 +720,41 @@ public class AnsiQueryHandler implements QueryHandler {
 		return STATEMENT_SELECT_VIRTUAL_WIKIS;
 	}
 
+	/**
+	 *
+	 */
+	public void forEachTopicName(int virtualWikiId, boolean includeDeleted, TopicNameCallback callback) throws DataAccessException, SQLException {
+		Connection conn = null;
+		PreparedStatement stmt = null;
+		ResultSet rs = null;
+		boolean autoCommit = true;
+		try {
+			conn = DatabaseConnection.getReadConnection();
+			autoCommit = conn.getAutoCommit();
+			stmt = this.prepareStreamingStatement(conn, STATEMENT_SELECT_TOPIC_NAMES);
+			stmt.setInt(1, virtualWikiId);
+			rs = stmt.executeQuery();
+			while (rs.next()) {
+				if (!includeDeleted && rs.getTimestamp("delete_date") != null) {
+					continue;
+				}
+				if (!callback.processTopicName(rs.getInt("topic_id"), rs.getString("topic_name"))) {
+					break;
+				}
+			}
+		} finally {
+			DatabaseConnection.closeConnection(null, stmt, rs);
+			try {
+				if (conn != null && autoCommit && !conn.getAutoCommit()) {
+					// end any transaction started to hold the cursor open
+					conn.setAutoCommit(true);
+				}
+			} finally {
+				DatabaseConnection.closeConnection(conn);
+			}
+		}
+	}
+
 	/**
 	 * In rare cases a single statement cannot easily be used across databases, such
 	 * as "date is null" and "date is not null".  Rather than having two separate
@@ -607,9 +771,8 @@ public class AnsiQueryHandler implements QueryHandler {
 			return sql;
 		}
 		try {
-			// replace all single quotes with '' since otherwise MessageFormat
-			// will treat the content is a quoted string
-			return MessageFormat.format(sql.replaceAll("'", "''"), params);
+			// each variant is formatted only once so that the same SQL string is always used
+			return StatementRegistry.format(sql, params);
 		} catch (IllegalArgumentException e) {
 			String msg = "Unable to format " + sql + " with values: ";
 			for (int i = 0; i < params.length; i++) {
@@ -628,8 +791,8 @@ public class AnsiQueryHandler implements QueryHandler {
 		PreparedStatement stmt = null;
 		ResultSet rs = null;
 		try {
-			conn = DatabaseConnection.getConnection();
-			stmt = conn.prepareStatement(STATEMENT_SELECT_WIKI_FILE_VERSIONS);
+			conn = DatabaseConnection.getReadConnection();
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_WIKI_FILE_VERSIONS);
 			// FIXME - sort order ignored
 			stmt.setInt(1, wikiFile.getFileId());
 			rs = stmt.executeQuery();
@@ -651,7 +814,7 @@ public class AnsiQueryHandler implements QueryHandler {
 		PreparedStatement stmt = null;
 		ResultSet rs = null;
 		try {
-			conn = DatabaseConnection.getConnection();
+			conn = DatabaseConnection.getReadConnection();
 			stmt = this.getCategoriesStatement(conn, virtualWikiId, virtualWikiName, pagination);
 			rs = stmt.executeQuery();
 			List<Category> results = new ArrayList<Category>();
@@ -674,7 +837,7 @@ public class AnsiQueryHandler implements QueryHandler {
 	 *
 	 */
 	protected PreparedStatement getCategoriesStatement(Connection conn, int virtualWikiId, String virtualWikiName, Pagination pagination) throws SQLException {
-		PreparedStatement stmt = conn.prepareStatement(STATEMENT_SELECT_CATEGORIES);
+		PreparedStatement stmt = this.prepareStatement(conn, STATEMENT_SELECT_CATEGORIES);
 		stmt.setInt(1, virtualWikiId);
 		stmt.setInt(2, pagination.getNumResults());
 		stmt.setInt(3, pagination.getOffset());
@@ -690,7 +853,7 @@ public class AnsiQueryHandler implements QueryHandler {
 		ResultSet rs = null;
 		List<LogItem> logItems = new ArrayList<LogItem>();
 		try {
-			conn = DatabaseConnection.getConnection();
+			conn = DatabaseConnection.getReadConnection();
 			stmt = this.getLogItemsStatement(conn, virtualWikiId, virtualWikiName, logType, pagination, descending);
 			// FIXME - sort order ignored
 			rs = stmt.executeQuery();
@@ -710,9 +873,9 @@ public class AnsiQueryHandler implements QueryHandler {
 		int index = 1;
 		PreparedStatement stmt = null;
 		if (logType == -1) {
-			stmt = conn.prepareStatement(STATEMENT_SELECT_LOG_ITEMS);
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_LOG_ITEMS);
 		} else {
-			stmt = conn.prepareStatement(STATEMENT_SELECT_LOG_ITEMS_BY_TYPE);
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_LOG_ITEMS_BY_TYPE);
 			stmt.setInt(index++, logType);
 		}
 		stmt.setInt(index++, virtualWikiId);
@@ -747,7 +910,7 @@ public class AnsiQueryHandler implements QueryHandler {
 	 *
 	 */
 	protected PreparedStatement getRecentChangesStatement(Connection conn, String virtualWiki, Pagination pagination, boolean descending) throws SQLException {
-		PreparedStatement stmt = conn.prepareStatement(STATEMENT_SELECT_RECENT_CHANGES);
+		PreparedStatement stmt = this.prepareStatement(conn, STATEMENT_SELECT_RECENT_CHANGES);
 		stmt.setString(1, virtualWiki);
 		stmt.setInt(2, pagination.getNumResults());
 		stmt.setInt(3, pagination.getOffset());
@@ -766,7 +929,7 @@ public class AnsiQueryHandler implements QueryHandler {
 		ResultSet rs = null;
 		try {
 			conn = DatabaseConnection.getConnection();
-			stmt = conn.prepareStatement(STATEMENT_SELECT_AUTHORITIES_LOGIN);
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_AUTHORITIES_LOGIN);
 			loginFragment = '%' + loginFragment.toLowerCase() + '%';
 			stmt.setString(1, loginFragment);
 			rs = stmt.executeQuery();
@@ -798,7 +961,7 @@ public class AnsiQueryHandler implements QueryHandler {
 		ResultSet rs = null;
 		try {
 			conn = DatabaseConnection.getConnection();
-			stmt = conn.prepareStatement(STATEMENT_SELECT_AUTHORITIES_AUTHORITY);
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_AUTHORITIES_AUTHORITY);
 			stmt.setString(1, authority);
 			stmt.setString(2, authority);
 			rs = stmt.executeQuery();
@@ -838,7 +1001,7 @@ public class AnsiQueryHandler implements QueryHandler {
 		ResultSet rs = null;
 		try {
 			conn = DatabaseConnection.getConnection();
-			stmt = conn.prepareStatement(STATEMENT_SELECT_GROUP_AUTHORITIES);
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_GROUP_AUTHORITIES);
 			stmt.setString(1, groupName);
 			rs = stmt.executeQuery();
 			List<Role> roles = new ArrayList<Role>();
@@ -860,7 +1023,7 @@ public class AnsiQueryHandler implements QueryHandler {
 		ResultSet rs = null;
 		try {
 			conn = DatabaseConnection.getConnection();
-			stmt = conn.prepareStatement(STATEMENT_SELECT_GROUPS_AUTHORITIES);
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_GROUPS_AUTHORITIES);
 			rs = stmt.executeQuery();
 			LinkedHashMap<Integer, RoleMap> roleMaps = new LinkedHashMap<Integer, RoleMap>();
 			while (rs.next()) {
@@ -890,7 +1053,7 @@ public class AnsiQueryHandler implements QueryHandler {
 		ResultSet rs = null;
 		try {
 			conn = DatabaseConnection.getConnection();
-			stmt = conn.prepareStatement(STATEMENT_SELECT_AUTHORITIES_USER);
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_AUTHORITIES_USER);
 			stmt.setString(1, login);
 			rs = stmt.executeQuery();
 			List<Role> roles = new ArrayList<Role>();
@@ -912,7 +1075,7 @@ public class AnsiQueryHandler implements QueryHandler {
 		ResultSet rs = null;
 		try {
 			conn = DatabaseConnection.getConnection();
-			stmt = conn.prepareStatement(STATEMENT_SELECT_ROLES);
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_ROLES);
 			rs = stmt.executeQuery();
 			List<Role> roles = new ArrayList<Role>();
 			while (rs.next()) {
@@ -932,20 +1095,48 @@ public class AnsiQueryHandler implements QueryHandler {
 		PreparedStatement stmt = null;
 		ResultSet rs = null;
 		try {
-			conn = DatabaseConnection.getConnection();
-			stmt = getTopicHistoryStatement(conn, topicId, pagination, descending, selectDeleted);
+			conn = DatabaseConnection.getReadConnection();
+			Timestamp continuationDate = AnsiQueryHandler.continuationDate(pagination);
+			if (continuationDate != null) {
+				stmt = this.getTopicHistoryKeysetStatement(conn, topicId, pagination, continuationDate, selectDeleted);
+			} else {
+				stmt = getTopicHistoryStatement(conn, topicId, pagination, descending, selectDeleted);
+			}
 			// FIXME - sort order ignored
 			rs = stmt.executeQuery();
 			List<RecentChange> recentChanges = new ArrayList<RecentChange>();
 			while (rs.next()) {
 				recentChanges.add(this.initRecentChange(rs));
 			}
+			this.setNextContinuation(pagination, recentChanges);
 			return recentChanges;
 		} finally {
 			DatabaseConnection.closeConnection(conn, stmt, rs);
 		}
 	}
 
+	/**
+	 * Build a statement that retrieves topic history starting after the
+	 * version identified by the pagination continuation token.  The JDBC row
+	 * limit is used rather than database-specific limit syntax, so this
+	 * statement does not need to be overridden for individual databases.
+	 */
+	protected PreparedStatement getTopicHistoryKeysetStatement(Connection conn, int topicId, Pagination pagination, Timestamp continuationDate, boolean selectDeleted) throws SQLException {
+		// the SQL contains the syntax "is {0} null", which needs to be formatted as a message.
+		Object[] params = {""};
+		if (selectDeleted) {
+			params[0] = "not";
+		}
+		String sql = this.formatStatement(STATEMENT_SELECT_TOPIC_HISTORY_KEYSET, params);
+		PreparedStatement stmt = this.prepareStatement(conn, sql);
+		stmt.setMaxRows(pagination.getNumResults());
+		stmt.setInt(1, topicId);
+		stmt.setTimestamp(2, continuationDate);
+		stmt.setTimestamp(3, continuationDate);
+		stmt.setInt(4, pagination.getContinuationId());
+		return stmt;
+	}
+
 	/**
 	 *
 	 */
@@ -956,7 +1147,7 @@ public class AnsiQueryHandler implements QueryHandler {
 			params[0] = "not";
 		}
 		String sql = this.formatStatement(STATEMENT_SELECT_TOPIC_HISTORY, params);
-		PreparedStatement stmt = conn.prepareStatement(sql);
+		PreparedStatement stmt = this.prepareStatement(conn, sql);
 		stmt.setInt(1, topicId);
 		stmt.setInt(2, pagination.getNumResults());
 		stmt.setInt(3, pagination.getOffset());
@@ -971,24 +1162,43 @@ public class AnsiQueryHandler implements QueryHandler {
 		PreparedStatement stmt = null;
 		ResultSet rs = null;
 		try {
-			conn = DatabaseConnection.getConnection();
-			stmt = this.getTopicsAdminStatement(conn, virtualWikiId, pagination);
+			conn = DatabaseConnection.getReadConnection();
+			if (pagination.isKeyset()) {
+				stmt = this.getTopicsAdminKeysetStatement(conn, virtualWikiId, pagination);
+			} else {
+				stmt = this.getTopicsAdminStatement(conn, virtualWikiId, pagination);
+			}
 			rs = stmt.executeQuery();
 			List<String> results = new ArrayList<String>();
 			while (rs.next()) {
 				results.add(rs.getString("topic_name"));
 			}
+			if (!results.isEmpty() && results.size() == pagination.getNumResults()) {
+				pagination.setNextContinuation(results.get(results.size() - 1), 0);
+			}
 			return results;
 		} finally {
 			DatabaseConnection.closeConnection(conn, stmt, rs);
 		}
 	}
 
+	/**
+	 * Build a statement that retrieves admin-only topic names following the
+	 * topic name identified by the pagination continuation token.
+	 */
+	protected PreparedStatement getTopicsAdminKeysetStatement(Connection conn, int virtualWikiId, Pagination pagination) throws SQLException {
+		PreparedStatement stmt = this.prepareStatement(conn, STATEMENT_SELECT_TOPICS_ADMIN_KEYSET);
+		stmt.setMaxRows(pagination.getNumResults());
+		stmt.setInt(1, virtualWikiId);
+		stmt.setString(2, pagination.getContinuationValue());
+		return stmt;
+	}
+
 	/**
 	 *
 	 */
 	protected PreparedStatement getTopicsAdminStatement(Connection conn, int virtualWikiId, Pagination pagination) throws SQLException {
-		PreparedStatement stmt = conn.prepareStatement(STATEMENT_SELECT_TOPICS_ADMIN);
+		PreparedStatement stmt = this.prepareStatement(conn, STATEMENT_SELECT_TOPICS_ADMIN);
 		stmt.setInt(1, virtualWikiId);
 		stmt.setInt(2, pagination.getNumResults());
 		stmt.setInt(3, pagination.getOffset());
@@ -1002,7 +1212,7 @@ public class AnsiQueryHandler implements QueryHandler {
 		PreparedStatement stmt = null;
 		ResultSet rs = null;
 		try {
-			stmt = conn.prepareStatement(STATEMENT_SELECT_USER_BLOCKS);
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_USER_BLOCKS);
 			stmt.setTimestamp(1, new Timestamp(System.currentTimeMillis()));
 			rs = stmt.executeQuery();
 			Map<Object, UserBlock> userBlocks = new LinkedHashMap<Object, UserBlock>();
@@ -1030,25 +1240,46 @@ public class AnsiQueryHandler implements QueryHandler {
 		PreparedStatement stmt = null;
 		ResultSet rs = null;
 		try {
-			conn = DatabaseConnection.getConnection();
-			stmt = this.getUserContributionsByLoginStatement(conn, virtualWiki, login, pagination, descending);
+			conn = DatabaseConnection.getReadConnection();
+			Timestamp continuationDate = AnsiQueryHandler.continuationDate(pagination);
+			if (continuationDate != null) {
+				stmt = this.getUserContributionsByLoginKeysetStatement(conn, virtualWiki, login, pagination, continuationDate);
+			} else {
+				stmt = this.getUserContributionsByLoginStatement(conn, virtualWiki, login, pagination, descending);
+			}
 			// FIXME - sort order ignored
 			rs = stmt.executeQuery();
 			List<RecentChange> recentChanges = new ArrayList<RecentChange>();
 			while (rs.next()) {
 				recentChanges.add(this.initRecentChange(rs));
 			}
+			this.setNextContinuation(pagination, recentChanges);
 			return recentChanges;
 		} finally {
 			DatabaseConnection.closeConnection(conn, stmt, rs);
 		}
 	}
 
+	/**
+	 * Build a statement that retrieves user contributions starting after the
+	 * version identified by the pagination continuation token.
+	 */
+	protected PreparedStatement getUserContributionsByLoginKeysetStatement(Connection conn, String virtualWiki, String login, Pagination pagination, Timestamp continuationDate) throws SQLException {
+		PreparedStatement stmt = this.prepareStatement(conn, STATEMENT_SELECT_WIKI_USER_CHANGES_LOGIN_KEYSET);
+		stmt.setMaxRows(pagination.getNumResults());
+		stmt.setString(1, virtualWiki);
+		stmt.setString(2, login);
+		stmt.setTimestamp(3, continuationDate);
+		stmt.setTimestamp(4, continuationDate);
+		stmt.setInt(5, pagination.getContinuationId());
+		return stmt;
+	}
+
 	/**
 	 *
 	 */
 	protected PreparedStatement getUserContributionsByLoginStatement(Connection conn, String virtualWiki, String login, Pagination pagination, boolean descending) throws SQLException {
-		PreparedStatement stmt = conn.prepareStatement(STATEMENT_SELECT_WIKI_USER_CHANGES_LOGIN);
+		PreparedStatement stmt = this.prepareStatement(conn, STATEMENT_SELECT_WIKI_USER_CHANGES_LOGIN);
 		stmt.setString(1, virtualWiki);
 		stmt.setString(2, login);
 		stmt.setInt(3, pagination.getNumResults());
@@ -1064,25 +1295,46 @@ public class AnsiQueryHandler implements QueryHandler {
 		PreparedStatement stmt = null;
 		ResultSet rs = null;
 		try {
-			conn = DatabaseConnection.getConnection();
-			stmt = this.getUserContributionsByUserDisplayStatement(conn, virtualWiki, userDisplay, pagination, descending);
+			conn = DatabaseConnection.getReadConnection();
+			Timestamp continuationDate = AnsiQueryHandler.continuationDate(pagination);
+			if (continuationDate != null) {
+				stmt = this.getUserContributionsByUserDisplayKeysetStatement(conn, virtualWiki, userDisplay, pagination, continuationDate);
+			} else {
+				stmt = this.getUserContributionsByUserDisplayStatement(conn, virtualWiki, userDisplay, pagination, descending);
+			}
 			// FIXME - sort order ignored
 			rs = stmt.executeQuery();
 			List<RecentChange> recentChanges = new ArrayList<RecentChange>();
 			while (rs.next()) {
 				recentChanges.add(this.initRecentChange(rs));
 			}
+			this.setNextContinuation(pagination, recentChanges);
 			return recentChanges;
 		} finally {
 			DatabaseConnection.closeConnection(conn, stmt, rs);
 		}
 	}
 
+	/**
+	 * Build a statement that retrieves user contributions starting after the
+	 * version identified by the pagination continuation token.
+	 */
+	protected PreparedStatement getUserContributionsByUserDisplayKeysetStatement(Connection conn, String virtualWiki, String userDisplay, Pagination pagination, Timestamp continuationDate) throws SQLException {
+		PreparedStatement stmt = this.prepareStatement(conn, STATEMENT_SELECT_WIKI_USER_CHANGES_ANONYMOUS_KEYSET);
+		stmt.setMaxRows(pagination.getNumResults());
+		stmt.setString(1, virtualWiki);
+		stmt.setString(2, userDisplay);
+		stmt.setTimestamp(3, continuationDate);
+		stmt.setTimestamp(4, continuationDate);
+		stmt.setInt(5, pagination.getContinuationId());
+		return stmt;
+	}
+
 	/**
 	 *
 	 */
 	protected PreparedStatement getUserContributionsByUserDisplayStatement(Connection conn, String virtualWiki, String userDisplay, Pagination pagination, boolean descending) throws SQLException {
-		PreparedStatement stmt = conn.prepareStatement(STATEMENT_SELECT_WIKI_USER_CHANGES_ANONYMOUS);
+		PreparedStatement stmt = this.prepareStatement(conn, STATEMENT_SELECT_WIKI_USER_CHANGES_ANONYMOUS);
 		stmt.setString(1, virtualWiki);
 		stmt.setString(2, userDisplay);
 		stmt.setInt(3, pagination.getNumResults());
@@ -1097,7 +1349,7 @@ public class AnsiQueryHandler implements QueryHandler {
 		PreparedStatement stmt = null;
 		ResultSet rs = null;
 		try {
-			stmt = conn.prepareStatement(STATEMENT_SELECT_VIRTUAL_WIKIS);
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_VIRTUAL_WIKIS);
 			rs = stmt.executeQuery();
 			List<VirtualWiki> results = new ArrayList<VirtualWiki>();
 			while (rs.next()) {
@@ -1125,7 +1377,7 @@ public class AnsiQueryHandler implements QueryHandler {
 		ResultSet rs = null;
 		try {
 			conn = DatabaseConnection.getConnection();
-			stmt = conn.prepareStatement(STATEMENT_SELECT_WATCHLIST);
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_WATCHLIST);
 			stmt.setInt(1, virtualWikiId);
 			stmt.setInt(2, userId);
 			rs = stmt.executeQuery();
@@ -1160,11 +1412,39 @@ public class AnsiQueryHandler implements QueryHandler {
 		}
 	}
 
+	/**
+	 *
+	 */
+	public Map<Integer, List<RecentChange>> getWatchlistDigest(Timestamp changedAfter) throws SQLException {
+		Connection conn = null;
+		PreparedStatement stmt = null;
+		ResultSet rs = null;
+		try {
+			conn = DatabaseConnection.getConnection();
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_WATCHLIST_DIGEST);
+			stmt.setTimestamp(1, changedAfter);
+			rs = stmt.executeQuery();
+			Map<Integer, List<RecentChange>> results = new LinkedHashMap<Integer, List<RecentChange>>();
+			while (rs.next()) {
+				int watcherId = rs.getInt("watcher_id");
+				List<RecentChange> recentChanges = results.get(watcherId);
+				if (recentChanges == null) {
+					recentChanges = new ArrayList<RecentChange>();
+					results.put(watcherId, recentChanges);
+				}
+				recentChanges.add(this.initRecentChange(rs));
+			}
+			return results;
+		} finally {
+			DatabaseConnection.closeConnection(conn, stmt, rs);
+		}
+	}
+
 	/**
 	 *
 	 */
 	protected PreparedStatement getWatchlistStatement(Connection conn, int virtualWikiId, int userId, Pagination pagination) throws SQLException {
-		PreparedStatement stmt = conn.prepareStatement(STATEMENT_SELECT_WATCHLIST_CHANGES);
+		PreparedStatement stmt = this.prepareStatement(conn, STATEMENT_SELECT_WATCHLIST_CHANGES);
 		stmt.setInt(1, virtualWikiId);
 		stmt.setInt(2, userId);
 		stmt.setInt(3, pagination.getNumResults());
@@ -1177,6 +1457,7 @@ public class AnsiQueryHandler implements QueryHandler {
 	 */
 	protected void init(Properties properties) {
 		this.props = properties;
+		StatementRegistry.register(properties);
 		STATEMENT_CONNECTION_VALIDATION_QUERY    = props.getProperty("STATEMENT_CONNECTION_VALIDATION_QUERY");
 		STATEMENT_CREATE_CONFIGURATION_TABLE     = props.getProperty("STATEMENT_CREATE_CONFIGURATION_TABLE");
 		STATEMENT_CREATE_GROUP_TABLE             = props.getProperty("STATEMENT_CREATE_GROUP_TABLE");
@@ -1184,6 +1465,7 @@ public class AnsiQueryHandler implements QueryHandler {
 		STATEMENT_CREATE_NAMESPACE_TABLE         = props.getProperty("STATEMENT_CREATE_NAMESPACE_TABLE");
 		STATEMENT_CREATE_NAMESPACE_TRANSLATION_TABLE = props.getProperty("STATEMENT_CREATE_NAMESPACE_TRANSLATION_TABLE");
 		STATEMENT_CREATE_ROLE_TABLE              = props.getProperty("STATEMENT_CREATE_ROLE_TABLE");
+		STATEMENT_CREATE_STATISTICS_TABLE        = props.getProperty("STATEMENT_CREATE_STATISTICS_TABLE");
 		STATEMENT_CREATE_VIRTUAL_WIKI_TABLE      = props.getProperty("STATEMENT_CREATE_VIRTUAL_WIKI_TABLE");
 		STATEMENT_CREATE_WIKI_USER_TABLE         = props.getProperty("STATEMENT_CREATE_WIKI_USER_TABLE");
 		STATEMENT_CREATE_WIKI_USER_LOGIN_INDEX   = props.getProperty("STATEMENT_CREATE_WIKI_USER_LOGIN_INDEX");
@@ -1201,19 +1483,30 @@ public class AnsiQueryHandler implements QueryHandler {
 		STATEMENT_CREATE_TOPIC_VERSION_PREVIOUS_INDEX = props.getProperty("STATEMENT_CREATE_TOPIC_VERSION_PREVIOUS_INDEX");
 		STATEMENT_CREATE_TOPIC_VERSION_USER_DISPLAY_INDEX = props.getProperty("STATEMENT_CREATE_TOPIC_VERSION_USER_DISPLAY_INDEX");
 		STATEMENT_CREATE_TOPIC_VERSION_USER_ID_INDEX = props.getProperty("STATEMENT_CREATE_TOPIC_VERSION_USER_ID_INDEX");
+		STATEMENT_CREATE_TOPIC_VERSION_USER_DATE_INDEX = props.getProperty("STATEMENT_CREATE_TOPIC_VERSION_USER_DATE_INDEX");
+		STATEMENT_CREATE_TOPIC_VERSION_USER_DISPLAY_DATE_INDEX = props.getProperty("STATEMENT_CREATE_TOPIC_VERSION_USER_DISPLAY_DATE_INDEX");
 		STATEMENT_CREATE_USER_BLOCK_TABLE        = props.getProperty("STATEMENT_CREATE_USER_BLOCK_TABLE");
 		STATEMENT_CREATE_USERS_TABLE             = props.getProperty("STATEMENT_CREATE_USERS_TABLE");
 		STATEMENT_CREATE_WIKI_FILE_TABLE         = props.getProperty("STATEMENT_CREATE_WIKI_FILE_TABLE");
 		STATEMENT_CREATE_WIKI_FILE_VERSION_TABLE = props.getProperty("STATEMENT_CREATE_WIKI_FILE_VERSION_TABLE");
 		STATEMENT_CREATE_AUTHORITIES_TABLE       = props.getProperty("STATEMENT_CREATE_AUTHORITIES_TABLE");
+		STATEMENT_CREATE_CACHE_EVENT_INDEX       = props.getProperty("STATEMENT_CREATE_CACHE_EVENT_INDEX");
+		STATEMENT_CREATE_CACHE_EVENT_TABLE       = props.getProperty("STATEMENT_CREATE_CACHE_EVENT_TABLE");
 		STATEMENT_CREATE_CATEGORY_TABLE          = props.getProperty("STATEMENT_CREATE_CATEGORY_TABLE");
 		STATEMENT_CREATE_CATEGORY_INDEX          = props.getProperty("STATEMENT_CREATE_CATEGORY_INDEX");
+		STATEMENT_CREATE_CATEGORY_NAME_LOWER_INDEX = props.getProperty("STATEMENT_CREATE_CATEGORY_NAME_LOWER_INDEX");
 		STATEMENT_CREATE_GROUP_AUTHORITIES_TABLE = props.getProperty("STATEMENT_CREATE_GROUP_AUTHORITIES_TABLE");
 		STATEMENT_CREATE_GROUP_MEMBERS_TABLE     = props.getProperty("STATEMENT_CREATE_GROUP_MEMBERS_TABLE");
+		STATEMENT_CREATE_LOG_DATE_INDEX          = props.getProperty("STATEMENT_CREATE_LOG_DATE_INDEX");
 		STATEMENT_CREATE_LOG_TABLE               = props.getProperty("STATEMENT_CREATE_LOG_TABLE");
+		STATEMENT_CREATE_LOG_TYPE_INDEX          = props.getProperty("STATEMENT_CREATE_LOG_TYPE_INDEX");
+		STATEMENT_CREATE_RECENT_CHANGE_DATE_INDEX = props.getProperty("STATEMENT_CREATE_RECENT_CHANGE_DATE_INDEX");
 		STATEMENT_CREATE_RECENT_CHANGE_TABLE     = props.getProperty("STATEMENT_CREATE_RECENT_CHANGE_TABLE");
 		STATEMENT_CREATE_WATCHLIST_TABLE         = props.getProperty("STATEMENT_CREATE_WATCHLIST_TABLE");
+		STATEMENT_CREATE_WATCHLIST_TOPIC_INDEX   = props.getProperty("STATEMENT_CREATE_WATCHLIST_TOPIC_INDEX");
+		STATEMENT_CREATE_WATCHLIST_USER_DATE_INDEX = props.getProperty("STATEMENT_CREATE_WATCHLIST_USER_DATE_INDEX");
 		STATEMENT_DELETE_AUTHORITIES             = props.getProperty("STATEMENT_DELETE_AUTHORITIES");
+		STATEMENT_DELETE_CACHE_EVENTS            = props.getProperty("STATEMENT_DELETE_CACHE_EVENTS");
 		STATEMENT_DELETE_CONFIGURATION           = props.getProperty("STATEMENT_DELETE_CONFIGURATION");
 		STATEMENT_DELETE_GROUP_AUTHORITIES       = props.getProperty("STATEMENT_DELETE_GROUP_AUTHORITIES");
 		STATEMENT_DELETE_INTERWIKI               = props.getProperty("STATEMENT_DELETE_INTERWIKI");
@@ -1224,10 +1517,13 @@ public class AnsiQueryHandler implements QueryHandler {
 		STATEMENT_DELETE_RECENT_CHANGES_TOPIC    = props.getProperty("STATEMENT_DELETE_RECENT_CHANGES_TOPIC");
 		STATEMENT_DELETE_RECENT_CHANGES_TOPIC_VERSION = props.getProperty("STATEMENT_DELETE_RECENT_CHANGES_TOPIC_VERSION");
 		STATEMENT_DELETE_TOPIC_CATEGORIES        = props.getProperty("STATEMENT_DELETE_TOPIC_CATEGORIES");
+		STATEMENT_DELETE_TOPIC_CATEGORY          = props.getProperty("STATEMENT_DELETE_TOPIC_CATEGORY");
+		STATEMENT_DELETE_TOPIC_LINK              = props.getProperty("STATEMENT_DELETE_TOPIC_LINK");
 		STATEMENT_DELETE_TOPIC_LINKS             = props.getProperty("STATEMENT_DELETE_TOPIC_LINKS");
 		STATEMENT_DELETE_TOPIC_VERSION           = props.getProperty("STATEMENT_DELETE_TOPIC_VERSION");
 		STATEMENT_DELETE_WATCHLIST_ENTRY         = props.getProperty("STATEMENT_DELETE_WATCHLIST_ENTRY");
 		STATEMENT_DROP_AUTHORITIES_TABLE         = props.getProperty("STATEMENT_DROP_AUTHORITIES_TABLE");
+		STATEMENT_DROP_CACHE_EVENT_TABLE         = props.getProperty("STATEMENT_DROP_CACHE_EVENT_TABLE");
 		STATEMENT_DROP_CATEGORY_TABLE            = props.getProperty("STATEMENT_DROP_CATEGORY_TABLE");
 		STATEMENT_DROP_CONFIGURATION_TABLE       = props.getProperty("STATEMENT_DROP_CONFIGURATION_TABLE");
 		STATEMENT_DROP_GROUP_AUTHORITIES_TABLE   = props.getProperty("STATEMENT_DROP_GROUP_AUTHORITIES_TABLE");
@@ -1239,6 +1535,7 @@ public class AnsiQueryHandler implements QueryHandler {
 		STATEMENT_DROP_NAMESPACE_TRANSLATION_TABLE = props.getProperty("STATEMENT_DROP_NAMESPACE_TRANSLATION_TABLE");
 		STATEMENT_DROP_RECENT_CHANGE_TABLE       = props.getProperty("STATEMENT_DROP_RECENT_CHANGE_TABLE");
 		STATEMENT_DROP_ROLE_TABLE                = props.getProperty("STATEMENT_DROP_ROLE_TABLE");
+		STATEMENT_DROP_STATISTICS_TABLE          = props.getProperty("STATEMENT_DROP_STATISTICS_TABLE");
 		STATEMENT_DROP_TOPIC_CURRENT_VERSION_CONSTRAINT = props.getProperty("STATEMENT_DROP_TOPIC_CURRENT_VERSION_CONSTRAINT");
 		STATEMENT_DROP_TOPIC_TABLE               = props.getProperty("STATEMENT_DROP_TOPIC_TABLE");
 		STATEMENT_DROP_TOPIC_LINKS_TABLE         = props.getProperty("STATEMENT_DROP_TOPIC_LINKS_TABLE");
@@ -1251,6 +1548,7 @@ public class AnsiQueryHandler implements QueryHandler {
 		STATEMENT_DROP_WIKI_FILE_TABLE           = props.getProperty("STATEMENT_DROP_WIKI_FILE_TABLE");
 		STATEMENT_DROP_WIKI_FILE_VERSION_TABLE   = props.getProperty("STATEMENT_DROP_WIKI_FILE_VERSION_TABLE");
 		STATEMENT_INSERT_AUTHORITY               = props.getProperty("STATEMENT_INSERT_AUTHORITY");
+		STATEMENT_INSERT_CACHE_EVENT             = props.getProperty("STATEMENT_INSERT_CACHE_EVENT");
 		STATEMENT_INSERT_CATEGORY                = props.getProperty("STATEMENT_INSERT_CATEGORY");
 		STATEMENT_INSERT_CONFIGURATION           = props.getProperty("STATEMENT_INSERT_CONFIGURATION");
 		STATEMENT_INSERT_GROUP                   = props.getProperty("STATEMENT_INSERT_GROUP");
@@ -1273,6 +1571,7 @@ public class AnsiQueryHandler implements QueryHandler {
 		STATEMENT_INSERT_RECENT_CHANGES_LOGS     = props.getProperty("STATEMENT_INSERT_RECENT_CHANGES_LOGS");
 		STATEMENT_INSERT_RECENT_CHANGES_VERSIONS = props.getProperty("STATEMENT_INSERT_RECENT_CHANGES_VERSIONS");
 		STATEMENT_INSERT_ROLE                    = props.getProperty("STATEMENT_INSERT_ROLE");
+		STATEMENT_INSERT_STATISTIC               = props.getProperty("STATEMENT_INSERT_STATISTIC");
 		STATEMENT_INSERT_TOPIC                   = props.getProperty("STATEMENT_INSERT_TOPIC");
 		STATEMENT_INSERT_TOPIC_AUTO_INCREMENT    = props.getProperty("STATEMENT_INSERT_TOPIC_AUTO_INCREMENT");
 		STATEMENT_INSERT_TOPIC_LINKS             = props.getProperty("STATEMENT_INSERT_TOPIC_LINKS");
@@ -1293,6 +1592,7 @@ public class AnsiQueryHandler implements QueryHandler {
 		STATEMENT_SELECT_AUTHORITIES_AUTHORITY   = props.getProperty("STATEMENT_SELECT_AUTHORITIES_AUTHORITY");
 		STATEMENT_SELECT_AUTHORITIES_LOGIN       = props.getProperty("STATEMENT_SELECT_AUTHORITIES_LOGIN");
 		STATEMENT_SELECT_AUTHORITIES_USER        = props.getProperty("STATEMENT_SELECT_AUTHORITIES_USER");
+		STATEMENT_SELECT_CACHE_EVENTS            = props.getProperty("STATEMENT_SELECT_CACHE_EVENTS");
 		STATEMENT_SELECT_CATEGORIES              = props.getProperty("STATEMENT_SELECT_CATEGORIES");
 		STATEMENT_SELECT_CATEGORY_TOPICS         = props.getProperty("STATEMENT_SELECT_CATEGORY_TOPICS");
 		STATEMENT_SELECT_CONFIGURATION           = props.getProperty("STATEMENT_SELECT_CONFIGURATION");
@@ -1308,20 +1608,29 @@ public class AnsiQueryHandler implements QueryHandler {
 		STATEMENT_SELECT_NAMESPACES              = props.getProperty("STATEMENT_SELECT_NAMESPACES");
 		STATEMENT_SELECT_RECENT_CHANGES          = props.getProperty("STATEMENT_SELECT_RECENT_CHANGES");
 		STATEMENT_SELECT_ROLES                   = props.getProperty("STATEMENT_SELECT_ROLES");
+		STATEMENT_SELECT_STATISTICS              = props.getProperty("STATEMENT_SELECT_STATISTICS");
 		STATEMENT_SELECT_TOPIC_BY_ID             = props.getProperty("STATEMENT_SELECT_TOPIC_BY_ID");
 		STATEMENT_SELECT_TOPIC_BY_TYPE           = props.getProperty("STATEMENT_SELECT_TOPIC_BY_TYPE");
+		STATEMENT_SELECT_TOPIC_BY_TYPE_KEYSET    = props.getProperty("STATEMENT_SELECT_TOPIC_BY_TYPE_KEYSET");
+		STATEMENT_SELECT_TOPIC_CATEGORIES        = props.getProperty("STATEMENT_SELECT_TOPIC_CATEGORIES");
 		STATEMENT_SELECT_TOPIC_COUNT             = props.getProperty("STATEMENT_SELECT_TOPIC_COUNT");
+		STATEMENT_SELECT_TOPIC_COUNTED_NAMESPACE = props.getProperty("STATEMENT_SELECT_TOPIC_COUNTED_NAMESPACE");
 		STATEMENT_SELECT_TOPIC                   = props.getProperty("STATEMENT_SELECT_TOPIC");
 		STATEMENT_SELECT_TOPIC_HISTORY           = props.getProperty("STATEMENT_SELECT_TOPIC_HISTORY");
+		STATEMENT_SELECT_TOPIC_HISTORY_KEYSET    = props.getProperty("STATEMENT_SELECT_TOPIC_HISTORY_KEYSET");
+		STATEMENT_SELECT_TOPIC_IDS               = props.getProperty("STATEMENT_SELECT_TOPIC_IDS");
 		STATEMENT_SELECT_TOPIC_LINK_ORPHANS      = props.getProperty("STATEMENT_SELECT_TOPIC_LINK_ORPHANS");
+		STATEMENT_SELECT_TOPIC_LINK_TARGETS      = props.getProperty("STATEMENT_SELECT_TOPIC_LINK_TARGETS");
 		STATEMENT_SELECT_TOPIC_LINKS             = props.getProperty("STATEMENT_SELECT_TOPIC_LINKS");
 		STATEMENT_SELECT_TOPIC_LOWER             = props.getProperty("STATEMENT_SELECT_TOPIC_LOWER");
 		STATEMENT_SELECT_TOPIC_NAME              = props.getProperty("STATEMENT_SELECT_TOPIC_NAME");
 		STATEMENT_SELECT_TOPIC_NAME_LOWER        = props.getProperty("STATEMENT_SELECT_TOPIC_NAME_LOWER");
 		STATEMENT_SELECT_TOPIC_NAMES             = props.getProperty("STATEMENT_SELECT_TOPIC_NAMES");
 		STATEMENT_SELECT_TOPICS_ADMIN            = props.getProperty("STATEMENT_SELECT_TOPICS_ADMIN");
+		STATEMENT_SELECT_TOPICS_ADMIN_KEYSET     = props.getProperty("STATEMENT_SELECT_TOPICS_ADMIN_KEYSET");
 		STATEMENT_SELECT_TOPIC_SEQUENCE          = props.getProperty("STATEMENT_SELECT_TOPIC_SEQUENCE");
 		STATEMENT_SELECT_TOPIC_VERSION           = props.getProperty("STATEMENT_SELECT_TOPIC_VERSION");
+		STATEMENT_SELECT_TOPIC_VERSION_COUNT     = props.getProperty("STATEMENT_SELECT_TOPIC_VERSION_COUNT");
 		STATEMENT_SELECT_TOPIC_VERSION_NEXT_ID   = props.getProperty("STATEMENT_SELECT_TOPIC_VERSION_NEXT_ID");
 		STATEMENT_SELECT_TOPIC_VERSION_SEQUENCE  = props.getProperty("STATEMENT_SELECT_TOPIC_VERSION_SEQUENCE");
 		STATEMENT_SELECT_USER_BLOCKS             = props.getProperty("STATEMENT_SELECT_USER_BLOCKS");
@@ -1331,30 +1640,38 @@ public class AnsiQueryHandler implements QueryHandler {
 		STATEMENT_SELECT_VIRTUAL_WIKI_SEQUENCE   = props.getProperty("STATEMENT_SELECT_VIRTUAL_WIKI_SEQUENCE");
 		STATEMENT_SELECT_WATCHLIST               = props.getProperty("STATEMENT_SELECT_WATCHLIST");
 		STATEMENT_SELECT_WATCHLIST_CHANGES       = props.getProperty("STATEMENT_SELECT_WATCHLIST_CHANGES");
+		STATEMENT_SELECT_WATCHLIST_DIGEST        = props.getProperty("STATEMENT_SELECT_WATCHLIST_DIGEST");
 		STATEMENT_SELECT_WIKI_FILE               = props.getProperty("STATEMENT_SELECT_WIKI_FILE");
 		STATEMENT_SELECT_WIKI_FILE_COUNT         = props.getProperty("STATEMENT_SELECT_WIKI_FILE_COUNT");
+		STATEMENT_SELECT_WIKI_FILE_COUNTED       = props.getProperty("STATEMENT_SELECT_WIKI_FILE_COUNTED");
 		STATEMENT_SELECT_WIKI_FILE_SEQUENCE      = props.getProperty("STATEMENT_SELECT_WIKI_FILE_SEQUENCE");
 		STATEMENT_SELECT_WIKI_FILE_VERSION_SEQUENCE = props.getProperty("STATEMENT_SELECT_WIKI_FILE_VERSION_SEQUENCE");
 		STATEMENT_SELECT_WIKI_FILE_VERSIONS      = props.getProperty("STATEMENT_SELECT_WIKI_FILE_VERSIONS");
 		STATEMENT_SELECT_WIKI_USER               = props.getProperty("STATEMENT_SELECT_WIKI_USER");
 		STATEMENT_SELECT_WIKI_USER_CHANGES_ANONYMOUS = props.getProperty("STATEMENT_SELECT_WIKI_USER_CHANGES_ANONYMOUS");
+		STATEMENT_SELECT_WIKI_USER_CHANGES_ANONYMOUS_KEYSET = props.getProperty("STATEMENT_SELECT_WIKI_USER_CHANGES_ANONYMOUS_KEYSET");
 		STATEMENT_SELECT_WIKI_USER_CHANGES_LOGIN = props.getProperty("STATEMENT_SELECT_WIKI_USER_CHANGES_LOGIN");
+		STATEMENT_SELECT_WIKI_USER_CHANGES_LOGIN_KEYSET = props.getProperty("STATEMENT_SELECT_WIKI_USER_CHANGES_LOGIN_KEYSET");
 		STATEMENT_SELECT_WIKI_USER_COUNT         = props.getProperty("STATEMENT_SELECT_WIKI_USER_COUNT");
 		STATEMENT_SELECT_WIKI_USER_DETAILS_PASSWORD = props.getProperty("STATEMENT_SELECT_WIKI_USER_DETAILS_PASSWORD");
 		STATEMENT_SELECT_WIKI_USER_LOGIN         = props.getProperty("STATEMENT_SELECT_WIKI_USER_LOGIN");
 		STATEMENT_SELECT_WIKI_USER_SEQUENCE      = props.getProperty("STATEMENT_SELECT_WIKI_USER_SEQUENCE");
 		STATEMENT_SELECT_WIKI_USERS              = props.getProperty("STATEMENT_SELECT_WIKI_USERS");
+		STATEMENT_SELECT_WIKI_USERS_KEYSET       = props.getProperty("STATEMENT_SELECT_WIKI_USERS_KEYSET");
 		STATEMENT_UPDATE_GROUP                   = props.getProperty("STATEMENT_UPDATE_GROUP");
 		STATEMENT_UPDATE_NAMESPACE               = props.getProperty("STATEMENT_UPDATE_NAMESPACE");
 		STATEMENT_UPDATE_RECENT_CHANGES_PREVIOUS_VERSION_ID = props.getProperty("STATEMENT_UPDATE_RECENT_CHANGES_PREVIOUS_VERSION_ID");
 		STATEMENT_UPDATE_TOPIC_NAMESPACE         = props.getProperty("STATEMENT_UPDATE_TOPIC_NAMESPACE");
 		STATEMENT_UPDATE_ROLE                    = props.getProperty("STATEMENT_UPDATE_ROLE");
+		STATEMENT_UPDATE_STATISTIC               = props.getProperty("STATEMENT_UPDATE_STATISTIC");
+		STATEMENT_UPDATE_STATISTIC_VALUE         = props.getProperty("STATEMENT_UPDATE_STATISTIC_VALUE");
 		STATEMENT_UPDATE_TOPIC                   = props.getProperty("STATEMENT_UPDATE_TOPIC");
 		STATEMENT_UPDATE_TOPIC_VERSION           = props.getProperty("STATEMENT_UPDATE_TOPIC_VERSION");
 		STATEMENT_UPDATE_TOPIC_VERSION_PREVIOUS_VERSION_ID = props.getProperty("STATEMENT_UPDATE_TOPIC_VERSION_PREVIOUS_VERSION_ID");
 		STATEMENT_UPDATE_USER                    = props.getProperty("STATEMENT_UPDATE_USER");
 		STATEMENT_UPDATE_USER_BLOCK              = props.getProperty("STATEMENT_UPDATE_USER_BLOCK");
 		STATEMENT_UPDATE_VIRTUAL_WIKI            = props.getProperty("STATEMENT_UPDATE_VIRTUAL_WIKI");
+		STATEMENT_UPDATE_WATCHLIST_CHANGE        = props.getProperty("STATEMENT_UPDATE_WATCHLIST_CHANGE");
 		STATEMENT_UPDATE_WIKI_FILE               = props.getProperty("STATEMENT_UPDATE_WIKI_FILE");
 		STATEMENT_UPDATE_WIKI_USER               = props.getProperty("STATEMENT_UPDATE_WIKI_USER");
 	}
@@ -1514,6 +1831,11 @@ public class AnsiQueryHandler implements QueryHandler {
 		topicVersion.setEditDate(rs.getTimestamp("edit_date"));
 		topicVersion.setEditType(rs.getInt("edit_type"));
 		topicVersion.setAuthorDisplay(rs.getString("wiki_user_display"));
+		topicVersion.setAuthorName(rs.getString("author_name"));
+		int nextTopicVersionId = rs.getInt("next_topic_version_id");
+		if (nextTopicVersionId > 0) {
+			topicVersion.setNextTopicVersionId(nextTopicVersionId);
+		}
 		return topicVersion;
 	}
 
@@ -1607,6 +1929,23 @@ public class AnsiQueryHandler implements QueryHandler {
 		return user;
 	}
 
+	/**
+	 *
+	 */
+	public void insertCacheEvent(CacheEvent event, Connection conn) throws SQLException {
+		PreparedStatement stmt = null;
+		try {
+			stmt = this.prepareStatement(conn, STATEMENT_INSERT_CACHE_EVENT);
+			stmt.setString(1, event.getNodeId());
+			stmt.setString(2, event.getCacheName());
+			stmt.setString(3, event.getKey());
+			stmt.setString(4, String.valueOf(event.getKeyType()));
+			stmt.executeUpdate();
+		} finally {
+			DatabaseConnection.closeStatement(stmt);
+		}
+	}
+
 	/**
 	 *
 	 */
@@ -1616,11 +1955,13 @@ public class AnsiQueryHandler implements QueryHandler {
 		}
 		PreparedStatement stmt = null;
 		try {
-			stmt = conn.prepareStatement(STATEMENT_INSERT_CATEGORY);
+			stmt = this.prepareStatement(conn, STATEMENT_INSERT_CATEGORY);
 			for (Category category : categoryList) {
 				stmt.setInt(1, topicId);
 				stmt.setString(2, category.getName());
 				stmt.setString(3, category.getSortKey());
+				// lowercase name allows an indexed case-insensitive lookup
+				stmt.setString(4, category.getName().toLowerCase());
 				stmt.addBatch();
 			}
 			stmt.executeBatch();
@@ -1635,7 +1976,7 @@ public class AnsiQueryHandler implements QueryHandler {
 	public void insertGroupAuthority(int groupId, String authority, Connection conn) throws SQLException {
 		PreparedStatement stmt = null;
 		try {
-			stmt = conn.prepareStatement(STATEMENT_INSERT_GROUP_AUTHORITY);
+			stmt = this.prepareStatement(conn, STATEMENT_INSERT_GROUP_AUTHORITY);
 			stmt.setInt(1, groupId);
 			stmt.setString(2, authority);
 			stmt.executeUpdate();
@@ -1652,11 +1993,11 @@ public class AnsiQueryHandler implements QueryHandler {
 		try {
 			int index = 1;
 			if (!this.autoIncrementPrimaryKeys()) {
-				stmt = conn.prepareStatement(STATEMENT_INSERT_GROUP_MEMBER);
+				stmt = this.prepareStatement(conn, STATEMENT_INSERT_GROUP_MEMBER);
 				int groupMemberId = this.nextGroupMemberId(conn);
 				stmt.setInt(index++, groupMemberId);
 			} else {
-				stmt = conn.prepareStatement(STATEMENT_INSERT_GROUP_MEMBER_AUTO_INCREMENT);
+				stmt = this.prepareStatement(conn, STATEMENT_INSERT_GROUP_MEMBER_AUTO_INCREMENT);
 			}
 			stmt.setString(index++, username);
 			stmt.setInt(index++, groupId);
@@ -1672,7 +2013,7 @@ public class AnsiQueryHandler implements QueryHandler {
 	public void insertInterwiki(Interwiki interwiki, Connection conn) throws SQLException {
 		PreparedStatement stmt = null;
 		try {
-			stmt = conn.prepareStatement(STATEMENT_INSERT_INTERWIKI);
+			stmt = this.prepareStatement(conn, STATEMENT_INSERT_INTERWIKI);
 			stmt.setString(1, interwiki.getInterwikiPrefix());
 			stmt.setString(2, interwiki.getInterwikiPattern());
 			stmt.setString(3, interwiki.getInterwikiDisplay());
@@ -1689,7 +2030,7 @@ public class AnsiQueryHandler implements QueryHandler {
 	public void insertLogItem(LogItem logItem, int virtualWikiId, Connection conn) throws SQLException {
 		PreparedStatement stmt = null;
 		try {
-			stmt = conn.prepareStatement(STATEMENT_INSERT_LOG_ITEM);
+			stmt = this.prepareStatement(conn, STATEMENT_INSERT_LOG_ITEM);
 			stmt.setTimestamp(1, logItem.getLogDate());
 			stmt.setInt(2, virtualWikiId);
 			if (logItem.getUserId() == null) {
@@ -1728,7 +2069,7 @@ public class AnsiQueryHandler implements QueryHandler {
 	public void insertRecentChange(RecentChange change, int virtualWikiId, Connection conn) throws SQLException {
 		PreparedStatement stmt = null;
 		try {
-			stmt = conn.prepareStatement(STATEMENT_INSERT_RECENT_CHANGE);
+			stmt = this.prepareStatement(conn, STATEMENT_INSERT_RECENT_CHANGE);
 			if (change.getTopicVersionId() == null) {
 				stmt.setNull(1, Types.INTEGER);
 			} else {
@@ -1788,7 +2129,7 @@ public class AnsiQueryHandler implements QueryHandler {
 	public void insertRole(Role role, Connection conn) throws SQLException {
 		PreparedStatement stmt = null;
 		try {
-			stmt = conn.prepareStatement(STATEMENT_INSERT_ROLE);
+			stmt = this.prepareStatement(conn, STATEMENT_INSERT_ROLE);
 			stmt.setString(1, role.getAuthority());
 			stmt.setString(2, role.getDescription());
 			stmt.executeUpdate();
@@ -1797,6 +2138,22 @@ public class AnsiQueryHandler implements QueryHandler {
 		}
 	}
 
+	/**
+	 *
+	 */
+	public void insertStatistic(int virtualWikiId, String statistic, int value, Connection conn) throws SQLException {
+		PreparedStatement stmt = null;
+		try {
+			stmt = this.prepareStatement(conn, STATEMENT_INSERT_STATISTIC);
+			stmt.setInt(1, virtualWikiId);
+			stmt.setString(2, statistic);
+			stmt.setInt(3, value);
+			stmt.executeUpdate();
+		} finally {
+			DatabaseConnection.closeStatement(stmt);
+		}
+	}
+
 	/**
 	 *
 	 */
@@ -1806,12 +2163,12 @@ public class AnsiQueryHandler implements QueryHandler {
 		try {
 			int index = 1;
 			if (!this.autoIncrementPrimaryKeys()) {
-				stmt = conn.prepareStatement(STATEMENT_INSERT_TOPIC);
+				stmt = this.prepareStatement(conn, STATEMENT_INSERT_TOPIC);
 				int topicId = this.nextTopicId(conn);
 				topic.setTopicId(topicId);
 				stmt.setInt(index++, topic.getTopicId());
 			} else {
-				stmt = conn.prepareStatement(STATEMENT_INSERT_TOPIC_AUTO_INCREMENT, Statement.RETURN_GENERATED_KEYS);
+				stmt = this.prepareStatement(conn, STATEMENT_INSERT_TOPIC_AUTO_INCREMENT, Statement.RETURN_GENERATED_KEYS);
 			}
 			stmt.setInt(index++, virtualWikiId);
 			stmt.setString(index++, topic.getName());
@@ -1851,7 +2208,7 @@ public class AnsiQueryHandler implements QueryHandler {
 		}
 		PreparedStatement stmt = null;
 		try {
-			stmt = conn.prepareStatement(STATEMENT_INSERT_TOPIC_LINKS);
+			stmt = this.prepareStatement(conn, STATEMENT_INSERT_TOPIC_LINKS);
 			for (Topic topicLink : topicLinks) {
 				stmt.setInt(1, topicId);
 				stmt.setInt(2, topicLink.getNamespace().getId());
@@ -1873,12 +2230,12 @@ public class AnsiQueryHandler implements QueryHandler {
 		try {
 			int index = 1;
 			if (!this.autoIncrementPrimaryKeys()) {
-				stmt = conn.prepareStatement(STATEMENT_INSERT_TOPIC_VERSION);
+				stmt = this.prepareStatement(conn, STATEMENT_INSERT_TOPIC_VERSION);
 				int topicVersionId = this.nextTopicVersionId(conn);
 				topicVersion.setTopicVersionId(topicVersionId);
 				stmt.setInt(index++, topicVersion.getTopicVersionId());
 			} else {
-				stmt = conn.prepareStatement(STATEMENT_INSERT_TOPIC_VERSION_AUTO_INCREMENT, Statement.RETURN_GENERATED_KEYS);
+				stmt = this.prepareStatement(conn, STATEMENT_INSERT_TOPIC_VERSION_AUTO_INCREMENT, Statement.RETURN_GENERATED_KEYS);
 			}
 			if (topicVersion.getEditDate() == null) {
 				Timestamp editDate = new Timestamp(System.currentTimeMillis());
@@ -1922,7 +2279,7 @@ public class AnsiQueryHandler implements QueryHandler {
 	public void insertUserAuthority(String username, String authority, Connection conn) throws SQLException {
 		PreparedStatement stmt = null;
 		try {
-			stmt = conn.prepareStatement(STATEMENT_INSERT_AUTHORITY);
+			stmt = this.prepareStatement(conn, STATEMENT_INSERT_AUTHORITY);
 			stmt.setString(1, username);
 			stmt.setString(2, authority);
 			stmt.executeUpdate();
@@ -1940,12 +2297,12 @@ public class AnsiQueryHandler implements QueryHandler {
 		try {
 			int index = 1;
 			if (!this.autoIncrementPrimaryKeys()) {
-				stmt = conn.prepareStatement(STATEMENT_INSERT_USER_BLOCK);
+				stmt = this.prepareStatement(conn, STATEMENT_INSERT_USER_BLOCK);
 				int blockId = this.nextUserBlockId(conn);
 				userBlock.setBlockId(blockId);
 				stmt.setInt(index++, userBlock.getBlockId());
 			} else {
-				stmt = conn.prepareStatement(STATEMENT_INSERT_USER_BLOCK_AUTO_INCREMENT, Statement.RETURN_GENERATED_KEYS);
+				stmt = this.prepareStatement(conn, STATEMENT_INSERT_USER_BLOCK_AUTO_INCREMENT, Statement.RETURN_GENERATED_KEYS);
 			}
 			if (userBlock.getWikiUserId() == null) {
 				stmt.setNull(index++, Types.INTEGER);
@@ -1984,7 +2341,7 @@ public class AnsiQueryHandler implements QueryHandler {
 	public void insertUserDetails(WikiUserDetails userDetails, Connection conn) throws SQLException {
 		PreparedStatement stmt = null;
 		try {
-			stmt = conn.prepareStatement(STATEMENT_INSERT_USER);
+			stmt = this.prepareStatement(conn, STATEMENT_INSERT_USER);
 			stmt.setString(1, userDetails.getUsername());
 			stmt.setString(2, userDetails.getPassword());
 			stmt.executeUpdate();
@@ -2002,12 +2359,12 @@ public class AnsiQueryHandler implements QueryHandler {
 		try {
 			int index = 1;
 			if (!this.autoIncrementPrimaryKeys()) {
-				stmt = conn.prepareStatement(STATEMENT_INSERT_VIRTUAL_WIKI);
+				stmt = this.prepareStatement(conn, STATEMENT_INSERT_VIRTUAL_WIKI);
 				int virtualWikiId = this.nextVirtualWikiId(conn);
 				virtualWiki.setVirtualWikiId(virtualWikiId);
 				stmt.setInt(index++, virtualWiki.getVirtualWikiId());
 			} else {
-				stmt = conn.prepareStatement(STATEMENT_INSERT_VIRTUAL_WIKI_AUTO_INCREMENT, Statement.RETURN_GENERATED_KEYS);
+				stmt = this.prepareStatement(conn, STATEMENT_INSERT_VIRTUAL_WIKI_AUTO_INCREMENT, Statement.RETURN_GENERATED_KEYS);
 			}
 			stmt.setString(index++, virtualWiki.getName());
 			stmt.setString(index++, (virtualWiki.isDefaultRootTopicName() ? null : virtualWiki.getRootTopicName()));
@@ -2034,7 +2391,7 @@ public class AnsiQueryHandler implements QueryHandler {
 	public void insertWatchlistEntry(int virtualWikiId, String topicName, int userId, Connection conn) throws SQLException {
 		PreparedStatement stmt = null;
 		try {
-			stmt = conn.prepareStatement(STATEMENT_INSERT_WATCHLIST_ENTRY);
+			stmt = this.prepareStatement(conn, STATEMENT_INSERT_WATCHLIST_ENTRY);
 			stmt.setInt(1, virtualWikiId);
 			stmt.setString(2, topicName);
 			stmt.setInt(3, userId);
@@ -2053,12 +2410,12 @@ public class AnsiQueryHandler implements QueryHandler {
 		try {
 			int index = 1;
 			if (!this.autoIncrementPrimaryKeys()) {
-				stmt = conn.prepareStatement(STATEMENT_INSERT_WIKI_FILE);
+				stmt = this.prepareStatement(conn, STATEMENT_INSERT_WIKI_FILE);
 				int fileId = this.nextWikiFileId(conn);
 				wikiFile.setFileId(fileId);
 				stmt.setInt(index++, wikiFile.getFileId());
 			} else {
-				stmt = conn.prepareStatement(STATEMENT_INSERT_WIKI_FILE_AUTO_INCREMENT, Statement.RETURN_GENERATED_KEYS);
+				stmt = this.prepareStatement(conn, STATEMENT_INSERT_WIKI_FILE_AUTO_INCREMENT, Statement.RETURN_GENERATED_KEYS);
 			}
 			stmt.setInt(index++, virtualWikiId);
 			stmt.setString(index++, wikiFile.getFileName());
@@ -2092,12 +2449,12 @@ public class AnsiQueryHandler implements QueryHandler {
 		try {
 			int index = 1;
 			if (!this.autoIncrementPrimaryKeys()) {
-				stmt = conn.prepareStatement(STATEMENT_INSERT_WIKI_FILE_VERSION);
+				stmt = this.prepareStatement(conn, STATEMENT_INSERT_WIKI_FILE_VERSION);
 				int fileVersionId = this.nextWikiFileVersionId(conn);
 				wikiFileVersion.setFileVersionId(fileVersionId);
 				stmt.setInt(index++, wikiFileVersion.getFileVersionId());
 			} else {
-				stmt = conn.prepareStatement(STATEMENT_INSERT_WIKI_FILE_VERSION_AUTO_INCREMENT, Statement.RETURN_GENERATED_KEYS);
+				stmt = this.prepareStatement(conn, STATEMENT_INSERT_WIKI_FILE_VERSION_AUTO_INCREMENT, Statement.RETURN_GENERATED_KEYS);
 			}
 			if (wikiFileVersion.getUploadDate() == null) {
 				Timestamp uploadDate = new Timestamp(System.currentTimeMillis());
@@ -2138,12 +2495,12 @@ public class AnsiQueryHandler implements QueryHandler {
 		try {
 			int index = 1;
 			if (!this.autoIncrementPrimaryKeys()) {
-				stmt = conn.prepareStatement(STATEMENT_INSERT_GROUP);
+				stmt = this.prepareStatement(conn, STATEMENT_INSERT_GROUP);
 				int groupId = this.nextWikiGroupId(conn);
 				group.setGroupId(groupId);
 				stmt.setInt(index++, group.getGroupId());
 			} else {
-				stmt = conn.prepareStatement(STATEMENT_INSERT_GROUP_AUTO_INCREMENT, Statement.RETURN_GENERATED_KEYS);
+				stmt = this.prepareStatement(conn, STATEMENT_INSERT_GROUP_AUTO_INCREMENT, Statement.RETURN_GENERATED_KEYS);
 			}
 			stmt.setString(index++, group.getName());
 			stmt.setString(index++, group.getDescription());
@@ -2170,12 +2527,12 @@ public class AnsiQueryHandler implements QueryHandler {
 		try {
 			int index = 1;
 			if (!this.autoIncrementPrimaryKeys()) {
-				stmt = conn.prepareStatement(STATEMENT_INSERT_WIKI_USER);
+				stmt = this.prepareStatement(conn, STATEMENT_INSERT_WIKI_USER);
 				int nextUserId = this.nextWikiUserId(conn);
 				user.setUserId(nextUserId);
 				stmt.setInt(index++, user.getUserId());
 			} else {
-				stmt = conn.prepareStatement(STATEMENT_INSERT_WIKI_USER_AUTO_INCREMENT, Statement.RETURN_GENERATED_KEYS);
+				stmt = this.prepareStatement(conn, STATEMENT_INSERT_WIKI_USER_AUTO_INCREMENT, Statement.RETURN_GENERATED_KEYS);
 			}
 			stmt.setString(index++, user.getUsername());
 			stmt.setString(index++, user.getDisplayName());
@@ -2204,13 +2561,43 @@ public class AnsiQueryHandler implements QueryHandler {
 	/**
 	 *
 	 */
-	public List<Category> lookupCategoryTopics(int virtualWikiId, String virtualWikiName, String categoryName) throws SQLException {
+	public List<CacheEvent> lookupCacheEvents(Timestamp after, String excludeNodeId) throws SQLException {
 		Connection conn = null;
 		PreparedStatement stmt = null;
 		ResultSet rs = null;
 		try {
 			conn = DatabaseConnection.getConnection();
-			stmt = conn.prepareStatement(STATEMENT_SELECT_CATEGORY_TOPICS);
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_CACHE_EVENTS);
+			stmt.setTimestamp(1, after);
+			stmt.setString(2, excludeNodeId);
+			rs = stmt.executeQuery();
+			List<CacheEvent> results = new ArrayList<CacheEvent>();
+			while (rs.next()) {
+				CacheEvent event = new CacheEvent();
+				event.setNodeId(rs.getString("node_id"));
+				event.setCacheName(rs.getString("cache_name"));
+				event.setKey(rs.getString("cache_key"));
+				String keyType = rs.getString("key_type");
+				event.setKeyType(StringUtils.isEmpty(keyType) ? CacheEvent.KEY_TYPE_ALL : keyType.charAt(0));
+				event.setEventDate(rs.getTimestamp("event_date"));
+				results.add(event);
+			}
+			return results;
+		} finally {
+			DatabaseConnection.closeConnection(conn, stmt, rs);
+		}
+	}
+
+	/**
+	 *
+	 */
+	public List<Category> lookupCategoryTopics(int virtualWikiId, String virtualWikiName, String categoryName) throws SQLException {
+		Connection conn = null;
+		PreparedStatement stmt = null;
+		ResultSet rs = null;
+		try {
+			conn = DatabaseConnection.getReadConnection();
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_CATEGORY_TOPICS);
 			// category name must be lowercase since search is case-insensitive
 			categoryName = categoryName.toLowerCase();
 			stmt.setInt(1, virtualWikiId);
@@ -2236,7 +2623,7 @@ public class AnsiQueryHandler implements QueryHandler {
 		Map<String, String> configuration = new HashMap<String, String>();
 		try {
 			conn = DatabaseConnection.getConnection();
-			stmt = conn.prepareStatement(STATEMENT_SELECT_CONFIGURATION);
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_CONFIGURATION);
 			rs = stmt.executeQuery();
 			while (rs.next()) {
 				// note that the value must be trimmed since Oracle cannot store empty
@@ -2258,7 +2645,7 @@ public class AnsiQueryHandler implements QueryHandler {
 		ResultSet rs = null;
 		Map<String, Interwiki> interwikis = new TreeMap<String, Interwiki>();
 		try {
-			stmt = conn.prepareStatement(STATEMENT_SELECT_INTERWIKIS);
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_INTERWIKIS);
 			rs = stmt.executeQuery();
 			String interwikiPrefix, interwikiPattern, interwikiDisplay;
 			int interwikiType;
@@ -2285,7 +2672,7 @@ public class AnsiQueryHandler implements QueryHandler {
 		ResultSet rs = null;
 		Map<Integer, Namespace> namespaces = new TreeMap<Integer, Namespace>();
 		try {
-			stmt = conn.prepareStatement(STATEMENT_SELECT_NAMESPACES);
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_NAMESPACES);
 			rs = stmt.executeQuery();
 			// because there is no consistent way to sort null keys, get all data and then
 			// create Namespace objects by initializing main namespaces first, then the talk
@@ -2324,6 +2711,28 @@ public class AnsiQueryHandler implements QueryHandler {
 		return new ArrayList<Namespace>(namespaces.values());
 	}
 
+	/**
+	 *
+	 */
+	public Map<String, Integer> lookupStatistics(int virtualWikiId) throws SQLException {
+		Connection conn = null;
+		PreparedStatement stmt = null;
+		ResultSet rs = null;
+		Map<String, Integer> statistics = new HashMap<String, Integer>();
+		try {
+			conn = DatabaseConnection.getConnection();
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_STATISTICS);
+			stmt.setInt(1, virtualWikiId);
+			rs = stmt.executeQuery();
+			while (rs.next()) {
+				statistics.put(rs.getString("statistic_name"), rs.getInt("statistic_value"));
+			}
+		} finally {
+			DatabaseConnection.closeConnection(conn, stmt, rs);
+		}
+		return statistics;
+	}
+
 	/**
 	 *
 	 */
@@ -2340,7 +2749,7 @@ public class AnsiQueryHandler implements QueryHandler {
 			if (conn == null) {
 				conn = DatabaseConnection.getConnection();
 			}
-			stmt = conn.prepareStatement(STATEMENT_SELECT_TOPIC);
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_TOPIC);
 			stmt.setString(1, pageName);
 			stmt.setInt(2, virtualWikiId);
 			stmt.setInt(3, namespace.getId());
@@ -2351,7 +2760,7 @@ public class AnsiQueryHandler implements QueryHandler {
 		}
 		try {
 			if (topic == null && !namespace.isCaseSensitive() && !pageName.toLowerCase().equals(pageName)) {
-				stmt = conn.prepareStatement(STATEMENT_SELECT_TOPIC_LOWER);
+				stmt = this.prepareStatement(conn, STATEMENT_SELECT_TOPIC_LOWER);
 				stmt.setString(1, pageName.toLowerCase());
 				stmt.setInt(2, virtualWikiId);
 				stmt.setInt(3, namespace.getId());
@@ -2378,7 +2787,7 @@ public class AnsiQueryHandler implements QueryHandler {
 		ResultSet rs = null;
 		try {
 			conn = DatabaseConnection.getConnection();
-			stmt = conn.prepareStatement(STATEMENT_SELECT_TOPIC_BY_ID);
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_TOPIC_BY_ID);
 			stmt.setInt(1, virtualWikiId);
 			stmt.setInt(2, topicId);
 			rs = stmt.executeQuery();
@@ -2396,12 +2805,21 @@ public class AnsiQueryHandler implements QueryHandler {
 		PreparedStatement stmt = null;
 		ResultSet rs = null;
 		try {
-			conn = DatabaseConnection.getConnection();
-			stmt = this.lookupTopicByTypeStatement(conn, virtualWikiId, topicType1, topicType2, namespaceStart, namespaceEnd, pagination);
+			conn = DatabaseConnection.getReadConnection();
+			if (pagination.isKeyset()) {
+				stmt = this.lookupTopicByTypeKeysetStatement(conn, virtualWikiId, topicType1, topicType2, namespaceStart, namespaceEnd, pagination);
+			} else {
+				stmt = this.lookupTopicByTypeStatement(conn, virtualWikiId, topicType1, topicType2, namespaceStart, namespaceEnd, pagination);
+			}
 			rs = stmt.executeQuery();
 			Map<Integer, String> results = new LinkedHashMap<Integer, String>();
+			String topicName = null;
 			while (rs.next()) {
-				results.put(rs.getInt("topic_id"), rs.getString("topic_name"));
+				topicName = rs.getString("topic_name");
+				results.put(rs.getInt("topic_id"), topicName);
+			}
+			if (topicName != null && results.size() == pagination.getNumResults()) {
+				pagination.setNextContinuation(topicName, 0);
 			}
 			return results;
 		} finally {
@@ -2409,11 +2827,28 @@ public class AnsiQueryHandler implements QueryHandler {
 		}
 	}
 
+	/**
+	 * Build a statement that retrieves topics of the specified types
+	 * following the topic name identified by the pagination continuation
+	 * token.
+	 */
+	protected PreparedStatement lookupTopicByTypeKeysetStatement(Connection conn, int virtualWikiId, TopicType topicType1, TopicType topicType2, int namespaceStart, int namespaceEnd, Pagination pagination) throws SQLException {
+		PreparedStatement stmt = this.prepareStatement(conn, STATEMENT_SELECT_TOPIC_BY_TYPE_KEYSET);
+		stmt.setMaxRows(pagination.getNumResults());
+		stmt.setInt(1, virtualWikiId);
+		stmt.setInt(2, topicType1.id());
+		stmt.setInt(3, topicType2.id());
+		stmt.setInt(4, namespaceStart);
+		stmt.setInt(5, namespaceEnd);
+		stmt.setString(6, pagination.getContinuationValue());
+		return stmt;
+	}
+
 	/**
 	 *
 	 */
 	protected PreparedStatement lookupTopicByTypeStatement(Connection conn, int virtualWikiId, TopicType topicType1, TopicType topicType2, int namespaceStart, int namespaceEnd, Pagination pagination) throws SQLException {
-		PreparedStatement stmt = conn.prepareStatement(STATEMENT_SELECT_TOPIC_BY_TYPE);
+		PreparedStatement stmt = this.prepareStatement(conn, STATEMENT_SELECT_TOPIC_BY_TYPE);
 		stmt.setInt(1, virtualWikiId);
 		stmt.setInt(2, topicType1.id());
 		stmt.setInt(3, topicType2.id());
@@ -2424,6 +2859,26 @@ public class AnsiQueryHandler implements QueryHandler {
 		return stmt;
 	}
 
+	/**
+	 *
+	 */
+	public LinkedHashMap<String, String> lookupTopicCategories(int childTopicId, Connection conn) throws SQLException {
+		PreparedStatement stmt = null;
+		ResultSet rs = null;
+		try {
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_TOPIC_CATEGORIES);
+			stmt.setInt(1, childTopicId);
+			rs = stmt.executeQuery();
+			LinkedHashMap<String, String> results = new LinkedHashMap<String, String>();
+			while (rs.next()) {
+				results.put(rs.getString("category_name"), rs.getString("sort_key"));
+			}
+			return results;
+		} finally {
+			DatabaseConnection.closeConnection(null, stmt, rs);
+		}
+	}
+
 	/**
 	 *
 	 */
@@ -2433,7 +2888,7 @@ public class AnsiQueryHandler implements QueryHandler {
 		ResultSet rs = null;
 		try {
 			conn = DatabaseConnection.getConnection();
-			stmt = conn.prepareStatement(STATEMENT_SELECT_TOPIC_COUNT);
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_TOPIC_COUNT);
 			stmt.setInt(1, virtualWikiId);
 			stmt.setInt(2, namespaceStart);
 			stmt.setInt(3, namespaceEnd);
@@ -2445,6 +2900,48 @@ public class AnsiQueryHandler implements QueryHandler {
 		}
 	}
 
+	/**
+	 *
+	 */
+	public Integer lookupTopicCountedNamespace(int topicId, Connection conn) throws SQLException {
+		PreparedStatement stmt = null;
+		ResultSet rs = null;
+		try {
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_TOPIC_COUNTED_NAMESPACE);
+			stmt.setInt(1, topicId);
+			stmt.setInt(2, TopicType.REDIRECT.id());
+			rs = stmt.executeQuery();
+			return (rs.next()) ? rs.getInt("namespace_id") : null;
+		} finally {
+			DatabaseConnection.closeConnection(null, stmt, rs);
+		}
+	}
+
+	/**
+	 *
+	 */
+	public List<Integer> lookupTopicIds(int virtualWikiId, int afterTopicId, int maxResults) throws SQLException {
+		Connection conn = null;
+		PreparedStatement stmt = null;
+		ResultSet rs = null;
+		try {
+			conn = DatabaseConnection.getConnection();
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_TOPIC_IDS);
+			// use the JDBC row limit rather than database-specific limit syntax
+			stmt.setMaxRows(maxResults);
+			stmt.setInt(1, virtualWikiId);
+			stmt.setInt(2, afterTopicId);
+			rs = stmt.executeQuery();
+			List<Integer> results = new ArrayList<Integer>();
+			while (rs.next()) {
+				results.add(rs.getInt("topic_id"));
+			}
+			return results;
+		} finally {
+			DatabaseConnection.closeConnection(conn, stmt, rs);
+		}
+	}
+
 	/**
 	 *
 	 */
@@ -2459,7 +2956,7 @@ public class AnsiQueryHandler implements QueryHandler {
 		String topicName = null;
 		try {
 			conn = DatabaseConnection.getConnection();
-			stmt = conn.prepareStatement(STATEMENT_SELECT_TOPIC_NAME);
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_TOPIC_NAME);
 			stmt.setString(1, pageName);
 			stmt.setInt(2, virtualWikiId);
 			stmt.setInt(3, namespace.getId());
@@ -2470,7 +2967,7 @@ public class AnsiQueryHandler implements QueryHandler {
 		}
 		try {
 			if (topicName == null && !namespace.isCaseSensitive() && !pageName.toLowerCase().equals(pageName)) {
-				stmt = conn.prepareStatement(STATEMENT_SELECT_TOPIC_NAME_LOWER);
+				stmt = this.prepareStatement(conn, STATEMENT_SELECT_TOPIC_NAME_LOWER);
 				stmt.setString(1, pageName.toLowerCase());
 				stmt.setInt(2, virtualWikiId);
 				stmt.setInt(3, namespace.getId());
@@ -2491,8 +2988,8 @@ public class AnsiQueryHandler implements QueryHandler {
 		PreparedStatement stmt = null;
 		ResultSet rs = null;
 		try {
-			conn = DatabaseConnection.getConnection();
-			stmt = conn.prepareStatement(STATEMENT_SELECT_TOPIC_LINKS);
+			conn = DatabaseConnection.getReadConnection();
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_TOPIC_LINKS);
 			stmt.setInt(1, virtualWikiId);
 			stmt.setInt(2, namespace.getId());
 			stmt.setString(3, pageName);
@@ -2507,6 +3004,27 @@ public class AnsiQueryHandler implements QueryHandler {
 		}
 	}
 
+	/**
+	 *
+	 */
+	public List<Topic> lookupTopicLinkTargets(int topicId, String virtualWiki, Connection conn) throws SQLException {
+		PreparedStatement stmt = null;
+		ResultSet rs = null;
+		try {
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_TOPIC_LINK_TARGETS);
+			stmt.setInt(1, topicId);
+			rs = stmt.executeQuery();
+			List<Topic> results = new ArrayList<Topic>();
+			while (rs.next()) {
+				Namespace namespace = Namespace.namespace(rs.getInt("link_topic_namespace_id"));
+				results.add(new Topic(virtualWiki, namespace, rs.getString("link_topic_page_name")));
+			}
+			return results;
+		} finally {
+			DatabaseConnection.closeConnection(null, stmt, rs);
+		}
+	}
+
 	/**
 	 *
 	 */
@@ -2515,8 +3033,8 @@ public class AnsiQueryHandler implements QueryHandler {
 		PreparedStatement stmt = null;
 		ResultSet rs = null;
 		try {
-			conn = DatabaseConnection.getConnection();
-			stmt = conn.prepareStatement(STATEMENT_SELECT_TOPIC_LINK_ORPHANS);
+			conn = DatabaseConnection.getReadConnection();
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_TOPIC_LINK_ORPHANS);
 			stmt.setInt(1, virtualWikiId);
 			stmt.setInt(2, namespaceId);
 			stmt.setInt(3, TopicType.REDIRECT.id());
@@ -2538,7 +3056,7 @@ public class AnsiQueryHandler implements QueryHandler {
 		PreparedStatement stmt = null;
 		ResultSet rs = null;
 		try {
-			stmt = conn.prepareStatement(STATEMENT_SELECT_TOPIC_NAMES);
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_TOPIC_NAMES);
 			stmt.setInt(1, virtualWikiId);
 			rs = stmt.executeQuery();
 			Map<Integer, String> results = new LinkedHashMap<Integer, String>();
@@ -2575,7 +3093,7 @@ public class AnsiQueryHandler implements QueryHandler {
 		PreparedStatement stmt = null;
 		ResultSet rs = null;
 		try {
-			stmt = conn.prepareStatement(STATEMENT_SELECT_TOPIC_VERSION);
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_TOPIC_VERSION);
 			stmt.setInt(1, topicVersionId);
 			rs = stmt.executeQuery();
 			return (rs.next()) ? this.initTopicVersion(rs) : null;
@@ -2584,6 +3102,24 @@ public class AnsiQueryHandler implements QueryHandler {
 		}
 	}
 
+	/**
+	 *
+	 */
+	public int lookupTopicVersionCount(int topicId) throws SQLException {
+		Connection conn = null;
+		PreparedStatement stmt = null;
+		ResultSet rs = null;
+		try {
+			conn = DatabaseConnection.getConnection();
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_TOPIC_VERSION_COUNT);
+			stmt.setInt(1, topicId);
+			rs = stmt.executeQuery();
+			return (rs.next()) ? rs.getInt("version_count") : 0;
+		} finally {
+			DatabaseConnection.closeConnection(conn, stmt, rs);
+		}
+	}
+
 	/**
 	 *
 	 */
@@ -2593,7 +3129,7 @@ public class AnsiQueryHandler implements QueryHandler {
 		ResultSet rs = null;
 		try {
 			conn = DatabaseConnection.getConnection();
-			stmt = conn.prepareStatement(STATEMENT_SELECT_TOPIC_VERSION_NEXT_ID);
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_TOPIC_VERSION_NEXT_ID);
 			stmt.setInt(1, topicVersionId);
 			rs = stmt.executeQuery();
 			return (rs.next()) ? rs.getInt("topic_version_id") : null;
@@ -2611,7 +3147,7 @@ public class AnsiQueryHandler implements QueryHandler {
 		ResultSet rs = null;
 		try {
 			conn = DatabaseConnection.getConnection();
-			stmt = conn.prepareStatement(STATEMENT_SELECT_WIKI_FILE);
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_WIKI_FILE);
 			stmt.setInt(1, virtualWikiId);
 			stmt.setInt(2, topicId);
 			rs = stmt.executeQuery();
@@ -2634,7 +3170,7 @@ public class AnsiQueryHandler implements QueryHandler {
 		ResultSet rs = null;
 		try {
 			conn = DatabaseConnection.getConnection();
-			stmt = conn.prepareStatement(STATEMENT_SELECT_WIKI_FILE_COUNT);
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_WIKI_FILE_COUNT);
 			stmt.setInt(1, virtualWikiId);
 			rs = stmt.executeQuery();
 			return (rs.next()) ? rs.getInt("file_count") : 0;
@@ -2643,6 +3179,22 @@ public class AnsiQueryHandler implements QueryHandler {
 		}
 	}
 
+	/**
+	 *
+	 */
+	public boolean lookupWikiFileCounted(int fileId, Connection conn) throws SQLException {
+		PreparedStatement stmt = null;
+		ResultSet rs = null;
+		try {
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_WIKI_FILE_COUNTED);
+			stmt.setInt(1, fileId);
+			rs = stmt.executeQuery();
+			return rs.next();
+		} finally {
+			DatabaseConnection.closeConnection(null, stmt, rs);
+		}
+	}
+
 	/**
 	 *
 	 */
@@ -2652,7 +3204,7 @@ public class AnsiQueryHandler implements QueryHandler {
 		ResultSet rs = null;
 		try {
 			conn = DatabaseConnection.getConnection();
-			stmt = conn.prepareStatement(STATEMENT_SELECT_GROUP);
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_GROUP);
 			stmt.setString(1, groupName);
 			rs = stmt.executeQuery();
 			return (rs.next()) ? this.initWikiGroup(rs) : null;
@@ -2670,7 +3222,7 @@ public class AnsiQueryHandler implements QueryHandler {
 		ResultSet rs = null;
 		try {
 			conn = DatabaseConnection.getConnection();
-			stmt = conn.prepareStatement(STATEMENT_SELECT_WIKI_USER);
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_WIKI_USER);
 			stmt.setInt(1, userId);
 			rs = stmt.executeQuery();
 			return (rs.next()) ? this.initWikiUser(rs) : null;
@@ -2686,7 +3238,7 @@ public class AnsiQueryHandler implements QueryHandler {
 		PreparedStatement stmt = null;
 		ResultSet rs = null;
 		try {
-			stmt = conn.prepareStatement(STATEMENT_SELECT_WIKI_USER_LOGIN);
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_WIKI_USER_LOGIN);
 			stmt.setString(1, username);
 			rs = stmt.executeQuery();
 			return (rs.next()) ? rs.getInt("wiki_user_id") : -1;
@@ -2705,7 +3257,7 @@ public class AnsiQueryHandler implements QueryHandler {
 		ResultSet rs = null;
 		try {
 			conn = DatabaseConnection.getConnection();
-			stmt = conn.prepareStatement(STATEMENT_SELECT_WIKI_USER_COUNT);
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_WIKI_USER_COUNT);
 			rs = stmt.executeQuery();
 			return (rs.next()) ? rs.getInt("user_count") : 0;
 		} finally {
@@ -2722,7 +3274,7 @@ public class AnsiQueryHandler implements QueryHandler {
 		ResultSet rs = null;
 		try {
 			conn = DatabaseConnection.getConnection();
-			stmt = conn.prepareStatement(STATEMENT_SELECT_WIKI_USER_DETAILS_PASSWORD);
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_WIKI_USER_DETAILS_PASSWORD);
 			stmt.setString(1, username);
 			rs = stmt.executeQuery();
 			return (rs.next()) ? rs.getString("password") : null;
@@ -2739,24 +3291,42 @@ public class AnsiQueryHandler implements QueryHandler {
 		PreparedStatement stmt = null;
 		ResultSet rs = null;
 		try {
-			conn = DatabaseConnection.getConnection();
-			stmt = this.lookupWikiUsersStatement(conn, pagination);
+			conn = DatabaseConnection.getReadConnection();
+			if (pagination.isKeyset()) {
+				stmt = this.lookupWikiUsersKeysetStatement(conn, pagination);
+			} else {
+				stmt = this.lookupWikiUsersStatement(conn, pagination);
+			}
 			rs = stmt.executeQuery();
 			List<String> results = new ArrayList<String>();
 			while (rs.next()) {
 				results.add(rs.getString("login"));
 			}
+			if (!results.isEmpty() && results.size() == pagination.getNumResults()) {
+				pagination.setNextContinuation(results.get(results.size() - 1), 0);
+			}
 			return results;
 		} finally {
 			DatabaseConnection.closeConnection(conn, stmt, rs);
 		}
 	}
 
+	/**
+	 * Build a statement that retrieves user logins following the login
+	 * identified by the pagination continuation token.
+	 */
+	protected PreparedStatement lookupWikiUsersKeysetStatement(Connection conn, Pagination pagination) throws SQLException {
+		PreparedStatement stmt = this.prepareStatement(conn, STATEMENT_SELECT_WIKI_USERS_KEYSET);
+		stmt.setMaxRows(pagination.getNumResults());
+		stmt.setString(1, pagination.getContinuationValue());
+		return stmt;
+	}
+
 	/**
 	 *
 	 */
 	protected PreparedStatement lookupWikiUsersStatement(Connection conn, Pagination pagination) throws SQLException {
-		PreparedStatement stmt = conn.prepareStatement(STATEMENT_SELECT_WIKI_USERS);
+		PreparedStatement stmt = this.prepareStatement(conn, STATEMENT_SELECT_WIKI_USERS);
 		stmt.setInt(1, pagination.getNumResults());
 		stmt.setInt(2, pagination.getOffset());
 		return stmt;
@@ -2893,20 +3463,56 @@ public class AnsiQueryHandler implements QueryHandler {
 		return nextId + 1;
 	}
 
+	/**
+	 * Prepare a statement, recording its use in the {@link StatementRegistry}.
+	 * All statements should be prepared using this method or
+	 * {@link #prepareStatement(Connection, String, int)}.
+	 */
+	protected PreparedStatement prepareStatement(Connection conn, String sql) throws SQLException {
+		StatementRegistry.recordPrepare(sql);
+		return conn.prepareStatement(sql);
+	}
+
+	/**
+	 * Prepare a statement for reading a large result set, recording its use in
+	 * the {@link StatementRegistry}.  The statement is explicitly created as
+	 * forward-only and read-only so that the connection pool caches it
+	 * separately from the same SQL prepared via {@link #prepareStatement}, and
+	 * the fetch size is set so that rows are retrieved from the database in
+	 * blocks rather than one at a time or all at once.  Query handlers for
+	 * databases that require additional settings to avoid reading the entire
+	 * result set into memory should override this method.
+	 */
+	protected PreparedStatement prepareStreamingStatement(Connection conn, String sql) throws SQLException {
+		StatementRegistry.recordPrepare(sql);
+		PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		stmt.setFetchSize(STREAMING_FETCH_SIZE);
+		return stmt;
+	}
+
+	/**
+	 * Prepare a statement that returns auto-generated keys, recording its use
+	 * in the {@link StatementRegistry}.
+	 */
+	protected PreparedStatement prepareStatement(Connection conn, String sql, int autoGeneratedKeys) throws SQLException {
+		StatementRegistry.recordPrepare(sql);
+		return conn.prepareStatement(sql, autoGeneratedKeys);
+	}
+
 	/**
 	 *
 	 */
 	public void reloadLogItems(int virtualWikiId, Connection conn) throws SQLException {
 		PreparedStatement stmt = null;
 		try {
-			stmt = conn.prepareStatement(STATEMENT_DELETE_LOG_ITEMS);
+			stmt = this.prepareStatement(conn, STATEMENT_DELETE_LOG_ITEMS);
 			stmt.setInt(1, virtualWikiId);
 			stmt.executeUpdate();
 		} finally {
 			DatabaseConnection.closeStatement(stmt);
 		}
 		try {
-			stmt = conn.prepareStatement(STATEMENT_INSERT_LOG_ITEMS_BY_TOPIC_VERSION_TYPE);
+			stmt = this.prepareStatement(conn, STATEMENT_INSERT_LOG_ITEMS_BY_TOPIC_VERSION_TYPE);
 			stmt.setInt(1, LogItem.LOG_TYPE_DELETE);
 			stmt.setString(2, "");
 			stmt.setInt(3, virtualWikiId);
@@ -2916,7 +3522,7 @@ public class AnsiQueryHandler implements QueryHandler {
 			DatabaseConnection.closeStatement(stmt);
 		}
 		try {
-			stmt = conn.prepareStatement(STATEMENT_INSERT_LOG_ITEMS_BY_TOPIC_VERSION_TYPE);
+			stmt = this.prepareStatement(conn, STATEMENT_INSERT_LOG_ITEMS_BY_TOPIC_VERSION_TYPE);
 			stmt.setInt(1, LogItem.LOG_TYPE_DELETE);
 			stmt.setString(2, "|" + TopicVersion.EDIT_UNDELETE);
 			stmt.setInt(3, virtualWikiId);
@@ -2926,7 +3532,7 @@ public class AnsiQueryHandler implements QueryHandler {
 			DatabaseConnection.closeStatement(stmt);
 		}
 		try {
-			stmt = conn.prepareStatement(STATEMENT_INSERT_LOG_ITEMS_BY_TOPIC_VERSION_TYPE);
+			stmt = this.prepareStatement(conn, STATEMENT_INSERT_LOG_ITEMS_BY_TOPIC_VERSION_TYPE);
 			stmt.setInt(1, LogItem.LOG_TYPE_PERMISSION);
 			stmt.setString(2, "");
 			stmt.setInt(3, virtualWikiId);
@@ -2936,7 +3542,7 @@ public class AnsiQueryHandler implements QueryHandler {
 			DatabaseConnection.closeStatement(stmt);
 		}
 		try {
-			stmt = conn.prepareStatement(STATEMENT_INSERT_LOG_ITEMS_IMPORT);
+			stmt = this.prepareStatement(conn, STATEMENT_INSERT_LOG_ITEMS_IMPORT);
 			stmt.setInt(1, LogItem.LOG_TYPE_IMPORT);
 			stmt.setInt(2, TopicVersion.EDIT_IMPORT);
 			stmt.setInt(3, virtualWikiId);
@@ -2946,7 +3552,7 @@ public class AnsiQueryHandler implements QueryHandler {
 			DatabaseConnection.closeStatement(stmt);
 		}
 		try {
-			stmt = conn.prepareStatement(STATEMENT_INSERT_LOG_ITEMS_MOVE);
+			stmt = this.prepareStatement(conn, STATEMENT_INSERT_LOG_ITEMS_MOVE);
 			stmt.setInt(1, LogItem.LOG_TYPE_MOVE);
 			stmt.setInt(2, virtualWikiId);
 			stmt.setInt(3, TopicVersion.EDIT_MOVE);
@@ -2955,7 +3561,7 @@ public class AnsiQueryHandler implements QueryHandler {
 			DatabaseConnection.closeStatement(stmt);
 		}
 		try {
-			stmt = conn.prepareStatement(STATEMENT_INSERT_LOG_ITEMS_UPLOAD);
+			stmt = this.prepareStatement(conn, STATEMENT_INSERT_LOG_ITEMS_UPLOAD);
 			stmt.setInt(1, LogItem.LOG_TYPE_UPLOAD);
 			stmt.setInt(2, virtualWikiId);
 			stmt.setInt(3, TopicVersion.EDIT_NORMAL);
@@ -2964,7 +3570,7 @@ public class AnsiQueryHandler implements QueryHandler {
 			DatabaseConnection.closeStatement(stmt);
 		}
 		try {
-			stmt = conn.prepareStatement(STATEMENT_INSERT_LOG_ITEMS_USER);
+			stmt = this.prepareStatement(conn, STATEMENT_INSERT_LOG_ITEMS_USER);
 			stmt.setInt(1, virtualWikiId);
 			stmt.setInt(2, LogItem.LOG_TYPE_USER_CREATION);
 			stmt.executeUpdate();
@@ -2972,7 +3578,7 @@ public class AnsiQueryHandler implements QueryHandler {
 			DatabaseConnection.closeStatement(stmt);
 		}
 		try {
-			stmt = conn.prepareStatement(STATEMENT_INSERT_LOG_ITEMS_BLOCK);
+			stmt = this.prepareStatement(conn, STATEMENT_INSERT_LOG_ITEMS_BLOCK);
 			stmt.setInt(1, virtualWikiId);
 			stmt.setInt(2, LogItem.LOG_TYPE_BLOCK);
 			stmt.setInt(3, LogItem.LOG_SUBTYPE_BLOCK_BLOCK);
@@ -2981,7 +3587,7 @@ public class AnsiQueryHandler implements QueryHandler {
 			DatabaseConnection.closeStatement(stmt);
 		}
 		try {
-			stmt = conn.prepareStatement(STATEMENT_INSERT_LOG_ITEMS_UNBLOCK);
+			stmt = this.prepareStatement(conn, STATEMENT_INSERT_LOG_ITEMS_UNBLOCK);
 			stmt.setInt(1, virtualWikiId);
 			stmt.setInt(2, LogItem.LOG_TYPE_BLOCK);
 			stmt.setInt(3, LogItem.LOG_SUBTYPE_BLOCK_UNBLOCK);
@@ -3000,7 +3606,7 @@ public class AnsiQueryHandler implements QueryHandler {
 		try {
 			conn = DatabaseConnection.getConnection();
 			conn.setAutoCommit(false);
-			stmt = conn.prepareStatement(STATEMENT_UPDATE_TOPIC_VERSION_PREVIOUS_VERSION_ID);
+			stmt = this.prepareStatement(conn, STATEMENT_UPDATE_TOPIC_VERSION_PREVIOUS_VERSION_ID);
 			Integer previousTopicVersionId = null;
 			boolean hasBatchData = false;
 			for (int topicVersionId : topicVersionIdList) {
@@ -3035,17 +3641,51 @@ public class AnsiQueryHandler implements QueryHandler {
 	/**
 	 *
 	 */
-	public void reloadRecentChanges(Connection conn, int limit) throws SQLException {
+	public void reloadRecentChanges(int virtualWikiId, int limit, Connection conn) throws SQLException {
 		PreparedStatement stmt = null;
 		try {
-			DatabaseConnection.executeUpdate(STATEMENT_DELETE_RECENT_CHANGES, conn);
-			stmt = conn.prepareStatement(STATEMENT_INSERT_RECENT_CHANGES_VERSIONS);
-			stmt.setInt(1, limit);
+			stmt = this.prepareStatement(conn, STATEMENT_DELETE_RECENT_CHANGES);
+			stmt.setInt(1, virtualWikiId);
+			stmt.executeUpdate();
+		} finally {
+			DatabaseConnection.closeStatement(stmt);
+		}
+		try {
+			stmt = this.reloadRecentChangesVersionsStatement(conn, virtualWikiId, limit);
 			stmt.executeUpdate();
-			DatabaseConnection.executeUpdate(STATEMENT_INSERT_RECENT_CHANGES_LOGS, conn);
 		} finally {
 			DatabaseConnection.closeStatement(stmt);
 		}
+		try {
+			stmt = this.prepareStatement(conn, STATEMENT_INSERT_RECENT_CHANGES_LOGS);
+			stmt.setInt(1, virtualWikiId);
+			stmt.executeUpdate();
+		} finally {
+			DatabaseConnection.closeStatement(stmt);
+		}
+	}
+
+	/**
+	 *
+	 */
+	protected PreparedStatement reloadRecentChangesVersionsStatement(Connection conn, int virtualWikiId, int limit) throws SQLException {
+		PreparedStatement stmt = this.prepareStatement(conn, STATEMENT_INSERT_RECENT_CHANGES_VERSIONS);
+		stmt.setInt(1, virtualWikiId);
+		stmt.setInt(2, limit);
+		return stmt;
+	}
+
+	/**
+	 * Set the continuation token for the page following a page of recent
+	 * changes that are ordered by change date and topic version id.  No
+	 * token is set if fewer than a full page of results was retrieved.
+	 */
+	private void setNextContinuation(Pagination pagination, List<RecentChange> recentChanges) {
+		if (recentChanges.isEmpty() || recentChanges.size() != pagination.getNumResults()) {
+			return;
+		}
+		RecentChange recentChange = recentChanges.get(recentChanges.size() - 1);
+		pagination.setNextContinuation(recentChange.getChangeDate().toString(), recentChange.getTopicVersionId());
 	}
 
 	/**
@@ -3057,7 +3697,7 @@ public class AnsiQueryHandler implements QueryHandler {
 		try {
 			stmt = conn.createStatement();
 			stmt.executeUpdate(STATEMENT_DELETE_CONFIGURATION);
-			pstmt = conn.prepareStatement(STATEMENT_INSERT_CONFIGURATION);
+			pstmt = this.prepareStatement(conn, STATEMENT_INSERT_CONFIGURATION);
 			for (String key : configuration.keySet()) {
 				pstmt.setString(1, key);
 				// FIXME - Oracle cannot store an empty string - it converts them
@@ -3098,7 +3738,7 @@ public class AnsiQueryHandler implements QueryHandler {
 				}
 			}
 			// execute the adds/updates
-			stmt = (isUpdate) ? conn.prepareStatement(STATEMENT_UPDATE_NAMESPACE) : conn.prepareStatement(STATEMENT_INSERT_NAMESPACE);
+			stmt = (isUpdate) ? this.prepareStatement(conn, STATEMENT_UPDATE_NAMESPACE) : this.prepareStatement(conn, STATEMENT_INSERT_NAMESPACE);
 			stmt.setString(1, mainNamespace.getDefaultLabel());
 			stmt.setNull(2, Types.INTEGER);
 			stmt.setInt(3, mainNamespace.getId());
@@ -3122,14 +3762,14 @@ public class AnsiQueryHandler implements QueryHandler {
 		PreparedStatement stmt = null;
 		try {
 			// delete any existing translation then add the new one
-			stmt = conn.prepareStatement(STATEMENT_DELETE_NAMESPACE_TRANSLATIONS);
+			stmt = this.prepareStatement(conn, STATEMENT_DELETE_NAMESPACE_TRANSLATIONS);
 			stmt.setInt(1, virtualWikiId);
 			stmt.executeUpdate();
 		} finally {
 			DatabaseConnection.closeStatement(stmt);
 		}
 		try {
-			stmt = conn.prepareStatement(STATEMENT_INSERT_NAMESPACE_TRANSLATION);
+			stmt = this.prepareStatement(conn, STATEMENT_INSERT_NAMESPACE_TRANSLATION);
 			String translatedNamespace;
 			for (Namespace namespace : namespaces) {
 				translatedNamespace = namespace.getLabel(virtualWiki);
@@ -3153,7 +3793,7 @@ public class AnsiQueryHandler implements QueryHandler {
 	public void updateRole(Role role, Connection conn) throws SQLException {
 		PreparedStatement stmt = null;
 		try {
-			stmt = conn.prepareStatement(STATEMENT_UPDATE_ROLE);
+			stmt = this.prepareStatement(conn, STATEMENT_UPDATE_ROLE);
 			stmt.setString(1, role.getDescription());
 			stmt.setString(2, role.getAuthority());
 			stmt.executeUpdate();
@@ -3162,13 +3802,45 @@ public class AnsiQueryHandler implements QueryHandler {
 		}
 	}
 
+	/**
+	 *
+	 */
+	public int updateStatistic(int virtualWikiId, String statistic, int delta, Connection conn) throws SQLException {
+		PreparedStatement stmt = null;
+		try {
+			stmt = this.prepareStatement(conn, STATEMENT_UPDATE_STATISTIC);
+			stmt.setInt(1, delta);
+			stmt.setInt(2, virtualWikiId);
+			stmt.setString(3, statistic);
+			return stmt.executeUpdate();
+		} finally {
+			DatabaseConnection.closeStatement(stmt);
+		}
+	}
+
+	/**
+	 *
+	 */
+	public int updateStatisticValue(int virtualWikiId, String statistic, int value, Connection conn) throws SQLException {
+		PreparedStatement stmt = null;
+		try {
+			stmt = this.prepareStatement(conn, STATEMENT_UPDATE_STATISTIC_VALUE);
+			stmt.setInt(1, value);
+			stmt.setInt(2, virtualWikiId);
+			stmt.setString(3, statistic);
+			return stmt.executeUpdate();
+		} finally {
+			DatabaseConnection.closeStatement(stmt);
+		}
+	}
+
 	/**
 	 *
 	 */
 	public void updateTopic(Topic topic, int virtualWikiId, Connection conn) throws SQLException {
 		PreparedStatement stmt = null;
 		try {
-			stmt = conn.prepareStatement(STATEMENT_UPDATE_TOPIC);
+			stmt = this.prepareStatement(conn, STATEMENT_UPDATE_TOPIC);
 			stmt.setInt(1, virtualWikiId);
 			stmt.setString(2, topic.getName());
 			stmt.setInt(3, topic.getTopicType().id());
@@ -3197,7 +3869,7 @@ public class AnsiQueryHandler implements QueryHandler {
 	public void updateTopicNamespaces(List<Topic> topics, Connection conn) throws SQLException {
 		PreparedStatement stmt = null;
 		try {
-			stmt = conn.prepareStatement(STATEMENT_UPDATE_TOPIC_NAMESPACE);
+			stmt = this.prepareStatement(conn, STATEMENT_UPDATE_TOPIC_NAMESPACE);
 			for (Topic topic : topics) {
 				stmt.setInt(1, topic.getNamespace().getId());
 				stmt.setString(2, topic.getPageName());
@@ -3217,7 +3889,7 @@ public class AnsiQueryHandler implements QueryHandler {
 	public void updateTopicVersion(TopicVersion topicVersion, Connection conn) throws SQLException {
 		PreparedStatement stmt = null;
 		try {
-			stmt = conn.prepareStatement(STATEMENT_UPDATE_TOPIC_VERSION);
+			stmt = this.prepareStatement(conn, STATEMENT_UPDATE_TOPIC_VERSION);
 			stmt.setInt(1, topicVersion.getTopicId());
 			stmt.setString(2, topicVersion.getEditComment());
 			stmt.setString(3, topicVersion.getVersionContent());
@@ -3249,7 +3921,7 @@ public class AnsiQueryHandler implements QueryHandler {
 	public void updateUserBlock(UserBlock userBlock, Connection conn) throws SQLException {
 		PreparedStatement stmt = null;
 		try {
-			stmt = conn.prepareStatement(STATEMENT_UPDATE_USER_BLOCK);
+			stmt = this.prepareStatement(conn, STATEMENT_UPDATE_USER_BLOCK);
 			if (userBlock.getWikiUserId() == null) {
 				stmt.setNull(1, Types.INTEGER);
 			} else {
@@ -3280,7 +3952,7 @@ public class AnsiQueryHandler implements QueryHandler {
 	public void updateUserDetails(WikiUserDetails userDetails, Connection conn) throws SQLException {
 		PreparedStatement stmt = null;
 		try {
-			stmt = conn.prepareStatement(STATEMENT_UPDATE_USER);
+			stmt = this.prepareStatement(conn, STATEMENT_UPDATE_USER);
 			stmt.setString(1, userDetails.getPassword());
 			stmt.setInt(2, 1);
 			stmt.setString(3, userDetails.getUsername());
@@ -3296,7 +3968,7 @@ public class AnsiQueryHandler implements QueryHandler {
 	public void updateVirtualWiki(VirtualWiki virtualWiki, Connection conn) throws SQLException {
 		PreparedStatement stmt = null;
 		try {
-			stmt = conn.prepareStatement(STATEMENT_UPDATE_VIRTUAL_WIKI);
+			stmt = this.prepareStatement(conn, STATEMENT_UPDATE_VIRTUAL_WIKI);
 			stmt.setString(1, (virtualWiki.isDefaultRootTopicName() ? null : virtualWiki.getRootTopicName()));
 			stmt.setString(2, (virtualWiki.isDefaultLogoImageUrl() ? null : virtualWiki.getLogoImageUrl()));
 			stmt.setString(3, (virtualWiki.isDefaultMetaDescription() ? null : virtualWiki.getMetaDescription()));
@@ -3308,13 +3980,30 @@ public class AnsiQueryHandler implements QueryHandler {
 		}
 	}
 
+	/**
+	 *
+	 */
+	public void updateWatchlistChange(int virtualWikiId, String topicName, int topicId, int currentVersionId, Connection conn) throws SQLException {
+		PreparedStatement stmt = null;
+		try {
+			stmt = this.prepareStatement(conn, STATEMENT_UPDATE_WATCHLIST_CHANGE);
+			stmt.setInt(1, topicId);
+			stmt.setInt(2, currentVersionId);
+			stmt.setInt(3, virtualWikiId);
+			stmt.setString(4, topicName);
+			stmt.executeUpdate();
+		} finally {
+			DatabaseConnection.closeStatement(stmt);
+		}
+	}
+
 	/**
 	 *
 	 */
 	public void updateWikiFile(WikiFile wikiFile, int virtualWikiId, Connection conn) throws SQLException {
 		PreparedStatement stmt = null;
 		try {
-			stmt = conn.prepareStatement(STATEMENT_UPDATE_WIKI_FILE);
+			stmt = this.prepareStatement(conn, STATEMENT_UPDATE_WIKI_FILE);
 			stmt.setInt(1, virtualWikiId);
 			stmt.setString(2, wikiFile.getFileName());
 			stmt.setString(3, wikiFile.getUrl());
@@ -3337,7 +4026,7 @@ public class AnsiQueryHandler implements QueryHandler {
 	public void updateWikiGroup(WikiGroup group, Connection conn) throws SQLException {
 		PreparedStatement stmt = null;
 		try {
-			stmt = conn.prepareStatement(STATEMENT_UPDATE_GROUP);
+			stmt = this.prepareStatement(conn, STATEMENT_UPDATE_GROUP);
 			stmt.setString(1, group.getName());
 			stmt.setString(2, group.getDescription());
 			stmt.setInt(3, group.getGroupId());
@@ -3353,7 +4042,7 @@ public class AnsiQueryHandler implements QueryHandler {
 	public void updateWikiUser(WikiUser user, Connection conn) throws SQLException {
 		PreparedStatement stmt = null;
 		try {
-			stmt = conn.prepareStatement(STATEMENT_UPDATE_WIKI_USER);
+			stmt = this.prepareStatement(conn, STATEMENT_UPDATE_WIKI_USER);
 			stmt.setString(1, user.getUsername());
 			stmt.setString(2, user.getDisplayName());
 			stmt.setTimestamp(3, user.getLastLoginDate());
@@ -98,7 +98,7 @@ public class CacheQueryHandler extends AnsiQueryHandler {
 	 *
 	 */
 	protected PreparedStatement getCategoriesStatement(Connection conn, int virtualWikiId, String virtualWikiName, Pagination pagination) throws SQLException {
-		PreparedStatement stmt = conn.prepareStatement(STATEMENT_SELECT_CATEGORIES);
+		PreparedStatement stmt = this.prepareStatement(conn, STATEMENT_SELECT_CATEGORIES);
 		stmt.setInt(1, pagination.getNumResults());
 		stmt.setInt(2, virtualWikiId);
 		stmt.setInt(3, pagination.getOffset());
@@ -134,9 +134,9 @@ public class CacheQueryHandler extends AnsiQueryHandler {
 		int index = 1;
 		PreparedStatement stmt = null;
 		if (logType == -1) {
-			stmt = conn.prepareStatement(STATEMENT_SELECT_LOG_ITEMS);
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_LOG_ITEMS);
 		} else {
-			stmt = conn.prepareStatement(STATEMENT_SELECT_LOG_ITEMS_BY_TYPE);
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_LOG_ITEMS_BY_TYPE);
 			stmt.setInt(index++, logType);
 		}
 		stmt.setInt(index++, pagination.getNumResults());
@@ -171,7 +171,7 @@ public class CacheQueryHandler extends AnsiQueryHandler {
 	 *
 	 */
 	protected PreparedStatement getRecentChangesStatement(Connection conn, String virtualWiki, Pagination pagination, boolean descending) throws SQLException {
-		PreparedStatement stmt = conn.prepareStatement(STATEMENT_SELECT_RECENT_CHANGES);
+		PreparedStatement stmt = this.prepareStatement(conn, STATEMENT_SELECT_RECENT_CHANGES);
 		stmt.setInt(1, pagination.getNumResults());
 		stmt.setString(2, virtualWiki);
 		stmt.setInt(3, pagination.getOffset());
@@ -210,7 +210,7 @@ public class CacheQueryHandler extends AnsiQueryHandler {
 			params[0] = "not";
 		}
 		String sql = this.formatStatement(STATEMENT_SELECT_TOPIC_HISTORY, params);
-		PreparedStatement stmt = conn.prepareStatement(sql);
+		PreparedStatement stmt = this.prepareStatement(conn, sql);
 		stmt.setInt(1, pagination.getNumResults());
 		stmt.setInt(2, topicId);
 		stmt.setInt(3, pagination.getOffset());
@@ -242,7 +242,7 @@ public class CacheQueryHandler extends AnsiQueryHandler {
 	 *
 	 */
 	protected PreparedStatement getTopicsAdminStatement(Connection conn, int virtualWikiId, Pagination pagination) throws SQLException {
-		PreparedStatement stmt = conn.prepareStatement(STATEMENT_SELECT_TOPICS_ADMIN);
+		PreparedStatement stmt = this.prepareStatement(conn, STATEMENT_SELECT_TOPICS_ADMIN);
 		stmt.setInt(1, pagination.getNumResults());
 		stmt.setInt(2, virtualWikiId);
 		stmt.setInt(3, pagination.getOffset());
@@ -275,7 +275,7 @@ public class CacheQueryHandler extends AnsiQueryHandler {
 	 *
 	 */
 	protected PreparedStatement getUserContributionsByLoginStatement(Connection conn, String virtualWiki, String login, Pagination pagination, boolean descending) throws SQLException {
-		PreparedStatement stmt = conn.prepareStatement(STATEMENT_SELECT_WIKI_USER_CHANGES_LOGIN);
+		PreparedStatement stmt = this.prepareStatement(conn, STATEMENT_SELECT_WIKI_USER_CHANGES_LOGIN);
 		stmt.setInt(1, pagination.getNumResults());
 		stmt.setString(2, virtualWiki);
 		stmt.setString(3, login);
@@ -309,7 +309,7 @@ public class CacheQueryHandler extends AnsiQueryHandler {
 	 *
 	 */
 	protected PreparedStatement getUserContributionsByUserDisplayStatement(Connection conn, String virtualWiki, String userDisplay, Pagination pagination, boolean descending) throws SQLException {
-		PreparedStatement stmt = conn.prepareStatement(STATEMENT_SELECT_WIKI_USER_CHANGES_ANONYMOUS);
+		PreparedStatement stmt = this.prepareStatement(conn, STATEMENT_SELECT_WIKI_USER_CHANGES_ANONYMOUS);
 		stmt.setInt(1, pagination.getNumResults());
 		stmt.setString(2, virtualWiki);
 		stmt.setString(3, userDisplay);
@@ -326,7 +326,7 @@ public class CacheQueryHandler extends AnsiQueryHandler {
 		ResultSet rs = null;
 		try {
 			conn = DatabaseConnection.getConnection();
-			stmt = conn.prepareStatement(STATEMENT_SELECT_WATCHLIST);
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_WATCHLIST);
 			stmt.setInt(1, virtualWikiId);
 			stmt.setInt(2, userId);
 			rs = stmt.executeQuery();
@@ -365,7 +365,7 @@ public class CacheQueryHandler extends AnsiQueryHandler {
 	 *
 	 */
 	protected PreparedStatement getWatchlistStatement(Connection conn, int virtualWikiId, int userId, Pagination pagination) throws SQLException {
-		PreparedStatement stmt = conn.prepareStatement(STATEMENT_SELECT_WATCHLIST_CHANGES);
+		PreparedStatement stmt = this.prepareStatement(conn, STATEMENT_SELECT_WATCHLIST_CHANGES);
 		stmt.setInt(1, pagination.getNumResults());
 		stmt.setInt(2, virtualWikiId);
 		stmt.setInt(3, userId);
@@ -398,7 +398,7 @@ public class CacheQueryHandler extends AnsiQueryHandler {
 	 *
 	 */
 	protected PreparedStatement lookupTopicByTypeStatement(Connection conn, int virtualWikiId, TopicType topicType1, TopicType topicType2, int namespaceStart, int namespaceEnd, Pagination pagination) throws SQLException {
-		PreparedStatement stmt = conn.prepareStatement(STATEMENT_SELECT_TOPIC_BY_TYPE);
+		PreparedStatement stmt = this.prepareStatement(conn, STATEMENT_SELECT_TOPIC_BY_TYPE);
 		stmt.setInt(1, pagination.getNumResults());
 		stmt.setInt(2, virtualWikiId);
 		stmt.setInt(3, topicType1.id());
@@ -419,12 +419,12 @@ public class CacheQueryHandler extends AnsiQueryHandler {
 		try {
 			int index = 1;
 			if (!this.autoIncrementPrimaryKeys()) {
-				stmt = conn.prepareStatement(STATEMENT_INSERT_TOPIC_VERSION);
+				stmt = this.prepareStatement(conn, STATEMENT_INSERT_TOPIC_VERSION);
 				int topicVersionId = this.nextTopicVersionId(conn);
 				topicVersion.setTopicVersionId(topicVersionId);
 				stmt.setInt(index++, topicVersion.getTopicVersionId());
 			} else {
-				stmt = conn.prepareStatement(STATEMENT_INSERT_TOPIC_VERSION_AUTO_INCREMENT, Statement.RETURN_GENERATED_KEYS);
+				stmt = this.prepareStatement(conn, STATEMENT_INSERT_TOPIC_VERSION_AUTO_INCREMENT, Statement.RETURN_GENERATED_KEYS);
 			}
 			if (topicVersion.getEditDate() == null) {
 				Timestamp editDate = new Timestamp(System.currentTimeMillis());
@@ -465,4 +465,14 @@ public class CacheQueryHandler extends AnsiQueryHandler {
 			sr.close();
 		}
 	}
+
+	/**
+	 *
+	 */
+	protected PreparedStatement reloadRecentChangesVersionsStatement(Connection conn, int virtualWikiId, int limit) throws SQLException {
+		PreparedStatement stmt = this.prepareStatement(conn, STATEMENT_INSERT_RECENT_CHANGES_VERSIONS);
+		stmt.setInt(1, limit);
+		stmt.setInt(2, virtualWikiId);
+		return stmt;
+	}
 }
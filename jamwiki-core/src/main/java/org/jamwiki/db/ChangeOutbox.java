@@ -0,0 +1,438 @@
+/**
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE, version 2.1, dated February 1999.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the latest version of the GNU Lesser General
+ * Public License as published by the Free Software Foundation;
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program (LICENSE.txt); if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jamwiki.db;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.SerializationException;
+import org.apache.commons.lang.SerializationUtils;
+import org.jamwiki.DataAccessException;
+import org.jamwiki.Environment;
+import org.jamwiki.WikiBase;
+import org.jamwiki.model.LogItem;
+import org.jamwiki.model.RecentChange;
+import org.jamwiki.utils.WikiLogger;
+
+/**
+ * Local outbox used when {@link Environment#PROP_DB_CHANGE_OUTBOX} is enabled
+ * to write log items and recent changes outside of the transaction that
+ * creates them.  These records are derived data that can be regenerated using
+ * {@link org.jamwiki.DataHandler#reloadLogItems} and
+ * {@link org.jamwiki.DataHandler#reloadRecentChanges}, so rather than
+ * extending the lock time of every edit they are published to the outbox after
+ * the edit commits and are then written in batches by a background thread.
+ *
+ * Each entry is saved to a file in the system file directory before the
+ * transaction that creates it commits, and the file is kept until the entry
+ * has been written to the database.  Any entries remaining from a previous run
+ * of the application are written when the outbox is initialized.  Entries are
+ * written in the order that they were published, so the order of changes
+ * within each virtual wiki is preserved.  If the application stops after an
+ * entry is written but before its file is deleted the entry may be written
+ * twice; reloading the recent changes and logs will remove any duplicates.
+ *
+ * When a write fails the writer waits for an increasing interval before
+ * retrying, and entries are then retried one at a time so that a single bad
+ * entry does not block the outbox.  An entry that still cannot be written
+ * after {@link #MAX_FAILURES} attempts while the database is available is
+ * moved to a separate directory and skipped; the records that it contained
+ * can be restored by reloading the recent changes and logs.  Failures that
+ * occur while the database cannot be reached are not counted against the
+ * entry, so a database outage does not cause entries to be skipped.
+ */
+public class ChangeOutbox implements Runnable {
+
+	private static final WikiLogger logger = WikiLogger.getLogger(ChangeOutbox.class.getName());
+	/** Maximum number of entries written to the database in a single transaction. */
+	private static final int BATCH_SIZE = 100;
+	/** Name of the directory, relative to the system file directory, holding entries that could not be written. */
+	private static final String FAILED_DIR_NAME = "change-outbox-failed";
+	/** Number of consecutive failed attempts to write an entry after which the entry is skipped. */
+	private static final int MAX_FAILURES = 10;
+	/** Maximum time (in milliseconds) to wait before retrying after a failed write. */
+	private static final long MAX_RETRY_INTERVAL = 10 * 60 * 1000L;
+	/** Name of the directory, relative to the system file directory, holding outbox entries. */
+	private static final String OUTBOX_DIR_NAME = "change-outbox";
+	/** Time (in milliseconds) to wait before retrying after the first failed write. */
+	private static final long RETRY_INTERVAL = 10 * 1000L;
+	/** Entries that have been published but not yet written, in the order that they were published. */
+	private static final LinkedList<Entry> PENDING = new LinkedList<Entry>();
+	/** Lock held while entries are written to the database. */
+	private static final Object WRITE_LOCK = new Object();
+	/** Number of consecutive failed attempts to write the oldest pending entry. */
+	/** Consecutive failed writes of the oldest entry while the database was available. */
+	private static int entryFailures = 0;
+	/** Consecutive failed writes for any reason. */
+	private static int failures = 0;
+	private static boolean initialized = false;
+	private static String lastError = null;
+	private static long nextSequence = 1;
+	private static Thread thread = null;
+
+	/**
+	 *
+	 */
+	private ChangeOutbox() {
+	}
+
+	/**
+	 * Return the file used to hold an outbox entry until it has been written
+	 * to the database.
+	 */
+	private static File entryFile(long sequence) {
+		// pad the sequence so that file names sort in publication order
+		return new File(ChangeOutbox.outboxDirectory(), String.format("%019d.ser", sequence));
+	}
+
+	/**
+	 * Remove the file for an entry that was prepared but will not be
+	 * published, for example because its transaction was rolled back.
+	 */
+	static void discard(Entry entry) {
+		FileUtils.deleteQuietly(ChangeOutbox.entryFile(entry.sequence));
+	}
+
+	/**
+	 * Write all pending entries to the database, blocking until all entries
+	 * have been written.  This method should be called prior to any operation
+	 * that regenerates the log or recent changes tables.
+	 *
+	 * @throws DataAccessException Thrown if entries cannot be written to the
+	 *  database.
+	 */
+	public static void flush() throws DataAccessException {
+		while (ChangeOutbox.writeBatch()) {
+			// continue until the outbox is empty
+		}
+	}
+
+	/**
+	 * Return the number of entries that have been published but not yet
+	 * written to the database.
+	 */
+	public static synchronized int getBacklog() {
+		return PENDING.size();
+	}
+
+	/**
+	 * Return the error message from the most recent failure to write entries
+	 * to the database, or <code>null</code> if the most recent write succeeded.
+	 */
+	public static synchronized String getLastError() {
+		return lastError;
+	}
+
+	/**
+	 * Return the time that the oldest pending entry was published, or
+	 * <code>null</code> if there are no pending entries.
+	 */
+	public static synchronized Timestamp getOldestEntryDate() {
+		return (PENDING.isEmpty()) ? null : new Timestamp(PENDING.getFirst().published);
+	}
+
+	/**
+	 * Load any entries that were not written during a previous run of the
+	 * application and start the background writer.  This method is called
+	 * when the application is started, and is also called automatically when
+	 * the first entry is published.
+	 */
+	public static synchronized void initialize() {
+		if (initialized) {
+			return;
+		}
+		File directory = ChangeOutbox.outboxDirectory();
+		String[] fileNames = directory.list();
+		if (fileNames != null) {
+			Arrays.sort(fileNames);
+			for (String fileName : fileNames) {
+				File file = new File(directory, fileName);
+				try {
+					Entry entry = (Entry)SerializationUtils.deserialize(FileUtils.readFileToByteArray(file));
+					PENDING.add(entry);
+					nextSequence = Math.max(nextSequence, entry.sequence + 1);
+				} catch (IOException e) {
+					logger.warn("Failure while reading change outbox entry " + file.getPath() + ": " + e.getMessage());
+				} catch (SerializationException e) {
+					logger.warn("Discarding invalid change outbox entry " + file.getPath() + ": " + e.getMessage());
+					FileUtils.deleteQuietly(file);
+				}
+			}
+			if (!PENDING.isEmpty()) {
+				logger.info("Loaded " + PENDING.size() + " unwritten change outbox entries");
+			}
+		}
+		initialized = true;
+		thread = new Thread(new ChangeOutbox(), "ChangeOutbox");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 *
+	 */
+	private static File outboxDirectory() {
+		return new File(Environment.getValue(Environment.PROP_BASE_FILE_DIR), OUTBOX_DIR_NAME);
+	}
+
+	/**
+	 * Create an outbox entry for a log item and/or recent change and save it
+	 * to a file.  This method should be called before the transaction that
+	 * creates the records commits, and the returned entry should then be
+	 * passed to {@link #publish} once the transaction has committed or to
+	 * {@link #discard} if it is rolled back.  If the entry cannot be saved to
+	 * a file it can still be published, but will be lost if the application
+	 * stops before it is written.
+	 *
+	 * @param logItem The log item to write, or <code>null</code> if there is
+	 *  no log item.
+	 * @param recentChange The recent change to write, or <code>null</code> if
+	 *  there is no recent change.
+	 * @return The new outbox entry.
+	 */
+	static synchronized Entry prepare(LogItem logItem, RecentChange recentChange) {
+		ChangeOutbox.initialize();
+		Entry entry = new Entry(nextSequence++, logItem, recentChange);
+		File file = ChangeOutbox.entryFile(entry.sequence);
+		try {
+			FileUtils.writeByteArrayToFile(file, SerializationUtils.serialize(entry));
+		} catch (IOException e) {
+			logger.warn("Failure while writing change outbox entry " + file.getPath() + ": " + e.getMessage());
+		}
+		return entry;
+	}
+
+	/**
+	 * Queue an entry created by {@link #prepare} for writing to the database.
+	 * This method should be called after the transaction that created the
+	 * records has committed.
+	 */
+	static synchronized void publish(Entry entry) {
+		ChangeOutbox.initialize();
+		PENDING.add(entry);
+		ChangeOutbox.class.notifyAll();
+	}
+
+	/**
+	 * Determine whether a connection to the database can currently be made,
+	 * so that a failure caused by a database outage is not attributed to the
+	 * entry that was being written.
+	 */
+	private static boolean isDatabaseAvailable() {
+		Connection conn = null;
+		Statement stmt = null;
+		try {
+			conn = DatabaseConnection.getConnection();
+			String validationQuery = WikiDatabase.getConnectionValidationQuery();
+			if (validationQuery != null) {
+				stmt = conn.createStatement();
+				stmt.executeQuery(validationQuery);
+			}
+			return true;
+		} catch (SQLException e) {
+			return false;
+		} finally {
+			DatabaseConnection.closeConnection(conn, stmt);
+		}
+	}
+
+	/**
+	 * Record a failed attempt to write the oldest pending entries.  Once the
+	 * oldest entry has failed {@link #MAX_FAILURES} times while the database
+	 * was available it is moved out of the outbox directory so that the
+	 * remaining entries can be written.
+	 *
+	 * @param entry The oldest entry in the failed write.
+	 * @param message The error message for the failure.
+	 * @param databaseAvailable Set to <code>true</code> if the database could
+	 *  be reached after the failure, in which case the failure is counted
+	 *  against the entry.
+	 */
+	private static synchronized void recordFailure(Entry entry, String message, boolean databaseAvailable) {
+		lastError = message;
+		failures++;
+		if (!databaseAvailable) {
+			return;
+		}
+		entryFailures++;
+		if (entryFailures < MAX_FAILURES || PENDING.isEmpty() || PENDING.getFirst() != entry) {
+			return;
+		}
+		PENDING.removeFirst();
+		entryFailures = 0;
+		File file = ChangeOutbox.entryFile(entry.sequence);
+		File failedFile = new File(new File(Environment.getValue(Environment.PROP_BASE_FILE_DIR), FAILED_DIR_NAME), file.getName());
+		logger.error("Unable to write change outbox entry after " + MAX_FAILURES + " attempts, moving it to " + failedFile.getPath() + ".  Reload the recent changes and logs to restore its records.");
+		try {
+			FileUtils.moveFile(file, failedFile);
+		} catch (IOException e) {
+			logger.warn("Failure while moving change outbox entry " + file.getPath() + ": " + e.getMessage());
+			FileUtils.deleteQuietly(file);
+		}
+	}
+
+	/**
+	 * Return the time (in milliseconds) to wait before retrying a failed
+	 * write, doubling with each consecutive failure.
+	 */
+	private static synchronized long retryInterval() {
+		long interval = RETRY_INTERVAL << Math.min(Math.max(failures - 1, 0), 10);
+		return Math.min(interval, MAX_RETRY_INTERVAL);
+	}
+
+	/**
+	 * Write pending entries until the outbox is shut down.  This method is
+	 * invoked in a background thread by {@link #initialize}.
+	 */
+	public void run() {
+		while (true) {
+			synchronized (ChangeOutbox.class) {
+				while (initialized && PENDING.isEmpty()) {
+					try {
+						ChangeOutbox.class.wait();
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				if (!initialized) {
+					return;
+				}
+			}
+			try {
+				ChangeOutbox.writeBatch();
+				continue;
+			} catch (DataAccessException e) {
+				logger.warn("Failure while writing change outbox entries, will retry: " + e.getMessage());
+			} catch (RuntimeException e) {
+				// do not allow an unexpected error to stop the writer thread
+				logger.error("Unexpected failure while writing change outbox entries", e);
+			}
+			try {
+				Thread.sleep(ChangeOutbox.retryInterval());
+			} catch (InterruptedException e) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Stop the background writer.  Any pending entries remain in the outbox
+	 * directory and will be written when the outbox is next initialized.
+	 * This method should be called when the application is shut down.
+	 */
+	public static synchronized void shutdown() {
+		if (thread != null) {
+			thread.interrupt();
+			thread = null;
+		}
+		initialized = false;
+		entryFailures = 0;
+		failures = 0;
+		PENDING.clear();
+		ChangeOutbox.class.notifyAll();
+	}
+
+	/**
+	 * Write the oldest pending entries to the database in a single
+	 * transaction, removing them from the outbox once the transaction has
+	 * committed.  After a failed write only the oldest entry is written until
+	 * a write succeeds.
+	 *
+	 * @return <code>true</code> if any entries were written, <code>false</code>
+	 *  if the outbox is empty.
+	 * @throws DataAccessException Thrown if the entries cannot be written, in
+	 *  which case they remain in the outbox.
+	 */
+	private static boolean writeBatch() throws DataAccessException {
+		synchronized (WRITE_LOCK) {
+			List<Entry> batch = new ArrayList<Entry>();
+			synchronized (ChangeOutbox.class) {
+				int batchSize = (failures > 0) ? 1 : BATCH_SIZE;
+				for (Entry entry : PENDING) {
+					if (batch.size() >= batchSize) {
+						break;
+					}
+					batch.add(entry);
+				}
+			}
+			if (batch.isEmpty()) {
+				return false;
+			}
+			List<LogItem> logItems = new ArrayList<LogItem>();
+			List<RecentChange> recentChanges = new ArrayList<RecentChange>();
+			for (Entry entry : batch) {
+				if (entry.logItem != null) {
+					logItems.add(entry.logItem);
+				}
+				if (entry.recentChange != null) {
+					recentChanges.add(entry.recentChange);
+				}
+			}
+			try {
+				((AnsiDataHandler)WikiBase.getDataHandler()).writeChanges(logItems, recentChanges);
+			} catch (DataAccessException e) {
+				ChangeOutbox.recordFailure(batch.get(0), e.getMessage(), ChangeOutbox.isDatabaseAvailable());
+				throw e;
+			} catch (RuntimeException e) {
+				ChangeOutbox.recordFailure(batch.get(0), e.toString(), ChangeOutbox.isDatabaseAvailable());
+				throw e;
+			}
+			synchronized (ChangeOutbox.class) {
+				lastError = null;
+				entryFailures = 0;
+				failures = 0;
+				for (Entry entry : batch) {
+					// the outbox may have been cleared by a shutdown during the write
+					if (!PENDING.isEmpty() && PENDING.getFirst() == entry) {
+						PENDING.removeFirst();
+					}
+					FileUtils.deleteQuietly(ChangeOutbox.entryFile(entry.sequence));
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * A log item and/or recent change created by a single operation.
+	 */
+	static class Entry implements Serializable {
+
+		private final LogItem logItem;
+		private final long published = System.currentTimeMillis();
+		private final RecentChange recentChange;
+		private final long sequence;
+
+		/**
+		 *
+		 */
+		private Entry(long sequence, LogItem logItem, RecentChange recentChange) {
+			this.sequence = sequence;
+			this.logItem = logItem;
+			this.recentChange = recentChange;
+		}
+	}
+}
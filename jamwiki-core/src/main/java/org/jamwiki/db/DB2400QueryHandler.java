@@ -81,7 +81,7 @@ public class DB2400QueryHandler extends AnsiQueryHandler {
 	 */
 	protected PreparedStatement getCategoriesStatement(Connection conn, int virtualWikiId, String virtualWikiName, Pagination pagination) throws SQLException {
 		String sql = this.formatStatement(STATEMENT_SELECT_CATEGORIES, pagination);
-		PreparedStatement stmt = conn.prepareStatement(sql);
+		PreparedStatement stmt = this.prepareStatement(conn, sql);
 		stmt.setInt(1, virtualWikiId);
 		return stmt;
 	}
@@ -95,10 +95,10 @@ public class DB2400QueryHandler extends AnsiQueryHandler {
 		String sql = null;
 		if (logType == -1) {
 			sql = this.formatStatement(STATEMENT_SELECT_LOG_ITEMS, pagination);
-			stmt = conn.prepareStatement(sql);
+			stmt = this.prepareStatement(conn, sql);
 		} else {
 			sql = this.formatStatement(STATEMENT_SELECT_LOG_ITEMS_BY_TYPE, pagination);
-			stmt = conn.prepareStatement(sql);
+			stmt = this.prepareStatement(conn, sql);
 			stmt.setInt(index++, logType);
 		}
 		stmt.setInt(index++, virtualWikiId);
@@ -110,7 +110,7 @@ public class DB2400QueryHandler extends AnsiQueryHandler {
 	 */
 	protected PreparedStatement getRecentChangesStatement(Connection conn, String virtualWiki, Pagination pagination, boolean descending) throws SQLException {
 		String sql = this.formatStatement(STATEMENT_SELECT_RECENT_CHANGES, pagination);
-		PreparedStatement stmt = conn.prepareStatement(sql);
+		PreparedStatement stmt = this.prepareStatement(conn, sql);
 		stmt.setString(1, virtualWiki);
 		return stmt;
 	}
@@ -124,7 +124,7 @@ public class DB2400QueryHandler extends AnsiQueryHandler {
 			params[2] = "not";
 		}
 		String sql = this.formatStatement(STATEMENT_SELECT_TOPIC_HISTORY, params);
-		PreparedStatement stmt = conn.prepareStatement(sql);
+		PreparedStatement stmt = this.prepareStatement(conn, sql);
 		stmt.setInt(1, topicId);
 		return stmt;
 	}
@@ -134,7 +134,7 @@ public class DB2400QueryHandler extends AnsiQueryHandler {
 	 */
 	protected PreparedStatement getTopicsAdminStatement(Connection conn, int virtualWikiId, Pagination pagination) throws SQLException {
 		String sql = this.formatStatement(STATEMENT_SELECT_TOPICS_ADMIN, pagination);
-		PreparedStatement stmt = conn.prepareStatement(sql);
+		PreparedStatement stmt = this.prepareStatement(conn, sql);
 		stmt.setInt(1, virtualWikiId);
 		return stmt;
 	}
@@ -144,7 +144,7 @@ public class DB2400QueryHandler extends AnsiQueryHandler {
 	 */
 	protected PreparedStatement getUserContributionsByLoginStatement(Connection conn, String virtualWiki, String login, Pagination pagination, boolean descending) throws SQLException {
 		String sql = this.formatStatement(STATEMENT_SELECT_WIKI_USER_CHANGES_LOGIN, pagination);
-		PreparedStatement stmt = conn.prepareStatement(sql);
+		PreparedStatement stmt = this.prepareStatement(conn, sql);
 		stmt.setString(1, virtualWiki);
 		stmt.setString(2, login);
 		return stmt;
@@ -155,7 +155,7 @@ public class DB2400QueryHandler extends AnsiQueryHandler {
 	 */
 	protected PreparedStatement getUserContributionsByUserDisplayStatement(Connection conn, String virtualWiki, String userDisplay, Pagination pagination, boolean descending) throws SQLException {
 		String sql = this.formatStatement(STATEMENT_SELECT_WIKI_USER_CHANGES_ANONYMOUS, pagination);
-		PreparedStatement stmt = conn.prepareStatement(sql);
+		PreparedStatement stmt = this.prepareStatement(conn, sql);
 		stmt.setString(1, virtualWiki);
 		stmt.setString(2, userDisplay);
 		return stmt;
@@ -166,7 +166,7 @@ public class DB2400QueryHandler extends AnsiQueryHandler {
 	 */
 	protected PreparedStatement getWatchlistStatement(Connection conn, int virtualWikiId, int userId, Pagination pagination) throws SQLException {
 		String sql = this.formatStatement(STATEMENT_SELECT_WATCHLIST_CHANGES, pagination);
-		PreparedStatement stmt = conn.prepareStatement(sql);
+		PreparedStatement stmt = this.prepareStatement(conn, sql);
 		stmt.setInt(1, virtualWikiId);
 		stmt.setInt(2, userId);
 		return stmt;
@@ -177,7 +177,7 @@ public class DB2400QueryHandler extends AnsiQueryHandler {
 	 */
 	protected PreparedStatement lookupTopicByTypeStatement(Connection conn, int virtualWikiId, TopicType topicType1, TopicType topicType2, int namespaceStart, int namespaceEnd, Pagination pagination) throws SQLException {
 		String sql = this.formatStatement(STATEMENT_SELECT_TOPIC_BY_TYPE, pagination);
-		PreparedStatement stmt = conn.prepareStatement(sql);
+		PreparedStatement stmt = this.prepareStatement(conn, sql);
 		stmt.setInt(1, virtualWikiId);
 		stmt.setInt(2, topicType1.id());
 		stmt.setInt(3, topicType2.id());
@@ -191,24 +191,17 @@ public class DB2400QueryHandler extends AnsiQueryHandler {
 	 */
 	protected PreparedStatement lookupWikiUsersStatement(Connection conn, Pagination pagination) throws SQLException {
 		String sql = this.formatStatement(STATEMENT_SELECT_WIKI_USERS, pagination);
-		PreparedStatement stmt = conn.prepareStatement(sql);
+		PreparedStatement stmt = this.prepareStatement(conn, sql);
 		return stmt;
 	}
 
 	/**
 	 *
 	 */
-	public void reloadRecentChanges(Connection conn, int limit) throws SQLException {
-		PreparedStatement stmt = null;
+	protected PreparedStatement reloadRecentChangesVersionsStatement(Connection conn, int virtualWikiId, int limit) throws SQLException {
 		String sql = this.formatStatement(STATEMENT_INSERT_RECENT_CHANGES_VERSIONS, limit);
-		try {
-			DatabaseConnection.executeUpdate(STATEMENT_DELETE_RECENT_CHANGES, conn);
-			stmt = conn.prepareStatement(sql);
-			stmt.setInt(1, limit);
-			stmt.executeUpdate();
-			DatabaseConnection.executeUpdate(STATEMENT_INSERT_RECENT_CHANGES_LOGS, conn);
-		} finally {
-			DatabaseConnection.closeStatement(stmt);
-		}
+		PreparedStatement stmt = this.prepareStatement(conn, sql);
+		stmt.setInt(1, virtualWikiId);
+		return stmt;
 	}
 }
@@ -48,7 +48,7 @@ public class DB2QueryHandler extends AnsiQueryHandler {
 	 *
 	 */
 	protected PreparedStatement getCategoriesStatement(Connection conn, int virtualWikiId, String virtualWikiName, Pagination pagination) throws SQLException {
-		PreparedStatement stmt = conn.prepareStatement(STATEMENT_SELECT_CATEGORIES);
+		PreparedStatement stmt = this.prepareStatement(conn, STATEMENT_SELECT_CATEGORIES);
 		stmt.setInt(1, virtualWikiId);
 		stmt.setInt(2, pagination.getStart());
 		stmt.setInt(3, pagination.getEnd());
@@ -62,9 +62,9 @@ public class DB2QueryHandler extends AnsiQueryHandler {
 		int index = 1;
 		PreparedStatement stmt = null;
 		if (logType == -1) {
-			stmt = conn.prepareStatement(STATEMENT_SELECT_LOG_ITEMS);
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_LOG_ITEMS);
 		} else {
-			stmt = conn.prepareStatement(STATEMENT_SELECT_LOG_ITEMS_BY_TYPE);
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_LOG_ITEMS_BY_TYPE);
 			stmt.setInt(index++, logType);
 		}
 		stmt.setInt(index++, virtualWikiId);
@@ -77,7 +77,7 @@ public class DB2QueryHandler extends AnsiQueryHandler {
 	 *
 	 */
 	protected PreparedStatement getRecentChangesStatement(Connection conn, String virtualWiki, Pagination pagination, boolean descending) throws SQLException {
-		PreparedStatement stmt = conn.prepareStatement(STATEMENT_SELECT_RECENT_CHANGES);
+		PreparedStatement stmt = this.prepareStatement(conn, STATEMENT_SELECT_RECENT_CHANGES);
 		stmt.setString(1, virtualWiki);
 		stmt.setInt(2, pagination.getStart());
 		stmt.setInt(3, pagination.getEnd());
@@ -94,7 +94,7 @@ public class DB2QueryHandler extends AnsiQueryHandler {
 			params[0] = "not";
 		}
 		String sql = this.formatStatement(STATEMENT_SELECT_TOPIC_HISTORY, params);
-		PreparedStatement stmt = conn.prepareStatement(sql);
+		PreparedStatement stmt = this.prepareStatement(conn, sql);
 		stmt.setInt(1, topicId);
 		stmt.setInt(2, pagination.getStart());
 		stmt.setInt(3, pagination.getEnd());
@@ -105,7 +105,7 @@ public class DB2QueryHandler extends AnsiQueryHandler {
 	 *
 	 */
 	protected PreparedStatement getTopicsAdminStatement(Connection conn, int virtualWikiId, Pagination pagination) throws SQLException {
-		PreparedStatement stmt = conn.prepareStatement(STATEMENT_SELECT_TOPICS_ADMIN);
+		PreparedStatement stmt = this.prepareStatement(conn, STATEMENT_SELECT_TOPICS_ADMIN);
 		stmt.setInt(1, virtualWikiId);
 		stmt.setInt(2, pagination.getStart());
 		stmt.setInt(3, pagination.getEnd());
@@ -116,7 +116,7 @@ public class DB2QueryHandler extends AnsiQueryHandler {
 	 *
 	 */
 	protected PreparedStatement getUserContributionsByLoginStatement(Connection conn, String virtualWiki, String login, Pagination pagination, boolean descending) throws SQLException {
-		PreparedStatement stmt = conn.prepareStatement(STATEMENT_SELECT_WIKI_USER_CHANGES_LOGIN);
+		PreparedStatement stmt = this.prepareStatement(conn, STATEMENT_SELECT_WIKI_USER_CHANGES_LOGIN);
 		stmt.setString(1, virtualWiki);
 		stmt.setString(2, login);
 		stmt.setInt(3, pagination.getStart());
@@ -128,7 +128,7 @@ public class DB2QueryHandler extends AnsiQueryHandler {
 	 *
 	 */
 	protected PreparedStatement getUserContributionsByUserDisplayStatement(Connection conn, String virtualWiki, String userDisplay, Pagination pagination, boolean descending) throws SQLException {
-		PreparedStatement stmt = conn.prepareStatement(STATEMENT_SELECT_WIKI_USER_CHANGES_ANONYMOUS);
+		PreparedStatement stmt = this.prepareStatement(conn, STATEMENT_SELECT_WIKI_USER_CHANGES_ANONYMOUS);
 		stmt.setString(1, virtualWiki);
 		stmt.setString(2, userDisplay);
 		stmt.setInt(3, pagination.getStart());
@@ -140,7 +140,7 @@ public class DB2QueryHandler extends AnsiQueryHandler {
 	 *
 	 */
 	protected PreparedStatement getWatchlistStatement(Connection conn, int virtualWikiId, int userId, Pagination pagination) throws SQLException {
-		PreparedStatement stmt = conn.prepareStatement(STATEMENT_SELECT_WATCHLIST_CHANGES);
+		PreparedStatement stmt = this.prepareStatement(conn, STATEMENT_SELECT_WATCHLIST_CHANGES);
 		stmt.setInt(1, virtualWikiId);
 		stmt.setInt(2, userId);
 		stmt.setInt(3, pagination.getStart());
@@ -152,7 +152,7 @@ public class DB2QueryHandler extends AnsiQueryHandler {
 	 *
 	 */
 	protected PreparedStatement lookupTopicByTypeStatement(Connection conn, int virtualWikiId, TopicType topicType1, TopicType topicType2, int namespaceStart, int namespaceEnd, Pagination pagination) throws SQLException {
-		PreparedStatement stmt = conn.prepareStatement(STATEMENT_SELECT_TOPIC_BY_TYPE);
+		PreparedStatement stmt = this.prepareStatement(conn, STATEMENT_SELECT_TOPIC_BY_TYPE);
 		stmt.setInt(1, virtualWikiId);
 		stmt.setInt(2, topicType1.id());
 		stmt.setInt(3, topicType2.id());
@@ -167,7 +167,7 @@ public class DB2QueryHandler extends AnsiQueryHandler {
 	 *
 	 */
 	protected PreparedStatement lookupWikiUsersStatement(Connection conn, Pagination pagination) throws SQLException {
-		PreparedStatement stmt = conn.prepareStatement(STATEMENT_SELECT_WIKI_USERS);
+		PreparedStatement stmt = this.prepareStatement(conn, STATEMENT_SELECT_WIKI_USERS);
 		stmt.setInt(1, pagination.getStart());
 		stmt.setInt(2, pagination.getEnd());
 		return stmt;
@@ -0,0 +1,141 @@
+/**
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE, version 2.1, dated February 1999.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the latest version of the GNU Lesser General
+ * Public License as published by the Free Software Foundation;
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program (LICENSE.txt); if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jamwiki.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.naming.Context;
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.sql.DataSource;
+import org.apache.commons.dbcp.BasicDataSource;
+import org.jamwiki.utils.WikiLogger;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+/**
+ * A database that connections may be routed to, either the primary database
+ * or a read-only replica, along with statistics about the use of its
+ * connection pool.
+ */
+public class DataSourceRoute {
+
+	private static final WikiLogger logger = WikiLogger.getLogger(DataSourceRoute.class.getName());
+	private final AtomicLong connectionsRequested = new AtomicLong();
+	private final DataSource dataSource;
+	private final String name;
+	private final DataSource targetDataSource;
+
+	/**
+	 * Create a route for a JDBC URL or JNDI DataSource name.
+	 *
+	 * @param name A name identifying the route, such as "primary".
+	 * @param url A JDBC URL, in which case a connection pool is created using
+	 *  the JAMWiki connection pool settings, or the name of a container
+	 *  DataSource to obtain via JNDI.
+	 * @throws SQLException Thrown if the DataSource cannot be configured.
+	 */
+	DataSourceRoute(String name, String url) throws SQLException {
+		this.name = name;
+		if (url.startsWith("jdbc:")) {
+			try {
+				// Use an internal "LocalDataSource" configured from the Environment
+				this.targetDataSource = new LocalDataSource(url);
+			} catch (ClassNotFoundException e) {
+				logger.error("Failure while configuring local data source", e);
+				throw new SQLException("Failure while configuring local data source: " + e.toString());
+			}
+		} else {
+			try {
+				// Use a container DataSource obtained via JNDI lookup
+				Context ctx = new InitialContext();
+				this.targetDataSource = (DataSource)ctx.lookup(url);
+			} catch (NamingException e) {
+				logger.error("Failure while configuring JNDI data source with URL: " + url, e);
+				throw new SQLException("Unable to configure JNDI data source with URL " + url + ": " + e.toString());
+			}
+		}
+		this.dataSource = new LazyConnectionDataSourceProxy(this.targetDataSource);
+	}
+
+	/**
+	 * Close the connection pool if it was created by JAMWiki.  Container
+	 * DataSources obtained via JNDI are not closed.
+	 */
+	void close() throws SQLException {
+		if (this.targetDataSource instanceof BasicDataSource) {
+			// required to release any connections e.g. in case of servlet shutdown
+			((BasicDataSource)this.targetDataSource).close();
+		}
+	}
+
+	/**
+	 * Retrieve a connection from this route, participating in any transaction
+	 * bound to the current thread.
+	 */
+	Connection getConnection() throws SQLException {
+		this.connectionsRequested.incrementAndGet();
+		return DataSourceUtils.getConnection(this.dataSource);
+	}
+
+	/**
+	 * Return the total number of connections that have been requested from
+	 * this route.
+	 */
+	public long getConnectionsRequested() {
+		return this.connectionsRequested.get();
+	}
+
+	/**
+	 * Return the DataSource that connections are retrieved from.
+	 */
+	DataSource getDataSource() {
+		return this.dataSource;
+	}
+
+	/**
+	 * Return the name identifying this route.
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Return the number of connections currently borrowed from the connection
+	 * pool, or -1 if the pool was not created by JAMWiki.
+	 */
+	public int getNumActive() {
+		return (this.targetDataSource instanceof BasicDataSource) ? ((BasicDataSource)this.targetDataSource).getNumActive() : -1;
+	}
+
+	/**
+	 * Return the number of idle connections in the connection pool, or -1 if
+	 * the pool was not created by JAMWiki.
+	 */
+	public int getNumIdle() {
+		return (this.targetDataSource instanceof BasicDataSource) ? ((BasicDataSource)this.targetDataSource).getNumIdle() : -1;
+	}
+
+	/**
+	 * Return the DataSource wrapped by this route, which is used for
+	 * transaction management.
+	 */
+	DataSource getTargetDataSource() {
+		return this.targetDataSource;
+	}
+}
@@ -21,35 +21,55 @@ import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.naming.Context;
 import javax.naming.InitialContext;
 import javax.naming.NamingException;
 import javax.sql.DataSource;
-import org.apache.commons.dbcp.BasicDataSource;
 import org.apache.commons.lang.StringUtils;
 import org.jamwiki.Environment;
 import org.jamwiki.utils.Utilities;
 import org.jamwiki.utils.WikiLogger;
 import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.jdbc.datasource.DataSourceUtils;
-import org.springframework.jdbc.datasource.DelegatingDataSource;
-import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
 import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.TransactionException;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.TransactionSystemException;
 import org.springframework.transaction.support.DefaultTransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
  * This class provides methods for retrieving database connections, executing queries,
  * and setting up connection pools.
+ * <p>
+ * If {@link Environment#PROP_DB_REPLICA_URLS} specifies one or more read-only
+ * replicas of the primary database then connections retrieved using
+ * {@link #getReadConnection} are distributed between the replicas.  Reads
+ * made within a transaction, and reads made by a session that committed a
+ * transaction within the last {@link Environment#PROP_DB_REPLICA_PRIMARY_WINDOW}
+ * seconds, use the primary database so that they always see the session's
+ * own changes.
  */
 public class DatabaseConnection {
 
 	private static final WikiLogger logger = WikiLogger.getLogger(DatabaseConnection.class.getName());
 	/** Any queries that take longer than this value (specified in milliseconds) will print a warning to the log. */
 	protected static final int SLOW_QUERY_LIMIT = 250;
-	private static DataSource dataSource = null;
+	/** Maximum number of routing sessions tracked before expired sessions are removed. */
+	private static final int MAX_ROUTING_SESSIONS = 1000;
+	/** Time (in milliseconds) of the most recent commit for each routing session. */
+	private static final ConcurrentMap<String, Long> lastCommits = new ConcurrentHashMap<String, Long>();
+	private static DataSourceRoute primary = null;
+	private static List<DataSourceRoute> replicas = Collections.emptyList();
+	private static final AtomicInteger replicaIndex = new AtomicInteger();
+	private static final ThreadLocal<String> routingSession = new ThreadLocal<String>();
 	private static DataSourceTransactionManager transactionManager = null;
 
 	/**
@@ -110,7 +130,8 @@ public class DatabaseConnection {
 		if (conn == null) {
 			return;
 		}
-		DataSourceUtils.releaseConnection(conn, dataSource);
+		// replica connections are never bound to a transaction and are simply closed
+		DataSourceUtils.releaseConnection(conn, (primary != null) ? primary.getDataSource() : null);
 	}
 
 	/**
@@ -122,21 +143,18 @@ public class DatabaseConnection {
 	 */
 	protected static void closeConnectionPool() throws SQLException {
 		try {
-			DataSource testDataSource = dataSource;
-			while (testDataSource instanceof DelegatingDataSource) {
-				testDataSource = ((DelegatingDataSource) testDataSource).getTargetDataSource();
-			}
-			if (testDataSource instanceof BasicDataSource) {
-				// required to release any connections e.g. in case of servlet shutdown
-				((BasicDataSource) testDataSource).close();
+			for (DataSourceRoute route : DatabaseConnection.getDataSourceRoutes()) {
+				route.close();
 			}
 		} catch (SQLException e) {
 			logger.error("Unable to close connection pool", e);
 			throw e;
 		}
 		// clear references to prevent them being reused (& allow garbage collection)
-		dataSource = null;
+		primary = null;
+		replicas = Collections.emptyList();
 		transactionManager = null;
+		lastCommits.clear();
 	}
 
 	/**
@@ -221,43 +239,152 @@ public class DatabaseConnection {
 	 *
 	 */
 	protected static Connection getConnection() throws SQLException {
-		if (dataSource == null) {
+		if (primary == null) {
+			// DataSource has not yet been created, obtain it now
+			configDataSource();
+		}
+		return primary.getConnection();
+	}
+
+	/**
+	 * Return the routes that database connections may be retrieved from.  The
+	 * first route is always the primary database, followed by any read-only
+	 * replicas.  An empty list is returned if no connections have yet been
+	 * requested.
+	 */
+	public static List<DataSourceRoute> getDataSourceRoutes() {
+		List<DataSourceRoute> routes = new ArrayList<DataSourceRoute>();
+		DataSourceRoute primaryRoute = primary;
+		if (primaryRoute != null) {
+			routes.add(primaryRoute);
+			routes.addAll(replicas);
+		}
+		return routes;
+	}
+
+	/**
+	 * Retrieve a connection for executing read-only queries.  If read-only
+	 * replicas have been configured then the connection is retrieved from one
+	 * of the replicas unless a transaction is active or the current routing
+	 * session recently committed a transaction, in which case the primary
+	 * database is used.  Connections retrieved using this method must not be
+	 * used for updates, and must be closed in the same way as connections
+	 * retrieved using {@link #getConnection}.  Lookups that the parser can
+	 * reach (such as files, topics and counts used by magic words) must not
+	 * use this method, since parsed output is cached and a lagging replica
+	 * would leave stale links cached until the topic is next edited.
+	 */
+	protected static Connection getReadConnection() throws SQLException {
+		if (primary == null) {
 			// DataSource has not yet been created, obtain it now
 			configDataSource();
 		}
-		return DataSourceUtils.getConnection(dataSource);
+		return DatabaseConnection.readRoute().getConnection();
+	}
+
+	/**
+	 * Determine whether the current routing session committed a transaction
+	 * recently enough that replicas may not yet contain the changes.
+	 */
+	private static boolean isPinnedToPrimary() {
+		Long lastCommit = lastCommits.get(DatabaseConnection.routingSessionKey());
+		return (lastCommit != null && (System.currentTimeMillis() - lastCommit) < DatabaseConnection.primaryWindow());
+	}
+
+	/**
+	 * Return the time (in milliseconds) following a commit during which reads
+	 * by the same routing session use the primary database.
+	 */
+	private static long primaryWindow() {
+		return Math.max(Environment.getIntValue(Environment.PROP_DB_REPLICA_PRIMARY_WINDOW), 0) * 1000L;
+	}
+
+	/**
+	 * Choose the route to use for a read-only query.
+	 */
+	private static DataSourceRoute readRoute() {
+		List<DataSourceRoute> replicaRoutes = replicas;
+		if (replicaRoutes.isEmpty() || TransactionSynchronizationManager.isActualTransactionActive() || DatabaseConnection.isPinnedToPrimary()) {
+			return primary;
+		}
+		int index = (replicaIndex.getAndIncrement() & Integer.MAX_VALUE) % replicaRoutes.size();
+		return replicaRoutes.get(index);
+	}
+
+	/**
+	 * Record a commit by the current routing session so that subsequent reads
+	 * by the session use the primary database.
+	 */
+	private static void recordCommit() {
+		if (replicas.isEmpty()) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		if (lastCommits.size() >= MAX_ROUTING_SESSIONS) {
+			long window = DatabaseConnection.primaryWindow();
+			for (Iterator<Long> iterator = lastCommits.values().iterator(); iterator.hasNext();) {
+				if ((now - iterator.next()) >= window) {
+					iterator.remove();
+				}
+			}
+		}
+		lastCommits.put(DatabaseConnection.routingSessionKey(), now);
+	}
+
+	/**
+	 * Return the key identifying the routing session of the current thread.
+	 * Threads that are not associated with a routing session are tracked
+	 * individually.
+	 */
+	private static String routingSessionKey() {
+		String key = routingSession.get();
+		return (key != null) ? key : "thread-" + Thread.currentThread().getId();
+	}
+
+	/**
+	 * Associate the current thread with a routing session, such as an HTTP
+	 * session id, so that reads made by any request of the session use the
+	 * primary database for a short time after the session commits a
+	 * transaction.  This method should be called at the start of each request
+	 * and called with a <code>null</code> value once the request completes.
+	 *
+	 * @param key A value identifying the session, or <code>null</code> to
+	 *  remove any association with the current thread.
+	 */
+	public static void setRoutingSession(String key) {
+		if (key == null) {
+			routingSession.remove();
+		} else {
+			routingSession.set(key);
+		}
 	}
 
 	/**
 	 * Static method that will configure a DataSource based on the Environment setup.
 	 */
 	private synchronized static void configDataSource() throws SQLException {
-		if (dataSource != null) {
+		if (primary != null) {
 			closeConnectionPool(); // DataSource has already been created so remove it
 		}
-		String url = Environment.getValue(Environment.PROP_DB_URL);
-		DataSource targetDataSource = null;
-		if (url.startsWith("jdbc:")) {
-			try {
-				// Use an internal "LocalDataSource" configured from the Environment
-				targetDataSource = new LocalDataSource();
-			} catch (ClassNotFoundException e) {
-				logger.error("Failure while configuring local data source", e);
-				throw new SQLException("Failure while configuring local data source: " + e.toString());
+		// TODO: Should try prefix java:comp/env/ for JNDI names if not already part of the name?
+		DataSourceRoute primaryRoute = new DataSourceRoute("primary", Environment.getValue(Environment.PROP_DB_URL));
+		List<DataSourceRoute> replicaRoutes = new ArrayList<DataSourceRoute>();
+		String[] replicaUrls = StringUtils.split(Environment.getValue(Environment.PROP_DB_REPLICA_URLS), ',');
+		for (int i = 0; i < replicaUrls.length; i++) {
+			String replicaUrl = replicaUrls[i].trim();
+			if (replicaUrl.length() == 0) {
+				continue;
 			}
-		} else {
 			try {
-				// Use a container DataSource obtained via JNDI lookup
-				// TODO: Should try prefix java:comp/env/ if not already part of the JNDI name?
-				Context ctx = new InitialContext();
-				targetDataSource = (DataSource)ctx.lookup(url);
-			} catch (NamingException e) {
-				logger.error("Failure while configuring JNDI data source with URL: " + url, e);
-				throw new SQLException("Unable to configure JNDI data source with URL " + url + ": " + e.toString());
+				replicaRoutes.add(new DataSourceRoute("replica-" + (i + 1), replicaUrl));
+			} catch (SQLException e) {
+				// an unavailable replica should not prevent use of the primary database
+				logger.error("Unable to configure replica data source " + replicaUrl + ", reads will not be routed to this replica", e);
 			}
 		}
-		dataSource = new LazyConnectionDataSourceProxy(targetDataSource);
-		transactionManager = new DataSourceTransactionManager(targetDataSource);
+		transactionManager = new DataSourceTransactionManager(primaryRoute.getTargetDataSource());
+		replicas = Collections.unmodifiableList(replicaRoutes);
+		primary = primaryRoute;
 	}
 
 	/**
@@ -338,7 +465,7 @@ public class DatabaseConnection {
 	 * @throws SQLException
 	 */
 	protected static TransactionStatus startTransaction(TransactionDefinition definition) throws SQLException {
-		if (transactionManager == null || dataSource == null) {
+		if (transactionManager == null || primary == null) {
 			configDataSource(); // this will create both the DataSource and a TransactionManager
 		}
 		return transactionManager.getTransaction(definition);
@@ -384,5 +511,6 @@ public class DatabaseConnection {
 			return;
 		}
 		transactionManager.commit(status);
+		DatabaseConnection.recordCommit();
 	}
 }
\ No newline at end of file
@@ -218,4 +218,81 @@ public class DatabaseUpgrades {
 			DatabaseConnection.commit(status);
 		}
 	}
+
+	/**
+	 *
+	 */
+	public static void upgrade116(List<WikiMessage> messages) throws WikiException {
+		TransactionStatus status = null;
+		try {
+			status = DatabaseConnection.startTransaction(getTransactionDefinition());
+			Connection conn = DatabaseConnection.getConnection();
+			// add the jam_cache_event table
+			WikiBase.getDataHandler().executeUpgradeUpdate("STATEMENT_CREATE_CACHE_EVENT_TABLE", conn);
+			WikiBase.getDataHandler().executeUpgradeUpdate("STATEMENT_CREATE_CACHE_EVENT_INDEX", conn);
+			messages.add(new WikiMessage("upgrade.message.db.table.added", "jam_cache_event"));
+			// add the jam_statistics table, which is populated once the schema changes are complete
+			WikiBase.getDataHandler().executeUpgradeUpdate("STATEMENT_CREATE_STATISTICS_TABLE", conn);
+			messages.add(new WikiMessage("upgrade.message.db.table.added", "jam_statistics"));
+			// add and populate the category_name_lower column, which is required for category lookups
+			WikiBase.getDataHandler().executeUpgradeUpdate("UPGRADE_116_ADD_CATEGORY_NAME_LOWER", conn);
+			WikiBase.getDataHandler().executeUpgradeUpdate("UPGRADE_116_UPDATE_CATEGORY_NAME_LOWER", conn);
+			WikiBase.getDataHandler().executeUpgradeUpdate("UPGRADE_116_ADD_CATEGORY_NAME_LOWER_NOT_NULL_CONSTRAINT", conn);
+			messages.add(new WikiMessage("upgrade.message.db.column.added", "category_name_lower", "jam_category"));
+			// add and populate the jam_watchlist topic_id and change_date columns, which are required for watchlist lookups
+			WikiBase.getDataHandler().executeUpgradeUpdate("UPGRADE_116_ADD_WATCHLIST_TOPIC_ID", conn);
+			WikiBase.getDataHandler().executeUpgradeUpdate("UPGRADE_116_ADD_WATCHLIST_CHANGE_DATE", conn);
+			WikiBase.getDataHandler().executeUpgradeUpdate("UPGRADE_116_UPDATE_WATCHLIST_TOPIC_ID", conn);
+			WikiBase.getDataHandler().executeUpgradeUpdate("UPGRADE_116_UPDATE_WATCHLIST_CHANGE_DATE", conn);
+			messages.add(new WikiMessage("upgrade.message.db.column.added", "topic_id", "jam_watchlist"));
+			messages.add(new WikiMessage("upgrade.message.db.column.added", "change_date", "jam_watchlist"));
+		} catch (SQLException e) {
+			DatabaseConnection.rollbackOnException(status, e);
+			logger.error("Database failure during upgrade", e);
+			throw new WikiException(new WikiMessage("upgrade.error.fatal", e.getMessage()));
+		}
+		DatabaseConnection.commit(status);
+		try {
+			// add indexes in a separate transaction since the upgrade can still be considered
+			// successful if they cannot be created.
+			status = DatabaseConnection.startTransaction(getTransactionDefinition());
+			Connection conn = DatabaseConnection.getConnection();
+			WikiBase.getDataHandler().executeUpgradeUpdate("STATEMENT_CREATE_CATEGORY_NAME_LOWER_INDEX", conn);
+			messages.add(new WikiMessage("upgrade.message.db.data.updated", "jam_category"));
+			WikiBase.getDataHandler().executeUpgradeUpdate("STATEMENT_CREATE_LOG_DATE_INDEX", conn);
+			WikiBase.getDataHandler().executeUpgradeUpdate("STATEMENT_CREATE_LOG_TYPE_INDEX", conn);
+			messages.add(new WikiMessage("upgrade.message.db.data.updated", "jam_log"));
+			WikiBase.getDataHandler().executeUpgradeUpdate("STATEMENT_CREATE_RECENT_CHANGE_DATE_INDEX", conn);
+			messages.add(new WikiMessage("upgrade.message.db.data.updated", "jam_recent_change"));
+			WikiBase.getDataHandler().executeUpgradeUpdate("STATEMENT_CREATE_TOPIC_VERSION_USER_DATE_INDEX", conn);
+			WikiBase.getDataHandler().executeUpgradeUpdate("STATEMENT_CREATE_TOPIC_VERSION_USER_DISPLAY_DATE_INDEX", conn);
+			messages.add(new WikiMessage("upgrade.message.db.data.updated", "jam_topic_version"));
+			WikiBase.getDataHandler().executeUpgradeUpdate("STATEMENT_CREATE_WATCHLIST_TOPIC_INDEX", conn);
+			WikiBase.getDataHandler().executeUpgradeUpdate("STATEMENT_CREATE_WATCHLIST_USER_DATE_INDEX", conn);
+			messages.add(new WikiMessage("upgrade.message.db.data.updated", "jam_watchlist"));
+		} catch (SQLException e) {
+			messages.add(new WikiMessage("upgrade.error.nonfatal", e.getMessage()));
+			// do not throw this error and halt the upgrade process - the indexes improve
+			// performance but are not required.
+			logger.warn("Non-fatal error while upgrading.", e);
+			try {
+				DatabaseConnection.rollbackOnException(status, e);
+			} catch (Exception ex) {
+				// ignore
+			}
+			status = null; // so we do not try to commit
+		}
+		if (status != null) {
+			DatabaseConnection.commit(status);
+		}
+		try {
+			// populate the jam_statistics table.  if this fails the statistics are
+			// counted whenever they are retrieved until an administrator re-counts them.
+			WikiBase.getDataHandler().recountStatistics();
+			messages.add(new WikiMessage("upgrade.message.db.data.added", "jam_statistics"));
+		} catch (DataAccessException e) {
+			messages.add(new WikiMessage("upgrade.error.nonfatal", e.getMessage()));
+			logger.warn("Non-fatal error while upgrading.", e);
+		}
+	}
 }
@@ -0,0 +1,181 @@
+/**
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE, version 2.1, dated February 1999.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the latest version of the GNU Lesser General
+ * Public License as published by the Free Software Foundation;
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program (LICENSE.txt); if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jamwiki.db;
+
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.jamwiki.DataAccessException;
+import org.jamwiki.Environment;
+import org.jamwiki.WikiBase;
+import org.jamwiki.model.CacheEvent;
+import org.jamwiki.utils.CacheEventListener;
+import org.jamwiki.utils.CacheInvalidationBus;
+import org.jamwiki.utils.WikiLogger;
+
+/**
+ * Cache invalidation bus that records cache events in the
+ * <code>jam_cache_event</code> table of the shared database.  Each JAMWiki
+ * instance polls the table from a background thread every
+ * {@link Environment#PROP_CACHE_INVALIDATION_POLL_INTERVAL} milliseconds and
+ * applies any events recorded by other instances.  This implementation
+ * requires no network configuration beyond the database connection, at the
+ * cost of cached data being stale for up to one poll interval.
+ *
+ * Event dates are assigned by the database so that the clocks of the
+ * individual instances do not matter.  Since a transaction may commit after
+ * a later transaction, each poll re-reads a short window of events preceding
+ * the most recent event seen and ignores any that were already applied.
+ */
+public class JdbcCacheInvalidationBus implements CacheInvalidationBus, Runnable {
+
+	private static final WikiLogger logger = WikiLogger.getLogger(JdbcCacheInvalidationBus.class.getName());
+	/** Time (in milliseconds) preceding the most recent event that is re-read on each poll. */
+	private static final long OVERLAP = 30 * 1000L;
+	/** Time (in milliseconds) between deletions of old events. */
+	private static final long PURGE_INTERVAL = 10 * 60 * 1000L;
+	/** Time (in milliseconds) that events are retained before being deleted. */
+	private static final long RETENTION = 60 * 60 * 1000L;
+	/** Events that have been applied within the overlap window, mapped to their event date. */
+	private final Map<String, Long> applied = new HashMap<String, Long>();
+	private Timestamp lastEventDate = null;
+	private long lastPurge = 0;
+	private CacheEventListener listener = null;
+	private String nodeId = null;
+	private volatile boolean running = false;
+	private Thread thread = null;
+
+	/**
+	 * Return a string that uniquely identifies an event for the purpose of
+	 * detecting events that have already been applied.
+	 */
+	private static String eventSignature(CacheEvent event) {
+		return event.getEventDate().getTime() + "|" + event.getNodeId() + "|" + event.getCacheName() + "|" + event.getKeyType() + "|" + event.getKey();
+	}
+
+	/**
+	 * Read all events recorded by other instances since the previous poll,
+	 * notify the listener of each event that has not already been applied,
+	 * and periodically delete old events.  This method is normally invoked by
+	 * the polling thread.
+	 *
+	 * @return The number of events that were applied.
+	 */
+	protected synchronized int poll() throws DataAccessException {
+		boolean initialPoll = (this.lastEventDate == null);
+		Timestamp after = (initialPoll) ? new Timestamp(0) : new Timestamp(this.lastEventDate.getTime() - OVERLAP);
+		List<CacheEvent> events = WikiBase.getDataHandler().lookupCacheEvents(after, this.nodeId);
+		int count = 0;
+		for (CacheEvent event : events) {
+			if (this.lastEventDate == null || event.getEventDate().after(this.lastEventDate)) {
+				this.lastEventDate = event.getEventDate();
+			}
+			String signature = JdbcCacheInvalidationBus.eventSignature(event);
+			if (this.applied.containsKey(signature)) {
+				continue;
+			}
+			this.applied.put(signature, event.getEventDate().getTime());
+			// events recorded before this instance started do not apply to its (empty) cache
+			if (!initialPoll) {
+				this.listener.cacheEventReceived(event);
+				count++;
+			}
+		}
+		if (this.lastEventDate == null) {
+			// no events exist, so all events recorded from now on are new
+			this.lastEventDate = new Timestamp(0);
+		}
+		long windowStart = this.lastEventDate.getTime() - OVERLAP;
+		for (Iterator<Long> iterator = this.applied.values().iterator(); iterator.hasNext();) {
+			if (iterator.next() < windowStart) {
+				iterator.remove();
+			}
+		}
+		if (this.lastEventDate.getTime() > 0 && (System.currentTimeMillis() - this.lastPurge) > PURGE_INTERVAL) {
+			// use the database time of the latest event to avoid relying on the local clock
+			WikiBase.getDataHandler().deleteCacheEvents(new Timestamp(this.lastEventDate.getTime() - RETENTION));
+			this.lastPurge = System.currentTimeMillis();
+		}
+		return count;
+	}
+
+	/**
+	 *
+	 */
+	public void publish(CacheEvent event) {
+		event.setNodeId(this.nodeId);
+		try {
+			WikiBase.getDataHandler().writeCacheEvent(event);
+		} catch (DataAccessException e) {
+			// not fatal, but other instances may use stale data until it expires
+			logger.warn("Failure while recording cache event " + event + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Poll for new events until the bus is shut down.  This method is
+	 * invoked in a background thread by {@link #start}.
+	 */
+	public void run() {
+		while (this.running) {
+			try {
+				Thread.sleep(Math.max(Environment.getIntValue(Environment.PROP_CACHE_INVALIDATION_POLL_INTERVAL), 100));
+			} catch (InterruptedException e) {
+				break;
+			}
+			try {
+				this.poll();
+			} catch (DataAccessException e) {
+				logger.warn("Failure while reading cache events: " + e.getMessage());
+			} catch (RuntimeException e) {
+				// do not allow an unexpected error to stop the polling thread
+				logger.error("Unexpected failure while applying cache events", e);
+			}
+		}
+	}
+
+	/**
+	 *
+	 */
+	public synchronized void shutdown() {
+		this.running = false;
+		if (this.thread != null) {
+			this.thread.interrupt();
+			this.thread = null;
+		}
+	}
+
+	/**
+	 *
+	 */
+	public synchronized void start(String nodeId, CacheEventListener listener) {
+		this.nodeId = nodeId;
+		this.listener = listener;
+		try {
+			// determine the starting point for subsequent polls
+			this.poll();
+		} catch (DataAccessException e) {
+			throw new IllegalStateException("Unable to read cache events; verify that the jam_cache_event table exists", e);
+		}
+		this.running = true;
+		this.thread = new Thread(this, "JdbcCacheInvalidationBus");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+}
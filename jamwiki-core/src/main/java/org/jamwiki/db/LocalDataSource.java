@@ -39,11 +39,20 @@ public class LocalDataSource extends BasicDataSource {
 	 * Constructs a new WikiDataSource
 	 */
 	public LocalDataSource() throws SQLException, ClassNotFoundException {
+		this(Environment.getValue(Environment.PROP_DB_URL));
+	}
+
+	/**
+	 * Constructs a new WikiDataSource for the specified JDBC URL, such as the
+	 * URL of a read-only replica.  All other connection settings are the same
+	 * as those of the primary database.
+	 */
+	public LocalDataSource(String url) throws SQLException, ClassNotFoundException {
 		super();
 		if (!StringUtils.isBlank(Environment.getValue(Environment.PROP_DB_DRIVER))) {
 			Utilities.forName(Environment.getValue(Environment.PROP_DB_DRIVER));
 		}
-		setUrl(Environment.getValue(Environment.PROP_DB_URL));
+		setUrl(url);
 		setUsername(Environment.getValue(Environment.PROP_DB_USERNAME));
 		setPassword(Encryption.getEncryptedProperty(Environment.PROP_DB_PASSWORD, null));
 		setDefaultReadOnly(false);
@@ -16,9 +16,13 @@
  */
 package org.jamwiki.db;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.util.Properties;
 import org.jamwiki.Environment;
 import org.jamwiki.utils.WikiLogger;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
  * MySQL-specific implementation of the QueryHandler interface.  This class implements
@@ -45,4 +49,19 @@ public class MySqlQueryHandler extends AnsiQueryHandler {
 	public boolean autoIncrementPrimaryKeys() {
 		return true;
 	}
+
+	/**
+	 * MySQL reads the entire result set into memory unless the fetch size of a
+	 * forward-only, read-only statement is set to Integer.MIN_VALUE, in which
+	 * case rows are streamed one at a time.  No other statement can be executed
+	 * on the connection while a result is being streamed, so streaming is not
+	 * used within a transaction where the connection is shared.
+	 */
+	protected PreparedStatement prepareStreamingStatement(Connection conn, String sql) throws SQLException {
+		PreparedStatement stmt = super.prepareStreamingStatement(conn, sql);
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			stmt.setFetchSize(Integer.MIN_VALUE);
+		}
+		return stmt;
+	}
 }
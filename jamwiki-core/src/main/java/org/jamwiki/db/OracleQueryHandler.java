@@ -51,7 +51,7 @@ public class OracleQueryHandler extends AnsiQueryHandler {
 	 *
 	 */
 	protected PreparedStatement getCategoriesStatement(Connection conn, int virtualWikiId, String virtualWikiName, Pagination pagination) throws SQLException {
-		PreparedStatement stmt = conn.prepareStatement(STATEMENT_SELECT_CATEGORIES);
+		PreparedStatement stmt = this.prepareStatement(conn, STATEMENT_SELECT_CATEGORIES);
 		stmt.setInt(1, virtualWikiId);
 		stmt.setInt(2, pagination.getEnd());
 		stmt.setInt(3, pagination.getStart());
@@ -65,9 +65,9 @@ public class OracleQueryHandler extends AnsiQueryHandler {
 		int index = 1;
 		PreparedStatement stmt = null;
 		if (logType == -1) {
-			stmt = conn.prepareStatement(STATEMENT_SELECT_LOG_ITEMS);
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_LOG_ITEMS);
 		} else {
-			stmt = conn.prepareStatement(STATEMENT_SELECT_LOG_ITEMS_BY_TYPE);
+			stmt = this.prepareStatement(conn, STATEMENT_SELECT_LOG_ITEMS_BY_TYPE);
 			stmt.setInt(index++, logType);
 		}
 		stmt.setInt(index++, virtualWikiId);
@@ -80,7 +80,7 @@ public class OracleQueryHandler extends AnsiQueryHandler {
 	 *
 	 */
 	protected PreparedStatement getRecentChangesStatement(Connection conn, String virtualWiki, Pagination pagination, boolean descending) throws SQLException {
-		PreparedStatement stmt = conn.prepareStatement(STATEMENT_SELECT_RECENT_CHANGES);
+		PreparedStatement stmt = this.prepareStatement(conn, STATEMENT_SELECT_RECENT_CHANGES);
 		stmt.setString(1, virtualWiki);
 		stmt.setInt(2, pagination.getEnd());
 		stmt.setInt(3, pagination.getStart());
@@ -97,7 +97,7 @@ public class OracleQueryHandler extends AnsiQueryHandler {
 			params[0] = "not";
 		}
 		String sql = this.formatStatement(STATEMENT_SELECT_TOPIC_HISTORY, params);
-		PreparedStatement stmt = conn.prepareStatement(sql);
+		PreparedStatement stmt = this.prepareStatement(conn, sql);
 		stmt.setInt(1, topicId);
 		stmt.setInt(2, pagination.getEnd());
 		stmt.setInt(3, pagination.getStart());
@@ -108,7 +108,7 @@ public class OracleQueryHandler extends AnsiQueryHandler {
 	 *
 	 */
 	protected PreparedStatement getTopicsAdminStatement(Connection conn, int virtualWikiId, Pagination pagination) throws SQLException {
-		PreparedStatement stmt = conn.prepareStatement(STATEMENT_SELECT_TOPICS_ADMIN);
+		PreparedStatement stmt = this.prepareStatement(conn, STATEMENT_SELECT_TOPICS_ADMIN);
 		stmt.setInt(1, virtualWikiId);
 		stmt.setInt(2, pagination.getEnd());
 		stmt.setInt(3, pagination.getStart());
@@ -119,7 +119,7 @@ public class OracleQueryHandler extends AnsiQueryHandler {
 	 *
 	 */
 	protected PreparedStatement getUserContributionsByLoginStatement(Connection conn, String virtualWiki, String login, Pagination pagination, boolean descending) throws SQLException {
-		PreparedStatement stmt = conn.prepareStatement(STATEMENT_SELECT_WIKI_USER_CHANGES_LOGIN);
+		PreparedStatement stmt = this.prepareStatement(conn, STATEMENT_SELECT_WIKI_USER_CHANGES_LOGIN);
 		stmt.setString(1, virtualWiki);
 		stmt.setString(2, login);
 		stmt.setInt(3, pagination.getEnd());
@@ -131,7 +131,7 @@ public class OracleQueryHandler extends AnsiQueryHandler {
 	 *
 	 */
 	protected PreparedStatement getUserContributionsByUserDisplayStatement(Connection conn, String virtualWiki, String userDisplay, Pagination pagination, boolean descending) throws SQLException {
-		PreparedStatement stmt = conn.prepareStatement(STATEMENT_SELECT_WIKI_USER_CHANGES_ANONYMOUS);
+		PreparedStatement stmt = this.prepareStatement(conn, STATEMENT_SELECT_WIKI_USER_CHANGES_ANONYMOUS);
 		stmt.setString(1, virtualWiki);
 		stmt.setString(2, userDisplay);
 		stmt.setInt(3, pagination.getEnd());
@@ -157,7 +157,7 @@ public class OracleQueryHandler extends AnsiQueryHandler {
 	 *
 	 */
 	protected PreparedStatement getWatchlistStatement(Connection conn, int virtualWikiId, int userId, Pagination pagination) throws SQLException {
-		PreparedStatement stmt = conn.prepareStatement(STATEMENT_SELECT_WATCHLIST_CHANGES);
+		PreparedStatement stmt = this.prepareStatement(conn, STATEMENT_SELECT_WATCHLIST_CHANGES);
 		stmt.setInt(1, virtualWikiId);
 		stmt.setInt(2, userId);
 		stmt.setInt(3, pagination.getEnd());
@@ -169,7 +169,7 @@ public class OracleQueryHandler extends AnsiQueryHandler {
 	 *
 	 */
 	protected PreparedStatement lookupTopicByTypeStatement(Connection conn, int virtualWikiId, TopicType topicType1, TopicType topicType2, int namespaceStart, int namespaceEnd, Pagination pagination) throws SQLException {
-		PreparedStatement stmt = conn.prepareStatement(STATEMENT_SELECT_TOPIC_BY_TYPE);
+		PreparedStatement stmt = this.prepareStatement(conn, STATEMENT_SELECT_TOPIC_BY_TYPE);
 		stmt.setInt(1, virtualWikiId);
 		stmt.setInt(2, topicType1.id());
 		stmt.setInt(3, topicType2.id());
@@ -184,7 +184,7 @@ public class OracleQueryHandler extends AnsiQueryHandler {
 	 *
 	 */
 	protected PreparedStatement lookupWikiUsersStatement(Connection conn, Pagination pagination) throws SQLException {
-		PreparedStatement stmt = conn.prepareStatement(STATEMENT_SELECT_WIKI_USERS);
+		PreparedStatement stmt = this.prepareStatement(conn, STATEMENT_SELECT_WIKI_USERS);
 		stmt.setInt(1, pagination.getEnd());
 		stmt.setInt(2, pagination.getStart());
 		return stmt;
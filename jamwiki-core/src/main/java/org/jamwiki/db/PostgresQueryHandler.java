@@ -16,6 +16,9 @@
  */
 package org.jamwiki.db;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.util.Properties;
 import org.jamwiki.Environment;
 import org.jamwiki.utils.WikiLogger;
@@ -45,4 +48,15 @@ public class PostgresQueryHandler extends AnsiQueryHandler {
 	public boolean autoIncrementPrimaryKeys() {
 		return true;
 	}
+
+	/**
+	 * The Postgres driver ignores the fetch size and reads the entire result
+	 * set into memory unless auto-commit is disabled, so disable it for the
+	 * lifetime of the cursor.  Callers are responsible for restoring the
+	 * auto-commit setting once the result set has been closed.
+	 */
+	protected PreparedStatement prepareStreamingStatement(Connection conn, String sql) throws SQLException {
+		conn.setAutoCommit(false);
+		return super.prepareStreamingStatement(conn, sql);
+	}
 }
\ No newline at end of file
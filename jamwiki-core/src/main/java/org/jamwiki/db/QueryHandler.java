@@ -18,8 +18,13 @@ package org.jamwiki.db;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import org.jamwiki.DataAccessException;
+import org.jamwiki.TopicNameCallback;
+import org.jamwiki.model.CacheEvent;
 import org.jamwiki.model.Category;
 import org.jamwiki.model.Interwiki;
 import org.jamwiki.model.LogItem;
@@ -91,6 +96,16 @@ public interface QueryHandler {
 	 */
 	void createTables(Connection conn) throws SQLException;
 
+	/**
+	 * Delete all cache events recorded before the specified time.
+	 *
+	 * @param before Events recorded before this time are deleted.
+	 * @param conn A database connection to use when connecting to the database
+	 *  from this method.
+	 * @throws SQLException Thrown if any error occurs during method execution.
+	 */
+	void deleteCacheEvents(Timestamp before, Connection conn) throws SQLException;
+
 	/**
 	 * Delete all authorities for a specific group.
 	 *
@@ -132,6 +147,20 @@ public interface QueryHandler {
 	 */
 	void deleteTopicCategories(int topicId, Connection conn) throws SQLException;
 
+	/**
+	 * Delete specific category associations for a topic.  All deletes are
+	 * executed as a single batch.
+	 *
+	 * @param topicId The topic for which category association records are being
+	 *  deleted.
+	 * @param categoryNames The names of the categories that are no longer
+	 *  associated with the topic.
+	 * @param conn A database connection to use when connecting to the database
+	 *  from this method.
+	 * @throws SQLException Thrown if any error occurs during method execution.
+	 */
+	void deleteTopicCategories(int topicId, List<String> categoryNames, Connection conn) throws SQLException;
+
 	/**
 	 * Delete all topic links associated with a topic.
 	 *
@@ -143,6 +172,20 @@ public interface QueryHandler {
 	 */
 	void deleteTopicLinks(int topicId, Connection conn) throws SQLException;
 
+	/**
+	 * Delete specific topic links associated with a topic.  All deletes are
+	 * executed as a single batch.
+	 *
+	 * @param topicId The topic for which link association records are being
+	 *  deleted.
+	 * @param topicLinks A list of Topic objects whose namespace and page name
+	 *  identify the links that are no longer present in the topic.
+	 * @param conn A database connection to use when connecting to the database
+	 *  from this method.
+	 * @throws SQLException Thrown if any error occurs during method execution.
+	 */
+	void deleteTopicLinks(int topicId, List<Topic> topicLinks, Connection conn) throws SQLException;
+
 	/**
 	 * Delete a topic version record.  This method will fail if there is a
 	 * topic with the version as its current version ID, or if there is
@@ -224,6 +267,24 @@ public interface QueryHandler {
 	 */
 	String existenceValidationQuery();
 
+	/**
+	 * Pass the id and name of every topic within a virtual wiki to a callback.
+	 * Topics are read using a forward-only cursor configured with a fetch size
+	 * appropriate to the database, so memory use does not depend on the number
+	 * of topics.  The cursor uses its own connection, which remains open until
+	 * iteration completes.
+	 *
+	 * @param virtualWikiId The virtual wiki id for the virtual wiki of the topics
+	 *  being retrieved.
+	 * @param includeDeleted Set to <code>true</code> if deleted topics
+	 *  should be included in the results.
+	 * @param callback The callback to invoke for each topic.  Iteration stops
+	 *  if the callback returns <code>false</code>.
+	 * @throws DataAccessException Thrown if the callback throws an exception.
+	 * @throws SQLException Thrown if any error occurs during method execution.
+	 */
+	void forEachTopicName(int virtualWikiId, boolean includeDeleted, TopicNameCallback callback) throws DataAccessException, SQLException;
+
 	/**
 	 * Retrieve a list of all wiki file version information for a given wiki file.
 	 * Version information is sorted by wiki file version id, which in effect sorts
@@ -361,7 +422,9 @@ public interface QueryHandler {
 	 * @param topicId The id of the topic for which recent changes are being
 	 *  retrieved.
 	 * @param pagination A Pagination object that specifies the number of results
-	 *  and starting result offset for the result set to be retrieved.
+	 *  and starting result offset or continuation token for the result set to
+	 *  be retrieved.  If a full page of results is retrieved then the
+	 *  continuation token for the following page is set on this object.
 	 * @param descending If <code>true</code> then results are sorted newest to
 	 *  oldest.
 	 * @param selectDeleted Set to <code>true</code> if revisions for deleted
@@ -380,7 +443,9 @@ public interface QueryHandler {
 	 * @param virtualWikiId The id of the virtual wiki for which topic names
 	 *  are being retrieved.
 	 * @param pagination A Pagination object that specifies the number of results
-	 *  and starting result offset for the result set to be retrieved.
+	 *  and starting result offset or continuation token for the result set to
+	 *  be retrieved.  If a full page of results is retrieved then the
+	 *  continuation token for the following page is set on this object.
 	 * @return A list containing the topic names of all admin-only topics for the
 	 *  virtual wiki, or an empty list if there are no admin-only topics.
 	 * @throws SQLException Thrown if any error occurs during method execution.
@@ -406,7 +471,9 @@ public interface QueryHandler {
 	 *  are being retrieved.
 	 * @param login The login of the user for whom changes are being retrieved.
 	 * @param pagination A Pagination object that specifies the number of results
-	 *  and starting result offset for the result set to be retrieved.
+	 *  and starting result offset or continuation token for the result set to
+	 *  be retrieved.  If a full page of results is retrieved then the
+	 *  continuation token for the following page is set on this object.
 	 * @param descending If <code>true</code> then results are sorted newest to
 	 *  oldest.
 	 * @return A list of recent changes corresponding to the user's contributions,
@@ -425,7 +492,9 @@ public interface QueryHandler {
 	 * @param userDisplay The display name of the user, typically the IP address,
 	 *  for whom changes are being retrieved.
 	 * @param pagination A Pagination object that specifies the number of results
-	 *  and starting result offset for the result set to be retrieved.
+	 *  and starting result offset or continuation token for the result set to
+	 *  be retrieved.  If a full page of results is retrieved then the
+	 *  continuation token for the following page is set on this object.
 	 * @param descending If <code>true</code> then results are sorted newest to
 	 *  oldest.
 	 * @return A list of recent changes corresponding to the user's contributions,
@@ -470,6 +539,31 @@ public interface QueryHandler {
 	 */
 	List<RecentChange> getWatchlist(int virtualWikiId, int userId, Pagination pagination) throws SQLException;
 
+	/**
+	 * Retrieve the current version of every watched topic that has changed
+	 * since a given time, grouped by the user watching the topic.  Changes
+	 * made by the watching user are not included.
+	 *
+	 * @param changedAfter Only topics whose current version was created after
+	 *  this time are returned.
+	 * @return A map of user ID to a list of recent changes for the topics in
+	 *  that user's watchlist, ordered with the most recent changes first.  Users
+	 *  with no changes are not included in the map.
+	 * @throws SQLException Thrown if any error occurs during method execution.
+	 */
+	Map<Integer, List<RecentChange>> getWatchlistDigest(Timestamp changedAfter) throws SQLException;
+
+	/**
+	 * Add a new cache event record to the database.  The event date is set
+	 * by the database.
+	 *
+	 * @param event The cache event to record.
+	 * @param conn A database connection to use when connecting to the database
+	 *  from this method.
+	 * @throws SQLException Thrown if any error occurs during method execution.
+	 */
+	void insertCacheEvent(CacheEvent event, Connection conn) throws SQLException;
+
 	/**
 	 * Add new category records for a topic to the database.  Note that this method will
 	 * fail if an existing category of the same name is already associated with the
@@ -552,6 +646,20 @@ public interface QueryHandler {
 	 */
 	void insertRole(Role role, Connection conn) throws SQLException;
 
+	/**
+	 * Add a new statistic record to the database.  The statistic must not
+	 * already exist in the database or else an error will be thrown.
+	 *
+	 * @param virtualWikiId The virtual wiki id for the statistic being added,
+	 *  or zero for site-wide statistics.
+	 * @param statistic The name of the statistic being added.
+	 * @param value The initial value of the statistic.
+	 * @param conn A database connection to use when connecting to the database
+	 *  from this method.
+	 * @throws SQLException Thrown if any error occurs during method execution.
+	 */
+	void insertStatistic(int virtualWikiId, String statistic, int value, Connection conn) throws SQLException;
+
 	/**
 	 * Add a new topic record to the database.  The topic must not already exist
 	 * in the database or else an error will be thrown.
@@ -699,6 +807,18 @@ public interface QueryHandler {
 	 */
 	void insertWikiUser(WikiUser user, Connection conn) throws SQLException;
 
+	/**
+	 * Retrieve all cache events recorded after the specified time by JAMWiki
+	 * instances other than the specified instance.
+	 *
+	 * @param after Only events recorded after this time are returned.
+	 * @param excludeNodeId Events published by the JAMWiki instance with this
+	 *  node id are not returned.
+	 * @return A list of matching cache events, sorted by event date.
+	 * @throws SQLException Thrown if any error occurs during method execution.
+	 */
+	List<CacheEvent> lookupCacheEvents(Timestamp after, String excludeNodeId) throws SQLException;
+
 	/**
 	 * Retrieve a list of all topics in a category.
 	 *
@@ -743,6 +863,17 @@ public interface QueryHandler {
 	 */
 	List<Namespace> lookupNamespaces(Connection conn) throws SQLException;
 
+	/**
+	 * Retrieve the statistic records for a virtual wiki.
+	 *
+	 * @param virtualWikiId The virtual wiki id for the statistics being
+	 *  retrieved, or zero for site-wide statistics.
+	 * @return A map of statistic name and value, or an empty map if no
+	 *  statistics have been recorded for the virtual wiki.
+	 * @throws SQLException Thrown if any error occurs during method execution.
+	 */
+	Map<String, Integer> lookupStatistics(int virtualWikiId) throws SQLException;
+
 	/**
 	 * Retrieve a topic that matches a given name and virtual wiki.
 	 *
@@ -793,7 +924,9 @@ public interface QueryHandler {
 	 *  parameter provides a way to use the same queries to return results from all
 	 *  namespaces or from only a single namespace.
 	 * @param pagination A Pagination object that specifies the number of results
-	 *  and starting result offset for the result set to be retrieved.
+	 *  and starting result offset or continuation token for the result set to
+	 *  be retrieved.  If a full page of results is retrieved then the
+	 *  continuation token for the following page is set on this object.
 	 * @return A map of topic id and topic name for all topic names of a given
 	 *  type within a virtual wiki, and within the bounds specified by the
 	 *  pagination object.  If no results are found then an empty list is returned.
@@ -801,6 +934,18 @@ public interface QueryHandler {
 	 */
 	Map<Integer, String> lookupTopicByType(int virtualWikiId, TopicType topicType1, TopicType topicType2, int namespaceStart, int namespaceEnd, Pagination pagination) throws SQLException;
 
+	/**
+	 * Retrieve the categories that a topic currently belongs to.
+	 *
+	 * @param topicId The id of the topic whose categories are being retrieved.
+	 * @param conn A database connection to use when connecting to the database
+	 *  from this method.
+	 * @return A mapping of category names to their sort keys (if any).  If no
+	 *  results are found then an empty map is returned.
+	 * @throws SQLException Thrown if any error occurs during method execution.
+	 */
+	LinkedHashMap<String, String> lookupTopicCategories(int topicId, Connection conn) throws SQLException;
+
 	/**
 	 * Return a count of all topics, including redirects, comments pages and templates,
 	 * currently available on the Wiki.  This method excludes deleted topics.
@@ -818,6 +963,37 @@ public interface QueryHandler {
 	 */
 	int lookupTopicCount(int virtualWikiId, int namespaceStart, int namespaceEnd) throws SQLException;
 
+	/**
+	 * Return the namespace id of a topic as currently stored in the database if
+	 * the topic is included in topic counts (it is neither deleted nor a
+	 * redirect), using the same criteria as {@link #lookupTopicCount}.
+	 *
+	 * @param topicId The id of the topic being checked.
+	 * @param conn A database connection to use when connecting to the database
+	 *  from this method.
+	 * @return The namespace id of the topic, or <code>null</code> if the topic
+	 *  does not exist or is not included in topic counts.
+	 * @throws SQLException Thrown if any error occurs during method execution.
+	 */
+	Integer lookupTopicCountedNamespace(int topicId, Connection conn) throws SQLException;
+
+	/**
+	 * Retrieve the ids of non-deleted topics within a virtual wiki in ascending
+	 * order, starting after the specified topic id.  This method allows all
+	 * topics to be processed in chunks without using database-specific
+	 * pagination.
+	 *
+	 * @param virtualWikiId The virtual wiki id for the virtual wiki of the topics
+	 *  being retrieved.
+	 * @param afterTopicId Only topic ids greater than this value are returned.
+	 *  Use zero to start from the first topic.
+	 * @param maxResults The maximum number of topic ids to return.
+	 * @return A list of topic ids in ascending order, or an empty list if no
+	 *  further topics exist.
+	 * @throws SQLException Thrown if any error occurs during method execution.
+	 */
+	List<Integer> lookupTopicIds(int virtualWikiId, int afterTopicId, int maxResults) throws SQLException;
+
 	/**
 	 * This method is used primarily to determine if a topic with a given name exists,
 	 * taking as input a topic name and virtual wiki and returning the corresponding
@@ -851,6 +1027,20 @@ public interface QueryHandler {
 	 */
 	List<String> lookupTopicLinks(int virtualWikiId, Namespace namespace, String pageName) throws SQLException;
 
+	/**
+	 * Retrieve the topics that a topic currently links to.
+	 *
+	 * @param topicId The id of the topic whose links are being retrieved.
+	 * @param virtualWiki The virtual wiki for the topic.
+	 * @param conn A database connection to use when connecting to the database
+	 *  from this method.
+	 * @return A list of Topic objects containing the namespace and page name
+	 *  of each linked topic.  If no results are found then an empty list is
+	 *  returned.
+	 * @throws SQLException Thrown if any error occurs during method execution.
+	 */
+	List<Topic> lookupTopicLinkTargets(int topicId, String virtualWiki, Connection conn) throws SQLException;
+
 	/**
 	 * Find the names for all un-linked topics in the main namespace.
 	 *
@@ -871,6 +1061,16 @@ public interface QueryHandler {
 	 */
 	TopicVersion lookupTopicVersion(int topicVersionId) throws SQLException;
 
+	/**
+	 * Return the number of versions of a topic, including versions created
+	 * by deletes, moves and other administrative actions.
+	 *
+	 * @param topicId The id of the topic whose versions are being counted.
+	 * @return The number of versions of the topic.
+	 * @throws SQLException Thrown if any error occurs during method execution.
+	 */
+	int lookupTopicVersionCount(int topicId) throws SQLException;
+
 	/**
 	 * Retrieve the next topic version ID chronologically for a given topic
 	 * version, or <code>null</code> if there is no next topic version ID.
@@ -920,6 +1120,19 @@ public interface QueryHandler {
 	 */
 	int lookupWikiFileCount(int virtualWikiId) throws SQLException;
 
+	/**
+	 * Determine whether a wiki file as currently stored in the database is
+	 * included in file counts (it is not deleted), using the same criteria as
+	 * {@link #lookupWikiFileCount}.
+	 *
+	 * @param fileId The id of the wiki file being checked.
+	 * @param conn A database connection to use when connecting to the database
+	 *  from this method.
+	 * @return <code>true</code> if the wiki file exists and is not deleted.
+	 * @throws SQLException Thrown if any error occurs during method execution.
+	 */
+	boolean lookupWikiFileCounted(int fileId, Connection conn) throws SQLException;
+
 	/**
 	 * Retrieve a result set containing group information given the name of the group.
 	 *
@@ -972,7 +1185,9 @@ public interface QueryHandler {
 	 * Retrieve a list of all logins for every wiki user.
 	 *
 	 * @param pagination A Pagination object that specifies the number of results
-	 *  and starting result offset for the result set to be retrieved.
+	 *  and starting result offset or continuation token for the result set to
+	 *  be retrieved.  If a full page of results is retrieved then the
+	 *  continuation token for the following page is set on this object.
 	 * @return A list of all logins for all wiki users, within the bounds specified
 	 *  by the pagination object, or an empty list if no logins are available.
 	 * @throws SQLException Thrown if any error occurs during method execution.
@@ -1004,15 +1219,18 @@ public interface QueryHandler {
 	void reloadLogItems(int virtualWikiId, Connection conn) throws SQLException;
 
 	/**
-	 * Refresh the recent changes content by reloading the recent changes table.
+	 * Refresh the recent changes content for a virtual wiki by reloading its
+	 * records in the recent changes table.
 	 *
-	 * @param conn A database connection to use when connecting to the database
-	 *  from this method.
+	 * @param virtualWikiId The id of the virtual wiki whose recent changes are
+	 *  being reloaded.
 	 * @param limit The maximum number of topic history versions to examine
 	 *  when reloading recent changes.
+	 * @param conn A database connection to use when connecting to the database
+	 *  from this method.
 	 * @throws SQLException Thrown if any error occurs during method execution.
 	 */
-	void reloadRecentChanges(Connection conn, int limit) throws SQLException;
+	void reloadRecentChanges(int virtualWikiId, int limit, Connection conn) throws SQLException;
 
 	/**
 	 * Replace the existing configuration records with a new set of values.  This
@@ -1068,6 +1286,36 @@ public interface QueryHandler {
 	 */
 	void updateRole(Role role, Connection conn) throws SQLException;
 
+	/**
+	 * Add a value to a statistic record in the database.
+	 *
+	 * @param virtualWikiId The virtual wiki id for the statistic being updated,
+	 *  or zero for site-wide statistics.
+	 * @param statistic The name of the statistic being updated.
+	 * @param delta The amount to add to the statistic, which may be negative.
+	 * @param conn A database connection to use when connecting to the database
+	 *  from this method.
+	 * @return The number of records updated, which is zero if no record exists
+	 *  for the statistic.
+	 * @throws SQLException Thrown if any error occurs during method execution.
+	 */
+	int updateStatistic(int virtualWikiId, String statistic, int delta, Connection conn) throws SQLException;
+
+	/**
+	 * Replace the value of a statistic record in the database.
+	 *
+	 * @param virtualWikiId The virtual wiki id for the statistic being updated,
+	 *  or zero for site-wide statistics.
+	 * @param statistic The name of the statistic being updated.
+	 * @param value The new value of the statistic.
+	 * @param conn A database connection to use when connecting to the database
+	 *  from this method.
+	 * @return The number of records updated, which is zero if no record exists
+	 *  for the statistic.
+	 * @throws SQLException Thrown if any error occurs during method execution.
+	 */
+	int updateStatisticValue(int virtualWikiId, String statistic, int value, Connection conn) throws SQLException;
+
 	/**
 	 * Update a topic record in the database.
 	 *
@@ -1129,6 +1377,22 @@ public interface QueryHandler {
 	 */
 	void updateVirtualWiki(VirtualWiki virtualWiki, Connection conn) throws SQLException;
 
+	/**
+	 * Record a change to a topic in the watchlist entries of every user
+	 * watching the topic, setting the topic id and the date of the topic's
+	 * current version so that watchlists can be retrieved without joining on
+	 * topic names.
+	 *
+	 * @param virtualWikiId The virtual wiki id of the topic that changed.
+	 * @param topicName The name of the topic that changed.
+	 * @param topicId The id of the topic that changed.
+	 * @param currentVersionId The id of the topic's current version.
+	 * @param conn A database connection to use when connecting to the database
+	 *  from this method.
+	 * @throws SQLException Thrown if any error occurs during method execution.
+	 */
+	void updateWatchlistChange(int virtualWikiId, String topicName, int topicId, int currentVersionId, Connection conn) throws SQLException;
+
 	/**
 	 * Update a wiki file record in the database.
 	 *
@@ -0,0 +1,243 @@
+/**
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE, version 2.1, dated February 1999.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the latest version of the GNU Lesser General
+ * Public License as published by the Free Software Foundation;
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program (LICENSE.txt); if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jamwiki.db;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.lang.ObjectUtils;
+import org.jamwiki.model.RecentChange;
+import org.jamwiki.utils.Pagination;
+
+/**
+ * In-memory ring buffer holding the most recent changes for each virtual wiki,
+ * allowing the first pages of Special:RecentChanges and the recent changes feed
+ * to be served without querying the <code>jam_recent_change</code> table.  The
+ * buffer for a virtual wiki is loaded from the database on first use and is then
+ * maintained incrementally as new changes are committed.  Any other modification
+ * to the recent changes table must invalidate the buffer, causing it to be
+ * re-loaded on next use.  The buffer holds its own copies of changes, so
+ * neither the objects passed to it nor the objects it returns are shared.
+ */
+class RecentChangeBuffer {
+
+	/** Number of changes to examine when checking whether a newly added change is already present. */
+	private static final int DUPLICATE_CHECK_DEPTH = 10;
+	private final int capacity;
+	private final Map<String, Ring> rings = new HashMap<String, Ring>();
+
+	/**
+	 * Create a new buffer.
+	 *
+	 * @param capacity The maximum number of changes to hold for each virtual
+	 *  wiki.  A value of zero or less disables the buffer.
+	 */
+	RecentChangeBuffer(int capacity) {
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Add a newly committed recent change to the buffer.  If the buffer for the
+	 * change's virtual wiki has not yet been loaded then the change is ignored,
+	 * but any load that is currently in progress will be discarded since it may
+	 * not include the new change.
+	 */
+	synchronized void add(RecentChange change) {
+		if (this.capacity <= 0) {
+			return;
+		}
+		Ring ring = this.ring(change.getVirtualWiki());
+		ring.modificationCount++;
+		if (!ring.loaded || ring.contains(change)) {
+			return;
+		}
+		RecentChange bufferedChange = new RecentChange(change);
+		// the database returns zero for a null column value
+		if (bufferedChange.getCharactersChanged() == null) {
+			bufferedChange.setCharactersChanged(0);
+		}
+		ring.head = (ring.head + this.capacity - 1) % this.capacity;
+		ring.changes[ring.head] = bufferedChange;
+		if (ring.size < this.capacity) {
+			ring.size++;
+		} else {
+			// a full buffer no longer holds every change in the database
+			ring.complete = false;
+		}
+	}
+
+	/**
+	 * Return the requested page of recent changes, sorted with the most recent
+	 * changes first, or <code>null</code> if the buffer cannot serve the request
+	 * and the database must be queried instead.
+	 */
+	synchronized List<RecentChange> getRecentChanges(String virtualWiki, Pagination pagination) {
+		if (this.capacity <= 0 || pagination.getEnd() > this.capacity) {
+			return null;
+		}
+		Ring ring = this.rings.get(virtualWiki);
+		if (ring == null || !ring.loaded || (!ring.complete && pagination.getEnd() > ring.size)) {
+			return null;
+		}
+		int end = Math.min(pagination.getEnd(), ring.size);
+		List<RecentChange> results = new ArrayList<RecentChange>(Math.max(end - pagination.getOffset(), 0));
+		for (int i = pagination.getOffset(); i < end; i++) {
+			results.add(new RecentChange(ring.get(i, this.capacity)));
+		}
+		return results;
+	}
+
+	/**
+	 * Return the maximum number of changes held for each virtual wiki.
+	 */
+	int getCapacity() {
+		return this.capacity;
+	}
+
+	/**
+	 * Discard the buffered changes for all virtual wikis.
+	 */
+	synchronized void invalidate() {
+		for (Ring ring : this.rings.values()) {
+			ring.reset(this.capacity);
+		}
+	}
+
+	/**
+	 * Discard the buffered changes for a virtual wiki.
+	 */
+	synchronized void invalidate(String virtualWiki) {
+		Ring ring = this.rings.get(virtualWiki);
+		if (ring != null) {
+			ring.reset(this.capacity);
+		}
+	}
+
+	/**
+	 * Determine whether the buffer for a virtual wiki needs to be loaded.
+	 */
+	synchronized boolean isLoaded(String virtualWiki) {
+		Ring ring = this.rings.get(virtualWiki);
+		return (this.capacity <= 0 || (ring != null && ring.loaded));
+	}
+
+	/**
+	 * Populate the buffer for a virtual wiki.  The changes must have been
+	 * retrieved from the database after calling {@link #startLoad}, and they are
+	 * discarded if the buffer was modified during that time.
+	 *
+	 * @param virtualWiki The virtual wiki for which changes were retrieved.
+	 * @param changes Up to <code>capacity</code> changes, sorted with the most
+	 *  recent changes first.
+	 * @param modificationCount The value returned by {@link #startLoad}.
+	 */
+	synchronized void load(String virtualWiki, List<RecentChange> changes, int modificationCount) {
+		Ring ring = this.ring(virtualWiki);
+		if (ring.modificationCount != modificationCount) {
+			return;
+		}
+		ring.reset(this.capacity);
+		ring.size = Math.min(changes.size(), this.capacity);
+		for (int i = 0; i < ring.size; i++) {
+			ring.changes[i] = new RecentChange(changes.get(i));
+		}
+		ring.complete = (changes.size() < this.capacity);
+		ring.loaded = true;
+	}
+
+	/**
+	 *
+	 */
+	private Ring ring(String virtualWiki) {
+		Ring ring = this.rings.get(virtualWiki);
+		if (ring == null) {
+			ring = new Ring(this.capacity);
+			this.rings.put(virtualWiki, ring);
+		}
+		return ring;
+	}
+
+	/**
+	 * Record the start of a load for a virtual wiki, returning a value that must
+	 * be passed to {@link #load}.
+	 */
+	synchronized int startLoad(String virtualWiki) {
+		return this.ring(virtualWiki).modificationCount;
+	}
+
+	/**
+	 * The buffered changes for a single virtual wiki.
+	 */
+	private static class Ring {
+
+		private RecentChange[] changes;
+		/** <code>true</code> if the ring holds every recent change for the virtual wiki. */
+		private boolean complete = false;
+		/** Index of the most recent change. */
+		private int head = 0;
+		private boolean loaded = false;
+		/** Incremented on every modification to detect changes made while loading. */
+		private int modificationCount = 0;
+		private int size = 0;
+
+		/**
+		 *
+		 */
+		private Ring(int capacity) {
+			this.changes = new RecentChange[capacity];
+		}
+
+		/**
+		 * Determine whether the ring already holds the given change, which can
+		 * happen if a change was committed while the ring was being loaded.
+		 */
+		private boolean contains(RecentChange change) {
+			int depth = Math.min(this.size, DUPLICATE_CHECK_DEPTH);
+			for (int i = 0; i < depth; i++) {
+				RecentChange existing = this.get(i, this.changes.length);
+				if (ObjectUtils.equals(existing.getChangeDate(), change.getChangeDate())
+						&& ObjectUtils.equals(existing.getTopicVersionId(), change.getTopicVersionId())
+						&& ObjectUtils.equals(existing.getLogType(), change.getLogType())
+						&& ObjectUtils.equals(existing.getAuthorName(), change.getAuthorName())) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Return the change at the given position, where zero is the most recent
+		 * change.
+		 */
+		private RecentChange get(int position, int capacity) {
+			return this.changes[(this.head + position) % capacity];
+		}
+
+		/**
+		 *
+		 */
+		private void reset(int capacity) {
+			this.changes = new RecentChange[capacity];
+			this.complete = false;
+			this.head = 0;
+			this.loaded = false;
+			this.modificationCount++;
+			this.size = 0;
+		}
+	}
+}
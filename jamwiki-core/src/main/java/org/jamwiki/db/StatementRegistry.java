@@ -0,0 +1,179 @@
+/**
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE, version 2.1, dated February 1999.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the latest version of the GNU Lesser General
+ * Public License as published by the Free Software Foundation;
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program (LICENSE.txt); if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jamwiki.db;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Registry of the SQL statements used by the query handlers.  Statements that
+ * are built at runtime from a template, such as the topic history statement
+ * with its "delete_date is {0} null" clause, are formatted once for each
+ * combination of values and then re-used, so that every call uses an identical
+ * SQL string and can be served from the per-connection prepared statement
+ * cache of the connection pool (see
+ * {@link org.jamwiki.Environment#PROP_DBCP_POOL_PREPARED_STATEMENTS}).  The
+ * number of times each statement is prepared is also tracked so that the most
+ * frequently used statements can be identified.
+ */
+public class StatementRegistry {
+
+	/** Maximum number of formatted statement variants retained, to avoid unbounded growth when a template is formatted with arbitrary values. */
+	private static final int MAX_FORMATTED_VARIANTS = 1000;
+	/** Formatted statements, keyed by a list containing the template followed by the format values. */
+	private static final Map<List<Object>, String> FORMATTED = new ConcurrentHashMap<List<Object>, String>();
+	/** Property names of all registered statements, keyed by SQL text. */
+	private static final Map<String, String> NAMES = new ConcurrentHashMap<String, String>();
+	/** Number of times that each statement has been prepared, keyed by statement name. */
+	private static final Map<String, AtomicLong> PREPARE_COUNTS = new ConcurrentHashMap<String, AtomicLong>();
+	private static final AtomicLong totalPrepares = new AtomicLong();
+
+	/**
+	 *
+	 */
+	private StatementRegistry() {
+	}
+
+	/**
+	 * Format a statement template, returning a previously formatted copy of
+	 * the statement if the same template has already been formatted with the
+	 * same values.
+	 *
+	 * @param sql The SQL statement in MessageFormat format ("date is {0} null").
+	 * @param params An array of objects (which should be strings) to use when
+	 *  formatting the message.
+	 * @return A formatted SQL string.
+	 * @throws IllegalArgumentException Thrown if the statement cannot be
+	 *  formatted with the given values.
+	 */
+	static String format(String sql, Object[] params) {
+		List<Object> key = new ArrayList<Object>(params.length + 1);
+		key.add(sql);
+		key.addAll(Arrays.asList(params));
+		String formatted = FORMATTED.get(key);
+		if (formatted != null) {
+			return formatted;
+		}
+		// replace all single quotes with '' since otherwise MessageFormat
+		// will treat the content is a quoted string
+		formatted = MessageFormat.format(sql.replaceAll("'", "''"), params);
+		if (FORMATTED.size() < MAX_FORMATTED_VARIANTS) {
+			FORMATTED.put(key, formatted);
+			String name = NAMES.get(sql);
+			if (name != null && !NAMES.containsKey(formatted)) {
+				NAMES.put(formatted, name);
+			}
+		}
+		return formatted;
+	}
+
+	/**
+	 * Return the number of times each statement has been prepared since the
+	 * statistics were last reset, sorted with the most frequently prepared
+	 * statements first.
+	 *
+	 * @param maxResults The maximum number of statements to return.
+	 * @return A map of statement name to prepare count.
+	 */
+	public static Map<String, Long> getPrepareCounts(int maxResults) {
+		List<Map.Entry<String, AtomicLong>> entries = new ArrayList<Map.Entry<String, AtomicLong>>(PREPARE_COUNTS.entrySet());
+		Collections.sort(entries, new Comparator<Map.Entry<String, AtomicLong>>() {
+			public int compare(Map.Entry<String, AtomicLong> entry1, Map.Entry<String, AtomicLong> entry2) {
+				long count1 = entry1.getValue().get();
+				long count2 = entry2.getValue().get();
+				if (count1 != count2) {
+					return (count1 > count2) ? -1 : 1;
+				}
+				return entry1.getKey().compareTo(entry2.getKey());
+			}
+		});
+		Map<String, Long> results = new LinkedHashMap<String, Long>();
+		for (Map.Entry<String, AtomicLong> entry : entries) {
+			if (results.size() >= maxResults) {
+				break;
+			}
+			results.put(entry.getKey(), entry.getValue().get());
+		}
+		return results;
+	}
+
+	/**
+	 * Return the total number of statements prepared since the statistics
+	 * were last reset.
+	 */
+	public static long getTotalPrepares() {
+		return totalPrepares.get();
+	}
+
+	/**
+	 * Record that a statement is being prepared.
+	 *
+	 * @param sql The SQL text of the statement.
+	 */
+	static void recordPrepare(String sql) {
+		String name = NAMES.get(sql);
+		if (name == null) {
+			// statements built dynamically are grouped together
+			name = "(other)";
+		}
+		AtomicLong count = PREPARE_COUNTS.get(name);
+		if (count == null) {
+			synchronized (PREPARE_COUNTS) {
+				count = PREPARE_COUNTS.get(name);
+				if (count == null) {
+					count = new AtomicLong();
+					PREPARE_COUNTS.put(name, count);
+				}
+			}
+		}
+		count.incrementAndGet();
+		totalPrepares.incrementAndGet();
+	}
+
+	/**
+	 * Register the statements loaded from a SQL properties file, replacing
+	 * any statements that were previously registered.
+	 *
+	 * @param properties The SQL properties, keyed by statement name.
+	 */
+	static void register(Properties properties) {
+		FORMATTED.clear();
+		NAMES.clear();
+		for (Enumeration<?> names = properties.propertyNames(); names.hasMoreElements();) {
+			String name = (String)names.nextElement();
+			NAMES.put(properties.getProperty(name), name);
+		}
+	}
+
+	/**
+	 * Reset the prepare counts.
+	 */
+	public static void resetStatistics() {
+		PREPARE_COUNTS.clear();
+		totalPrepares.set(0);
+	}
+}
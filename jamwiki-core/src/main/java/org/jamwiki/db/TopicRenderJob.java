@@ -0,0 +1,397 @@
+/**
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE, version 2.1, dated February 1999.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the latest version of the GNU Lesser General
+ * Public License as published by the Free Software Foundation;
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program (LICENSE.txt); if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jamwiki.db;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.math.NumberUtils;
+import org.jamwiki.DataAccessException;
+import org.jamwiki.Environment;
+import org.jamwiki.SearchEngine;
+import org.jamwiki.WikiBase;
+import org.jamwiki.WikiException;
+import org.jamwiki.model.Topic;
+import org.jamwiki.model.VirtualWiki;
+import org.jamwiki.parser.ParserException;
+import org.jamwiki.parser.ParserOutput;
+import org.jamwiki.parser.ParserUtil;
+import org.jamwiki.utils.WikiLogger;
+
+/**
+ * Offline maintenance job that re-parses every topic in a virtual wiki,
+ * refreshing the topic links and categories tables, the search index and the
+ * parsed topic cache in a single pass.  Topics are processed in chunks
+ * ordered by topic id, with the topics of each chunk parsed in parallel using
+ * {@link Environment#PROP_TOPIC_RENDER_THREADS} worker threads, and the job
+ * sleeps between chunks as needed to avoid processing more than
+ * {@link Environment#PROP_TOPIC_RENDER_RATE} topics per second.  The id of the
+ * last topic of each completed chunk is saved to the filesystem, so a job that
+ * is cancelled or interrupted by a shutdown resumes from that point the next
+ * time it is started.  At most one job may run for each virtual wiki.
+ */
+public class TopicRenderJob implements Runnable {
+
+	private static final WikiLogger logger = WikiLogger.getLogger(TopicRenderJob.class.getName());
+	/** Name of the file, relative to the system file directory, used to record job progress. */
+	private static final String CHECKPOINT_FILE_NAME = "topic-render.properties";
+	/** Number of topic ids retrieved and processed as a single unit of work. */
+	private static final int CHUNK_SIZE = 100;
+	private static final Map<String, TopicRenderJob> JOBS = new HashMap<String, TopicRenderJob>();
+	/** Number of jobs currently running with search index auto-commit disabled. */
+	private static int batchJobs = 0;
+	private volatile boolean cancelled = false;
+	private volatile boolean complete = false;
+	private final AtomicInteger errors = new AtomicInteger();
+	private volatile int lastTopicId = 0;
+	private final AtomicInteger processed = new AtomicInteger();
+	private volatile int processedAtStart = 0;
+	private volatile boolean running = false;
+	private volatile long startTime = 0;
+	private volatile int total = 0;
+	private final String virtualWiki;
+
+	/**
+	 * Create a new job for the virtual wiki, resuming from any saved progress.
+	 */
+	TopicRenderJob(String virtualWiki) {
+		this.virtualWiki = virtualWiki;
+		Properties checkpoint = TopicRenderJob.loadCheckpoint();
+		this.lastTopicId = NumberUtils.toInt(checkpoint.getProperty(this.virtualWiki + ".lastTopicId"), 0);
+		this.processed.set(NumberUtils.toInt(checkpoint.getProperty(this.virtualWiki + ".processed"), 0));
+	}
+
+	/**
+	 * Disable search index auto-commit while the job runs.  The setting is
+	 * shared by all users of the search engine, so it is disabled by the first
+	 * running job and only restored once no job is running.
+	 */
+	private static synchronized void beginBatch(SearchEngine searchEngine) {
+		if (batchJobs++ == 0) {
+			searchEngine.setAutoCommit(false);
+		}
+	}
+
+	/**
+	 * Request that the job stop once the chunk currently being processed is
+	 * complete.  Progress up to that point is retained and the job will resume
+	 * from that point the next time it is started.
+	 */
+	public void cancel() {
+		this.cancelled = true;
+	}
+
+	/**
+	 *
+	 */
+	private static File checkpointFile() {
+		return new File(Environment.getValue(Environment.PROP_BASE_FILE_DIR), CHECKPOINT_FILE_NAME);
+	}
+
+	/**
+	 * Commit pending search index changes for all virtual wikis.  While
+	 * auto-commit is disabled index updates made by edits are also left
+	 * uncommitted, so changes to every virtual wiki are committed rather than
+	 * only those made by this job.
+	 */
+	private void commitSearchIndex(SearchEngine searchEngine) throws DataAccessException {
+		for (VirtualWiki virtualWiki : WikiBase.getDataHandler().getVirtualWikiList()) {
+			searchEngine.commit(virtualWiki.getName());
+		}
+	}
+
+	/**
+	 * Restore search index auto-commit once the last running job completes.
+	 */
+	private static synchronized void endBatch(SearchEngine searchEngine) {
+		if (--batchJobs == 0) {
+			searchEngine.setAutoCommit(true);
+		}
+	}
+
+	/**
+	 * Return the number of topics that could not be processed.
+	 */
+	public int getErrors() {
+		return this.errors.get();
+	}
+
+	/**
+	 * Return an estimate of the number of milliseconds until the job
+	 * completes, or -1 if no estimate is yet available.
+	 */
+	public long getEstimatedTimeRemaining() {
+		if (!this.running) {
+			return -1;
+		}
+		int processedThisRun = this.processed.get() - this.processedAtStart;
+		if (processedThisRun <= 0) {
+			return -1;
+		}
+		long remaining = Math.max(this.total - this.processed.get(), 0);
+		return ((System.currentTimeMillis() - this.startTime) * remaining) / processedThisRun;
+	}
+
+	/**
+	 * Return the most recently started job for the virtual wiki, or
+	 * <code>null</code> if no job has been started since the application was
+	 * started.
+	 */
+	public static synchronized TopicRenderJob getJob(String virtualWiki) {
+		return JOBS.get(virtualWiki);
+	}
+
+	/**
+	 * Return the number of topics processed, including topics processed by
+	 * previous runs of a resumed job.
+	 */
+	public int getProcessed() {
+		return this.processed.get();
+	}
+
+	/**
+	 * Return the time at which the job was most recently started.
+	 */
+	public long getStartTime() {
+		return this.startTime;
+	}
+
+	/**
+	 * Return the approximate number of topics in the virtual wiki, as counted
+	 * when the job was started.
+	 */
+	public int getTotal() {
+		return this.total;
+	}
+
+	/**
+	 * Return the name of the virtual wiki whose topics are being processed.
+	 */
+	public String getVirtualWiki() {
+		return this.virtualWiki;
+	}
+
+	/**
+	 * Return <code>true</code> if every topic in the virtual wiki has been
+	 * processed.
+	 */
+	public boolean isComplete() {
+		return this.complete;
+	}
+
+	/**
+	 * Return <code>true</code> if the job is currently processing topics.
+	 */
+	public boolean isRunning() {
+		return this.running;
+	}
+
+	/**
+	 *
+	 */
+	private static synchronized Properties loadCheckpoint() {
+		Properties checkpoint = new Properties();
+		File file = TopicRenderJob.checkpointFile();
+		if (!file.exists()) {
+			return checkpoint;
+		}
+		FileInputStream fis = null;
+		try {
+			fis = new FileInputStream(file);
+			checkpoint.load(fis);
+		} catch (IOException e) {
+			logger.warn("Failure while reading topic render progress from " + file.getPath() + ": " + e.getMessage());
+		} finally {
+			IOUtils.closeQuietly(fis);
+		}
+		return checkpoint;
+	}
+
+	/**
+	 * Parse a single topic and write its metadata.
+	 */
+	private void render(int topicId, SearchEngine searchEngine) {
+		Topic topic = null;
+		try {
+			topic = WikiBase.getDataHandler().lookupTopicById(this.virtualWiki, topicId);
+			if (topic == null) {
+				logger.warn("Invalid topic record found, possible database integrity issue: " + this.virtualWiki + " / " + topicId);
+				this.errors.incrementAndGet();
+				return;
+			}
+			ParserOutput parserOutput = ParserUtil.parserOutput(topic.getTopicContent(), this.virtualWiki, topic.getName());
+			// writing the topic updates links and categories and evicts the topic from the parsed topic cache.
+			// metadata from a parse cut short by the parser budget is incomplete and is not saved.
+			WikiBase.getDataHandler().writeTopic(topic, null, (parserOutput.getIncomplete()) ? null : parserOutput.getCategories(), (parserOutput.getIncomplete()) ? null : parserOutput.getLinks());
+			searchEngine.updateInIndex(topic);
+			this.processed.incrementAndGet();
+		} catch (ParserException e) {
+			logger.error("Failure while rendering topic " + this.virtualWiki + " / " + ((topic == null) ? topicId : topic.getName()) + ": " + e.getMessage());
+			this.errors.incrementAndGet();
+		} catch (DataAccessException e) {
+			logger.error("Failure while rendering topic " + this.virtualWiki + " / " + ((topic == null) ? topicId : topic.getName()) + ": " + e.getMessage());
+			this.errors.incrementAndGet();
+		} catch (WikiException e) {
+			logger.error("Failure while rendering topic " + this.virtualWiki + " / " + ((topic == null) ? topicId : topic.getName()) + ": " + e.getMessage());
+			this.errors.incrementAndGet();
+		} catch (RuntimeException e) {
+			// an unexpected error for one topic should not stop the remaining topics from being rendered
+			logger.error("Unexpected failure while rendering topic " + this.virtualWiki + " / " + ((topic == null) ? topicId : topic.getName()), e);
+			this.errors.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Process all remaining topics in the virtual wiki.  This method is
+	 * normally invoked in a background thread by {@link #start}.
+	 */
+	public void run() {
+		this.complete = false;
+		this.running = true;
+		this.startTime = System.currentTimeMillis();
+		this.processedAtStart = this.processed.get();
+		logger.info("Rendering topics for virtual wiki " + this.virtualWiki + " starting after topic id " + this.lastTopicId);
+		int threads = Math.max(Environment.getIntValue(Environment.PROP_TOPIC_RENDER_THREADS), 1);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		final SearchEngine searchEngine = WikiBase.getSearchEngine();
+		TopicRenderJob.beginBatch(searchEngine);
+		try {
+			this.total = WikiBase.getDataHandler().lookupTopicCount(this.virtualWiki, null);
+			while (!this.cancelled) {
+				long chunkStart = System.currentTimeMillis();
+				List<Integer> topicIds = WikiBase.getDataHandler().lookupTopicIds(this.virtualWiki, this.lastTopicId, CHUNK_SIZE);
+				if (topicIds.isEmpty()) {
+					this.complete = true;
+					break;
+				}
+				List<Future<?>> futures = new ArrayList<Future<?>>(topicIds.size());
+				for (final Integer topicId : topicIds) {
+					futures.add(executor.submit(new Runnable() {
+						public void run() {
+							render(topicId, searchEngine);
+						}
+					}));
+				}
+				for (Future<?> future : futures) {
+					future.get();
+				}
+				this.commitSearchIndex(searchEngine);
+				this.lastTopicId = topicIds.get(topicIds.size() - 1);
+				this.saveCheckpoint();
+				this.throttle(topicIds.size(), chunkStart);
+			}
+		} catch (DataAccessException e) {
+			logger.error("Failure while rendering topics for virtual wiki " + this.virtualWiki, e);
+		} catch (ExecutionException e) {
+			logger.error("Failure while rendering topics for virtual wiki " + this.virtualWiki, e);
+		} catch (InterruptedException e) {
+			logger.warn("Rendering of topics for virtual wiki " + this.virtualWiki + " interrupted");
+		} finally {
+			executor.shutdown();
+			TopicRenderJob.endBatch(searchEngine);
+			try {
+				this.commitSearchIndex(searchEngine);
+			} catch (DataAccessException e) {
+				logger.warn("Failure while committing search index changes: " + e.getMessage());
+			}
+			this.running = false;
+		}
+		if (this.complete) {
+			logger.info("Rendered " + this.processed.get() + " topics for virtual wiki " + this.virtualWiki + " with " + this.errors.get() + " errors");
+			// a completed job starts from the first topic when next run
+			this.lastTopicId = 0;
+			this.saveCheckpoint();
+		}
+	}
+
+	/**
+	 * Record the current job progress so that it can be resumed after a
+	 * cancellation or restart.
+	 */
+	private void saveCheckpoint() {
+		synchronized (TopicRenderJob.class) {
+			Properties checkpoint = TopicRenderJob.loadCheckpoint();
+			if (this.lastTopicId == 0) {
+				checkpoint.remove(this.virtualWiki + ".lastTopicId");
+				checkpoint.remove(this.virtualWiki + ".processed");
+			} else {
+				checkpoint.setProperty(this.virtualWiki + ".lastTopicId", Integer.toString(this.lastTopicId));
+				checkpoint.setProperty(this.virtualWiki + ".processed", Integer.toString(this.processed.get()));
+			}
+			File file = TopicRenderJob.checkpointFile();
+			FileOutputStream out = null;
+			try {
+				out = new FileOutputStream(file);
+				checkpoint.store(out, "JAMWiki topic render progress");
+			} catch (IOException e) {
+				logger.warn("Failure while saving topic render progress to " + file.getPath() + ": " + e.getMessage());
+			} finally {
+				IOUtils.closeQuietly(out);
+			}
+		}
+	}
+
+	/**
+	 * Start a background job to process all topics in the virtual wiki,
+	 * resuming from any saved progress.  If a job is already running for the
+	 * virtual wiki then no new job is started.
+	 *
+	 * @param virtualWiki The virtual wiki whose topics are to be processed.
+	 * @return The running job for the virtual wiki.
+	 */
+	public static synchronized TopicRenderJob start(String virtualWiki) {
+		TopicRenderJob job = JOBS.get(virtualWiki);
+		if (job != null && job.isRunning()) {
+			return job;
+		}
+		job = new TopicRenderJob(virtualWiki);
+		// mark the job as running before the thread starts so that status requests are accurate
+		job.running = true;
+		JOBS.put(virtualWiki, job);
+		Thread thread = new Thread(job, "TopicRenderJob-" + virtualWiki);
+		thread.setDaemon(true);
+		thread.start();
+		return job;
+	}
+
+	/**
+	 * Sleep as needed to keep the processing rate below the configured
+	 * maximum number of topics per second.
+	 */
+	private void throttle(int count, long chunkStart) throws InterruptedException {
+		int rate = Environment.getIntValue(Environment.PROP_TOPIC_RENDER_RATE);
+		if (rate <= 0) {
+			return;
+		}
+		long delay = ((count * 1000L) / rate) - (System.currentTimeMillis() - chunkStart);
+		if (delay > 0 && !this.cancelled) {
+			Thread.sleep(delay);
+		}
+	}
+}
@@ -34,6 +34,7 @@ import org.apache.commons.lang.StringUtils;
 import org.jamwiki.DataAccessException;
 import org.jamwiki.DataHandler;
 import org.jamwiki.Environment;
+import org.jamwiki.TopicNameCallback;
 import org.jamwiki.WikiBase;
 import org.jamwiki.WikiException;
 import org.jamwiki.WikiMessage;
@@ -65,6 +66,8 @@ public class WikiDatabase {
 	private static final WikiLogger logger = WikiLogger.getLogger(WikiDatabase.class.getName());
 	/** Root directory within the WAR distribution that contains the default topic pages. */
 	public static final String SPECIAL_PAGE_DIR = "pages";
+	/** Number of topics updated at a time when correcting topic namespaces. */
+	private static final int TOPIC_BATCH_SIZE = 1000;
 	// array used in database migration - elements are table name and, if elements within the
 	// table have dependencies (such as jam_namespace dependending on main_namespace_id), the
 	// column to sort results in order to avoid foreign key constrain violations
@@ -120,33 +123,37 @@ public class WikiDatabase {
 	 * namespace names.
 	 */
 	public static int fixIncorrectTopicNamespaces() throws DataAccessException {
-		int count = 0;
-		Map<Integer, String> topicNames;
-		List<Topic> topics;
+		final int[] count = new int[1];
 		List<VirtualWiki> virtualWikis = WikiBase.getDataHandler().getVirtualWikiList();
 		Connection conn = null;
 		try {
 			conn = DatabaseConnection.getConnection();
-			for (VirtualWiki virtualWiki : virtualWikis) {
-				topicNames = WikiDatabase.queryHandler().lookupTopicNames(virtualWiki.getVirtualWikiId(), true, conn);
-				if (topicNames.isEmpty()) {
-					continue;
-				}
-				topics = new ArrayList<Topic>();
-				for (int topicId : topicNames.keySet()) {
-					Topic topic = new Topic(virtualWiki.getName(), topicNames.get(topicId));
-					topic.setTopicId(topicId);
-					topics.add(topic);
-				}
-				WikiDatabase.queryHandler().updateTopicNamespaces(topics, conn);
-				count += topicNames.size();
+			final Connection updateConn = conn;
+			for (final VirtualWiki virtualWiki : virtualWikis) {
+				// topics are read with a cursor and updated in batches to avoid
+				// loading every topic name into memory
+				final List<Topic> topics = new ArrayList<Topic>();
+				WikiDatabase.queryHandler().forEachTopicName(virtualWiki.getVirtualWikiId(), true, new TopicNameCallback() {
+					public boolean processTopicName(int topicId, String topicName) throws DataAccessException {
+						Topic topic = new Topic(virtualWiki.getName(), topicName);
+						topic.setTopicId(topicId);
+						topics.add(topic);
+						if (topics.size() >= TOPIC_BATCH_SIZE) {
+							count[0] += WikiDatabase.updateTopicNamespaces(topics, updateConn);
+						}
+						return true;
+					}
+				});
+				count[0] += WikiDatabase.updateTopicNamespaces(topics, conn);
 			}
 		} catch (SQLException e) {
 			throw new DataAccessException(e);
 		} finally {
 			DatabaseConnection.closeConnection(conn);
 		}
-		return count;
+		// article counts depend on the topic namespace
+		WikiBase.getDataHandler().recountStatistics();
+		return count[0];
 	}
 
 	/**
@@ -499,43 +506,36 @@ public class WikiDatabase {
 	 *  updated successfully, the second is the number of records that failed.
 	 */
 	public static int[] rebuildTopicMetadata() throws DataAccessException {
-		int numErrors = 0;
-		int numUpdated = 0;
-		List<String> topicNames;
-		Topic topic;
-		ParserOutput parserOutput;
+		// element zero is the number of topics updated, element one the number of errors
+		final int[] resultArray = new int[2];
 		List<VirtualWiki> virtualWikis = WikiBase.getDataHandler().getVirtualWikiList();
-		for (VirtualWiki virtualWiki : virtualWikis) {
-			topicNames = WikiBase.getDataHandler().getAllTopicNames(virtualWiki.getName(), false);
-			if (topicNames.isEmpty()) {
-				continue;
-			}
-			for (String topicName : topicNames) {
-				try {
-					topic = WikiBase.getDataHandler().lookupTopic(virtualWiki.getName(), topicName, false);
-					if (topic == null) {
-						logger.warn("Invalid topic record found, possible database integrity issue: " + virtualWiki.getName() + " / " + topicName);
-						numErrors++;
-						continue;
+		for (final VirtualWiki virtualWiki : virtualWikis) {
+			WikiBase.getDataHandler().forEachTopicName(virtualWiki.getName(), false, new TopicNameCallback() {
+				public boolean processTopicName(int topicId, String topicName) {
+					try {
+						Topic topic = WikiBase.getDataHandler().lookupTopic(virtualWiki.getName(), topicName, false);
+						if (topic == null) {
+							logger.warn("Invalid topic record found, possible database integrity issue: " + virtualWiki.getName() + " / " + topicName);
+							resultArray[1]++;
+							return true;
+						}
+						ParserOutput parserOutput = ParserUtil.parserOutput(topic.getTopicContent(), virtualWiki.getName(), topicName);
+						WikiBase.getDataHandler().writeTopic(topic, null, (parserOutput.getIncomplete()) ? null : parserOutput.getCategories(), (parserOutput.getIncomplete()) ? null : parserOutput.getLinks());
+						resultArray[0]++;
+					} catch (ParserException e) {
+						logger.error("Failure while regenerating topic metadata for " + virtualWiki.getName() + " / " + topicName + ": " + e.getMessage());
+						resultArray[1]++;
+					} catch (DataAccessException e) {
+						logger.error("Failure while regenerating topic metadata for " + virtualWiki.getName() + " / " + topicName + ": " + e.getMessage());
+						resultArray[1]++;
+					} catch (WikiException e) {
+						logger.error("Failure while regenerating topic metadata for " + virtualWiki.getName() + " / " + topicName + ": " + e.getMessage());
+						resultArray[1]++;
 					}
-					parserOutput = ParserUtil.parserOutput(topic.getTopicContent(), virtualWiki.getName(), topicName);
-					WikiBase.getDataHandler().writeTopic(topic, null, parserOutput.getCategories(), parserOutput.getLinks());
-					numUpdated++;
-				} catch (ParserException e) {
-					logger.error("Failure while regenerating topic metadata for " + virtualWiki.getName() + " / " + topicName + ": " + e.getMessage());
-					numErrors++;
-				} catch (DataAccessException e) {
-					logger.error("Failure while regenerating topic metadata for " + virtualWiki.getName() + " / " + topicName + ": " + e.getMessage());
-					numErrors++;
-				} catch (WikiException e) {
-					logger.error("Failure while regenerating topic metadata for " + virtualWiki.getName() + " / " + topicName + ": " + e.getMessage());
-					numErrors++;
+					return true;
 				}
-			}
+			});
 		}
-		int[] resultArray = new int[2];
-		resultArray[0] = numUpdated;
-		resultArray[1] = numErrors;
 		return resultArray;
 	}
 
@@ -632,6 +632,8 @@ public class WikiDatabase {
 			throw e;
 		}
 		DatabaseConnection.commit(status);
+		// record the site statistics now that the default records exist
+		WikiBase.getDataHandler().recountStatistics();
 	}
 
 	/**
@@ -840,4 +842,24 @@ public class WikiDatabase {
 			setupSpecialPage(locale, virtualWiki.getName(), WikiBase.SPECIAL_PAGE_STYLESHEET, user, true);
 		}
 	}
+
+	/**
+	 * Update the namespace of a batch of topics, clearing the list once the
+	 * update is complete.
+	 *
+	 * @return The number of topics in the batch.
+	 */
+	private static int updateTopicNamespaces(List<Topic> topics, Connection conn) throws DataAccessException {
+		if (topics.isEmpty()) {
+			return 0;
+		}
+		try {
+			WikiDatabase.queryHandler().updateTopicNamespaces(topics, conn);
+		} catch (SQLException e) {
+			throw new DataAccessException(e);
+		}
+		int count = topics.size();
+		topics.clear();
+		return count;
+	}
 }
@@ -37,7 +37,6 @@ import org.jamwiki.model.RecentChange;
 import org.jamwiki.model.Topic;
 import org.jamwiki.model.TopicVersion;
 import org.jamwiki.model.VirtualWiki;
-import org.jamwiki.model.WikiUser;
 import org.jamwiki.utils.Pagination;
 import org.jamwiki.utils.Utilities;
 import org.jamwiki.utils.WikiLogger;
@@ -127,7 +126,6 @@ public class MediaWikiXmlExporter implements TopicExporter {
 		// since the garbage collector ends up being invoked excessively.
 		TopicVersion topicVersion;
 		Topic topic;
-		WikiUser user;
 		// choose 100,000 as an arbitrary default
 		int maxRevisions = (Environment.getIntValue(Environment.PROP_MAX_TOPIC_VERSION_EXPORT) > 0) ? Environment.getIntValue(Environment.PROP_MAX_TOPIC_VERSION_EXPORT) : 100000;
 		int revisionsRetrieved = 0;
@@ -165,12 +163,13 @@ public class MediaWikiXmlExporter implements TopicExporter {
 				writer.append('\n');
 				XMLUtil.buildTag(writer, "timestamp", this.parseJAMWikiTimestamp(topicVersion.getEditDate()), true);
 				writer.append("\n<contributor>");
-				user = (topicVersion.getAuthorId() != null) ? WikiBase.getDataHandler().lookupWikiUser(topicVersion.getAuthorId()) : null;
-				if (user != null) {
+				if (topicVersion.getAuthorId() != null && topicVersion.getAuthorName() != null) {
+					// the author name is the login of the registered user, and is null if
+					// that user no longer exists
 					writer.append('\n');
-					XMLUtil.buildTag(writer, "username", user.getUsername(), true);
+					XMLUtil.buildTag(writer, "username", topicVersion.getAuthorName(), true);
 					writer.append('\n');
-					XMLUtil.buildTag(writer, "id", user.getUserId());
+					XMLUtil.buildTag(writer, "id", topicVersion.getAuthorId());
 				} else if (Utilities.isIpAddress(topicVersion.getAuthorDisplay())) {
 					writer.append('\n');
 					XMLUtil.buildTag(writer, "ip", topicVersion.getAuthorDisplay(), true);
@@ -187,7 +186,6 @@ public class MediaWikiXmlExporter implements TopicExporter {
 				// explicitly null out temp variables to improve garbage collection and
 				// avoid OOM "GC overhead limit exceeded" errors on HUGE (500MB) topics
 				topicVersion = null;
-				user = null;
 			}
 			writer.append("\n</page>");
 		}
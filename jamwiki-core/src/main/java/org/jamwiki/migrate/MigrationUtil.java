@@ -112,7 +112,7 @@ public class MigrationUtil {
 				topic.setTopicType(TopicType.REDIRECT);
 			}
 			try {
-				WikiBase.getDataHandler().writeTopic(topic, topicVersion, parserOutput.getCategories(), parserOutput.getLinks());
+				WikiBase.getDataHandler().writeTopic(topic, topicVersion, (parserOutput.getIncomplete()) ? null : parserOutput.getCategories(), (parserOutput.getIncomplete()) ? null : parserOutput.getLinks());
 			} catch (DataAccessException e) {
 				throw new MigrationException("Data access exception while processing topic " + topic.getName(), e);
 			}
@@ -0,0 +1,135 @@
+/**
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE, version 2.1, dated February 1999.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the latest version of the GNU Lesser General
+ * Public License as published by the Free Software Foundation;
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program (LICENSE.txt); if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jamwiki.model;
+
+import java.sql.Timestamp;
+
+/**
+ * Provides an object representing a cache invalidation event.  Cache events
+ * are sent between JAMWiki instances that share a database so that data
+ * cached by one instance is removed when another instance modifies it.
+ */
+public class CacheEvent {
+
+	/** Remove all entries from the cache.  The key is ignored. */
+	public static final char KEY_TYPE_ALL = 'A';
+	/** Remove all entries whose key matches the event key, ignoring case. */
+	public static final char KEY_TYPE_CASE_INSENSITIVE = 'I';
+	/** Remove the entry whose key is the integer value of the event key. */
+	public static final char KEY_TYPE_INTEGER = 'N';
+	/** Remove the entry whose key is the event key. */
+	public static final char KEY_TYPE_STRING = 'S';
+	private String cacheName = null;
+	private Timestamp eventDate = null;
+	private String key = null;
+	private char keyType = KEY_TYPE_ALL;
+	private String nodeId = null;
+
+	/**
+	 *
+	 */
+	public CacheEvent() {
+	}
+
+	/**
+	 *
+	 */
+	public CacheEvent(String cacheName, String key, char keyType) {
+		this.cacheName = cacheName;
+		this.key = key;
+		this.keyType = keyType;
+	}
+
+	/**
+	 *
+	 */
+	public String getCacheName() {
+		return this.cacheName;
+	}
+
+	/**
+	 *
+	 */
+	public void setCacheName(String cacheName) {
+		this.cacheName = cacheName;
+	}
+
+	/**
+	 * Return the time at which the event was recorded, or <code>null</code>
+	 * if the event has not been recorded by the database.
+	 */
+	public Timestamp getEventDate() {
+		return this.eventDate;
+	}
+
+	/**
+	 *
+	 */
+	public void setEventDate(Timestamp eventDate) {
+		this.eventDate = eventDate;
+	}
+
+	/**
+	 *
+	 */
+	public String getKey() {
+		return this.key;
+	}
+
+	/**
+	 *
+	 */
+	public void setKey(String key) {
+		this.key = key;
+	}
+
+	/**
+	 * Return one of the <code>KEY_TYPE_</code> constants indicating how the
+	 * event key should be matched against cache keys.
+	 */
+	public char getKeyType() {
+		return this.keyType;
+	}
+
+	/**
+	 *
+	 */
+	public void setKeyType(char keyType) {
+		this.keyType = keyType;
+	}
+
+	/**
+	 * Return an identifier for the JAMWiki instance that published the event.
+	 */
+	public String getNodeId() {
+		return this.nodeId;
+	}
+
+	/**
+	 *
+	 */
+	public void setNodeId(String nodeId) {
+		this.nodeId = nodeId;
+	}
+
+	/**
+	 *
+	 */
+	public String toString() {
+		return this.cacheName + " / " + this.keyType + " / " + this.key + " (" + this.nodeId + ")";
+	}
+}
@@ -16,7 +16,9 @@
  */
 package org.jamwiki.model;
 
+import java.io.Serializable;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.List;
 import org.apache.commons.lang.StringUtils;
 import org.jamwiki.WikiMessage;
@@ -26,7 +28,7 @@ import org.jamwiki.utils.WikiLogger;
 /**
  * Provides an object representing a Wiki recent change.
  */
-public class RecentChange {
+public class RecentChange implements Serializable {
 
 	private static final WikiLogger logger = WikiLogger.getLogger(RecentChange.class.getName());
 	private Integer authorId = null;
@@ -51,6 +53,27 @@ public class RecentChange {
 	public RecentChange() {
 	}
 
+	/**
+	 *
+	 */
+	public RecentChange(RecentChange recentChange) {
+		this.authorId = recentChange.authorId;
+		this.authorName = recentChange.authorName;
+		this.charactersChanged = recentChange.charactersChanged;
+		this.changeComment = recentChange.changeComment;
+		this.changeDate = recentChange.changeDate;
+		this.changeWikiMessage = recentChange.changeWikiMessage;
+		this.editType = recentChange.editType;
+		this.logSubType = recentChange.logSubType;
+		this.logType = recentChange.logType;
+		this.params = (recentChange.params == null) ? null : new ArrayList<String>(recentChange.params);
+		this.previousTopicVersionId = recentChange.previousTopicVersionId;
+		this.topicId = recentChange.topicId;
+		this.topicName = recentChange.topicName;
+		this.topicVersionId = recentChange.topicVersionId;
+		this.virtualWiki = recentChange.virtualWiki;
+	}
+
 	/**
 	 *
 	 */
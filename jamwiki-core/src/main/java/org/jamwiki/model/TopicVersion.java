@@ -40,12 +40,16 @@ public class TopicVersion implements Serializable {
 	public static final int EDIT_UPLOAD = 9;
 	private Integer authorId = null;
 	private String authorDisplay = null;
+	/** The login of a registered author, or the author display value for anonymous edits.  This field is not persisted and is populated only when a version is read from the database. */
+	private String authorName = null;
 	private int charactersChanged = 0;
 	private String editComment = null;
 	private Timestamp editDate = new Timestamp(System.currentTimeMillis());
 	private int editType = EDIT_NORMAL;
 	/** This field is not persisted and is simply used when writing versions to indicate whether the version can be logged. */
 	private boolean loggable = true;
+	/** The id of the version that follows this version, if any.  This field is not persisted and is populated only when a version is read from the database. */
+	private Integer nextTopicVersionId = null;
 	private Integer previousTopicVersionId = null;
 	/** Some versions should be created without creating a recent change entry.  This field is not persisted. */
 	private boolean recentChangeAllowed = true;
@@ -136,6 +140,20 @@ public class TopicVersion implements Serializable {
 		this.authorDisplay = authorDisplay;
 	}
 
+	/**
+	 *
+	 */
+	public String getAuthorName() {
+		return this.authorName;
+	}
+
+	/**
+	 *
+	 */
+	public void setAuthorName(String authorName) {
+		this.authorName = authorName;
+	}
+
 	/**
 	 *
 	 */
@@ -206,6 +224,20 @@ public class TopicVersion implements Serializable {
 		this.loggable = loggable;
 	}
 
+	/**
+	 *
+	 */
+	public Integer getNextTopicVersionId() {
+		return this.nextTopicVersionId;
+	}
+
+	/**
+	 *
+	 */
+	public void setNextTopicVersionId(Integer nextTopicVersionId) {
+		this.nextTopicVersionId = nextTopicVersionId;
+	}
+
 	/**
 	 *
 	 */
@@ -43,8 +43,6 @@ public class WikiUser implements Serializable {
 	private String username = null;
 	private int userId = -1;
   private String style = "tango";
-  private String style = "waltz";
-  private String style = "zomg_ponies";
 	/**
 	 *
 	 */
@@ -51,6 +51,22 @@ public abstract class AbstractParser {
 	 */
 	public abstract String buildRedirectContent(String topicName);
 
+	/**
+	 * Generate an index of the offsets and levels of all editable sections
+	 * within a topic, allowing sections to be sliced and spliced without
+	 * re-parsing the topic.  Parsers that do not support section indexes
+	 * should return <code>null</code>, in which case slicing and splicing
+	 * will be done using {@link #parseSlice} and {@link #parseSplice}.
+	 *
+	 * @param raw The raw Wiki text that is to be indexed.
+	 * @return A section index for the raw Wiki text, or <code>null</code> if
+	 *  the parser does not support section indexes.
+	 * @throws ParserException Thrown if any error occurs during parsing.
+	 */
+	public SectionIndex buildSectionIndex(String raw) throws ParserException {
+		return null;
+	}
+
 	/**
 	 * This method parses content, performing all transformations except for
 	 * layout changes such as adding paragraph tags.  It is suitable to be used
@@ -0,0 +1,188 @@
+/**
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE, version 2.1, dated February 1999.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the latest version of the GNU Lesser General
+ * Public License as published by the Free Software Foundation;
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program (LICENSE.txt); if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jamwiki.parser;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.jamwiki.Environment;
+import org.jamwiki.utils.WikiLogger;
+
+/**
+ * Limits the resources that may be consumed by a single parsing run.  Three
+ * budgets are enforced: the number of wiki syntax and HTML tags parsed
+ * ({@link Environment#PROP_PARSER_MAX_NODES}), the total size of expanded
+ * template output ({@link Environment#PROP_PARSER_MAX_TEMPLATE_SIZE}) and
+ * the elapsed parse time ({@link Environment#PROP_PARSER_MAX_PARSE_TIME}).
+ * Once any budget is exhausted the parser stops expanding templates and
+ * parsing tags, and the remainder of the topic is displayed as escaped
+ * source, so that a single pathological topic cannot tie up a request thread
+ * indefinitely.  A limit of zero disables the corresponding budget.
+ *
+ * A budget is created with each new {@link ParserInput} instance and is
+ * shared with any copies of that instance, so parsing runs started while
+ * another run is in progress (such as those for templates) consume the budget
+ * of the enclosing run.  Budget instances are not
+ * thread-safe; the counts of parses that have exceeded each budget are
+ * maintained for the entire application.
+ */
+public class ParserBudget {
+
+	private static final WikiLogger logger = WikiLogger.getLogger(ParserBudget.class.getName());
+	/** The parse time is checked once for every this many nodes (must be a power of two). */
+	private static final int NODES_PER_TIME_CHECK = 16;
+	private static final AtomicLong NODES_EXCEEDED_COUNT = new AtomicLong();
+	private static final AtomicLong TEMPLATE_SIZE_EXCEEDED_COUNT = new AtomicLong();
+	private static final AtomicLong TIME_EXCEEDED_COUNT = new AtomicLong();
+	private int depth = 0;
+	private boolean exceeded = false;
+	private long maxNodes;
+	private long maxParseTime;
+	private long maxTemplateSize;
+	private long nodes = 0;
+	private long start;
+	private long templateSize = 0;
+	private final String topicName;
+
+	/**
+	 *
+	 */
+	protected ParserBudget(String topicName) {
+		this.topicName = topicName;
+		this.reset();
+	}
+
+	/**
+	 * Record that a tag is being parsed, verifying that neither the node
+	 * budget nor the parse time budget has been exhausted.
+	 *
+	 * @return <code>true</code> if the tag may be parsed, <code>false</code>
+	 *  if a budget has been exhausted and the tag should be left unparsed.
+	 */
+	public boolean addNode() {
+		if (this.exceeded) {
+			return false;
+		}
+		this.nodes++;
+		if (this.maxNodes > 0 && this.nodes > this.maxNodes) {
+			this.exceed(NODES_EXCEEDED_COUNT, "node count of " + this.maxNodes);
+			return false;
+		}
+		if (this.maxParseTime > 0 && (this.nodes & (NODES_PER_TIME_CHECK - 1)) == 0 && (System.currentTimeMillis() - this.start) > this.maxParseTime) {
+			this.exceed(TIME_EXCEEDED_COUNT, "parse time of " + (this.maxParseTime / 1000) + " seconds");
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Record the size of expanded template output, verifying that the template
+	 * size budget has not been exhausted.
+	 *
+	 * @param size The number of characters of template output being added to
+	 *  the topic.
+	 * @return <code>true</code> if the template output may be used,
+	 *  <code>false</code> if a budget has been exhausted and the template
+	 *  should be left unexpanded.
+	 */
+	public boolean addTemplateSize(int size) {
+		if (this.exceeded) {
+			return false;
+		}
+		this.templateSize += size;
+		if (this.maxTemplateSize > 0 && this.templateSize > this.maxTemplateSize) {
+			this.exceed(TEMPLATE_SIZE_EXCEEDED_COUNT, "expanded template size of " + this.maxTemplateSize + " characters");
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 *
+	 */
+	private void exceed(AtomicLong counter, String limit) {
+		this.exceeded = true;
+		counter.incrementAndGet();
+		logger.warn("Parsing of topic " + this.topicName + " exceeded the maximum " + limit + "; the remainder of the topic will not be parsed");
+	}
+
+	/**
+	 * Record that a parsing run has finished.  This method must be called
+	 * once for every call to {@link #start()}.
+	 */
+	public void finish() {
+		if (this.depth > 0) {
+			this.depth--;
+		}
+	}
+
+	/**
+	 * Return the number of parsing runs that have exceeded the node budget
+	 * since the application was started.
+	 */
+	public static long getNodesExceededCount() {
+		return NODES_EXCEEDED_COUNT.get();
+	}
+
+	/**
+	 * Return the number of parsing runs that have exceeded the template size
+	 * budget since the application was started.
+	 */
+	public static long getTemplateSizeExceededCount() {
+		return TEMPLATE_SIZE_EXCEEDED_COUNT.get();
+	}
+
+	/**
+	 * Return the number of parsing runs that have exceeded the parse time
+	 * budget since the application was started.
+	 */
+	public static long getTimeExceededCount() {
+		return TIME_EXCEEDED_COUNT.get();
+	}
+
+	/**
+	 * Return <code>true</code> if any budget has been exhausted, in which case
+	 * the parser output is incomplete.
+	 */
+	public boolean isExceeded() {
+		return this.exceeded;
+	}
+
+	/**
+	 * Restore the full budget and restart the parse timer.
+	 */
+	private void reset() {
+		this.exceeded = false;
+		this.maxNodes = Environment.getIntValue(Environment.PROP_PARSER_MAX_NODES);
+		this.maxParseTime = Environment.getIntValue(Environment.PROP_PARSER_MAX_PARSE_TIME) * 1000L;
+		this.maxTemplateSize = Environment.getIntValue(Environment.PROP_PARSER_MAX_TEMPLATE_SIZE);
+		this.nodes = 0;
+		this.start = System.currentTimeMillis();
+		this.templateSize = 0;
+	}
+
+	/**
+	 * Record that a parsing run is starting.  The full budget is restored
+	 * only when a top-level run starts; a run started while another is in
+	 * progress continues to use what remains of the enclosing run's budget.
+	 * Every call must be followed by a call to {@link #finish()}.
+	 */
+	public void start() {
+		if (this.depth == 0) {
+			this.reset();
+		}
+		this.depth++;
+	}
+}
@@ -0,0 +1,85 @@
+/**
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE, version 2.1, dated February 1999.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the latest version of the GNU Lesser General
+ * Public License as published by the Free Software Foundation;
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program (LICENSE.txt); if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jamwiki.parser;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.jamwiki.DataAccessException;
+import org.jamwiki.WikiBase;
+import org.jamwiki.model.Topic;
+import org.jamwiki.model.TopicVersion;
+
+/**
+ * Memoizes data lookups made while evaluating magic words and parser
+ * functions.  A topic built from templates will frequently evaluate the same
+ * magic word or <code>{{#ifexist:}}</code> call many times, so each lookup is
+ * performed at most once per parse and the result (including a
+ * <code>null</code> result) is re-used for the remainder of the parse.  An
+ * evaluation context is created with each new {@link ParserInput} instance
+ * and is shared with any copies of that instance; it is not thread-safe and
+ * should never outlive the parse that created it.
+ */
+public class ParserEvaluationContext {
+
+	private final Map<String, Topic> topics = new HashMap<String, Topic>();
+	private final Map<Integer, TopicVersion> topicVersions = new HashMap<Integer, TopicVersion>();
+
+	/**
+	 *
+	 */
+	protected ParserEvaluationContext() {
+	}
+
+	/**
+	 * Retrieve a topic, returning the result of any previous lookup of the
+	 * same topic during the current parse.
+	 *
+	 * @param virtualWiki The virtual wiki for the topic being retrieved.
+	 * @param topicName The name of the topic being retrieved.
+	 * @return The matching topic, or <code>null</code> if no matching topic
+	 *  exists.
+	 * @throws DataAccessException Thrown if any error occurs during lookup.
+	 */
+	public Topic lookupTopic(String virtualWiki, String topicName) throws DataAccessException {
+		String key = virtualWiki + "/" + topicName;
+		if (this.topics.containsKey(key)) {
+			return this.topics.get(key);
+		}
+		Topic topic = WikiBase.getDataHandler().lookupTopic(virtualWiki, topicName, false);
+		this.topics.put(key, topic);
+		return topic;
+	}
+
+	/**
+	 * Retrieve a topic version, returning the result of any previous lookup of
+	 * the same version during the current parse.
+	 *
+	 * @param topicVersionId The ID of the topic version being retrieved.
+	 * @return The matching topic version, or <code>null</code> if no matching
+	 *  topic version exists.
+	 * @throws DataAccessException Thrown if any error occurs during lookup.
+	 */
+	public TopicVersion lookupTopicVersion(int topicVersionId) throws DataAccessException {
+		Integer key = topicVersionId;
+		if (this.topicVersions.containsKey(key)) {
+			return this.topicVersions.get(key);
+		}
+		TopicVersion topicVersion = WikiBase.getDataHandler().lookupTopicVersion(topicVersionId);
+		this.topicVersions.put(key, topicVersion);
+		return topicVersion;
+	}
+}
@@ -29,9 +29,13 @@ public class ParserInput {
 
 	private boolean allowSectionEdit = true;
 	private boolean allowTableOfContents = true;
+	/** Resource limits for the current parse, shared by all copies of this instance. */
+	private final ParserBudget budget;
 	private String context = null;
 	/** Depth is used to prevent infinite nesting of templates and other objects. */
 	private int depth = 0;
+	/** Memoized magic word and parser function lookups, shared by all copies of this instance. */
+	private final ParserEvaluationContext evaluationContext;
 	/**
 	 * If an infinite loop is detected increment this counter so that the parser can
 	 * halt parsing for infinite loop attacks.
@@ -56,6 +60,8 @@ public class ParserInput {
 	public ParserInput(String virtualWiki, String topicName) {
 		this.virtualWiki = virtualWiki;
 		this.topicName = topicName;
+		this.budget = new ParserBudget(topicName);
+		this.evaluationContext = new ParserEvaluationContext();
 	}
 
 	/**
@@ -64,8 +70,10 @@ public class ParserInput {
 	public ParserInput(ParserInput parserInput) {
 		this.allowSectionEdit = parserInput.allowSectionEdit;
 		this.allowTableOfContents = parserInput.allowTableOfContents;
+		this.budget = parserInput.budget;
 		this.context = parserInput.context;
 		this.depth = depth;
+		this.evaluationContext = parserInput.evaluationContext;
 		this.infiniteLoopCount = infiniteLoopCount;
 		this.locale = parserInput.locale;
 		this.templateDepth = templateDepth;
@@ -123,6 +131,17 @@ public class ParserInput {
 		this.allowTableOfContents = allowTableOfContents;
 	}
 
+	/**
+	 * Get the budget that limits the resources that may be consumed by the
+	 * current parse.  The budget is shared by this instance and all of its
+	 * copies.
+	 *
+	 * @return The budget for the current parse.
+	 */
+	public ParserBudget getBudget() {
+		return this.budget;
+	}
+
 	/**
 	 * Get the servlet context associated with the current parser input
 	 * instance.  Servlet context is used when building links.
@@ -183,6 +202,17 @@ public class ParserInput {
 		this.depth++;
 	}
 
+	/**
+	 * Get the evaluation context used to memoize data lookups performed by
+	 * magic words and parser functions during the current parse.  The
+	 * evaluation context is shared by this instance and all of its copies.
+	 *
+	 * @return The evaluation context for the current parse.
+	 */
+	public ParserEvaluationContext getEvaluationContext() {
+		return this.evaluationContext;
+	}
+
 	/**
 	 * The infinite loop count records how many times the parser has found what
 	 * it believes to be an infinite loop while parsing a topic.  Each time such
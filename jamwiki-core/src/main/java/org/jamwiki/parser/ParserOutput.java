@@ -29,6 +29,7 @@ public class ParserOutput implements Serializable {
 
 	private boolean cacheable = true;
 	private final LinkedHashMap<String, String> categories = new LinkedHashMap<String, String>();
+	private boolean incomplete = false;
 	private final List<String> interwikiLinks = new ArrayList<String>();
 	private final List<String> links = new ArrayList<String>();
 	private final List<String> virtualWikiLinks = new ArrayList<String>();
@@ -49,6 +50,7 @@ public class ParserOutput implements Serializable {
 	public void reset() {
 		this.cacheable = true;
 		this.categories.clear();
+		this.incomplete = false;
 		this.interwikiLinks.clear();
 		this.links.clear();
 		this.virtualWikiLinks.clear();
@@ -124,6 +126,35 @@ public class ParserOutput implements Serializable {
 		}
 	}
 
+	/**
+	 * Merge the metadata from another ParserOutput object into this object, as
+	 * if the content that generated the other object had been appended to the
+	 * content that generated this object.  The section name of this object is
+	 * not modified.
+	 *
+	 * @param parserOutput The ParserOutput object whose metadata is being
+	 *  merged into this object.
+	 */
+	public void merge(ParserOutput parserOutput) {
+		this.cacheable = (this.cacheable && parserOutput.getCacheable());
+		this.categories.putAll(parserOutput.getCategories());
+		this.incomplete = (this.incomplete || parserOutput.getIncomplete());
+		for (String interwikiLink : parserOutput.getInterwikiLinks()) {
+			this.addInterwikiLink(interwikiLink);
+		}
+		this.links.addAll(parserOutput.getLinks());
+		for (String virtualWikiLink : parserOutput.getVirtualWikiLinks()) {
+			this.addVirtualWikiLink(virtualWikiLink);
+		}
+		if (parserOutput.getPageTitle() != null) {
+			this.pageTitle = parserOutput.getPageTitle();
+		}
+		if (this.redirect == null) {
+			this.redirect = parserOutput.getRedirect();
+		}
+		this.templates.addAll(parserOutput.getTemplates());
+	}
+
 	/**
 	 * Return a flag indicating whether or not the current ParserOutput
 	 * object can be cached.  If the document contains user-specific,
@@ -163,6 +194,29 @@ public class ParserOutput implements Serializable {
 		return this.categories;
 	}
 
+	/**
+	 * Return a flag indicating whether or not parsing stopped before the end
+	 * of the document because the parser budget was exhausted.  Incomplete
+	 * output and metadata such as links and categories must not be cached or
+	 * saved, since they do not reflect the full document.
+	 *
+	 * @return <code>true</code> if the document was only partially parsed.
+	 */
+	public boolean getIncomplete() {
+		return this.incomplete;
+	}
+
+	/**
+	 * Set a flag indicating whether or not parsing stopped before the end of
+	 * the document because the parser budget was exhausted.
+	 *
+	 * @param incomplete Set to <code>true</code> if the document was only
+	 *  partially parsed.
+	 */
+	public void setIncomplete(boolean incomplete) {
+		this.incomplete = incomplete;
+	}
+
 	/**
 	 * For the document being parsed, return the current list of interwiki
 	 * links for all interwiki links specified for the current document.
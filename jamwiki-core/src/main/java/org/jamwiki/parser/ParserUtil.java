@@ -18,12 +18,18 @@ package org.jamwiki.parser;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.List;
 import java.util.Locale;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang.ClassUtils;
+import org.apache.commons.lang.StringUtils;
 import org.jamwiki.Environment;
 import org.jamwiki.DataAccessException;
 import org.jamwiki.WikiBase;
 import org.jamwiki.model.Topic;
+import org.jamwiki.utils.WikiCache;
+import org.jamwiki.utils.WikiCacheEntry;
+import org.jamwiki.utils.WikiCacheKey;
 import org.jamwiki.utils.WikiLogger;
 
 /**
@@ -32,6 +38,17 @@ import org.jamwiki.utils.WikiLogger;
 public class ParserUtil {
 
 	private static final WikiLogger logger = WikiLogger.getLogger(ParserUtil.class.getName());
+	/** Cache of section indexes, keyed by topic version id. */
+	private static final WikiCache<Integer, SectionIndex> CACHE_SECTION_INDEX = new WikiCache<Integer, SectionIndex>("org.jamwiki.parser.ParserUtil.CACHE_SECTION_INDEX");
+	/** Cache of parser metadata for individual topic sections, keyed by topic name and section content digest. */
+	private static final WikiCache<WikiCacheKey, ParserOutput> CACHE_SECTION_METADATA = new WikiCache<WikiCacheKey, ParserOutput>("org.jamwiki.parser.ParserUtil.CACHE_SECTION_METADATA");
+	/** Open and close markup that must be balanced within a section for its metadata to be parsed separately. */
+	private static final String[][] SECTION_BALANCED_MARKUP = {
+		{"{{", "}}"},
+		{"<includeonly", "</includeonly"},
+		{"<noinclude", "</noinclude"},
+		{"<onlyinclude", "</onlyinclude"}
+	};
 
 	/**
 	 * Using the system parser, parse system content.
@@ -90,6 +107,84 @@ public class ParserUtil {
 		return parserOutput;
 	}
 
+	/**
+	 * Generate the same output as {@link #parseMetadata(ParserInput, String)}, but
+	 * parse each section of the content separately and cache the metadata for each
+	 * section.  When only one section of a large topic has been edited, metadata
+	 * for all other sections can then be retrieved from the cache and only the
+	 * changed section needs to be parsed.  If any section contains markup that
+	 * may span section boundaries, such as an unclosed template, then the full
+	 * content is parsed instead.  Note that the order of links in the returned
+	 * object may differ from a full parse since links are collected section by
+	 * section rather than parser stage by parser stage.
+	 *
+	 * @param parserInput A ParserInput object that contains parser configuration
+	 *  information.
+	 * @param content The raw topic content that is to be parsed.
+	 * @return Returns a ParserOutput object with minimally parsed topic content
+	 *  and other parser output fields set.
+	 * @throws ParserException Thrown if there are any parsing errors.
+	 */
+	public static ParserOutput parseMetadataBySection(ParserInput parserInput, String content) throws ParserException {
+		AbstractParser parser = parserInstance(parserInput);
+		String raw = StringUtils.remove(content, '\r');
+		SectionIndex sectionIndex = parser.buildSectionIndex(raw);
+		if (sectionIndex == null || sectionIndex.size() == 0) {
+			return ParserUtil.parseMetadata(parserInput, content);
+		}
+		List<String> chunks = sectionIndex.chunks(raw);
+		for (String chunk : chunks) {
+			if (!ParserUtil.isSelfContainedSection(chunk)) {
+				return ParserUtil.parseMetadata(parserInput, content);
+			}
+		}
+		ParserOutput parserOutput = new ParserOutput();
+		// the sections are parsed as a single run so that they share one parser budget
+		parserInput.getBudget().start();
+		try {
+			for (String chunk : chunks) {
+				if (chunk.length() == 0) {
+					continue;
+				}
+				WikiCacheKey key = new WikiCacheKey(parserInput.getVirtualWiki(), parserInput.getTopicName(), DigestUtils.shaHex(chunk));
+				WikiCacheEntry<ParserOutput> cacheEntry = null;
+				try {
+					cacheEntry = CACHE_SECTION_METADATA.retrieveFromCache(key);
+				} catch (DataAccessException e) {
+					throw new ParserException(e);
+				}
+				ParserOutput chunkOutput = null;
+				if (cacheEntry != null) {
+					chunkOutput = cacheEntry.getValue();
+				} else {
+					chunkOutput = new ParserOutput();
+					parser.parseMetadata(chunkOutput, chunk);
+					if (!chunkOutput.getIncomplete()) {
+						CACHE_SECTION_METADATA.addToCache(key, chunkOutput);
+					}
+				}
+				parserOutput.merge(chunkOutput);
+			}
+		} finally {
+			parserInput.getBudget().finish();
+		}
+		return parserOutput;
+	}
+
+	/**
+	 * Determine whether a section of topic content contains balanced template
+	 * and inclusion markup, and can therefore be parsed independently of the
+	 * sections around it without changing the parser metadata generated.
+	 */
+	private static boolean isSelfContainedSection(String chunk) {
+		for (String[] markup : SECTION_BALANCED_MARKUP) {
+			if (StringUtils.countMatches(chunk, markup[0]) != StringUtils.countMatches(chunk, markup[1])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	/**
 	 * Perform a bare minimum of parsing as required prior to saving a topic
 	 * to the database.  In general this method will simply parse signature
@@ -151,6 +246,37 @@ public class ParserUtil {
 		return parser.buildRedirectContent(topicName);
 	}
 
+	/**
+	 * Retrieve the section index for the current version of a topic, generating
+	 * and caching a new index if no valid index is available.
+	 *
+	 * @return The section index for the topic, or <code>null</code> if the
+	 *  current parser does not support section indexes.
+	 */
+	private static SectionIndex retrieveSectionIndex(AbstractParser parser, Topic topic, String content) throws ParserException {
+		Integer topicVersionId = topic.getCurrentVersionId();
+		if (topicVersionId == null) {
+			return parser.buildSectionIndex(content);
+		}
+		WikiCacheEntry<SectionIndex> cacheEntry = null;
+		try {
+			cacheEntry = CACHE_SECTION_INDEX.retrieveFromCache(topicVersionId);
+		} catch (DataAccessException e) {
+			throw new ParserException(e);
+		}
+		if (cacheEntry != null) {
+			SectionIndex sectionIndex = cacheEntry.getValue();
+			if (sectionIndex != null && sectionIndex.isValid(content)) {
+				return sectionIndex;
+			}
+		}
+		SectionIndex sectionIndex = parser.buildSectionIndex(content);
+		if (sectionIndex != null) {
+			CACHE_SECTION_INDEX.addToCache(topicVersionId, sectionIndex);
+		}
+		return sectionIndex;
+	}
+
 	/**
 	 * When editing a section of a topic, this method provides a way of slicing
 	 * out a given section of the raw topic content.
@@ -208,8 +334,14 @@ public class ParserUtil {
 		parserInput.setContext(context);
 		parserInput.setLocale(locale);
 		AbstractParser parser = ParserUtil.parserInstance(parserInput);
+		String raw = StringUtils.remove(topic.getTopicContent(), '\r');
+		SectionIndex sectionIndex = ParserUtil.retrieveSectionIndex(parser, topic, raw);
 		String content = null;
-		if (isSlice) {
+		if (sectionIndex != null && sectionIndex.hasSection(targetSection)) {
+			// only the heading needs to be parsed in order to determine the section name
+			parser.parseSlice(parserOutput, sectionIndex.heading(raw, targetSection), 1);
+			content = (isSlice) ? sectionIndex.slice(raw, targetSection) : sectionIndex.splice(raw, targetSection, replacementText);
+		} else if (isSlice) {
 			content = parser.parseSlice(parserOutput, topic.getTopicContent(), targetSection);
 		} else {
 			content = parser.parseSplice(parserOutput, topic.getTopicContent(), targetSection, replacementText);
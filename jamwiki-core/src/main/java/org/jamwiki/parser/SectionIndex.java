@@ -0,0 +1,225 @@
+/**
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE, version 2.1, dated February 1999.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the latest version of the GNU Lesser General
+ * Public License as published by the Free Software Foundation;
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program (LICENSE.txt); if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jamwiki.parser;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class holds the character offset, heading level and a hash of the
+ * heading text for every editable section of a topic.  Once an index has
+ * been generated for a topic version, slicing out a section for editing or
+ * splicing an edited section back into the topic becomes a simple substring
+ * operation rather than a full pass through the splice lexer.
+ *
+ * Sections are numbered starting from one, matching the section numbers used
+ * by section edit links.  All offsets are relative to the topic content with
+ * carriage returns removed.
+ */
+public class SectionIndex implements Serializable {
+
+	private static final int INITIAL_CAPACITY = 16;
+	private final int contentLength;
+	private int size = 0;
+	private int[] offsets = new int[INITIAL_CAPACITY];
+	private int[] levels = new int[INITIAL_CAPACITY];
+	private int[] headingLengths = new int[INITIAL_CAPACITY];
+	private int[] headingHashes = new int[INITIAL_CAPACITY];
+
+	/**
+	 * Create a new, empty section index.
+	 *
+	 * @param contentLength The length of the topic content (with carriage
+	 *  returns removed) that is being indexed.
+	 */
+	public SectionIndex(int contentLength) {
+		this.contentLength = contentLength;
+	}
+
+	/**
+	 * Record a new section heading.  Headings must be added in the order in
+	 * which they appear in the topic content.
+	 *
+	 * @param offset The character offset of the start of the heading.
+	 * @param level The heading level, from one to six.
+	 * @param headingText The raw heading text, such as "==Heading==".
+	 */
+	public void addSection(int offset, int level, String headingText) {
+		if (this.size == this.offsets.length) {
+			int capacity = this.size * 2;
+			this.offsets = this.grow(this.offsets, capacity);
+			this.levels = this.grow(this.levels, capacity);
+			this.headingLengths = this.grow(this.headingLengths, capacity);
+			this.headingHashes = this.grow(this.headingHashes, capacity);
+		}
+		this.offsets[this.size] = offset;
+		this.levels[this.size] = level;
+		this.headingLengths[this.size] = headingText.length();
+		this.headingHashes[this.size] = headingText.hashCode();
+		this.size++;
+	}
+
+	/**
+	 * Split the content into the chunks of text that lie between consecutive
+	 * headings.  The first chunk contains any text that appears before the
+	 * first heading (and may be empty), and every subsequent chunk starts with
+	 * a heading and runs up to the next heading regardless of its level.
+	 * Concatenating the returned chunks reproduces the original content.
+	 *
+	 * @param content The topic content (with carriage returns removed) for
+	 *  which this index was generated.
+	 * @return A list of content chunks, one more than the number of sections.
+	 */
+	public List<String> chunks(String content) {
+		List<String> chunks = new ArrayList<String>(this.size + 1);
+		int start = 0;
+		for (int i = 0; i < this.size; i++) {
+			chunks.add(content.substring(start, this.offsets[i]));
+			start = this.offsets[i];
+		}
+		chunks.add(content.substring(start));
+		return chunks;
+	}
+
+	/**
+	 * Return the exclusive end offset of the given section, which is the
+	 * offset of the next heading of the same or a higher level, or the end
+	 * of the content if no such heading exists.
+	 */
+	private int end(int section) {
+		int level = this.levels[section - 1];
+		for (int i = section; i < this.size; i++) {
+			if (this.levels[i] <= level) {
+				return this.offsets[i];
+			}
+		}
+		return this.contentLength;
+	}
+
+	/**
+	 *
+	 */
+	private int[] grow(int[] array, int capacity) {
+		int[] result = new int[capacity];
+		System.arraycopy(array, 0, result, 0, this.size);
+		return result;
+	}
+
+	/**
+	 * Return the raw heading text for the given section.
+	 *
+	 * @param content The topic content (with carriage returns removed) for
+	 *  which this index was generated.
+	 * @param section The section number, counted from one.
+	 * @return The raw heading text for the section, such as "==Heading==".
+	 */
+	public String heading(String content, int section) {
+		int start = this.offsets[section - 1];
+		return content.substring(start, start + this.headingLengths[section - 1]);
+	}
+
+	/**
+	 * Determine whether or not the given section number is present in this
+	 * index.
+	 *
+	 * @param section The section number, counted from one.
+	 * @return <code>true</code> if the section exists in this index.
+	 */
+	public boolean hasSection(int section) {
+		return (section >= 1 && section <= this.size);
+	}
+
+	/**
+	 * Verify that this index matches the given content by comparing content
+	 * length and the hash of every indexed heading.  An index generated for a
+	 * different version of the content will (almost always) fail this check,
+	 * in which case the index should be discarded and regenerated.
+	 *
+	 * @param content The topic content (with carriage returns removed) to
+	 *  validate against.
+	 * @return <code>true</code> if the index is valid for the content.
+	 */
+	public boolean isValid(String content) {
+		if (content == null || content.length() != this.contentLength) {
+			return false;
+		}
+		for (int i = 0; i < this.size; i++) {
+			int start = this.offsets[i];
+			int end = start + this.headingLengths[i];
+			if (end > this.contentLength) {
+				return false;
+			}
+			// equivalent to String.hashCode() for the heading substring, but without
+			// allocating a new string for every heading
+			int hash = 0;
+			for (int j = start; j < end; j++) {
+				hash = 31 * hash + content.charAt(j);
+			}
+			if (hash != this.headingHashes[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Return the number of sections in the index.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Return the raw content of a section, including its heading and all text
+	 * up to the next heading of the same or a higher level.
+	 *
+	 * @param content The topic content (with carriage returns removed) for
+	 *  which this index was generated.
+	 * @param section The section number, counted from one.
+	 * @return The raw content of the section.
+	 */
+	public String slice(String content, int section) {
+		return content.substring(this.offsets[section - 1], this.end(section));
+	}
+
+	/**
+	 * Replace the raw content of a section with new text, returning the full
+	 * topic content.
+	 *
+	 * @param content The topic content (with carriage returns removed) for
+	 *  which this index was generated.
+	 * @param section The section number, counted from one.
+	 * @param replacementText The new section content.  A trailing newline will
+	 *  be added if not present to avoid splicing two sections together.
+	 * @return The full topic content including the replacement text.
+	 */
+	public String splice(String content, int section, String replacementText) {
+		int start = this.offsets[section - 1];
+		int end = this.end(section);
+		StringBuilder result = new StringBuilder(content.length() + ((replacementText == null) ? 0 : replacementText.length() + 1));
+		result.append(content, 0, start);
+		if (replacementText != null) {
+			result.append(replacementText);
+			if (!replacementText.endsWith("\n")) {
+				result.append('\n');
+			}
+		}
+		result.append(content, end, content.length());
+		return result.toString();
+	}
+}
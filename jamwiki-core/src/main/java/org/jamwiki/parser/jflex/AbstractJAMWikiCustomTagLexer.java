@@ -206,6 +206,14 @@ public abstract class AbstractJAMWikiCustomTagLexer extends JFlexLexer {
 		return "";
 	}
 
+	/**
+	 * Override the parent method to clear the custom tag stack.
+	 */
+	protected void reset() {
+		super.reset();
+		this.customTagStack.clear();
+	}
+
 	/**
 	 * Internal class used to model custom tags of the form
 	 * <custom attribute="value">content</custom>.
@@ -67,4 +67,16 @@ public abstract class AbstractJAMWikiHtmlTagLexer extends JFlexLexer {
 		this.currentAttributeKey = key.toLowerCase();
 		this.attributes.put(this.currentAttributeKey, null);
 	}
+
+	/**
+	 * Override the parent method to clear the parsed tag values.
+	 */
+	protected void reset() {
+		super.reset();
+		this.attributes.clear();
+		this.currentAttributeKey = null;
+		this.html = null;
+		this.tagPattern = 0;
+		this.tagType = null;
+	}
 }
@@ -16,6 +16,8 @@
  */
 package org.jamwiki.parser.jflex;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Stack;
 import org.apache.commons.lang.StringUtils;
 import org.jamwiki.parser.ParserException;
@@ -29,6 +31,10 @@ import org.jamwiki.utils.WikiLogger;
 public abstract class AbstractJAMWikiLexer extends JFlexLexer {
 
 	protected static final WikiLogger logger = WikiLogger.getLogger(AbstractJAMWikiLexer.class.getName());
+	/** Maximum number of closed tag items to retain for re-use. */
+	private static final int MAX_POOLED_TAG_ITEMS = 64;
+	/** Closed tag items that can be re-used rather than allocating a new tag item for every tag. */
+	private final List<JFlexTagItem> tagItemPool = new ArrayList<JFlexTagItem>();
 	/** Stack of currently parsed tag content. */
 	private Stack<JFlexTagItem> tagStack = new Stack<JFlexTagItem>();
 	/**
@@ -85,7 +91,7 @@ public abstract class AbstractJAMWikiLexer extends JFlexLexer {
 		int currentPos = this.tagStack.size() - 1;
 		while (currentPos >= 0) {
 			JFlexTagItem tag = this.tagStack.get(currentPos);
-			if (!StringUtils.equals(tag.getTagType(), "li") && !StringUtils.equals(tag.getTagType(), "dd") && !StringUtils.equals(tag.getTagType(), "dt")) {
+			if (!tag.isListItemTag()) {
 				break;
 			}
 			// move back in the stack two since each list item has a parent list type
@@ -108,7 +114,7 @@ public abstract class AbstractJAMWikiLexer extends JFlexLexer {
 	protected void init(ParserInput parserInput, ParserOutput parserOutput, int mode) {
 		super.init(parserInput, parserOutput, mode);
 		try {
-			this.tagStack.push(new JFlexTagItem(JFlexTagItem.ROOT_TAG, null));
+			this.tagStack.push(this.newTagItem(JFlexTagItem.ROOT_TAG, null));
 		} catch (ParserException e) {
 			// can never be thrown for ROOT_TAG
 		}
@@ -145,6 +151,19 @@ public abstract class AbstractJAMWikiLexer extends JFlexLexer {
 		return this.popAllTags();
 	}
 
+	/**
+	 * Return a tag item for a new tag, re-using a closed tag item if one is
+	 * available.
+	 */
+	private JFlexTagItem newTagItem(String tagType, String openTagRaw) throws ParserException {
+		if (this.tagItemPool.isEmpty()) {
+			return new JFlexTagItem(tagType, openTagRaw);
+		}
+		JFlexTagItem tag = this.tagItemPool.remove(this.tagItemPool.size() - 1);
+		tag.initialize(tagType, openTagRaw);
+		return tag;
+	}
+
 	/**
 	 *
 	 */
@@ -275,7 +294,9 @@ public abstract class AbstractJAMWikiLexer extends JFlexLexer {
 		}
 		// now pop the root tag
 		JFlexTagItem currentTag = this.tagStack.pop();
-		return (this.mode >= JFlexParser.MODE_LAYOUT) ? currentTag.toHtml().trim() : currentTag.toHtml();
+		String html = (this.mode >= JFlexParser.MODE_LAYOUT) ? currentTag.toHtml().trim() : currentTag.toHtml();
+		this.releaseTagItem(currentTag);
+		return html;
 	}
 
 	/**
@@ -296,9 +317,10 @@ public abstract class AbstractJAMWikiLexer extends JFlexLexer {
 	}
 
 	/**
-	 * Pop the most recent HTML tag from the lexer stack.
+	 * Pop the most recent HTML tag from the lexer stack.  The popped tag item is
+	 * released for re-use by the next tag that is pushed onto the stack.
 	 */
-	protected JFlexTagItem popTag(String tagType) {
+	protected void popTag(String tagType) {
 		if (this.tagStack.size() <= 1) {
 			logger.warn("popTag called on an empty tag stack or on the root stack element.  Please report this error on jamwiki.org, and provide the wiki syntax for the topic being parsed.");
 		}
@@ -313,13 +335,15 @@ public abstract class AbstractJAMWikiLexer extends JFlexLexer {
 			// would set a close tag override when the "</u>" is parsed to indicate that
 			// the "</strong>" should actually be parsed as a "</u>".
 			if (StringUtils.equals(this.peekTag().getTagType(), this.peekTag().getCloseTagOverride())) {
-				return this.popTag(this.peekTag().getCloseTagOverride());
+				this.popTag(this.peekTag().getCloseTagOverride());
+				return;
 			}
 			// check to see if the parent tag is a list and the current tag is in the tag
 			// stack.  if so close the list and pop the current tag.
 			if (!JFlexTagItem.isListTag(tagType) && this.peekTag().isListItemTag() && this.isNextAfterListTags(tagType)) {
 				this.popAllListTags();
-				return this.popTag(tagType);
+				this.popTag(tagType);
+				return;
 			}
 			// check to see if the parent tag matches the current close tag.  if so then
 			// this is unbalanced HTML of the form "<u><strong>text</u></strong>" and
@@ -330,19 +354,22 @@ public abstract class AbstractJAMWikiLexer extends JFlexLexer {
 			}
 			if (parent != null && parent.getTagType().equals(tagType)) {
 				parent.setCloseTagOverride(tagType);
-				return this.popTag(this.peekTag().getTagType());
+				this.popTag(this.peekTag().getTagType());
+				return;
 			}
 			// if the above checks fail then this is an attempt to pop a tag that is not
 			// currently open, so append the escaped close tag to the current tag
 			// content without modifying the tag stack.
 			JFlexTagItem currentTag = this.tagStack.peek();
 			currentTag.getTagContent().append("&lt;/" + tagType + "&gt;");
-			return null;
+			return;
 		}
 		JFlexTagItem currentTag = this.tagStack.peek();
+		boolean popped = false;
 		if (this.tagStack.size() > 1) {
 			// only pop if not the root tag
 			currentTag = this.tagStack.pop();
+			popped = true;
 		}
 		JFlexTagItem previousTag = this.tagStack.peek();
 		if (!currentTag.isInlineTag() || currentTag.getTagType().equals("pre")) {
@@ -355,18 +382,21 @@ public abstract class AbstractJAMWikiLexer extends JFlexLexer {
 		} else {
 			previousTag.getTagContent().append(currentTag.toHtml());
 		}
-		return currentTag;
+		if (popped) {
+			this.releaseTagItem(currentTag);
+		}
 	}
 
 	/**
 	 * Pop the most recent HTML tag from the lexer stack.
 	 */
-	protected JFlexTagItem popTag(String tagType, String closeTagRaw) throws ParserException {
+	protected void popTag(String tagType, String closeTagRaw) throws ParserException {
 		if (tagType != null) {
-			return this.popTag(tagType);
+			this.popTag(tagType);
+			return;
 		}
 		HtmlTagItem htmlTagItem = JFlexParserUtil.sanitizeHtmlTag(closeTagRaw);
-		return this.popTag(htmlTagItem.getTagType());
+		this.popTag(htmlTagItem.getTagType());
 	}
 
 	/**
@@ -458,7 +488,10 @@ public abstract class AbstractJAMWikiLexer extends JFlexLexer {
 	 * Push a new HTML tag onto the lexer stack.
 	 */
 	protected void pushTag(String tagType, String openTagRaw) throws ParserException {
-		JFlexTagItem tag = new JFlexTagItem(tagType, openTagRaw);
+		// count HTML and table tags against the parse budget so that very large tables
+		// exhaust the budget, but always push them so that the output remains balanced
+		this.getParserInput().getBudget().addNode();
+		JFlexTagItem tag = this.newTagItem(tagType, openTagRaw);
 		// many HTML tags cannot nest (ie "<li><li></li></li>" is invalid), so if a non-nesting
 		// tag is being added and the previous tag is of the same type, close the previous tag
 		if (tag.isNonNestingTag() && this.peekTag().getTagType().equals(tag.getTagType())) {
@@ -466,4 +499,24 @@ public abstract class AbstractJAMWikiLexer extends JFlexLexer {
 		}
 		this.tagStack.push(tag);
 	}
+
+	/**
+	 * Make a closed tag item available for re-use.
+	 */
+	private void releaseTagItem(JFlexTagItem tag) {
+		if (this.tagItemPool.size() < MAX_POOLED_TAG_ITEMS) {
+			this.tagItemPool.add(tag);
+		}
+	}
+
+	/**
+	 * Override the parent method to clear the tag stack.
+	 */
+	protected void reset() {
+		super.reset();
+		while (!this.tagStack.empty()) {
+			this.releaseTagItem(this.tagStack.pop());
+		}
+		this.yyMatchCount = 0;
+	}
 }
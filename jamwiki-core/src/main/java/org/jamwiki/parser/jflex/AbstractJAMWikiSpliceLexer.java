@@ -16,6 +16,7 @@
  */
 package org.jamwiki.parser.jflex;
 
+import org.jamwiki.parser.SectionIndex;
 import org.jamwiki.utils.WikiLogger;
 
 /**
@@ -29,12 +30,17 @@ public abstract class AbstractJAMWikiSpliceLexer extends JFlexLexer {
 	protected int targetSection = 0;
 	protected String replacementText = null;
 	protected boolean inTargetSection = false;
+	/** If not <code>null</code>, the offset and level of every heading found will be recorded here. */
+	protected SectionIndex sectionIndex = null;
 
 	/**
 	 *
 	 */
-	protected String processHeading(int level, String headingText, int tagType) {
+	protected String processHeading(int level, String headingText, int tagType, int offset) {
 		this.section++;
+		if (this.sectionIndex != null) {
+			this.sectionIndex.addSection(offset, level, headingText);
+		}
 		if (inTargetSection && this.sectionDepth >= level) {
 			inTargetSection = false;
 		} else if (this.targetSection == this.section) {
@@ -46,6 +52,19 @@ public abstract class AbstractJAMWikiSpliceLexer extends JFlexLexer {
 		return returnText(headingText);
 	}
 
+	/**
+	 * Override the parent method to clear the section processing values.
+	 */
+	protected void reset() {
+		super.reset();
+		this.section = 0;
+		this.sectionDepth = 0;
+		this.targetSection = 0;
+		this.replacementText = null;
+		this.inTargetSection = false;
+		this.sectionIndex = null;
+	}
+
 	/**
 	 *
 	 */
@@ -65,6 +84,13 @@ public abstract class AbstractJAMWikiSpliceLexer extends JFlexLexer {
 		this.replacementText = replacementText;
 	}
 
+	/**
+	 *
+	 */
+	protected void setSectionIndex(SectionIndex sectionIndex) {
+		this.sectionIndex = sectionIndex;
+	}
+
 	/**
 	 *
 	 */
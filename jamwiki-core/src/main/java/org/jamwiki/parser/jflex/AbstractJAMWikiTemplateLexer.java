@@ -35,4 +35,12 @@ public abstract class AbstractJAMWikiTemplateLexer extends JFlexLexer {
 	protected boolean allowTemplates() {
 		return Environment.getBooleanValue(Environment.PROP_PARSER_ALLOW_TEMPLATES);
 	}
+
+	/**
+	 * Override the parent method to clear the current template content.
+	 */
+	protected void reset() {
+		super.reset();
+		this.templateString = "";
+	}
 }
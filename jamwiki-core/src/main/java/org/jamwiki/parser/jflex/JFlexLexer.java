@@ -16,7 +16,9 @@
  */
 package org.jamwiki.parser.jflex;
 
+import java.io.Reader;
 import java.util.Stack;
+import org.apache.commons.lang.StringEscapeUtils;
 import org.jamwiki.Environment;
 import org.jamwiki.parser.ParserOutput;
 import org.jamwiki.parser.ParserInput;
@@ -30,6 +32,8 @@ public abstract class JFlexLexer {
 
 	protected static final WikiLogger logger = WikiLogger.getLogger(JFlexLexer.class.getName());
 
+	/** Input buffers larger than this size (in characters) are discarded after parsing very large inputs. */
+	private static final int MAX_RETAINED_BUFFER_SIZE = 65536;
 	/** Member variable used to keep track of the state history for the lexer. */
 	protected Stack<Integer> states = new Stack<Integer>();
 	/** Parser configuration information. */
@@ -176,6 +180,12 @@ public abstract class JFlexLexer {
 			// do not attempt any further parsing
 			return raw;
 		}
+		if (this.mode >= JFlexParser.MODE_TEMPLATE && !this.getParserInput().getBudget().addNode() && type != TAG_TYPE_WIKI_BOLD_ITALIC) {
+			// the parse budget is exhausted, so leave the remainder of the topic unparsed.  output
+			// from the earlier stages is still wiki syntax and is escaped by the later stages.
+			// bold and italic tags are cheap and are always parsed so that they remain balanced.
+			return (this.mode >= JFlexParser.MODE_PROCESS) ? StringEscapeUtils.escapeHtml(raw) : raw;
+		}
 		JFlexParserTag jflexParserTag = null;
 		switch (type) {
 			case TAG_TYPE_HTML_HEADING:
@@ -234,6 +244,41 @@ public abstract class JFlexLexer {
 		}
 	}
 
+	/**
+	 * Discard all parsing state so that the lexer can be re-used for a new
+	 * parse.  Lexers that hold additional state should override this method,
+	 * calling the parent method.
+	 */
+	protected void reset() {
+		this.states.clear();
+		this.parserInput = null;
+		this.parserOutput = null;
+		this.mode = JFlexParser.MODE_POSTPROCESS;
+	}
+
+	/**
+	 * Return an input buffer suitable for reading input of the given length.
+	 * An input buffer that is too small would be repeatedly doubled and
+	 * copied by the lexer, so a buffer large enough to hold all input is
+	 * allocated up front; a very large buffer left over from parsing a large
+	 * input is discarded rather than retained by a pooled lexer.
+	 *
+	 * @param buffer The lexer's current input buffer.
+	 * @param length The number of characters of input that will be read.
+	 * @return The buffer to use when reading the input.
+	 */
+	protected static char[] sizeBuffer(char[] buffer, int length) {
+		// the lexer always requires room for one more character than it has read
+		int required = length + 1;
+		if (buffer.length < required) {
+			return new char[required];
+		}
+		if (buffer.length > MAX_RETAINED_BUFFER_SIZE && required <= MAX_RETAINED_BUFFER_SIZE) {
+			return new char[required];
+		}
+		return buffer;
+	}
+
 	/**
 	 * JFlex internal method used to change the lexer state values.
 	 */
@@ -249,6 +294,15 @@ public abstract class JFlexLexer {
 	 */
 	public abstract void yypushback(int number);
 
+	/**
+	 * Reset the lexer to read from a new input.  The lexer input buffer is
+	 * re-used if it is appropriately sized for the input length.
+	 *
+	 * @param reader The new input.
+	 * @param length The number of characters that can be read from the input.
+	 */
+	public abstract void yyreset(Reader reader, int length);
+
 	/**
 	 * JFlex internal method used to retrieve the current lexer state value.
 	 */
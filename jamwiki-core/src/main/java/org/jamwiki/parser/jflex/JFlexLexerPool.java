@@ -0,0 +1,119 @@
+/**
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE, version 2.1, dated February 1999.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the latest version of the GNU Lesser General
+ * Public License as published by the Free Software Foundation;
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program (LICENSE.txt); if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jamwiki.parser.jflex;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-thread pool of JFlex lexer instances.  Every parser stage, template and
+ * parser function fragment requires a lexer, and a new generated lexer
+ * allocates a large input buffer, so lexers are reset and re-used rather than
+ * being created for each parse.  Since parsing is recursive (a template lexer
+ * parsing a template will parse the template content using new lexers) a
+ * lexer is removed from the pool while in use, and a new lexer is created
+ * whenever the pool for the current thread has no free lexer of the
+ * requested type.  Pools are held by container request threads, so
+ * {@link #clear} should be called once each request completes so that
+ * lexers are not retained by idle threads or after the application is
+ * undeployed.
+ */
+public class JFlexLexerPool {
+
+	/** Maximum number of free lexers of each type to retain for each thread. */
+	private static final int MAX_POOLED_LEXERS = 16;
+	private static final ThreadLocal<Map<Class<? extends JFlexLexer>, List<JFlexLexer>>> POOLS = new ThreadLocal<Map<Class<? extends JFlexLexer>, List<JFlexLexer>>>() {
+		protected Map<Class<? extends JFlexLexer>, List<JFlexLexer>> initialValue() {
+			return new HashMap<Class<? extends JFlexLexer>, List<JFlexLexer>>();
+		}
+	};
+
+	/**
+	 *
+	 */
+	private JFlexLexerPool() {
+	}
+
+	/**
+	 * Retrieve a lexer of the specified type from the pool for the current
+	 * thread, creating a new lexer if no free lexer is available, and reset it
+	 * to read the given content.  Every lexer retrieved using this method
+	 * should be returned to the pool by calling {@link #release} once parsing
+	 * is complete.
+	 *
+	 * @param lexerClass The type of lexer to retrieve.
+	 * @param content The content that the lexer will parse.
+	 * @return A lexer instance that is ready to parse the content.
+	 */
+	static <T extends JFlexLexer> T acquire(Class<T> lexerClass, String content) {
+		List<JFlexLexer> pool = JFlexLexerPool.pool(lexerClass);
+		T lexer = (pool.isEmpty()) ? JFlexLexerPool.newInstance(lexerClass) : lexerClass.cast(pool.remove(pool.size() - 1));
+		lexer.yyreset(new StringReader(content), content.length());
+		return lexer;
+	}
+
+	/**
+	 * Discard all pooled lexers for the current thread.
+	 */
+	public static void clear() {
+		POOLS.remove();
+	}
+
+	/**
+	 *
+	 */
+	private static <T extends JFlexLexer> T newInstance(Class<T> lexerClass) {
+		try {
+			return lexerClass.getConstructor(Reader.class).newInstance((Reader)null);
+		} catch (Exception e) {
+			throw new IllegalStateException("Unable to instantiate lexer " + lexerClass.getName(), e);
+		}
+	}
+
+	/**
+	 *
+	 */
+	private static List<JFlexLexer> pool(Class<? extends JFlexLexer> lexerClass) {
+		Map<Class<? extends JFlexLexer>, List<JFlexLexer>> pools = POOLS.get();
+		List<JFlexLexer> pool = pools.get(lexerClass);
+		if (pool == null) {
+			pool = new ArrayList<JFlexLexer>();
+			pools.put(lexerClass, pool);
+		}
+		return pool;
+	}
+
+	/**
+	 * Return a lexer to the pool for the current thread.  The lexer state is
+	 * cleared, an oversized input buffer is discarded, and the lexer must not
+	 * be used again by the caller.
+	 *
+	 * @param lexer The lexer to return to the pool.
+	 */
+	static void release(JFlexLexer lexer) {
+		lexer.reset();
+		lexer.yyreset(new StringReader(""), 0);
+		List<JFlexLexer> pool = JFlexLexerPool.pool(lexer.getClass());
+		if (pool.size() < MAX_POOLED_LEXERS) {
+			pool.add(lexer);
+		}
+	}
+}
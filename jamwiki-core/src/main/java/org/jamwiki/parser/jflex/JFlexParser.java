@@ -16,13 +16,13 @@
  */
 package org.jamwiki.parser.jflex;
 
-import java.io.StringReader;
 import org.apache.commons.lang.StringUtils;
 import org.jamwiki.DataAccessException;
 import org.jamwiki.parser.AbstractParser;
 import org.jamwiki.parser.ParserException;
 import org.jamwiki.parser.ParserInput;
 import org.jamwiki.parser.ParserOutput;
+import org.jamwiki.parser.SectionIndex;
 import org.jamwiki.utils.LinkUtil;
 import org.jamwiki.utils.WikiLink;
 import org.jamwiki.utils.WikiLogger;
@@ -84,21 +84,51 @@ public class JFlexParser extends AbstractParser {
 	}
 
 	/**
-	 * Utility method for executing a lexer parse.
+	 * Generate an index of the offsets and levels of all editable sections
+	 * within a topic.  The splice lexer is run once over the content without
+	 * a target section, so headings are counted exactly as they would be
+	 * during a slice or splice but no heading text is parsed.
+	 *
+	 * @param raw The raw Wiki text that is to be indexed.
+	 * @return A section index for the raw Wiki text.
+	 * @throws ParserException Thrown if any error occurs during parsing.
+	 */
+	public SectionIndex buildSectionIndex(String raw) throws ParserException {
+		long start = System.currentTimeMillis();
+		String content = StringUtils.remove(raw, '\r');
+		SectionIndex sectionIndex = new SectionIndex(content.length());
+		JAMWikiSpliceLexer lexer = JFlexLexerPool.acquire(JAMWikiSpliceLexer.class, content);
+		lexer.setSectionIndex(sectionIndex);
+		// sections are counted from one, so a target section of zero never matches
+		lexer.setTargetSection(0);
+		this.lex(lexer, content, new ParserOutput(), JFlexParser.MODE_SLICE);
+		String topicName = (!StringUtils.isBlank(this.parserInput.getTopicName())) ? this.parserInput.getTopicName() : null;
+		logger.debug("Parse time (buildSectionIndex) for " + topicName + " (" + ((System.currentTimeMillis() - start) / 1000.000) + " s.)");
+		return sectionIndex;
+	}
+
+	/**
+	 * Utility method for executing a lexer parse.  The lexer must have been
+	 * retrieved from the {@link JFlexLexerPool} and is returned to the pool
+	 * once parsing is complete.
 	 */
 	private String lex(JFlexLexer lexer, String raw, ParserOutput parserOutput, int mode) throws ParserException {
-		lexer.init(this.parserInput, parserOutput, mode);
-		validate(lexer);
-		this.parserInput.incrementDepth();
-		String result = null;
 		try {
-			result = lexer.lex();
-		} catch (Exception e) {
+			lexer.init(this.parserInput, parserOutput, mode);
+			validate(lexer);
+			this.parserInput.incrementDepth();
+			String result = null;
+			try {
+				result = lexer.lex();
+			} catch (Exception e) {
+				this.parserInput.decrementDepth();
+				throw new ParserException("Failure while parsing topic " + this.parserInput.getTopicName(), e);
+			}
 			this.parserInput.decrementDepth();
-			throw new ParserException("Failure while parsing topic " + this.parserInput.getTopicName(), e);
+			return result;
+		} finally {
+			JFlexLexerPool.release(lexer);
 		}
-		this.parserInput.decrementDepth();
-		return result;
 	}
 
 	/**
@@ -111,8 +141,7 @@ public class JFlexParser extends AbstractParser {
 	 * @throws ParserException Thrown if any error occurs during parsing.
 	 */
 	private String parseCustom(ParserOutput parserOutput, String raw, int mode) throws ParserException {
-		StringReader reader = toStringReader(raw);
-		JFlexLexer lexer = new JAMWikiCustomTagLexer(reader);
+		JFlexLexer lexer = JFlexLexerPool.acquire(JAMWikiCustomTagLexer.class, this.removeCarriageReturns(raw));
 		int preMode = (mode > JFlexParser.MODE_CUSTOM) ? JFlexParser.MODE_CUSTOM : mode;
 		return this.lex(lexer, raw, parserOutput, preMode);
 	}
@@ -157,17 +186,26 @@ public class JFlexParser extends AbstractParser {
 	 */
 	public String parseHTML(ParserOutput parserOutput, String raw) throws ParserException {
 		long start = System.currentTimeMillis();
-		// some parser expressions require that lines end in a newline, so add a newline
-		// to the end of the content for good measure
-		String output = raw + '\n';
-		output = this.parseTemplate(parserOutput, output, JFlexParser.MODE_TEMPLATE);
-		output = this.parseCustom(parserOutput, output, JFlexParser.MODE_CUSTOM);
-		output = this.parsePreProcess(parserOutput, output, JFlexParser.MODE_PREPROCESS);
-		output = this.parseProcess(parserOutput, output, JFlexParser.MODE_LAYOUT);
-		output = this.parsePostProcess(parserOutput, output, JFlexParser.MODE_POSTPROCESS);
-		if (!StringUtils.isBlank(parserOutput.getRedirect())) {
-			// redirects are parsed differently
-			output = this.parseRedirect(parserOutput, raw);
+		this.parserInput.getBudget().start();
+		String output = null;
+		try {
+			// some parser expressions require that lines end in a newline, so add a newline
+			// to the end of the content for good measure
+			output = raw + '\n';
+			output = this.parseTemplate(parserOutput, output, JFlexParser.MODE_TEMPLATE);
+			output = this.parseCustom(parserOutput, output, JFlexParser.MODE_CUSTOM);
+			output = this.parsePreProcess(parserOutput, output, JFlexParser.MODE_PREPROCESS);
+			output = this.parseProcess(parserOutput, output, JFlexParser.MODE_LAYOUT);
+			output = this.parsePostProcess(parserOutput, output, JFlexParser.MODE_POSTPROCESS);
+			if (!StringUtils.isBlank(parserOutput.getRedirect())) {
+				// redirects are parsed differently
+				output = this.parseRedirect(parserOutput, raw);
+			}
+		} finally {
+			this.parserInput.getBudget().finish();
+		}
+		if (this.parserInput.getBudget().isExceeded()) {
+			parserOutput.setIncomplete(true);
 		}
 		String topicName = (!StringUtils.isBlank(this.parserInput.getTopicName())) ? this.parserInput.getTopicName() : null;
 		logger.info("Parse time (parseHTML) for " + topicName + " (" + ((System.currentTimeMillis() - start) / 1000.000) + " s.)");
@@ -187,12 +225,20 @@ public class JFlexParser extends AbstractParser {
 		if (this.parserInput.getContext() == null) {
 			this.parserInput.setContext("/wiki");
 		}
-		// some parser expressions require that lines end in a newline, so add a newline
-		// to the end of the content for good measure
-		String output = raw + '\n';
-		output = this.parseTemplate(parserOutput, output, JFlexParser.MODE_TEMPLATE);
-		output = this.parseCustom(parserOutput, output, JFlexParser.MODE_CUSTOM);
-		output = this.parsePreProcess(parserOutput, output, JFlexParser.MODE_PREPROCESS);
+		this.parserInput.getBudget().start();
+		try {
+			// some parser expressions require that lines end in a newline, so add a newline
+			// to the end of the content for good measure
+			String output = raw + '\n';
+			output = this.parseTemplate(parserOutput, output, JFlexParser.MODE_TEMPLATE);
+			output = this.parseCustom(parserOutput, output, JFlexParser.MODE_CUSTOM);
+			output = this.parsePreProcess(parserOutput, output, JFlexParser.MODE_PREPROCESS);
+		} finally {
+			this.parserInput.getBudget().finish();
+		}
+		if (this.parserInput.getBudget().isExceeded()) {
+			parserOutput.setIncomplete(true);
+		}
 		if (logger.isInfoEnabled()) {
 			String topicName = (!StringUtils.isBlank(this.parserInput.getTopicName())) ? this.parserInput.getTopicName() : null;
 			logger.info("Parse time (parseMetadata) for " + topicName + " (" + ((System.currentTimeMillis() - start) / 1000.000) + " s.)");
@@ -228,8 +274,7 @@ public class JFlexParser extends AbstractParser {
 	 * @throws ParserException Thrown if any error occurs during parsing.
 	 */
 	private String parseTemplate(ParserOutput parserOutput, String raw, int mode) throws ParserException {
-		StringReader reader = toStringReader(raw);
-		JFlexLexer lexer = new JAMWikiTemplateLexer(reader);
+		JFlexLexer lexer = JFlexLexerPool.acquire(JAMWikiTemplateLexer.class, this.removeCarriageReturns(raw));
 		int preMode = (mode > JFlexParser.MODE_TEMPLATE) ? JFlexParser.MODE_TEMPLATE : mode;
 		return this.lex(lexer, raw, parserOutput, preMode);
 	}
@@ -247,8 +292,7 @@ public class JFlexParser extends AbstractParser {
 		if (mode < JFlexParser.MODE_PREPROCESS) {
 			return raw;
 		}
-		StringReader reader = toStringReader(raw);
-		JFlexLexer lexer = new JAMWikiPreLexer(reader);
+		JFlexLexer lexer = JFlexLexerPool.acquire(JAMWikiPreLexer.class, this.removeCarriageReturns(raw));
 		int preMode = (mode > JFlexParser.MODE_PREPROCESS) ? JFlexParser.MODE_PREPROCESS : mode;
 		return this.lex(lexer, raw, parserOutput, preMode);
 	}
@@ -267,8 +311,7 @@ public class JFlexParser extends AbstractParser {
 		if (mode < JFlexParser.MODE_PROCESS) {
 			return raw;
 		}
-		StringReader reader = toStringReader(raw);
-		JFlexLexer lexer = new JAMWikiLexer(reader);
+		JFlexLexer lexer = JFlexLexerPool.acquire(JAMWikiLexer.class, this.removeCarriageReturns(raw));
 		return this.lex(lexer, raw, parserOutput, mode);
 	}
 
@@ -287,8 +330,7 @@ public class JFlexParser extends AbstractParser {
 		if (mode < JFlexParser.MODE_POSTPROCESS) {
 			return raw;
 		}
-		StringReader reader = toStringReader(raw);
-		JFlexLexer lexer = new JAMWikiPostLexer(reader);
+		JFlexLexer lexer = JFlexLexerPool.acquire(JAMWikiPostLexer.class, this.removeCarriageReturns(raw));
 		return this.lex(lexer, raw, parserOutput, mode);
 	}
 
@@ -344,8 +386,7 @@ public class JFlexParser extends AbstractParser {
 	 */
 	public String parseSlice(ParserOutput parserOutput, String raw, int targetSection) throws ParserException {
 		long start = System.currentTimeMillis();
-		StringReader reader = toStringReader(raw);
-		JAMWikiSpliceLexer lexer = new JAMWikiSpliceLexer(reader);
+		JAMWikiSpliceLexer lexer = JFlexLexerPool.acquire(JAMWikiSpliceLexer.class, this.removeCarriageReturns(raw));
 		lexer.setTargetSection(targetSection);
 		String output = this.lex(lexer, raw, parserOutput, JFlexParser.MODE_SLICE);
 		String topicName = (!StringUtils.isBlank(this.parserInput.getTopicName())) ? this.parserInput.getTopicName() : null;
@@ -372,8 +413,7 @@ public class JFlexParser extends AbstractParser {
 	 */
 	public String parseSplice(ParserOutput parserOutput, String raw, int targetSection, String replacementText) throws ParserException {
 		long start = System.currentTimeMillis();
-		StringReader reader = toStringReader(raw);
-		JAMWikiSpliceLexer lexer = new JAMWikiSpliceLexer(reader);
+		JAMWikiSpliceLexer lexer = JFlexLexerPool.acquire(JAMWikiSpliceLexer.class, this.removeCarriageReturns(raw));
 		lexer.setReplacementText(replacementText);
 		lexer.setTargetSection(targetSection);
 		String output = this.lex(lexer, raw, parserOutput, JFlexParser.MODE_SPLICE);
@@ -383,11 +423,11 @@ public class JFlexParser extends AbstractParser {
 	}
 
 	/**
-	 * Convert a string of text to be parsed into a StringReader, performing any
-	 * preprocessing, such as removing linefeeds, in the process.
+	 * Perform any preprocessing, such as removing linefeeds, required for a
+	 * string of text to be parsed.
 	 */
-	private StringReader toStringReader(String raw) {
-		return new StringReader(StringUtils.remove(raw, '\r'));
+	private String removeCarriageReturns(String raw) {
+		return StringUtils.remove(raw, '\r');
 	}
 
 	/**
@@ -16,7 +16,6 @@
  */
 package org.jamwiki.parser.jflex;
 
-import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
 import org.apache.commons.lang.StringUtils;
@@ -185,16 +184,18 @@ public class JFlexParserUtil {
 		}
 		// strip any newlines from the tag
 		tag = tag.replace('\n', ' ');
-		JAMWikiHtmlTagLexer lexer = new JAMWikiHtmlTagLexer(new StringReader(tag));
+		JAMWikiHtmlTagLexer lexer = JFlexLexerPool.acquire(JAMWikiHtmlTagLexer.class, tag);
 		try {
 			while (lexer.yylex() != null) {
 				// there is no need to store the result since the HtmlTagItem that
 				// is generated by the parser is the item of interest.
 			}
+			return lexer.getHtmlTagItem();
 		} catch (Exception e) {
 			throw new ParserException("Failure while parsing: " + tag, e);
+		} finally {
+			JFlexLexerPool.release(lexer);
 		}
-		return (lexer.getHtmlTagItem() != null) ? lexer.getHtmlTagItem() : null;
 	}
 
 	/**
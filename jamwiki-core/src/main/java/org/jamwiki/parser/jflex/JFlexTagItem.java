@@ -16,10 +16,9 @@
  */
 package org.jamwiki.parser.jflex;
 
-import java.util.Arrays;
-import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
 import org.apache.commons.lang.StringUtils;
 import org.jamwiki.parser.ParserException;
 import org.jamwiki.utils.WikiLogger;
@@ -32,32 +31,67 @@ class JFlexTagItem {
 
 	private static final WikiLogger logger = WikiLogger.getLogger(JFlexTagItem.class.getName());
 
-	private static final List<String> EMPTY_BODY_TAGS = Arrays.asList("br", "col", "div", "hr", "td", "th");
-	private static final List<String> LIST_ITEM_TAGS = Arrays.asList("dd", "dt", "li");
-	private static final List<String> LIST_TAGS = Arrays.asList("dd", "dl", "dt", "li", "ol", "ul");
-	private static final List<String> NON_NESTING_TAGS = Arrays.asList("col", "colgroup", "dd", "dl", "dt", "h1", "h2", "h3", "h4", "h5", "h6", "hr", "li", "ol", "table", "tbody", "td", "tfoot", "th", "thead", "tr", "ul");
-	private static final List<String> NON_TEXT_BODY_TAGS = Arrays.asList("col", "colgroup", "dl", "ol", "table", "tbody", "tfoot", "thead", "tr", "ul");
-	private static final List<String> NON_INLINE_TAGS = Arrays.asList("caption", "col", "colgroup", "dd", "div", "dl", "dt", "h1", "h2", "h3", "h4", "h5", "h6", "hr", "li", "ol", "p", "table", "tbody", "td", "tfoot", "th", "thead", "tr", "ul");
-	private static final String nonInlineTagPattern = "(caption|col|colgroup|dd|div|dl|dt|h1|h2|h3|h4|h5|h6|hr|li|ol|p|table|tbody|td|tfoot|th|thead|tr|ul)";
-	private static final String nonInlineTagStartPattern = "<" + nonInlineTagPattern + "[ >].*";
-	private static final String nonInlineTagEndPattern = ".*</" + nonInlineTagPattern + ">";
-	private static final Pattern NON_INLINE_TAG_START_PATTERN = Pattern.compile(nonInlineTagStartPattern, Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
-	private static final Pattern NON_INLINE_TAG_END_PATTERN = Pattern.compile(nonInlineTagEndPattern, Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+	private static final String[] EMPTY_BODY_TAGS = {"br", "col", "div", "hr", "td", "th"};
+	private static final String[] LIST_ITEM_TAGS = {"dd", "dt", "li"};
+	private static final String[] LIST_TAGS = {"dd", "dl", "dt", "li", "ol", "ul"};
+	private static final String[] NON_NESTING_TAGS = {"col", "colgroup", "dd", "dl", "dt", "h1", "h2", "h3", "h4", "h5", "h6", "hr", "li", "ol", "table", "tbody", "td", "tfoot", "th", "thead", "tr", "ul"};
+	private static final String[] NON_TEXT_BODY_TAGS = {"col", "colgroup", "dl", "ol", "table", "tbody", "tfoot", "thead", "tr", "ul"};
+	private static final String[] NON_INLINE_TAGS = {"caption", "col", "colgroup", "dd", "div", "dl", "dt", "h1", "h2", "h3", "h4", "h5", "h6", "hr", "li", "ol", "p", "table", "tbody", "td", "tfoot", "th", "thead", "tr", "ul"};
 	protected static final String ROOT_TAG = "jflex-root";
+	/** Tag property bit flags. */
+	private static final int PROPERTY_EMPTY_BODY = 1;
+	private static final int PROPERTY_LIST_ITEM = 1 << 1;
+	private static final int PROPERTY_LIST = 1 << 2;
+	private static final int PROPERTY_NON_NESTING = 1 << 3;
+	private static final int PROPERTY_NON_TEXT_BODY = 1 << 4;
+	private static final int PROPERTY_NON_INLINE = 1 << 5;
+	private static final int PROPERTY_ROOT = 1 << 6;
+	/** Registry of tag type to tag property flags for all tags with at least one property. */
+	private static final Map<String, Integer> TAG_PROPERTIES = new HashMap<String, Integer>();
+	static {
+		registerTagProperty(EMPTY_BODY_TAGS, PROPERTY_EMPTY_BODY);
+		registerTagProperty(LIST_ITEM_TAGS, PROPERTY_LIST_ITEM);
+		registerTagProperty(LIST_TAGS, PROPERTY_LIST);
+		registerTagProperty(NON_NESTING_TAGS, PROPERTY_NON_NESTING);
+		registerTagProperty(NON_TEXT_BODY_TAGS, PROPERTY_NON_TEXT_BODY);
+		registerTagProperty(NON_INLINE_TAGS, PROPERTY_NON_INLINE);
+		registerTagProperty(new String[]{ROOT_TAG}, PROPERTY_ROOT);
+	}
+	/** The longest tag name with the non-inline property, used to bound scans for non-inline tags. */
+	private static final int MAX_NON_INLINE_TAG_LENGTH = 8;
+	/** Content buffers that have grown beyond this capacity are not re-used when the tag item is re-initialized. */
+	private static final int MAX_RETAINED_CONTENT_CAPACITY = 16384;
 	private String closeTagOverride = null;
 	private HtmlTagItem htmlTagItem = null;
-	private final StringBuilder tagContent = new StringBuilder();
+	private StringBuilder tagContent = new StringBuilder();
+	/** Property flags for the current tag type, looked up once when the tag type is set. */
+	private int tagProperties = 0;
 	private String tagType = null;
 
 	/**
 	 *
 	 */
 	JFlexTagItem(String tagType, String openTagRaw) throws ParserException {
+		this.initialize(tagType, openTagRaw);
+	}
+
+	/**
+	 * Initialize the tag item, discarding any existing values.  This method
+	 * allows a tag item that has been closed to be re-used for a new tag
+	 * without allocating a new object and content buffer.
+	 */
+	protected void initialize(String tagType, String openTagRaw) throws ParserException {
 		this.htmlTagItem = JFlexParserUtil.sanitizeHtmlTag(openTagRaw);
 		if (tagType == null && this.htmlTagItem == null) {
 			throw new IllegalArgumentException("tagType must not be null");
 		}
-		this.tagType = ((tagType == null) ? this.htmlTagItem.getTagType() : tagType);
+		this.setTagType((tagType == null) ? this.htmlTagItem.getTagType() : tagType);
+		this.closeTagOverride = null;
+		if (this.tagContent.capacity() > MAX_RETAINED_CONTENT_CAPACITY) {
+			this.tagContent = new StringBuilder();
+		} else {
+			this.tagContent.setLength(0);
+		}
 	}
 
 	/**
@@ -106,17 +140,29 @@ class JFlexTagItem {
 	 * switched in the stack, such as '''''bold''' then italic''.
 	 */
 	protected void changeTagType(String tagType) {
-		this.tagType = tagType;
+		this.setTagType(tagType);
+	}
+
+	/**
+	 *
+	 */
+	private boolean hasProperty(int property) {
+		return ((this.tagProperties & property) != 0);
+	}
+
+	/**
+	 * Determine whether a tag type has the given property.
+	 */
+	private static boolean hasProperty(String tagType, int property) {
+		Integer properties = TAG_PROPERTIES.get(tagType);
+		return (properties != null && (properties & property) != 0);
 	}
 
 	/**
 	 * An empty body tag is one that contains no content, such as "br".
 	 */
-	private boolean isEmptyBodyTag() {
-		if (this.isRootTag()) {
-			return true;
-		}
-		return (EMPTY_BODY_TAGS.indexOf(this.tagType) != -1);
+	protected boolean isEmptyBodyTag() {
+		return this.hasProperty(PROPERTY_ROOT | PROPERTY_EMPTY_BODY);
 	}
 
 	/**
@@ -125,38 +171,35 @@ class JFlexTagItem {
 	 * its own display box.
 	 */
 	protected boolean isInlineTag() {
-		if (this.isRootTag()) {
-			return true;
-		}
-		return (NON_INLINE_TAGS.indexOf(this.tagType) == -1);
+		return (this.hasProperty(PROPERTY_ROOT) || !this.hasProperty(PROPERTY_NON_INLINE));
 	}
 
 	/**
 	 * Determine if the tag is a list item tag (dd, dt, li).
 	 */
 	protected boolean isListItemTag() {
-		return JFlexTagItem.isListItemTag(this.tagType);
+		return this.hasProperty(PROPERTY_LIST_ITEM);
 	}
 
 	/**
 	 * Determine if the tag is a list item tag (dd, dt, li).
 	 */
 	protected static boolean isListItemTag(String tagType) {
-		return (LIST_ITEM_TAGS.indexOf(tagType) != -1);
+		return JFlexTagItem.hasProperty(tagType, PROPERTY_LIST_ITEM);
 	}
 
 	/**
 	 * Determine if the tag is a list tag (dd, dl, dt, li, ol, ul).
 	 */
 	protected boolean isListTag() {
-		return JFlexTagItem.isListTag(this.tagType);
+		return this.hasProperty(PROPERTY_LIST);
 	}
 
 	/**
 	 * Determine if the tag is a list tag (dd, dl, dt, li, ol, ul).
 	 */
 	protected static boolean isListTag(String tagType) {
-		return (LIST_TAGS.indexOf(tagType) != -1);
+		return JFlexTagItem.hasProperty(tagType, PROPERTY_LIST);
 	}
 
 	/**
@@ -164,7 +207,7 @@ class JFlexTagItem {
 	 * another "li" tag.
 	 */
 	protected boolean isNonNestingTag() {
-		return JFlexTagItem.isNonNestingTag(this.tagType);
+		return this.hasProperty(PROPERTY_NON_NESTING);
 	}
 
 	/**
@@ -172,40 +215,63 @@ class JFlexTagItem {
 	 * another "li" tag.
 	 */
 	protected static boolean isNonNestingTag(String tagType) {
-		return (NON_NESTING_TAGS.indexOf(tagType) != -1);
+		return JFlexTagItem.hasProperty(tagType, PROPERTY_NON_NESTING);
 	}
 
 	/**
-	 *
+	 * Determine whether text ends with the close tag of a non-inline tag, such
+	 * as "</ul>".  Only the trailing markup is examined.
 	 */
-	private boolean isNonInlineTagEnd(String tagText) {
-		if (!tagText.endsWith(">")) {
+	protected static boolean isNonInlineTagEnd(String tagText) {
+		int end = tagText.length() - 1;
+		if (end < 0 || tagText.charAt(end) != '>') {
 			return false;
 		}
-		Matcher matcher = NON_INLINE_TAG_END_PATTERN.matcher(tagText);
-		return matcher.matches();
+		int start = end;
+		while (start > 0 && (end - start) <= MAX_NON_INLINE_TAG_LENGTH && Character.isLetterOrDigit(tagText.charAt(start - 1))) {
+			start--;
+		}
+		if (start < 2 || tagText.charAt(start - 1) != '/' || tagText.charAt(start - 2) != '<') {
+			return false;
+		}
+		return JFlexTagItem.isNonInlineTagName(tagText, start, end);
 	}
 
 	/**
-	 *
+	 * Determine whether the given portion of text is the name of a non-inline
+	 * tag, ignoring case.
+	 */
+	private static boolean isNonInlineTagName(String text, int start, int end) {
+		if (start == end || (end - start) > MAX_NON_INLINE_TAG_LENGTH) {
+			return false;
+		}
+		return JFlexTagItem.hasProperty(text.substring(start, end).toLowerCase(Locale.ENGLISH), PROPERTY_NON_INLINE);
+	}
+
+	/**
+	 * Determine whether text starts with the open tag of a non-inline tag, such
+	 * as "<ul>" or "<div class="example">".  Only the leading markup is examined.
 	 */
-	private boolean isNonInlineTagStart(String tagText) {
-		if (!tagText.startsWith("<")) {
+	protected static boolean isNonInlineTagStart(String tagText) {
+		if (tagText.length() == 0 || tagText.charAt(0) != '<') {
+			return false;
+		}
+		int end = 1;
+		while (end < tagText.length() && (end - 1) <= MAX_NON_INLINE_TAG_LENGTH && Character.isLetterOrDigit(tagText.charAt(end))) {
+			end++;
+		}
+		if (end >= tagText.length() || (tagText.charAt(end) != ' ' && tagText.charAt(end) != '>')) {
 			return false;
 		}
-		Matcher matcher = NON_INLINE_TAG_START_PATTERN.matcher(tagText);
-		return matcher.matches();
+		return JFlexTagItem.isNonInlineTagName(tagText, 1, end);
 	}
 
 	/**
 	 * Determine whether the tag allows text body content.  Some tags, such
 	 * as "table", allow only tag content and no text content.
 	 */
-	private boolean isTextBodyTag() {
-		if (this.isRootTag()) {
-			return true;
-		}
-		return (NON_TEXT_BODY_TAGS.indexOf(this.tagType) == -1);
+	protected boolean isTextBodyTag() {
+		return (this.hasProperty(PROPERTY_ROOT) || !this.hasProperty(PROPERTY_NON_TEXT_BODY));
 	}
 
 	/**
@@ -213,7 +279,27 @@ class JFlexTagItem {
 	 * that indicates the bottom of the parser tag stack.
 	 */
 	protected boolean isRootTag() {
-		return this.tagType.equals(JFlexTagItem.ROOT_TAG);
+		return this.hasProperty(PROPERTY_ROOT);
+	}
+
+	/**
+	 * Add a property to the tag property registry for each of the given tag
+	 * types.
+	 */
+	private static void registerTagProperty(String[] tagTypes, int property) {
+		for (String tagType : tagTypes) {
+			Integer properties = TAG_PROPERTIES.get(tagType);
+			TAG_PROPERTIES.put(tagType, ((properties == null) ? 0 : properties) | property);
+		}
+	}
+
+	/**
+	 * Set the tag type, looking up the properties of the new tag type.
+	 */
+	private void setTagType(String tagType) {
+		this.tagType = tagType;
+		Integer properties = TAG_PROPERTIES.get(tagType);
+		this.tagProperties = ((properties == null) ? 0 : properties);
 	}
 
 	/**
@@ -221,6 +307,7 @@ class JFlexTagItem {
 	 */
 	public String toHtml() {
 		String content = this.tagContent.toString();
+		String trimmedContent = content.trim();
 		// if no content do not generate a tag
 		if (StringUtils.isBlank(content) && !this.isEmptyBodyTag()) {
 			return "";
@@ -246,17 +333,17 @@ class JFlexTagItem {
 			}
 		} else if (this.isTextBodyTag()) {
 			// ugly hack to handle cases such as "<li><ul>" where the "<ul>" should be on its own line
-			if (this.isNonInlineTagStart(content.trim())) {
+			if (JFlexTagItem.isNonInlineTagStart(trimmedContent)) {
 				result.append('\n');
 			}
-			result.append(content.trim());
+			result.append(trimmedContent);
 			// ugly hack to handle cases such as "</ul></li>" where the "</li>" should be on its own line
-			if (this.isNonInlineTagEnd(content.trim())) {
+			if (JFlexTagItem.isNonInlineTagEnd(trimmedContent)) {
 				result.append('\n');
 			}
 		} else {
 			result.append('\n');
-			result.append(content.trim());
+			result.append(trimmedContent);
 			result.append('\n');
 		}
 		if (!this.isRootTag()) {
@@ -265,11 +352,11 @@ class JFlexTagItem {
 		if (this.isTextBodyTag() && !this.isRootTag() && this.isInlineTag() && !this.tagType.equals("pre")) {
 			// work around issues such as "text''' text'''", where the output should
 			// be "text <b>text</b>", by moving the whitespace to the parent tag
-			int firstWhitespaceIndex = content.indexOf(content.trim());
+			int firstWhitespaceIndex = content.indexOf(trimmedContent);
 			if (firstWhitespaceIndex > 0) {
 				result.insert(0, content.substring(0, firstWhitespaceIndex));
 			}
-			int lastWhitespaceIndex = firstWhitespaceIndex + content.trim().length();
+			int lastWhitespaceIndex = firstWhitespaceIndex + trimmedContent.length();
 			if (lastWhitespaceIndex > content.length()) {
 				result.append(content.substring(lastWhitespaceIndex));
 			}
@@ -30,9 +30,9 @@ import org.jamwiki.model.Namespace;
 import org.jamwiki.model.Topic;
 import org.jamwiki.model.TopicVersion;
 import org.jamwiki.model.VirtualWiki;
-import org.jamwiki.model.WikiUser;
 import org.jamwiki.parser.ParserInput;
 import org.jamwiki.utils.LinkUtil;
+import org.jamwiki.utils.SiteStatistics;
 import org.jamwiki.utils.Utilities;
 import org.jamwiki.utils.WikiLink;
 import org.jamwiki.utils.WikiLogger;
@@ -322,35 +322,35 @@ public class MagicWordUtil {
 			return WikiVersion.CURRENT_WIKI_VERSION;
 		}
 		if (name.equals(MAGIC_NUMBER_ARTICLES)) {
-			int results = WikiBase.getDataHandler().lookupTopicCount(parserInput.getVirtualWiki(), Namespace.MAIN_ID);
+			int results = SiteStatistics.getArticleCount(parserInput.getVirtualWiki());
 			return numFormatter.format(results);
 		}
 		if (name.equals(MAGIC_NUMBER_ARTICLES_R)) {
-			int results = WikiBase.getDataHandler().lookupTopicCount(parserInput.getVirtualWiki(), Namespace.MAIN_ID);
+			int results = SiteStatistics.getArticleCount(parserInput.getVirtualWiki());
 			return Integer.toString(results);
 		}
 		if (name.equals(MAGIC_NUMBER_PAGES)) {
-			int results = WikiBase.getDataHandler().lookupTopicCount(parserInput.getVirtualWiki(), null);
+			int results = SiteStatistics.getTopicCount(parserInput.getVirtualWiki());
 			return numFormatter.format(results);
 		}
 		if (name.equals(MAGIC_NUMBER_PAGES_R)) {
-			int results = WikiBase.getDataHandler().lookupTopicCount(parserInput.getVirtualWiki(), null);
+			int results = SiteStatistics.getTopicCount(parserInput.getVirtualWiki());
 			return Integer.toString(results);
 		}
 		if (name.equals(MAGIC_NUMBER_FILES)) {
-			int results = WikiBase.getDataHandler().lookupWikiFileCount(parserInput.getVirtualWiki());
+			int results = SiteStatistics.getFileCount(parserInput.getVirtualWiki());
 			return numFormatter.format(results);
 		}
 		if (name.equals(MAGIC_NUMBER_FILES_R)) {
-			int results = WikiBase.getDataHandler().lookupWikiFileCount(parserInput.getVirtualWiki());
+			int results = SiteStatistics.getFileCount(parserInput.getVirtualWiki());
 			return Integer.toString(results);
 		}
 		if (name.equals(MAGIC_NUMBER_USERS)) {
-			int results = WikiBase.getDataHandler().lookupWikiUserCount();
+			int results = SiteStatistics.getUserCount();
 			return numFormatter.format(results);
 		}
 		if (name.equals(MAGIC_NUMBER_USERS_R)) {
-			int results = WikiBase.getDataHandler().lookupWikiUserCount();
+			int results = SiteStatistics.getUserCount();
 			return Integer.toString(results);
 		}
 		/*
@@ -445,12 +445,13 @@ public class MagicWordUtil {
 		if (name.equals(MAGIC_SUBJECT_PAGE_NAME_E) || name.equals(MAGIC_ARTICLE_PAGE_NAME_E)) {
 			return Utilities.encodeAndEscapeTopicName(WikiUtil.extractTopicLink(parserInput.getVirtualWiki(), parserInput.getTopicName()));
 		}
-		Topic topic = WikiBase.getDataHandler().lookupTopic(parserInput.getVirtualWiki(), parserInput.getTopicName(), false);
+		// revision values are memoized since templates may evaluate them many times
+		Topic topic = parserInput.getEvaluationContext().lookupTopic(parserInput.getVirtualWiki(), parserInput.getTopicName());
 		TopicVersion topicVersion = null;
 		Date revision = null;
 		// null check needed for the test data handler, which does not implement topic versions
 		if (topic != null && topic.getCurrentVersionId() != null) {
-			topicVersion = WikiBase.getDataHandler().lookupTopicVersion(topic.getCurrentVersionId());
+			topicVersion = parserInput.getEvaluationContext().lookupTopicVersion(topic.getCurrentVersionId());
 			revision = topicVersion.getEditDate();
 		}
 		formatter.setTimeZone(utc);
@@ -493,8 +494,7 @@ public class MagicWordUtil {
 			if (topicVersion == null) {
 				return "";
 			}
-			WikiUser wikiUser = (topicVersion.getAuthorId() != null) ? WikiBase.getDataHandler().lookupWikiUser(topicVersion.getAuthorId()) : null;
-			return (wikiUser != null) ? wikiUser.getUsername() : topicVersion.getAuthorDisplay();
+			return (topicVersion.getAuthorName() != null) ? topicVersion.getAuthorName() : topicVersion.getAuthorDisplay();
 		}
 		if (name.equals(MAGIC_REVISION_ID)) {
 			return (topicVersion == null) ? "" : Integer.toString(topicVersion.getTopicVersionId());
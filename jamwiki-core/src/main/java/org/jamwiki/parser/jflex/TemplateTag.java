@@ -196,6 +196,10 @@ public class TemplateTag implements JFlexParserTag {
 			} else {
 				result = this.processTemplateContent(parserInput, parserOutput, templateTopic, templateContent);
 			}
+			if (result != null && !parserInput.getBudget().addTemplateSize(result.length())) {
+				// expanded template output exceeds the parse budget
+				result = raw;
+			}
 		}
 		parserInput.decrementTemplateDepth();
 		return result;
@@ -0,0 +1,167 @@
+/**
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE, version 2.1, dated February 1999.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the latest version of the GNU Lesser General
+ * Public License as published by the Free Software Foundation;
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program (LICENSE.txt); if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jamwiki.utils;
+
+import java.util.UUID;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
+import org.jamwiki.Environment;
+import org.jamwiki.model.CacheEvent;
+
+/**
+ * Remove data from the local cache and notify any other JAMWiki instances
+ * sharing the same database that the data should also be removed from their
+ * caches.  Events are sent using the {@link CacheInvalidationBus}
+ * implementation configured by {@link Environment#PROP_CACHE_INVALIDATION_BUS};
+ * if no implementation is configured then only the local cache is updated.
+ */
+public class CacheInvalidation {
+
+	private static final WikiLogger logger = WikiLogger.getLogger(CacheInvalidation.class.getName());
+	/** Identifies this JAMWiki instance within the cluster. */
+	private static final String NODE_ID = UUID.randomUUID().toString();
+	private static volatile CacheInvalidationBus bus = null;
+
+	/**
+	 *
+	 */
+	private CacheInvalidation() {
+	}
+
+	/**
+	 * Apply a cache event to the local cache without sending it to any other
+	 * JAMWiki instances.  This method is called when an event is received from
+	 * another instance.
+	 *
+	 * @param event The cache event to apply.
+	 */
+	public static void apply(CacheEvent event) {
+		switch (event.getKeyType()) {
+			case CacheEvent.KEY_TYPE_CASE_INSENSITIVE:
+				WikiCache.removeFromCacheCaseInsensitive(event.getCacheName(), event.getKey());
+				break;
+			case CacheEvent.KEY_TYPE_INTEGER:
+				WikiCache.removeFromCache(event.getCacheName(), NumberUtils.toInt(event.getKey()));
+				break;
+			case CacheEvent.KEY_TYPE_STRING:
+				WikiCache.removeFromCache(event.getCacheName(), event.getKey());
+				break;
+			default:
+				WikiCache.removeAllFromCache(event.getCacheName());
+		}
+	}
+
+	/**
+	 * Return the identifier used for this JAMWiki instance when sending
+	 * events to other instances.
+	 */
+	public static String getNodeId() {
+		return NODE_ID;
+	}
+
+	/**
+	 * Start the configured cache invalidation bus, stopping any previously
+	 * started bus.  This method should be called when the application is
+	 * started.
+	 */
+	public static synchronized void initialize() {
+		CacheInvalidation.shutdown();
+		String className = Environment.getValue(Environment.PROP_CACHE_INVALIDATION_BUS);
+		if (StringUtils.isBlank(className)) {
+			return;
+		}
+		try {
+			CacheInvalidationBus newBus = (CacheInvalidationBus)Utilities.instantiateClass(className);
+			newBus.start(NODE_ID, new CacheEventListener() {
+				public void cacheEventReceived(CacheEvent event) {
+					CacheInvalidation.apply(event);
+				}
+			});
+			bus = newBus;
+			logger.info("Started cache invalidation bus " + className + " for node " + NODE_ID);
+		} catch (RuntimeException e) {
+			// not fatal, but cached data may be stale until it expires
+			logger.error("Failure while starting cache invalidation bus " + className, e);
+		}
+	}
+
+	/**
+	 *
+	 */
+	private static void publish(String cacheName, String key, char keyType) {
+		CacheInvalidationBus current = bus;
+		if (current != null) {
+			CacheEvent event = new CacheEvent(cacheName, key, keyType);
+			event.setNodeId(NODE_ID);
+			current.publish(event);
+		}
+	}
+
+	/**
+	 * Remove all values from the given cache on this and all other JAMWiki
+	 * instances.
+	 *
+	 * @param cache The cache from which objects are being removed.
+	 */
+	public static void removeAllFromCache(WikiCache<?, ?> cache) {
+		cache.removeAllFromCache();
+		CacheInvalidation.publish(cache.getCacheName(), null, CacheEvent.KEY_TYPE_ALL);
+	}
+
+	/**
+	 * Remove a value with the given key from the cache on this and all other
+	 * JAMWiki instances.  Only <code>String</code> and <code>Integer</code>
+	 * keys can be sent to other instances; for any other key type the entire
+	 * cache is removed on the other instances.
+	 *
+	 * @param cache The cache from which the object is being removed.
+	 * @param key The key for the record that is being removed from the cache.
+	 */
+	public static <K> void removeFromCache(WikiCache<K, ?> cache, K key) {
+		cache.removeFromCache(key);
+		String cacheName = cache.getCacheName();
+		if (key instanceof Integer) {
+			CacheInvalidation.publish(cacheName, key.toString(), CacheEvent.KEY_TYPE_INTEGER);
+		} else if (key instanceof String) {
+			CacheInvalidation.publish(cacheName, (String)key, CacheEvent.KEY_TYPE_STRING);
+		} else {
+			CacheInvalidation.publish(cacheName, null, CacheEvent.KEY_TYPE_ALL);
+		}
+	}
+
+	/**
+	 * Remove a key from the cache in a case-insensitive manner on this and
+	 * all other JAMWiki instances.
+	 *
+	 * @see WikiCache#removeFromCacheCaseInsensitive(Object)
+	 */
+	public static void removeFromCacheCaseInsensitive(WikiCache<?, ?> cache, Object key) {
+		cache.removeFromCacheCaseInsensitive(key);
+		CacheInvalidation.publish(cache.getCacheName(), key.toString(), CacheEvent.KEY_TYPE_CASE_INSENSITIVE);
+	}
+
+	/**
+	 * Stop the cache invalidation bus.  This method should be called when the
+	 * application is shut down.
+	 */
+	public static synchronized void shutdown() {
+		if (bus != null) {
+			bus.shutdown();
+			bus = null;
+		}
+	}
+}
@@ -0,0 +1,60 @@
+/**
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE, version 2.1, dated February 1999.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the latest version of the GNU Lesser General
+ * Public License as published by the Free Software Foundation;
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program (LICENSE.txt); if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jamwiki.utils;
+
+import org.jamwiki.model.CacheEvent;
+
+/**
+ * This interface provides methods for sending cache invalidation events
+ * between multiple JAMWiki instances that share a single database.  Without
+ * such a mechanism data cached by one instance is not updated when another
+ * instance modifies it until the cached data expires.  Implementations are
+ * configured using the {@link org.jamwiki.Environment#PROP_CACHE_INVALIDATION_BUS}
+ * property and must provide a public no-argument constructor.
+ *
+ * @see CacheInvalidation
+ */
+public interface CacheInvalidationBus {
+
+	/**
+	 * Send a cache event to all other JAMWiki instances.  Implementations
+	 * should not throw an exception if the event cannot be sent since failure
+	 * to send an event should not cause the operation that modified the data
+	 * to fail; instead a message should be logged.
+	 *
+	 * @param event The cache event to send.  The event node id will be set to
+	 *  the node id of this instance.
+	 */
+	void publish(CacheEvent event);
+
+	/**
+	 * Stop receiving events and free any resources used by this bus.
+	 */
+	void shutdown();
+
+	/**
+	 * Begin receiving events sent by other JAMWiki instances.
+	 *
+	 * @param nodeId An identifier for this JAMWiki instance that is unique
+	 *  within the cluster.  Events published by this instance are never
+	 *  delivered to its own listener.
+	 * @param listener The listener that is notified of events received from
+	 *  other instances.
+	 * @throws IllegalStateException Thrown if the bus cannot be started.
+	 */
+	void start(String nodeId, CacheEventListener listener);
+}
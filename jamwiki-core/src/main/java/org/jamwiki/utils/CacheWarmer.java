@@ -0,0 +1,178 @@
+/**
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE, version 2.1, dated February 1999.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the latest version of the GNU Lesser General
+ * Public License as published by the Free Software Foundation;
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program (LICENSE.txt); if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jamwiki.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.jamwiki.DataAccessException;
+import org.jamwiki.WikiBase;
+import org.jamwiki.model.Topic;
+import org.jamwiki.parser.ParserException;
+import org.jamwiki.parser.ParserUtil;
+
+/**
+ * Load the most frequently viewed topics, as recorded by
+ * {@link TopicAccessLog}, into the cache after the application is started so
+ * that the first requests after a restart do not all result in database
+ * queries.  Each topic is retrieved and its metadata parsed, which also loads
+ * any templates and linked topics referenced by the topic into the cache.
+ * Topics are loaded in small batches in a background thread, pausing between
+ * batches so that the warm-up does not compete with live traffic for
+ * database connections.
+ */
+public class CacheWarmer implements Runnable {
+
+	private static final WikiLogger logger = WikiLogger.getLogger(CacheWarmer.class.getName());
+	/** Number of topics loaded between pauses. */
+	private static final int BATCH_SIZE = 25;
+	/** Time (in milliseconds) to pause between batches. */
+	private static final long BATCH_PAUSE = 50;
+	private static CacheWarmer instance = null;
+	private volatile boolean complete = false;
+	private volatile int errors = 0;
+	private volatile int loaded = 0;
+	private volatile boolean running = false;
+	private volatile long startTime = 0;
+	private final List<String[]> topics;
+
+	/**
+	 * Create a warm-up for the topics currently recorded by the topic access
+	 * log.
+	 */
+	CacheWarmer() {
+		this.topics = new ArrayList<String[]>();
+		for (String virtualWiki : TopicAccessLog.getVirtualWikis()) {
+			for (String topicName : TopicAccessLog.getHotTopics(virtualWiki)) {
+				this.topics.add(new String[] {virtualWiki, topicName});
+			}
+		}
+	}
+
+	/**
+	 * Return the number of topics that could not be loaded.
+	 */
+	public int getErrors() {
+		return this.errors;
+	}
+
+	/**
+	 * Return the most recently started warm-up, or <code>null</code> if no
+	 * warm-up has been started.
+	 */
+	public static synchronized CacheWarmer getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Return the number of topics that have been loaded into the cache.
+	 */
+	public int getLoaded() {
+		return this.loaded;
+	}
+
+	/**
+	 * Return the time at which the warm-up was started.
+	 */
+	public long getStartTime() {
+		return this.startTime;
+	}
+
+	/**
+	 * Return the total number of topics to be loaded into the cache.
+	 */
+	public int getTotal() {
+		return this.topics.size();
+	}
+
+	/**
+	 * Return <code>true</code> if all topics have been loaded.
+	 */
+	public boolean isComplete() {
+		return this.complete;
+	}
+
+	/**
+	 * Return <code>true</code> if the warm-up is currently loading topics.
+	 */
+	public boolean isRunning() {
+		return this.running;
+	}
+
+	/**
+	 * Load a single topic and any topics that it references.
+	 */
+	private void load(String virtualWiki, String topicName) {
+		try {
+			Topic topic = WikiBase.getDataHandler().lookupTopic(virtualWiki, topicName, false);
+			if (topic != null) {
+				ParserUtil.parserOutput(topic.getTopicContent(), virtualWiki, topic.getName());
+			}
+			this.loaded++;
+		} catch (DataAccessException e) {
+			logger.info("Failure while loading topic " + virtualWiki + " / " + topicName + " into the cache: " + e.getMessage());
+			this.errors++;
+		} catch (ParserException e) {
+			logger.info("Failure while loading topic " + virtualWiki + " / " + topicName + " into the cache: " + e.getMessage());
+			this.errors++;
+		}
+	}
+
+	/**
+	 * Load all topics into the cache.  This method is normally invoked in a
+	 * background thread by {@link #start}.
+	 */
+	public void run() {
+		this.running = true;
+		this.startTime = System.currentTimeMillis();
+		logger.info("Loading " + this.topics.size() + " frequently viewed topics into the cache");
+		try {
+			for (int i = 0; i < this.topics.size(); i++) {
+				if (i > 0 && (i % BATCH_SIZE) == 0) {
+					Thread.sleep(BATCH_PAUSE);
+				}
+				String[] topic = this.topics.get(i);
+				this.load(topic[0], topic[1]);
+			}
+			this.complete = true;
+			logger.info("Loaded " + this.loaded + " frequently viewed topics into the cache in " + (System.currentTimeMillis() - this.startTime) + " ms");
+		} catch (InterruptedException e) {
+			logger.warn("Cache warm-up interrupted after loading " + this.loaded + " topics");
+		} finally {
+			this.running = false;
+		}
+	}
+
+	/**
+	 * Start a background thread that loads the most frequently viewed topics
+	 * into the cache.  If a warm-up is already running then no new warm-up is
+	 * started.
+	 *
+	 * @return The running warm-up.
+	 */
+	public static synchronized CacheWarmer start() {
+		if (instance != null && instance.isRunning()) {
+			return instance;
+		}
+		instance = new CacheWarmer();
+		// mark the warm-up as running before the thread starts so that status requests are accurate
+		instance.running = true;
+		Thread thread = new Thread(instance, "CacheWarmer");
+		thread.setDaemon(true);
+		thread.start();
+		return instance;
+	}
+}
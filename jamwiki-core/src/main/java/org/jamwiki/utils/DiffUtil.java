@@ -16,13 +16,22 @@
  */
 package org.jamwiki.utils;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import net.sf.ehcache.Element;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.incava.util.diff.Diff;
 import org.incava.util.diff.Difference;
 import org.jamwiki.DataAccessException;
+import org.jamwiki.Environment;
 import org.jamwiki.model.WikiDiff;
 
 /**
@@ -35,8 +44,16 @@ public class DiffUtil {
 	/** The number of lines of unchanged text to display before and after each diff. */
 	// FIXME - make this a property value
 	private static final int DIFF_UNCHANGED_LINE_DISPLAY = 2;
-	/** Cache name for the cache of diff information. */
-	private static final String CACHE_DIFF_INFORMATION = "org.jamwiki.utils.DiffUtil.CACHE_DIFF_INFORMATION";
+	/** Changes spanning more than this many lines are not diffed character-by-character; the full lines are highlighted instead. */
+	private static final int DIFF_MAX_SUB_DIFF_LINES = 100;
+	/** Lines longer than this many characters are not diffed character-by-character; the full line is highlighted instead. */
+	private static final int DIFF_MAX_SUB_DIFF_LINE_LENGTH = 5000;
+	/** Diff algorithm that uses the linear-space {@link MyersDiff} implementation. */
+	public static final String DIFF_ALGORITHM_MYERS = "myers";
+	/** Diff algorithm that uses the <code>org.incava</code> java-diff library. */
+	public static final String DIFF_ALGORITHM_INCAVA = "incava";
+	/** Cache of serialized diff information. */
+	private static final WikiCache<String, byte[]> CACHE_DIFF_INFORMATION = new WikiCache<String, byte[]>("org.jamwiki.utils.DiffUtil.CACHE_DIFF_INFORMATION");
 
 	/**
 	 *
@@ -45,11 +62,16 @@ public class DiffUtil {
 	}
 
 	/**
-	 *
+	 * Store a compact, compressed serialization of the diff results in the cache
+	 * rather than the list of diff objects, allowing the cache to hold far more
+	 * entries for the same amount of memory and disk.
 	 */
-	private static void addToCache(String newVersion, String oldVersion, List<WikiDiff> results) {
-		String key = generateCacheKey(newVersion, oldVersion);
-		WikiCache.addToCache(CACHE_DIFF_INFORMATION, key, results);
+	private static void addToCache(String key, List<WikiDiff> results) {
+		byte[] serialized = DiffUtil.serialize(results);
+		if (serialized != null) {
+			CACHE_DIFF_INFORMATION.addToCache(key, serialized);
+			PersistentCache.store(CACHE_DIFF_INFORMATION.getCacheName(), key, DiffUtil.persistentCacheVersion(), serialized);
+		}
 	}
 
 	/**
@@ -103,9 +125,27 @@ public class DiffUtil {
 		return (currentStart > current);
 	}
 
+	/**
+	 * Convert a serialized byte array created by {@link #serialize} back into a
+	 * list of diff objects.
+	 */
+	private static List<WikiDiff> deserialize(byte[] serialized) {
+		DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(serialized)));
+		try {
+			return DiffUtil.readDiffs(in);
+		} catch (IOException e) {
+			logger.warn("Failure while reading cached diff information", e);
+			return null;
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+	}
+
 	/**
 	 * Return a list of WikiDiff objects that can be used to create a display of the
-	 * diff content.
+	 * diff content.  Diff results are cached using a hash of the full content of
+	 * both versions, so when comparing two topic versions the
+	 * {@link #diff(int, String, int, String)} method should be used instead.
 	 *
 	 * @param newVersion The String that is to be compared to, ie the later version of a topic.
 	 * @param oldVersion The String that is to be considered as having changed, ie the earlier
@@ -113,7 +153,33 @@ public class DiffUtil {
 	 * @return Returns a list of WikiDiff objects that correspond to the changed text.
 	 */
 	public static List<WikiDiff> diff(String newVersion, String oldVersion) throws DataAccessException {
-		List<WikiDiff> result = DiffUtil.retrieveFromCache(newVersion, oldVersion);
+		return DiffUtil.diff(DiffUtil.generateContentCacheKey(newVersion, oldVersion), newVersion, oldVersion);
+	}
+
+	/**
+	 * Return a list of WikiDiff objects that can be used to create a display of the
+	 * diff content for two topic versions.  Since topic version content never changes,
+	 * diff results are cached using the topic version ids and there is no need to hash
+	 * the version content.
+	 *
+	 * @param newVersionId The topic version id for the later version of a topic, or
+	 *  <code>-1</code> if there is no later version.
+	 * @param newVersion The String that is to be compared to, ie the later version of a topic.
+	 * @param oldVersionId The topic version id for the earlier version of a topic, or
+	 *  <code>-1</code> if there is no earlier version.
+	 * @param oldVersion The String that is to be considered as having changed, ie the earlier
+	 *  version of a topic.
+	 * @return Returns a list of WikiDiff objects that correspond to the changed text.
+	 */
+	public static List<WikiDiff> diff(int newVersionId, String newVersion, int oldVersionId, String oldVersion) throws DataAccessException {
+		return DiffUtil.diff(DiffUtil.generateVersionCacheKey(newVersionId, oldVersionId), newVersion, oldVersion);
+	}
+
+	/**
+	 *
+	 */
+	private static List<WikiDiff> diff(String key, String newVersion, String oldVersion) throws DataAccessException {
+		List<WikiDiff> result = DiffUtil.retrieveFromCache(key);
 		if (result != null) {
 			return result;
 		}
@@ -129,42 +195,59 @@ public class DiffUtil {
 		// cut & paste or other issues
 		version2 = StringUtils.remove(version2, '\r');
 		version1 = StringUtils.remove(version1, '\r');
-		result = DiffUtil.process(version1, version2);
-		DiffUtil.addToCache(newVersion, oldVersion, result);
+		result = DiffUtil.process(version1, version2, Environment.getValue(Environment.PROP_DIFF_ALGORITHM));
+		DiffUtil.addToCache(key, result);
 		return result;
 	}
 
 	/**
-	 * Generate a mostly-unique key to use for the cache.  This key uses the first ten characters
-	 * of the string and a hash of the full string, which is not guaranteed to be unique but should
-	 * be unique enough.
+	 * Generate a cache key for ad-hoc content that is not associated with a topic
+	 * version.  The key uses a SHA-1 digest of the full content of each version, so
+	 * unlike a hash code it is not subject to accidental collisions.
 	 */
-	private static String generateCacheKey(String newVersion, String oldVersion) {
-		StringBuilder result = new StringBuilder();
-		if (newVersion == null) {
-			result.append(-1);
-		} else if (newVersion.length() <= 10) {
-			result.append(newVersion);
-		} else {
-			result.append(newVersion.substring(0, 10)).append(newVersion.hashCode());
-		}
+	private static String generateContentCacheKey(String newVersion, String oldVersion) {
+		StringBuilder result = new StringBuilder("h");
+		result.append((newVersion == null) ? "-1" : DigestUtils.shaHex(newVersion));
 		result.append('-');
-		if (oldVersion == null) {
-			result.append(-1);
-		} else if (oldVersion.length() <= 10) {
-			result.append(oldVersion);
-		} else {
-			result.append(oldVersion.substring(0, 10)).append(oldVersion.hashCode());
-		}
+		result.append((oldVersion == null) ? "-1" : DigestUtils.shaHex(oldVersion));
 		return result.toString();
 	}
 
+	/**
+	 * Generate a cache key from two topic version ids.
+	 */
+	private static String generateVersionCacheKey(int newVersionId, int oldVersionId) {
+		return "v" + newVersionId + "-" + oldVersionId;
+	}
+
+	/**
+	 * Find the differences between two arrays using the specified diff algorithm.
+	 */
+	private static List<Difference> findDifferences(String[] oldArray, String[] newArray, String algorithm) {
+		if (DIFF_ALGORITHM_INCAVA.equals(algorithm)) {
+			return new Diff<String>(oldArray, newArray).diff();
+		}
+		return MyersDiff.diff(oldArray, newArray);
+	}
+
+	/**
+	 * Find the character differences between two lines using the specified diff
+	 * algorithm.
+	 */
+	private static List<Difference> findLineDifferences(String oldLine, String[] oldLineArray, String newLine, String[] newLineArray, String algorithm) {
+		if (DIFF_ALGORITHM_INCAVA.equals(algorithm)) {
+			return new Diff<String>(oldLineArray, newLineArray).diff();
+		}
+		// characters can be compared directly, so there is no need to intern the string arrays
+		return MyersDiff.diff(oldLine, newLine);
+	}
+
 	/**
 	 * Format the list of Difference objects into a list of WikiDiff objects, which will
 	 * include information about what values are different and also include some unchanged
 	 * values surrounded the changed values, thus giving some context.
 	 */
-	private static List<WikiDiff> generateWikiDiffs(List<Difference> diffs, String[] oldArray, String[] newArray) {
+	private static List<WikiDiff> generateWikiDiffs(List<Difference> diffs, String[] oldArray, String[] newArray, String algorithm) {
 		List<WikiDiff> wikiDiffs = new ArrayList<WikiDiff>();
 		Difference previousDiff = null;
 		Difference nextDiff = null;
@@ -179,12 +262,21 @@ public class DiffUtil {
 			i++;
 			wikiDiffs.addAll(DiffUtil.preBufferDifference(currentDiff, previousDiff, oldArray, newArray, DIFF_UNCHANGED_LINE_DISPLAY));
 			changedLineWikiDiffs = DiffUtil.processDifference(currentDiff, oldArray, newArray);
+			// for very large changes, such as page blanking, highlighting individual characters
+			// is expensive and of little value, so just highlight the full lines
+			boolean subDiff = (changedLineWikiDiffs.size() <= DIFF_MAX_SUB_DIFF_LINES);
 			// loop through the difference and diff the individual lines so that it is possible to highlight the exact
 			// text that was changed
 			for (WikiDiff changedLineWikiDiff : changedLineWikiDiffs) {
+				if (!subDiff || StringUtils.length(changedLineWikiDiff.getOldText()) > DIFF_MAX_SUB_DIFF_LINE_LENGTH || StringUtils.length(changedLineWikiDiff.getNewText()) > DIFF_MAX_SUB_DIFF_LINE_LENGTH) {
+					wikiSubDiffs = new ArrayList<WikiDiff>();
+					wikiSubDiffs.add(new WikiDiff(changedLineWikiDiff.getOldText(), changedLineWikiDiff.getNewText(), 0));
+					changedLineWikiDiff.setSubDiffs(wikiSubDiffs);
+					continue;
+				}
 				oldLineArray = DiffUtil.stringToArray(changedLineWikiDiff.getOldText());
 				newLineArray = DiffUtil.stringToArray(changedLineWikiDiff.getNewText());
-				changedLineDiffs = new Diff<String>(oldLineArray, newLineArray).diff();
+				changedLineDiffs = DiffUtil.findLineDifferences(changedLineWikiDiff.getOldText(), oldLineArray, changedLineWikiDiff.getNewText(), newLineArray, algorithm);
 				wikiSubDiffs = new ArrayList<WikiDiff>();
 				int j = 0;
 				for (Difference changedLineDiff : changedLineDiffs) {
@@ -333,17 +425,20 @@ public class DiffUtil {
 	/**
 	 * @param newVersion The String that is being compared to.
 	 * @param oldVersion The String that is being compared against.
+	 * @param algorithm The diff algorithm to use, either {@link #DIFF_ALGORITHM_MYERS}
+	 *  or {@link #DIFF_ALGORITHM_INCAVA}.
 	 */
-	private static List<WikiDiff> process(String newVersion, String oldVersion) {
-		logger.trace("Diffing: " + oldVersion + " against: " + newVersion);
+	static List<WikiDiff> process(String newVersion, String oldVersion, String algorithm) {
+		if (logger.isTraceEnabled()) {
+			logger.trace("Diffing: " + oldVersion + " against: " + newVersion);
+		}
 		if (newVersion.equals(oldVersion)) {
 			return new ArrayList<WikiDiff>();
 		}
 		String[] oldArray = DiffUtil.split(oldVersion);
 		String[] newArray = DiffUtil.split(newVersion);
-		Diff<String> diffObject = new Diff<String>(oldArray, newArray);
-		List<Difference> diffs = diffObject.diff();
-		return DiffUtil.generateWikiDiffs(diffs, oldArray, newArray);
+		List<Difference> diffs = DiffUtil.findDifferences(oldArray, newArray, algorithm);
+		return DiffUtil.generateWikiDiffs(diffs, oldArray, newArray, algorithm);
 	}
 
 	/**
@@ -389,14 +484,89 @@ public class DiffUtil {
 		return wikiDiffs;
 	}
 
+	/**
+	 *
+	 */
+	private static List<WikiDiff> readDiffs(DataInputStream in) throws IOException {
+		int size = in.readInt();
+		if (size == -1) {
+			return null;
+		}
+		List<WikiDiff> diffs = new ArrayList<WikiDiff>(size);
+		for (int i = 0; i < size; i++) {
+			int position = in.readInt();
+			String oldText = DiffUtil.readText(in);
+			String newText = DiffUtil.readText(in);
+			WikiDiff wikiDiff = new WikiDiff(oldText, newText, position);
+			wikiDiff.setSubDiffs(DiffUtil.readDiffs(in));
+			diffs.add(wikiDiff);
+		}
+		return diffs;
+	}
+
+	/**
+	 *
+	 */
+	private static String readText(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length == -1) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, "UTF-8");
+	}
+
 	/**
 	 * Determine if diff information is available in the cache.  If so return it,
 	 * otherwise return <code>null</code>.
 	 */
-	private static List<WikiDiff> retrieveFromCache(String newVersion, String oldVersion) throws DataAccessException {
-		String key = generateCacheKey(newVersion, oldVersion);
-		Element cachedDiffInformation = WikiCache.retrieveFromCache(CACHE_DIFF_INFORMATION, key);
-		return (cachedDiffInformation != null) ? (List<WikiDiff>)cachedDiffInformation.getObjectValue() : null;
+	private static List<WikiDiff> retrieveFromCache(String key) throws DataAccessException {
+		WikiCacheEntry<byte[]> cachedDiffInformation = CACHE_DIFF_INFORMATION.retrieveFromCache(key);
+		if (cachedDiffInformation == null) {
+			byte[] serialized = PersistentCache.retrieve(CACHE_DIFF_INFORMATION.getCacheName(), key, DiffUtil.persistentCacheVersion());
+			if (serialized == null) {
+				return null;
+			}
+			CACHE_DIFF_INFORMATION.addToCache(key, serialized);
+			return DiffUtil.deserialize(serialized);
+		}
+		// a persistent disk cache may still hold entries written by earlier versions in a different format
+		Object serialized = cachedDiffInformation.getValue();
+		if (!(serialized instanceof byte[])) {
+			return null;
+		}
+		return DiffUtil.deserialize((byte[])serialized);
+	}
+
+	/**
+	 * Diff keys are generated from immutable topic versions or content hashes,
+	 * so persistent cache entries only become invalid if the diff algorithm is
+	 * changed.
+	 */
+	private static long persistentCacheVersion() {
+		return Environment.getValue(Environment.PROP_DIFF_ALGORITHM).hashCode();
+	}
+
+	/**
+	 * Serialize a list of diff objects into a compressed byte array.  Diff objects
+	 * are written as a simple sequence of positions and UTF-8 text values, which is
+	 * far more compact than standard Java serialization of the same objects.
+	 *
+	 * @return The serialized diff information, or <code>null</code> if the diff
+	 *  information cannot be serialized.
+	 */
+	private static byte[] serialize(List<WikiDiff> diffs) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes));
+		try {
+			DiffUtil.writeDiffs(out, diffs);
+			out.close();
+		} catch (IOException e) {
+			logger.warn("Failure while serializing diff information", e);
+			return null;
+		}
+		return bytes.toByteArray();
 	}
 
 	/**
@@ -426,4 +596,35 @@ public class DiffUtil {
 		}
 		return result;
 	}
+
+	/**
+	 *
+	 */
+	private static void writeDiffs(DataOutputStream out, List<WikiDiff> diffs) throws IOException {
+		if (diffs == null) {
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(diffs.size());
+		for (WikiDiff wikiDiff : diffs) {
+			out.writeInt(wikiDiff.getPosition());
+			DiffUtil.writeText(out, wikiDiff.getOldText());
+			DiffUtil.writeText(out, wikiDiff.getNewText());
+			DiffUtil.writeDiffs(out, wikiDiff.getSubDiffs());
+		}
+	}
+
+	/**
+	 * Write a text value prefixed by its length.  Unlike DataOutputStream.writeUTF()
+	 * there is no limit on the length of the text.
+	 */
+	private static void writeText(DataOutputStream out, String text) throws IOException {
+		if (text == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = text.getBytes("UTF-8");
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
 }
@@ -0,0 +1,185 @@
+/**
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE, version 2.1, dated February 1999.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the latest version of the GNU Lesser General
+ * Public License as published by the Free Software Foundation;
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program (LICENSE.txt); if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jamwiki.utils;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import net.sf.ehcache.Element;
+import org.jamwiki.Environment;
+
+/**
+ * Simple in-heap cache used in place of Ehcache for frequently accessed
+ * caches when {@link Environment#PROP_CACHE_HEAP} is enabled.  Entries are
+ * held in a concurrent map so that lookups never block, and there is no disk
+ * overflow or serialization.  When the cache is full an entry is evicted by
+ * sampling a small number of entries and discarding the least recently
+ * accessed, which approximates LRU eviction without the locking that a
+ * strictly ordered structure requires.  Each sample continues from where the
+ * previous sample ended, wrapping around at the end of the map, so that every
+ * entry is examined in turn rather than only those that happen to be first in
+ * the map's iteration order.  The same size and expiration settings
+ * as Ehcache caches are used.
+ */
+class HeapCache {
+
+	/** Number of entries examined when choosing an entry to evict. */
+	private static final int EVICTION_SAMPLE_SIZE = 8;
+	private final Map<Object, Element> elements = new ConcurrentHashMap<Object, Element>();
+	/** Position in the map at which the next eviction sample starts. */
+	private Iterator<Map.Entry<Object, Element>> evictionCursor = null;
+	private volatile long maxAge;
+	private volatile long maxIdleAge;
+	private volatile int maxSize;
+
+	/**
+	 *
+	 */
+	HeapCache() {
+		this.configure();
+	}
+
+	/**
+	 * Read the cache size and expiration settings.
+	 */
+	void configure() {
+		this.maxAge = Math.max(Environment.getIntValue(Environment.PROP_CACHE_MAX_AGE), 0) * 1000L;
+		this.maxIdleAge = Math.max(Environment.getIntValue(Environment.PROP_CACHE_MAX_IDLE_AGE), 0) * 1000L;
+		this.maxSize = Environment.getIntValue(Environment.PROP_CACHE_INDIVIDUAL_SIZE);
+	}
+
+	/**
+	 * Remove the least recently accessed of a sample of entries.  Only
+	 * eviction is synchronized, since the sampling cursor is shared.
+	 */
+	private synchronized void evict() {
+		Object oldestKey = null;
+		long oldestAccess = Long.MAX_VALUE;
+		boolean restarted = false;
+		int count = 0;
+		while (count < EVICTION_SAMPLE_SIZE) {
+			if (this.evictionCursor == null || !this.evictionCursor.hasNext()) {
+				if (restarted) {
+					// the cache holds fewer entries than the sample size
+					break;
+				}
+				this.evictionCursor = this.elements.entrySet().iterator();
+				restarted = true;
+				continue;
+			}
+			Map.Entry<Object, Element> entry = this.evictionCursor.next();
+			long lastAccess = HeapCache.lastAccessTime(entry.getValue());
+			if (lastAccess < oldestAccess) {
+				oldestAccess = lastAccess;
+				oldestKey = entry.getKey();
+			}
+			count++;
+		}
+		if (oldestKey != null) {
+			this.elements.remove(oldestKey);
+		}
+	}
+
+	/**
+	 *
+	 */
+	Element get(Object key) {
+		Element element = this.elements.get(key);
+		if (element == null) {
+			return null;
+		}
+		if (this.isExpired(element, System.currentTimeMillis())) {
+			this.elements.remove(key);
+			return null;
+		}
+		element.updateAccessStatistics();
+		return element;
+	}
+
+	/**
+	 *
+	 */
+	private boolean isExpired(Element element, long now) {
+		if (this.maxAge > 0 && (now - element.getCreationTime()) > this.maxAge) {
+			return true;
+		}
+		return (this.maxIdleAge > 0 && (now - HeapCache.lastAccessTime(element)) > this.maxIdleAge);
+	}
+
+	/**
+	 *
+	 */
+	List<Object> keys() {
+		return new ArrayList<Object>(this.elements.keySet());
+	}
+
+	/**
+	 *
+	 */
+	private static long lastAccessTime(Element element) {
+		// the last access time is zero if the element has never been retrieved
+		return Math.max(element.getLastAccessTime(), element.getCreationTime());
+	}
+
+	/**
+	 *
+	 */
+	void put(Object key, Object value) {
+		if (this.maxSize > 0 && this.elements.size() >= this.maxSize && !this.elements.containsKey(key)) {
+			this.removeExpired();
+			if (this.elements.size() >= this.maxSize) {
+				this.evict();
+			}
+		}
+		this.elements.put(key, new Element(key, value));
+	}
+
+	/**
+	 *
+	 */
+	void remove(Object key) {
+		this.elements.remove(key);
+	}
+
+	/**
+	 *
+	 */
+	void removeAll() {
+		this.elements.clear();
+	}
+
+	/**
+	 * Remove all expired entries.
+	 */
+	private void removeExpired() {
+		long now = System.currentTimeMillis();
+		for (Iterator<Element> iterator = this.elements.values().iterator(); iterator.hasNext();) {
+			if (this.isExpired(iterator.next(), now)) {
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 *
+	 */
+	int size() {
+		return this.elements.size();
+	}
+}
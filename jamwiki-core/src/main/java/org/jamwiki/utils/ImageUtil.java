@@ -21,12 +21,12 @@ import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.text.MessageFormat;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.List;
-import net.sf.ehcache.Element;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.StringEscapeUtils;
@@ -54,8 +54,8 @@ import org.jamwiki.parser.ParserUtil;
 public class ImageUtil {
 
 	private static final WikiLogger logger = WikiLogger.getLogger(ImageUtil.class.getName());
-	/** Cache name for the cache of image dimensions. */
-	private static final String CACHE_IMAGE_DIMENSIONS = "org.jamwiki.utils.ImageUtil.CACHE_IMAGE_DIMENSIONS";
+	/** Cache of image dimensions, keyed by virtual wiki and image URL. */
+	private static final WikiCache<WikiCacheKey, Dimension> CACHE_IMAGE_DIMENSIONS = new WikiCache<WikiCacheKey, Dimension>("org.jamwiki.utils.ImageUtil.CACHE_IMAGE_DIMENSIONS");
 	/** Sub-folder of the "files" directory into which to place resized images. */
 	private static final String RESIZED_IMAGE_SUBFOLDER = "resized";
 
@@ -69,8 +69,14 @@ public class ImageUtil {
 	 *
 	 */
 	private static void addToCache(WikiImage wikiImage, Dimension dimensions) {
-		String key = wikiImage.getVirtualWiki() + "/" + wikiImage.getUrl();
-		WikiCache.addToCache(CACHE_IMAGE_DIMENSIONS, key, dimensions);
+		WikiCacheKey key = new WikiCacheKey(wikiImage.getVirtualWiki(), wikiImage.getUrl());
+		CACHE_IMAGE_DIMENSIONS.addToCache(key, dimensions);
+		if (PersistentCache.isEnabled()) {
+			// the image file modification time is used to detect a replaced image
+			File file = new File(Environment.getValue(Environment.PROP_FILE_DIR_FULL_PATH), wikiImage.getUrl());
+			byte[] value = ByteBuffer.allocate(8).putInt(dimensions.width).putInt(dimensions.height).array();
+			PersistentCache.store(CACHE_IMAGE_DIMENSIONS.getCacheName(), key.toString(), file.lastModified(), value);
+		}
 	}
 
 	/**
@@ -531,9 +537,20 @@ public class ImageUtil {
 	 * otherwise return <code>null</code>.
 	 */
 	private static Dimension retrieveFromCache(WikiImage wikiImage) throws DataAccessException {
-		String key = wikiImage.getVirtualWiki() + "/" + wikiImage.getUrl();
-		Element cachedDimensions = WikiCache.retrieveFromCache(CACHE_IMAGE_DIMENSIONS, key);
-		return (cachedDimensions != null) ? (Dimension)cachedDimensions.getObjectValue() : null;
+		WikiCacheKey key = new WikiCacheKey(wikiImage.getVirtualWiki(), wikiImage.getUrl());
+		WikiCacheEntry<Dimension> cachedDimensions = CACHE_IMAGE_DIMENSIONS.retrieveFromCache(key);
+		if (cachedDimensions != null || !PersistentCache.isEnabled()) {
+			return (cachedDimensions != null) ? cachedDimensions.getValue() : null;
+		}
+		File file = new File(Environment.getValue(Environment.PROP_FILE_DIR_FULL_PATH), wikiImage.getUrl());
+		byte[] value = PersistentCache.retrieve(CACHE_IMAGE_DIMENSIONS.getCacheName(), key.toString(), file.lastModified());
+		if (value == null || value.length != 8) {
+			return null;
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(value);
+		Dimension dimensions = new Dimension(buffer.getInt(), buffer.getInt());
+		CACHE_IMAGE_DIMENSIONS.addToCache(key, dimensions);
+		return dimensions;
 	}
 
 	/**
@@ -573,7 +590,7 @@ public class ImageUtil {
 		TopicVersion topicVersion = new TopicVersion(user, ipAddress, contents, topic.getTopicContent(), charactersChanged);
 		topicVersion.setEditType(TopicVersion.EDIT_UPLOAD);
 		ParserOutput parserOutput = ParserUtil.parserOutput(topic.getTopicContent(), virtualWiki, topicName);
-		WikiBase.getDataHandler().writeTopic(topic, topicVersion, parserOutput.getCategories(), parserOutput.getLinks());
+		WikiBase.getDataHandler().writeTopic(topic, topicVersion, (parserOutput.getIncomplete()) ? null : parserOutput.getCategories(), (parserOutput.getIncomplete()) ? null : parserOutput.getLinks());
 		return topic;
 	}
 
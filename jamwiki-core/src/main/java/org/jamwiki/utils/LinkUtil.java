@@ -16,6 +16,7 @@
  */
 package org.jamwiki.utils;
 
+import java.util.List;
 import org.apache.commons.lang.StringEscapeUtils;
 import org.apache.commons.lang.StringUtils;
 import org.jamwiki.DataAccessException;
@@ -571,18 +572,45 @@ public class LinkUtil {
 	 * interwiki, or other value then it will not return the proper namespace.
 	 */
 	public static Namespace retrieveTopicNamespace(String virtualWiki, String topicName) {
-		int prefixPosition = LinkUtil.prefixPosition(topicName);
-		if (prefixPosition == -1) {
-			return Namespace.namespace(Namespace.MAIN_ID);
-		}
-		String linkPrefix = topicName.substring(0, prefixPosition).trim();
+		List<Namespace> namespaces = null;
 		try {
-			Namespace namespace = WikiBase.getDataHandler().lookupNamespace(virtualWiki, linkPrefix);
-			return (namespace == null) ? Namespace.namespace(Namespace.MAIN_ID) : namespace;
+			namespaces = WikiBase.getDataHandler().lookupNamespaces();
 		} catch (DataAccessException e) {
 			// this should not happen, if it does then throw a runtime exception
-			throw new IllegalStateException("Failure while trying to lookup namespace: " + linkPrefix, e);
+			throw new IllegalStateException("Failure while trying to lookup namespaces", e);
+		}
+		return LinkUtil.retrieveTopicNamespace(namespaces, virtualWiki, topicName);
+	}
+
+	/**
+	 * Utility method for determining a topic namespace given a topic name and the
+	 * list of all namespaces.  Callers that resolve the namespaces of many topic
+	 * names can retrieve the (cached) namespace list once and use this method to
+	 * avoid a cache lookup for each topic name.  As with
+	 * {@link #retrieveTopicNamespace(String, String)} this method accepts ONLY
+	 * the topic name.
+	 *
+	 * @param namespaces The list of all namespaces, as returned by
+	 *  {@link org.jamwiki.DataHandler#lookupNamespaces}.
+	 * @param virtualWiki The virtual wiki for the topic.
+	 * @param topicName The topic name for which the namespace is being
+	 *  determined.
+	 * @return The namespace for the topic name, or the main namespace if the
+	 *  topic name does not have a valid namespace prefix.
+	 */
+	public static Namespace retrieveTopicNamespace(List<Namespace> namespaces, String virtualWiki, String topicName) {
+		int prefixPosition = LinkUtil.prefixPosition(topicName);
+		String linkPrefix = (prefixPosition == -1) ? null : topicName.substring(0, prefixPosition).trim();
+		Namespace mainNamespace = null;
+		for (Namespace namespace : namespaces) {
+			if (linkPrefix != null && (namespace.getLabel(virtualWiki).equalsIgnoreCase(linkPrefix) || namespace.getDefaultLabel().equals(linkPrefix))) {
+				return namespace;
+			}
+			if (namespace.getId() != null && namespace.getId().intValue() == Namespace.MAIN_ID) {
+				mainNamespace = namespace;
+			}
 		}
+		return mainNamespace;
 	}
 
 	/**
@@ -0,0 +1,369 @@
+/**
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE, version 2.1, dated February 1999.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the latest version of the GNU Lesser General
+ * Public License as published by the Free Software Foundation;
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program (LICENSE.txt); if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jamwiki.utils;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.DateFormat;
+import java.text.MessageFormat;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.MissingResourceException;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.springframework.core.io.ClassPathResource;
+
+/**
+ * Locale-indexed catalog of the messages in the <code>ApplicationResources</code>
+ * property files.  The translations for a locale are loaded the first time
+ * the locale is requested and every message is compiled into an immutable
+ * template, so that formatting a message requires neither a resource bundle
+ * lookup nor a new <code>MessageFormat</code> instance and may be done
+ * concurrently without synchronization.  Calling {@link #reload} discards all
+ * loaded translations so that changes made to the property files are visible
+ * without an application server restart.
+ *
+ * Translations are resolved in the same order as a <code>ResourceBundle</code>
+ * (language, country and variant, falling back to the base property file),
+ * except that the JVM default locale is not consulted.  Loaded translations
+ * are indexed by the most specific locale that has a property file rather
+ * than by the requested locale, so arbitrary client locales share the
+ * translations of a supported locale and the catalog cannot grow beyond the
+ * number of property files.
+ */
+public class MessageCatalog {
+
+	private static final WikiLogger logger = WikiLogger.getLogger(MessageCatalog.class.getName());
+	private static final Locale BASE_LOCALE = new Locale("");
+	private static final String BUNDLE_NAME = "ApplicationResources";
+	/** Maximum number of property file names for which the existence of the file is cached. */
+	private static final int MAX_CACHED_FILENAMES = 500;
+	private static volatile Map<Locale, Map<String, MessageTemplate>> catalog = new ConcurrentHashMap<Locale, Map<String, MessageTemplate>>();
+	private static volatile Map<String, Boolean> filenames = new ConcurrentHashMap<String, Boolean>();
+
+	/**
+	 *
+	 */
+	private MessageCatalog() {
+	}
+
+	/**
+	 * Return the most specific locale for which a property file exists,
+	 * or a locale with an empty language if only the base property file applies.
+	 */
+	private static Locale bundleLocale(Locale locale) {
+		Locale bundleLocale = BASE_LOCALE;
+		String suffix = "";
+		String[] components = {locale.getLanguage(), locale.getCountry(), locale.getVariant()};
+		for (int i = 0; i < components.length; i++) {
+			if (StringUtils.isBlank(components[i])) {
+				break;
+			}
+			suffix += "_" + components[i];
+			if (!MessageCatalog.bundleExists(BUNDLE_NAME + suffix + ".properties")) {
+				continue;
+			}
+			if (i == 0) {
+				bundleLocale = new Locale(locale.getLanguage());
+			} else if (i == 1) {
+				bundleLocale = new Locale(locale.getLanguage(), locale.getCountry());
+			} else {
+				bundleLocale = new Locale(locale.getLanguage(), locale.getCountry(), locale.getVariant());
+			}
+		}
+		return bundleLocale;
+	}
+
+	/**
+	 * Determine whether a property file exists.  Results are cached for a
+	 * limited number of file names since the names are derived from client
+	 * locales.
+	 */
+	private static boolean bundleExists(String filename) {
+		Map<String, Boolean> current = filenames;
+		Boolean exists = current.get(filename);
+		if (exists == null) {
+			exists = Boolean.valueOf(new ClassPathResource(filename).exists());
+			if (current.size() < MAX_CACHED_FILENAMES) {
+				current.put(filename, exists);
+			}
+		}
+		return exists.booleanValue();
+	}
+
+	/**
+	 * Given a message key, locale, and formatting parameters, return a
+	 * locale-specific message.  The output is identical to that of
+	 * <code>MessageFormat.format</code> for the message pattern.
+	 *
+	 * @param key The message key that corresponds to the formatted message
+	 *  being retrieved.
+	 * @param locale The locale for the message that is to be retrieved.
+	 * @param params An array of formatting parameters to use in the message
+	 *  being returned.
+	 * @return A formatted message string that is specific to the locale.
+	 * @throws MissingResourceException Thrown if no message exists for the key.
+	 */
+	public static String format(String key, Locale locale, Object[] params) {
+		return MessageCatalog.lookupTemplate(key, locale).format(locale, params);
+	}
+
+	/**
+	 * Given a message key and locale return the unformatted, locale-specific
+	 * message pattern.
+	 *
+	 * @param key The message key that corresponds to the message being
+	 *  retrieved.
+	 * @param locale The locale for the message that is to be retrieved.
+	 * @return The locale-specific message pattern.
+	 * @throws MissingResourceException Thrown if no message exists for the key.
+	 */
+	public static String getMessage(String key, Locale locale) {
+		return MessageCatalog.lookupTemplate(key, locale).getPattern();
+	}
+
+	/**
+	 * Load and compile the translations for a locale, applying translations
+	 * from the most specific property file over those from less specific files.
+	 */
+	private static Map<String, MessageTemplate> loadLocale(Locale locale) {
+		List<String> filenames = new ArrayList<String>();
+		filenames.add(BUNDLE_NAME + ".properties");
+		String suffix = "";
+		String[] components = {locale.getLanguage(), locale.getCountry(), locale.getVariant()};
+		for (String component : components) {
+			if (StringUtils.isBlank(component)) {
+				break;
+			}
+			suffix += "_" + component;
+			filenames.add(BUNDLE_NAME + suffix + ".properties");
+		}
+		Properties translations = new Properties();
+		for (String filename : filenames) {
+			MessageCatalog.loadProperties(filename, translations);
+		}
+		Map<String, MessageTemplate> templates = new HashMap<String, MessageTemplate>(translations.size() * 4 / 3 + 1);
+		for (Map.Entry<Object, Object> entry : translations.entrySet()) {
+			templates.put((String)entry.getKey(), MessageTemplate.compile((String)entry.getValue(), locale));
+		}
+		return Collections.unmodifiableMap(templates);
+	}
+
+	/**
+	 * Add the translations from a property file to the given properties,
+	 * ignoring files that do not exist for the locale.
+	 */
+	private static void loadProperties(String filename, Properties translations) {
+		ClassPathResource resource = new ClassPathResource(filename);
+		if (!resource.exists()) {
+			return;
+		}
+		InputStream is = null;
+		try {
+			// read the file directly rather than through the class loader since
+			// the class loader may cache the original file contents
+			is = (resource.getURL().getProtocol().equals("file")) ? new FileInputStream(resource.getFile()) : resource.getInputStream();
+			translations.load(is);
+		} catch (IOException e) {
+			logger.error("Failure while loading translations from " + filename, e);
+		} finally {
+			IOUtils.closeQuietly(is);
+		}
+	}
+
+	/**
+	 *
+	 */
+	private static MessageTemplate lookupTemplate(String key, Locale locale) {
+		if (locale == null) {
+			throw new NullPointerException("Locale may not be null");
+		}
+		Map<Locale, Map<String, MessageTemplate>> current = catalog;
+		Locale bundleLocale = MessageCatalog.bundleLocale(locale);
+		Map<String, MessageTemplate> templates = current.get(bundleLocale);
+		if (templates == null) {
+			templates = MessageCatalog.loadLocale(bundleLocale);
+			current.put(bundleLocale, templates);
+		}
+		MessageTemplate template = templates.get(key);
+		if (template == null) {
+			throw new MissingResourceException("Can't find resource for bundle " + BUNDLE_NAME + ", key " + key, BUNDLE_NAME, key);
+		}
+		return template;
+	}
+
+	/**
+	 * Discard all loaded translations, forcing them to be re-loaded from the
+	 * property files on next use.  This method should be called whenever a
+	 * translation file is modified.
+	 */
+	public static void reload() {
+		filenames = new ConcurrentHashMap<String, Boolean>();
+		catalog = new ConcurrentHashMap<Locale, Map<String, MessageTemplate>>();
+	}
+
+	/**
+	 * An immutable, pre-parsed message pattern.  Patterns that contain only
+	 * simple <code>{n}</code> arguments are split into literal text and argument
+	 * indexes; patterns that use format types or styles (such as
+	 * <code>{0,number}</code>) fall back to a copy of a pre-parsed
+	 * <code>MessageFormat</code>, since <code>MessageFormat</code> instances are
+	 * not thread-safe.  Templates are compiled separately for each property file
+	 * locale, and complex messages requested for a different locale are parsed
+	 * again for that locale.
+	 */
+	private static class MessageTemplate {
+
+		/** Argument index for each argument in the pattern. */
+		private final int[] arguments;
+		/** Pre-parsed pattern for complex messages, or <code>null</code> for simple messages. */
+		private final MessageFormat format;
+		/** Literal text before each argument, plus the text after the last argument. */
+		private final String[] literals;
+		private final String pattern;
+
+		/**
+		 *
+		 */
+		private MessageTemplate(String pattern, String[] literals, int[] arguments, MessageFormat format) {
+			this.arguments = arguments;
+			this.format = format;
+			this.literals = literals;
+			this.pattern = pattern;
+		}
+
+		/**
+		 * Parse a message pattern using the same quoting rules as
+		 * <code>MessageFormat</code>.
+		 */
+		private static MessageTemplate compile(String pattern, Locale locale) {
+			List<String> literals = new ArrayList<String>();
+			List<Integer> arguments = new ArrayList<Integer>();
+			StringBuilder literal = new StringBuilder();
+			boolean quoted = false;
+			int length = pattern.length();
+			for (int i = 0; i < length; i++) {
+				char c = pattern.charAt(i);
+				if (c == '\'') {
+					if (i + 1 < length && pattern.charAt(i + 1) == '\'') {
+						literal.append('\'');
+						i++;
+					} else {
+						quoted = !quoted;
+					}
+				} else if (c == '{' && !quoted) {
+					int end = pattern.indexOf('}', i);
+					String argument = (end == -1) ? "" : pattern.substring(i + 1, end);
+					if (argument.length() == 0 || !StringUtils.isNumeric(argument)) {
+						// format types, styles, nested braces or invalid patterns
+						return MessageTemplate.compileFormat(pattern, locale);
+					}
+					literals.add(literal.toString());
+					arguments.add(Integer.valueOf(argument));
+					literal.setLength(0);
+					i = end;
+				} else {
+					literal.append(c);
+				}
+			}
+			literals.add(literal.toString());
+			int[] argumentArray = new int[arguments.size()];
+			for (int i = 0; i < argumentArray.length; i++) {
+				argumentArray[i] = arguments.get(i);
+			}
+			return new MessageTemplate(pattern, literals.toArray(new String[literals.size()]), argumentArray, null);
+		}
+
+		/**
+		 *
+		 */
+		private static MessageTemplate compileFormat(String pattern, Locale locale) {
+			MessageFormat format = null;
+			try {
+				format = new MessageFormat(pattern, locale);
+			} catch (IllegalArgumentException e) {
+				// report the error when the message is formatted, as MessageFormat does
+				logger.warn("Invalid message pattern: " + pattern);
+			}
+			return new MessageTemplate(pattern, null, null, format);
+		}
+
+		/**
+		 *
+		 */
+		private String format(Locale locale, Object[] params) {
+			if (this.literals == null) {
+				if (this.format == null) {
+					throw new IllegalArgumentException("Invalid message pattern: " + this.pattern);
+				}
+				if (!locale.equals(this.format.getLocale())) {
+					return new MessageFormat(this.pattern, locale).format(params);
+				}
+				return ((MessageFormat)this.format.clone()).format(params);
+			}
+			if (this.arguments.length == 0) {
+				return this.literals[0];
+			}
+			StringBuilder result = new StringBuilder(this.pattern.length() + 16 * this.arguments.length);
+			for (int i = 0; i < this.arguments.length; i++) {
+				result.append(this.literals[i]);
+				int argument = this.arguments[i];
+				if (params == null || argument >= params.length) {
+					result.append('{').append(argument).append('}');
+				} else {
+					this.formatArgument(result, params[argument], locale);
+				}
+			}
+			result.append(this.literals[this.arguments.length]);
+			return result.toString();
+		}
+
+		/**
+		 * Format an argument in the same way as <code>MessageFormat</code> formats
+		 * an argument that has no format type.
+		 */
+		private void formatArgument(StringBuilder result, Object param, Locale locale) {
+			if (param == null) {
+				result.append("null");
+			} else if (param instanceof String) {
+				result.append((String)param);
+			} else if (param instanceof Number) {
+				result.append(NumberFormat.getInstance(locale).format(param));
+			} else if (param instanceof Date) {
+				result.append(DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT, locale).format(param));
+			} else {
+				result.append(param.toString());
+			}
+		}
+
+		/**
+		 *
+		 */
+		private String getPattern() {
+			return this.pattern;
+		}
+	}
+}
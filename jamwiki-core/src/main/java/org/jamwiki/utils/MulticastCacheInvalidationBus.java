@@ -0,0 +1,188 @@
+/**
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE, version 2.1, dated February 1999.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the latest version of the GNU Lesser General
+ * Public License as published by the Free Software Foundation;
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program (LICENSE.txt); if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jamwiki.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
+import org.jamwiki.Environment;
+import org.jamwiki.model.CacheEvent;
+
+/**
+ * Cache invalidation bus that sends cache events to other JAMWiki instances
+ * using UDP multicast to the group address and port specified by
+ * {@link Environment#PROP_CACHE_INVALIDATION_ADDRESS}, in the form
+ * <code>address:port</code>.  Events are delivered almost immediately and
+ * require no database access, but UDP does not guarantee delivery so an
+ * event may occasionally be lost, in which case the stale data remains
+ * cached until it expires.  All instances must be on a network that permits
+ * multicast traffic.
+ */
+public class MulticastCacheInvalidationBus implements CacheInvalidationBus, Runnable {
+
+	private static final WikiLogger logger = WikiLogger.getLogger(MulticastCacheInvalidationBus.class.getName());
+	/** Identifies a packet as a JAMWiki cache event. */
+	private static final int MAGIC = 0x4A574345;
+	/** Maximum size of a packet. */
+	private static final int MAX_PACKET_SIZE = 4096;
+	private InetAddress group = null;
+	private CacheEventListener listener = null;
+	private String nodeId = null;
+	private int port = -1;
+	private volatile boolean running = false;
+	private volatile MulticastSocket socket = null;
+
+	/**
+	 * Convert a packet to a cache event.
+	 *
+	 * @return The cache event, or <code>null</code> if the packet is not a
+	 *  valid cache event.
+	 */
+	protected static CacheEvent decode(byte[] data, int length) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, 0, length));
+		if (in.readInt() != MAGIC) {
+			return null;
+		}
+		CacheEvent event = new CacheEvent();
+		event.setNodeId(in.readUTF());
+		event.setCacheName(in.readUTF());
+		event.setKeyType(in.readChar());
+		if (in.readBoolean()) {
+			event.setKey(in.readUTF());
+		}
+		return event;
+	}
+
+	/**
+	 * Convert a cache event to a packet.
+	 */
+	protected static byte[] encode(CacheEvent event) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(MAGIC);
+		out.writeUTF(event.getNodeId());
+		out.writeUTF(event.getCacheName());
+		out.writeChar(event.getKeyType());
+		out.writeBoolean(event.getKey() != null);
+		if (event.getKey() != null) {
+			out.writeUTF(event.getKey());
+		}
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 *
+	 */
+	public void publish(CacheEvent event) {
+		event.setNodeId(this.nodeId);
+		MulticastSocket current = this.socket;
+		if (current == null) {
+			return;
+		}
+		try {
+			byte[] data = MulticastCacheInvalidationBus.encode(event);
+			if (data.length > MAX_PACKET_SIZE) {
+				// very long keys cannot be sent, so remove the entire cache instead
+				CacheEvent removeAll = new CacheEvent(event.getCacheName(), null, CacheEvent.KEY_TYPE_ALL);
+				removeAll.setNodeId(this.nodeId);
+				data = MulticastCacheInvalidationBus.encode(removeAll);
+			}
+			current.send(new DatagramPacket(data, data.length, this.group, this.port));
+		} catch (IOException e) {
+			// not fatal, but other instances may use stale data until it expires
+			logger.warn("Failure while sending cache event " + event + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Receive events until the bus is shut down.  This method is invoked in a
+	 * background thread by {@link #start}.
+	 */
+	public void run() {
+		MulticastSocket current = this.socket;
+		byte[] buffer = new byte[MAX_PACKET_SIZE];
+		while (this.running) {
+			DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+			try {
+				current.receive(packet);
+				CacheEvent event = MulticastCacheInvalidationBus.decode(packet.getData(), packet.getLength());
+				if (event != null && !StringUtils.equals(event.getNodeId(), this.nodeId)) {
+					this.listener.cacheEventReceived(event);
+				}
+			} catch (IOException e) {
+				if (this.running) {
+					logger.warn("Failure while receiving cache event: " + e.getMessage());
+				}
+			} catch (RuntimeException e) {
+				// do not allow an unexpected error to stop the receiving thread
+				logger.error("Unexpected failure while applying cache event", e);
+			}
+		}
+	}
+
+	/**
+	 *
+	 */
+	public synchronized void shutdown() {
+		this.running = false;
+		if (this.socket != null) {
+			try {
+				this.socket.leaveGroup(new InetSocketAddress(this.group, this.port), null);
+			} catch (IOException e) {
+				// ignore, the socket is being closed
+			}
+			// closing the socket causes the receiving thread to exit
+			this.socket.close();
+			this.socket = null;
+		}
+	}
+
+	/**
+	 *
+	 */
+	public synchronized void start(String nodeId, CacheEventListener listener) {
+		this.nodeId = nodeId;
+		this.listener = listener;
+		String address = Environment.getValue(Environment.PROP_CACHE_INVALIDATION_ADDRESS);
+		this.port = NumberUtils.toInt(StringUtils.substringAfterLast(address, ":"), -1);
+		if (this.port <= 0) {
+			throw new IllegalStateException("Invalid cache invalidation address " + address + ", expected address:port");
+		}
+		try {
+			this.group = InetAddress.getByName(StringUtils.substringBeforeLast(address, ":"));
+			this.socket = new MulticastSocket(this.port);
+			// a null interface uses the default multicast interface, as the
+			// deprecated joinGroup(InetAddress) did
+			this.socket.joinGroup(new InetSocketAddress(this.group, this.port), null);
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to join multicast group " + address, e);
+		}
+		this.running = true;
+		Thread thread = new Thread(this, "MulticastCacheInvalidationBus");
+		thread.setDaemon(true);
+		thread.start();
+	}
+}
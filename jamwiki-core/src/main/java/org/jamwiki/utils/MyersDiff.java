@@ -0,0 +1,411 @@
+/**
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE, version 2.1, dated February 1999.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the latest version of the GNU Lesser General
+ * Public License as published by the Free Software Foundation;
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program (LICENSE.txt); if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jamwiki.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.incava.util.diff.Difference;
+
+/**
+ * Implementation of the linear-space variant of the diff algorithm described in
+ * Eugene Myers' paper "An O(ND) Difference Algorithm and Its Variations".  The
+ * algorithm operates on arrays of integers, so lines of text are first interned
+ * into integer ids, and memory use is proportional to the length of the input
+ * rather than the product of the lengths of the two inputs.  Results are
+ * returned as <code>org.incava.util.diff.Difference</code> objects so that they
+ * can be processed by {@link DiffUtil} in the same way as results from the
+ * <code>org.incava</code> diff implementation.
+ */
+public class MyersDiff {
+
+	/** Values within this range (the full range of characters) can always be tracked with flag arrays. */
+	private static final long MAX_CHARACTER_RANGE = Character.MAX_VALUE + 1;
+
+	/** Bookkeeping arrays for the forward and reverse searches, re-used across sub-problems. */
+	private final int[] forward;
+	private final int[] reverse;
+	private final int[] oldValues;
+	private final int[] newValues;
+	/** Flags indicating which elements of the old array were deleted. */
+	private final boolean[] deleted;
+	/** Flags indicating which elements of the new array were added. */
+	private final boolean[] added;
+
+	/**
+	 *
+	 */
+	private MyersDiff(int[] oldValues, int[] newValues) {
+		this.oldValues = oldValues;
+		this.newValues = newValues;
+		this.deleted = new boolean[oldValues.length];
+		this.added = new boolean[newValues.length];
+		int size = oldValues.length + newValues.length + 3;
+		this.forward = new int[size];
+		this.reverse = new int[size];
+	}
+
+	/**
+	 * Find the differences between two arrays of strings, such as the lines of
+	 * two topic versions.  Each distinct string is mapped to an integer id prior
+	 * to diffing so that string comparisons are done only once per element.
+	 *
+	 * @param oldArray The original array of values.
+	 * @param newArray The array of values that the original array is being
+	 *  compared to.
+	 * @return A list of differences between the two arrays.
+	 */
+	public static List<Difference> diff(String[] oldArray, String[] newArray) {
+		Map<String, Integer> ids = new HashMap<String, Integer>();
+		return MyersDiff.diff(MyersDiff.intern(oldArray, ids), MyersDiff.intern(newArray, ids));
+	}
+
+	/**
+	 * Find the differences between two strings on a character-by-character basis.
+	 *
+	 * @param oldValue The original value.
+	 * @param newValue The value that the original value is being compared to.
+	 * @return A list of differences between the characters of the two values.
+	 */
+	public static List<Difference> diff(String oldValue, String newValue) {
+		return MyersDiff.diff(MyersDiff.toIntArray(oldValue), MyersDiff.toIntArray(newValue));
+	}
+
+	/**
+	 * Find the differences between two arrays of integer values.
+	 *
+	 * @param oldValues The original array of values.
+	 * @param newValues The array of values that the original array is being
+	 *  compared to.
+	 * @return A list of differences between the two arrays.
+	 */
+	public static List<Difference> diff(int[] oldValues, int[] newValues) {
+		boolean[] oldMatched = new boolean[oldValues.length];
+		boolean[] newMatched = new boolean[newValues.length];
+		if (!MyersDiff.findMatched(oldValues, newValues, oldMatched, newMatched)) {
+			MyersDiff myersDiff = new MyersDiff(oldValues, newValues);
+			myersDiff.compare();
+			return myersDiff.buildDifferences();
+		}
+		// elements that do not appear anywhere in the other array can never be part
+		// of the longest common subsequence, so diff only the remaining elements.  for
+		// heavily rewritten topics this avoids the worst case of the algorithm.
+		int[] oldIndexes = MyersDiff.matchedIndexes(oldMatched);
+		int[] newIndexes = MyersDiff.matchedIndexes(newMatched);
+		MyersDiff myersDiff = new MyersDiff(MyersDiff.select(oldValues, oldIndexes), MyersDiff.select(newValues, newIndexes));
+		myersDiff.compare();
+		MyersDiff result = new MyersDiff(oldValues, newValues);
+		for (int i = 0; i < oldMatched.length; i++) {
+			result.deleted[i] = !oldMatched[i];
+		}
+		for (int i = 0; i < oldIndexes.length; i++) {
+			result.deleted[oldIndexes[i]] = myersDiff.deleted[i];
+		}
+		for (int i = 0; i < newMatched.length; i++) {
+			result.added[i] = !newMatched[i];
+		}
+		for (int i = 0; i < newIndexes.length; i++) {
+			result.added[newIndexes[i]] = myersDiff.added[i];
+		}
+		return result.buildDifferences();
+	}
+
+	/**
+	 * Walk the deleted and added flags, grouping each run of deleted and/or
+	 * added elements into a single difference object.
+	 */
+	private List<Difference> buildDifferences() {
+		List<Difference> differences = new ArrayList<Difference>();
+		int oldPosition = 0;
+		int newPosition = 0;
+		while (oldPosition < this.deleted.length || newPosition < this.added.length) {
+			if (oldPosition < this.deleted.length && newPosition < this.added.length && !this.deleted[oldPosition] && !this.added[newPosition]) {
+				// unchanged element
+				oldPosition++;
+				newPosition++;
+				continue;
+			}
+			int deletedStart = oldPosition;
+			int addedStart = newPosition;
+			while (oldPosition < this.deleted.length && this.deleted[oldPosition]) {
+				oldPosition++;
+			}
+			while (newPosition < this.added.length && this.added[newPosition]) {
+				newPosition++;
+			}
+			int deletedEnd = (oldPosition > deletedStart) ? oldPosition - 1 : Difference.NONE;
+			int addedEnd = (newPosition > addedStart) ? newPosition - 1 : Difference.NONE;
+			differences.add(new Difference(deletedStart, deletedEnd, addedStart, addedEnd));
+		}
+		return differences;
+	}
+
+	/**
+	 * Compare the full old and new arrays.  Rather than recursing, sub-problems
+	 * are stored on an explicit stack so that very large or very different
+	 * inputs cannot overflow the call stack.
+	 */
+	private void compare() {
+		int[] stack = new int[64];
+		int top = 0;
+		stack[top++] = 0;
+		stack[top++] = this.oldValues.length;
+		stack[top++] = 0;
+		stack[top++] = this.newValues.length;
+		int[] split = new int[2];
+		while (top > 0) {
+			int newEnd = stack[--top];
+			int newStart = stack[--top];
+			int oldEnd = stack[--top];
+			int oldStart = stack[--top];
+			// strip any common prefix and suffix
+			while (oldStart < oldEnd && newStart < newEnd && this.oldValues[oldStart] == this.newValues[newStart]) {
+				oldStart++;
+				newStart++;
+			}
+			while (oldStart < oldEnd && newStart < newEnd && this.oldValues[oldEnd - 1] == this.newValues[newEnd - 1]) {
+				oldEnd--;
+				newEnd--;
+			}
+			if (oldStart == oldEnd) {
+				for (int i = newStart; i < newEnd; i++) {
+					this.added[i] = true;
+				}
+				continue;
+			}
+			if (newStart == newEnd) {
+				for (int i = oldStart; i < oldEnd; i++) {
+					this.deleted[i] = true;
+				}
+				continue;
+			}
+			if (!this.middleSnake(oldStart, oldEnd, newStart, newEnd, split)) {
+				// no common elements, so everything was replaced
+				for (int i = oldStart; i < oldEnd; i++) {
+					this.deleted[i] = true;
+				}
+				for (int i = newStart; i < newEnd; i++) {
+					this.added[i] = true;
+				}
+				continue;
+			}
+			if (top + 8 > stack.length) {
+				int[] tmp = new int[stack.length * 2];
+				System.arraycopy(stack, 0, tmp, 0, top);
+				stack = tmp;
+			}
+			stack[top++] = oldStart + split[0];
+			stack[top++] = oldEnd;
+			stack[top++] = newStart + split[1];
+			stack[top++] = newEnd;
+			stack[top++] = oldStart;
+			stack[top++] = oldStart + split[0];
+			stack[top++] = newStart;
+			stack[top++] = newStart + split[1];
+		}
+	}
+
+	/**
+	 * Flag every element of each array that also appears somewhere in the other
+	 * array.
+	 *
+	 * @return <code>false</code> if the range of values is too large to track
+	 *  efficiently, in which case the flag arrays are not populated.
+	 */
+	private static boolean findMatched(int[] oldValues, int[] newValues, boolean[] oldMatched, boolean[] newMatched) {
+		if (oldValues.length == 0 || newValues.length == 0) {
+			return false;
+		}
+		int min = Integer.MAX_VALUE;
+		int max = Integer.MIN_VALUE;
+		for (int value : oldValues) {
+			min = Math.min(min, value);
+			max = Math.max(max, value);
+		}
+		for (int value : newValues) {
+			min = Math.min(min, value);
+			max = Math.max(max, value);
+		}
+		long range = (long)max - (long)min + 1;
+		if (range > Math.max(MAX_CHARACTER_RANGE, 2L * (oldValues.length + newValues.length))) {
+			return false;
+		}
+		boolean[] inOld = new boolean[(int)range];
+		boolean[] inNew = new boolean[(int)range];
+		for (int value : oldValues) {
+			inOld[value - min] = true;
+		}
+		for (int value : newValues) {
+			inNew[value - min] = true;
+		}
+		for (int i = 0; i < oldValues.length; i++) {
+			oldMatched[i] = inNew[oldValues[i] - min];
+		}
+		for (int i = 0; i < newValues.length; i++) {
+			newMatched[i] = inOld[newValues[i] - min];
+		}
+		return true;
+	}
+
+	/**
+	 * Map each distinct string in an array to an integer id.
+	 */
+	private static int[] intern(String[] values, Map<String, Integer> ids) {
+		int[] result = new int[values.length];
+		for (int i = 0; i < values.length; i++) {
+			Integer id = ids.get(values[i]);
+			if (id == null) {
+				id = ids.size();
+				ids.put(values[i], id);
+			}
+			result[i] = id;
+		}
+		return result;
+	}
+
+	/**
+	 * Search simultaneously forward from the start and backward from the end of
+	 * the given sub-problem for the middle of an optimal edit path, storing the
+	 * split point (relative to the start of the sub-problem) in the
+	 * <code>split</code> array.
+	 *
+	 * @return <code>true</code> if a split point was found, <code>false</code>
+	 *  if the sub-problem has no common elements.
+	 */
+	private boolean middleSnake(int oldStart, int oldEnd, int newStart, int newEnd, int[] split) {
+		int oldLength = oldEnd - oldStart;
+		int newLength = newEnd - newStart;
+		int maxD = (oldLength + newLength + 1) / 2;
+		int offset = maxD;
+		int length = 2 * maxD + 2;
+		for (int i = 0; i < length; i++) {
+			this.forward[i] = -1;
+			this.reverse[i] = -1;
+		}
+		this.forward[offset + 1] = 0;
+		this.reverse[offset + 1] = 0;
+		int delta = oldLength - newLength;
+		// if the total number of elements is odd the front path will collide with the reverse path
+		boolean front = (delta % 2 != 0);
+		int k1Start = 0;
+		int k1End = 0;
+		int k2Start = 0;
+		int k2End = 0;
+		for (int d = 0; d < maxD; d++) {
+			for (int k1 = -d + k1Start; k1 <= d - k1End; k1 += 2) {
+				int k1Offset = offset + k1;
+				int x1 = (k1 == -d || (k1 != d && this.forward[k1Offset - 1] < this.forward[k1Offset + 1])) ? this.forward[k1Offset + 1] : this.forward[k1Offset - 1] + 1;
+				int y1 = x1 - k1;
+				while (x1 < oldLength && y1 < newLength && this.oldValues[oldStart + x1] == this.newValues[newStart + y1]) {
+					x1++;
+					y1++;
+				}
+				this.forward[k1Offset] = x1;
+				if (x1 > oldLength) {
+					// ran off the right of the graph
+					k1End += 2;
+				} else if (y1 > newLength) {
+					// ran off the bottom of the graph
+					k1Start += 2;
+				} else if (front) {
+					int k2Offset = offset + delta - k1;
+					if (k2Offset >= 0 && k2Offset < length && this.reverse[k2Offset] != -1) {
+						int x2 = oldLength - this.reverse[k2Offset];
+						if (x1 >= x2) {
+							split[0] = x1;
+							split[1] = y1;
+							return true;
+						}
+					}
+				}
+			}
+			for (int k2 = -d + k2Start; k2 <= d - k2End; k2 += 2) {
+				int k2Offset = offset + k2;
+				int x2 = (k2 == -d || (k2 != d && this.reverse[k2Offset - 1] < this.reverse[k2Offset + 1])) ? this.reverse[k2Offset + 1] : this.reverse[k2Offset - 1] + 1;
+				int y2 = x2 - k2;
+				while (x2 < oldLength && y2 < newLength && this.oldValues[oldEnd - x2 - 1] == this.newValues[newEnd - y2 - 1]) {
+					x2++;
+					y2++;
+				}
+				this.reverse[k2Offset] = x2;
+				if (x2 > oldLength) {
+					k2End += 2;
+				} else if (y2 > newLength) {
+					k2Start += 2;
+				} else if (!front) {
+					int k1Offset = offset + delta - k2;
+					if (k1Offset >= 0 && k1Offset < length && this.forward[k1Offset] != -1) {
+						int x1 = this.forward[k1Offset];
+						int y1 = offset + x1 - k1Offset;
+						if (x1 >= oldLength - x2) {
+							split[0] = x1;
+							split[1] = y1;
+							return true;
+						}
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Return the indexes of all flagged elements.
+	 */
+	private static int[] matchedIndexes(boolean[] matched) {
+		int count = 0;
+		for (boolean value : matched) {
+			if (value) {
+				count++;
+			}
+		}
+		int[] result = new int[count];
+		count = 0;
+		for (int i = 0; i < matched.length; i++) {
+			if (matched[i]) {
+				result[count++] = i;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 *
+	 */
+	private static int[] select(int[] values, int[] indexes) {
+		int[] result = new int[indexes.length];
+		for (int i = 0; i < indexes.length; i++) {
+			result[i] = values[indexes[i]];
+		}
+		return result;
+	}
+
+	/**
+	 *
+	 */
+	private static int[] toIntArray(String value) {
+		if (value == null) {
+			return new int[0];
+		}
+		int[] result = new int[value.length()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = value.charAt(i);
+		}
+		return result;
+	}
+}
@@ -16,18 +16,31 @@
  */
 package org.jamwiki.utils;
 
+import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.lang.StringUtils;
 
 /**
- * Utility class useful for paginating through a result set.
+ * Utility class useful for paginating through a result set.  Results may be
+ * paginated either by offset or by an opaque continuation token.  A
+ * continuation token identifies the sort value and id of the last result of
+ * the previous page, allowing the next page to be retrieved with a "seek"
+ * query whose cost does not depend on how deep into the result set the page
+ * is.  Query methods that support continuation tokens set the token for the
+ * following page via {@link #setNextContinuation} when a full page of
+ * results has been retrieved.
  */
 public class Pagination {
 
 	/** Logger */
 	public static final WikiLogger logger = WikiLogger.getLogger(Pagination.class.getName());
 
+	private final int continuationId;
+	private final String continuationValue;
+	private String nextContinuation = null;
 	private final int numResults;
 	private final int offset;
 
@@ -41,8 +54,96 @@ public class Pagination {
 	 *  returned starting at 100.
 	 */
 	public Pagination(int numResults, int offset) {
+		this(numResults, offset, null);
+	}
+
+	/**
+	 * Create a pagination object with specified initial values.
+	 *
+	 * @param numResults The maximum number of results that can be retrieved or
+	 *  displayed.
+	 * @param offset The offset for the pagination.  When a valid continuation
+	 *  token is specified the offset is used only for display purposes and
+	 *  for building links to previous pages.
+	 * @param continuation An opaque continuation token, as returned by
+	 *  {@link #getNextContinuation}, identifying the last result of the
+	 *  previous page.  If this value is <code>null</code> or invalid then
+	 *  results are paginated by offset.
+	 */
+	public Pagination(int numResults, int offset, String continuation) {
 		this.numResults = numResults;
 		this.offset = offset;
+		String[] values = Pagination.decodeContinuation(continuation);
+		this.continuationValue = (values != null) ? values[1] : null;
+		this.continuationId = (values != null) ? Integer.parseInt(values[0]) : 0;
+	}
+
+	/**
+	 * Decode a continuation token into its id and sort value.
+	 *
+	 * @return A two-element array containing the id and the sort value, or
+	 *  <code>null</code> if the token is empty or invalid.
+	 */
+	private static String[] decodeContinuation(String continuation) {
+		if (StringUtils.isBlank(continuation)) {
+			return null;
+		}
+		String decoded;
+		try {
+			decoded = new String(Base64.decodeBase64(continuation.getBytes("UTF-8")), "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			// UTF-8 is always supported
+			throw new IllegalStateException(e);
+		}
+		int pos = decoded.indexOf(':');
+		if (pos <= 0) {
+			logger.info("Ignoring invalid pagination continuation token: " + continuation);
+			return null;
+		}
+		String id = decoded.substring(0, pos);
+		try {
+			Integer.parseInt(id);
+		} catch (NumberFormatException e) {
+			logger.info("Ignoring invalid pagination continuation token: " + continuation);
+			return null;
+		}
+		return new String[] {id, decoded.substring(pos + 1)};
+	}
+
+	/**
+	 * Encode an id and sort value as a continuation token.  The token is
+	 * URL-safe and can be used as a request parameter without escaping.
+	 */
+	private static String encodeContinuation(String value, int id) {
+		try {
+			return Base64.encodeBase64URLSafeString((id + ":" + value).getBytes("UTF-8"));
+		} catch (UnsupportedEncodingException e) {
+			// UTF-8 is always supported
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Return the id of the last result of the previous page, as specified by
+	 * the continuation token.  Queries that are keyed on a unique sort value
+	 * do not use this value.
+	 *
+	 * @return The id of the last result of the previous page, or zero if no
+	 *  continuation token was specified.
+	 */
+	public int getContinuationId() {
+		return this.continuationId;
+	}
+
+	/**
+	 * Return the sort value of the last result of the previous page, as
+	 * specified by the continuation token.
+	 *
+	 * @return The sort value of the last result of the previous page, or
+	 *  <code>null</code> if no continuation token was specified.
+	 */
+	public String getContinuationValue() {
+		return this.continuationValue;
 	}
 
 	/**
@@ -55,6 +156,17 @@ public class Pagination {
 		return this.offset + this.numResults;
 	}
 
+	/**
+	 * Return the continuation token that can be used to retrieve the page
+	 * following the current page, or <code>null</code> if there are no
+	 * further results or if the query does not support continuation tokens.
+	 *
+	 * @return The continuation token for the next page.
+	 */
+	public String getNextContinuation() {
+		return this.nextContinuation;
+	}
+
 	/**
 	 * Return the number of results that this pagination allows.
 	 *
@@ -86,6 +198,18 @@ public class Pagination {
 		return this.offset;
 	}
 
+	/**
+	 * Return <code>true</code> if a valid continuation token was specified,
+	 * indicating that results should be retrieved starting after the
+	 * continuation values rather than at the offset.
+	 *
+	 * @return <code>true</code> if results should be retrieved using the
+	 *  continuation token.
+	 */
+	public boolean isKeyset() {
+		return (this.continuationValue != null);
+	}
+
 	/**
 	 * Utility method for retrieving a list that is a subset of a larger list
 	 * containing only the items specified by the pagination object.
@@ -112,4 +236,17 @@ public class Pagination {
 		}
 		return results;
 	}
+
+	/**
+	 * Set the continuation token for the page following the current page.
+	 * This method is called by query methods that support continuation
+	 * tokens after retrieving a full page of results.
+	 *
+	 * @param value The sort value of the last result of the current page.
+	 * @param id The id of the last result of the current page, or zero if
+	 *  results are keyed on a unique sort value.
+	 */
+	public void setNextContinuation(String value, int id) {
+		this.nextContinuation = Pagination.encodeContinuation(value, id);
+	}
 }
@@ -0,0 +1,311 @@
+/**
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE, version 2.1, dated February 1999.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the latest version of the GNU Lesser General
+ * Public License as published by the Free Software Foundation;
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program (LICENSE.txt); if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jamwiki.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.jamwiki.Environment;
+
+/**
+ * Optional disk-backed second-level cache for values that are expensive to
+ * re-create, such as diffs and image dimensions.  Unlike the
+ * {@link WikiCache} disk store, entries written to this cache survive an
+ * application restart, so a restart does not require that all of these
+ * values be re-computed.  Only values that are fully determined by a single
+ * version number may be stored; parsed topic content is not, since it also
+ * depends on templates and on which linked topics exist.
+ *
+ * Each entry is stored in its own file along with a version number supplied
+ * by the caller, such as a topic version id.  When an entry is retrieved the
+ * caller supplies the current version number and any entry written for a
+ * different version is discarded, so entries never need to be explicitly
+ * invalidated when the underlying data changes.  Entries older than
+ * {@link Environment#PROP_CACHE_PERSISTENT_MAX_AGE} seconds are also
+ * discarded.  Values are stored as raw bytes using a compact binary format
+ * rather than Java serialization.  The cache is only used when
+ * {@link Environment#PROP_CACHE_PERSISTENT} is enabled.
+ */
+public class PersistentCache {
+
+	private static final WikiLogger logger = WikiLogger.getLogger(PersistentCache.class.getName());
+	/** Directory, relative to the system file directory, in which cache files are stored. */
+	private static final String CACHE_DIR = "cache" + File.separator + "persistent";
+	/** Identifies the format of a cache file, allowing the format to be changed in future versions. */
+	private static final int FORMAT_VERSION = 0x4A574331;
+
+	/**
+	 *
+	 */
+	private PersistentCache() {
+	}
+
+	/**
+	 * Return the file used to store an entry.  Files are named using a hash of
+	 * the key and are distributed across sub-directories to avoid very large
+	 * directories.
+	 */
+	private static File cacheFile(String cacheName, String key) {
+		String hash = DigestUtils.shaHex(key);
+		File directory = new File(PersistentCache.cacheRoot(), cacheName);
+		return new File(new File(directory, hash.substring(0, 2)), hash);
+	}
+
+	/**
+	 *
+	 */
+	private static File cacheRoot() {
+		return new File(Environment.getValue(Environment.PROP_BASE_FILE_DIR), CACHE_DIR);
+	}
+
+	/**
+	 * Remove all entries from all persistent caches.
+	 */
+	public static void clear() {
+		try {
+			FileUtils.deleteDirectory(PersistentCache.cacheRoot());
+		} catch (IOException e) {
+			logger.warn("Failure while clearing persistent cache: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Return <code>true</code> if the persistent cache is enabled.
+	 */
+	public static boolean isEnabled() {
+		return Environment.getBooleanValue(Environment.PROP_CACHE_PERSISTENT);
+	}
+
+	/**
+	 * Return the maximum age of an entry in milliseconds, or zero if entries
+	 * do not expire.
+	 */
+	private static long maxAge() {
+		return Math.max(Environment.getIntValue(Environment.PROP_CACHE_PERSISTENT_MAX_AGE), 0) * 1000L;
+	}
+
+	/**
+	 * Remove all expired entries from the persistent cache.  Since expired
+	 * entries are otherwise only removed when they are retrieved this method
+	 * should be called periodically, such as on application startup, to
+	 * prevent the cache from growing without bound.
+	 *
+	 * @return The number of entries removed.
+	 */
+	public static int purgeExpired() {
+		long maxAge = PersistentCache.maxAge();
+		if (maxAge <= 0) {
+			return 0;
+		}
+		return PersistentCache.purgeExpired(PersistentCache.cacheRoot(), System.currentTimeMillis() - maxAge);
+	}
+
+	/**
+	 *
+	 */
+	private static int purgeExpired(File directory, long expiration) {
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return 0;
+		}
+		int count = 0;
+		for (File file : files) {
+			if (file.isDirectory()) {
+				count += PersistentCache.purgeExpired(file, expiration);
+			} else if (file.lastModified() < expiration && file.delete()) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Remove an entry from the persistent cache.
+	 *
+	 * @param cacheName The name of the cache from which the entry is being
+	 *  removed.
+	 * @param key The key for the entry being removed.
+	 */
+	public static void remove(String cacheName, String key) {
+		if (!PersistentCache.isEnabled()) {
+			return;
+		}
+		File file = PersistentCache.cacheFile(cacheName, key);
+		if (file.exists() && !file.delete()) {
+			logger.info("Unable to delete persistent cache file " + file.getPath());
+		}
+	}
+
+	/**
+	 * Retrieve an entry from the persistent cache.
+	 *
+	 * @param cacheName The name of the cache from which the entry is being
+	 *  retrieved.
+	 * @param key The key for the entry being retrieved.
+	 * @param version The current version of the data that the entry was
+	 *  created from.  If the cached entry was created from a different version
+	 *  then it is discarded.
+	 * @return The cached value, or <code>null</code> if the persistent cache is
+	 *  disabled or no valid entry exists.
+	 */
+	public static byte[] retrieve(String cacheName, String key, long version) {
+		if (!PersistentCache.isEnabled()) {
+			return null;
+		}
+		File file = PersistentCache.cacheFile(cacheName, key);
+		if (!file.exists()) {
+			return null;
+		}
+		long maxAge = PersistentCache.maxAge();
+		boolean valid = false;
+		byte[] value = null;
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new FileInputStream(file));
+			// the key is stored to detect the (highly unlikely) case of a hash collision
+			if (in.readInt() == FORMAT_VERSION && in.readUTF().equals(key) && in.readLong() == version) {
+				long created = in.readLong();
+				if (maxAge <= 0 || (System.currentTimeMillis() - created) < maxAge) {
+					value = new byte[in.readInt()];
+					in.readFully(value);
+					valid = true;
+				}
+			}
+		} catch (IOException e) {
+			logger.info("Failure while reading persistent cache file " + file.getPath() + ": " + e.getMessage());
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+		if (!valid) {
+			// outdated, expired or corrupt
+			file.delete();
+			return null;
+		}
+		return value;
+	}
+
+	/**
+	 * Retrieve a text entry that was stored using
+	 * {@link #storeString(String, String, long, String)}.
+	 *
+	 * @param cacheName The name of the cache from which the entry is being
+	 *  retrieved.
+	 * @param key The key for the entry being retrieved.
+	 * @param version The current version of the data that the entry was
+	 *  created from.  If the cached entry was created from a different version
+	 *  then it is discarded.
+	 * @return The cached text, or <code>null</code> if the persistent cache is
+	 *  disabled or no valid entry exists.
+	 */
+	public static String retrieveString(String cacheName, String key, long version) {
+		byte[] value = PersistentCache.retrieve(cacheName, key, version);
+		if (value == null) {
+			return null;
+		}
+		InflaterInputStream in = new InflaterInputStream(new ByteArrayInputStream(value));
+		try {
+			return IOUtils.toString(in, "UTF-8");
+		} catch (IOException e) {
+			logger.info("Failure while reading persistent cache entry " + key + ": " + e.getMessage());
+			return null;
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+	}
+
+	/**
+	 * Add an entry to the persistent cache, replacing any existing entry with
+	 * the same key.
+	 *
+	 * @param cacheName The name of the cache to which the entry is being added.
+	 * @param key The key for the entry being added.
+	 * @param version The version of the data that the entry was created from,
+	 *  such as a topic version id.
+	 * @param value The value being cached.
+	 */
+	public static void store(String cacheName, String key, long version, byte[] value) {
+		if (!PersistentCache.isEnabled() || value == null) {
+			return;
+		}
+		File file = PersistentCache.cacheFile(cacheName, key);
+		File directory = file.getParentFile();
+		if (!directory.exists() && !directory.mkdirs()) {
+			logger.info("Unable to create persistent cache directory " + directory.getPath());
+			return;
+		}
+		// write to a temporary file so that readers never see a partially written entry
+		File temp = new File(directory, file.getName() + "." + Thread.currentThread().getId() + ".tmp");
+		DataOutputStream out = null;
+		try {
+			out = new DataOutputStream(new FileOutputStream(temp));
+			out.writeInt(FORMAT_VERSION);
+			out.writeUTF(key);
+			out.writeLong(version);
+			out.writeLong(System.currentTimeMillis());
+			out.writeInt(value.length);
+			out.write(value);
+			out.close();
+			out = null;
+			if (file.exists() && !file.delete()) {
+				logger.info("Unable to replace persistent cache file " + file.getPath());
+			} else if (!temp.renameTo(file)) {
+				logger.info("Unable to create persistent cache file " + file.getPath());
+			}
+		} catch (IOException e) {
+			logger.info("Failure while writing persistent cache file " + file.getPath() + ": " + e.getMessage());
+		} finally {
+			IOUtils.closeQuietly(out);
+			temp.delete();
+		}
+	}
+
+	/**
+	 * Add a text entry to the persistent cache, replacing any existing entry
+	 * with the same key.  Text is stored compressed.
+	 *
+	 * @param cacheName The name of the cache to which the entry is being added.
+	 * @param key The key for the entry being added.
+	 * @param version The version of the data that the entry was created from,
+	 *  such as a topic version id.
+	 * @param value The text being cached.
+	 */
+	public static void storeString(String cacheName, String key, long version, String value) {
+		if (!PersistentCache.isEnabled() || value == null) {
+			return;
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DeflaterOutputStream out = new DeflaterOutputStream(bytes);
+		try {
+			out.write(value.getBytes("UTF-8"));
+			out.close();
+		} catch (IOException e) {
+			logger.info("Failure while compressing persistent cache entry " + key + ": " + e.getMessage());
+			return;
+		}
+		PersistentCache.store(cacheName, key, version, bytes.toByteArray());
+	}
+}
@@ -0,0 +1,107 @@
+/**
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE, version 2.1, dated February 1999.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the latest version of the GNU Lesser General
+ * Public License as published by the Free Software Foundation;
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program (LICENSE.txt); if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jamwiki.utils;
+
+import java.util.Map;
+import org.jamwiki.DataAccessException;
+import org.jamwiki.WikiBase;
+
+/**
+ * Provide site-wide statistics such as article, file and user counts.  The
+ * statistics are stored in the database and are updated in the same
+ * transaction as the topic, file and user changes that affect them, and the
+ * statistics for each virtual wiki are cached until they next change, so
+ * retrieving a statistic never requires a <code>count()</code> query.  See
+ * {@link org.jamwiki.DataHandler#lookupStatistics} and
+ * {@link org.jamwiki.DataHandler#recountStatistics}.
+ */
+public class SiteStatistics {
+
+	/** Statistic name for the number of topics in the main namespace, excluding redirects. */
+	public static final String STATISTIC_ARTICLES = "articles";
+	/** Statistic name for the number of uploaded files. */
+	public static final String STATISTIC_FILES = "files";
+	/** Statistic name for the number of topics in all namespaces, excluding redirects. */
+	public static final String STATISTIC_TOPICS = "topics";
+	/** Statistic name for the number of registered users, which applies to all virtual wikis. */
+	public static final String STATISTIC_USERS = "users";
+
+	/**
+	 *
+	 */
+	private SiteStatistics() {
+	}
+
+	/**
+	 * Return the number of topics in the main namespace for a virtual wiki.
+	 *
+	 * @param virtualWiki The virtual wiki for which the count is being
+	 *  retrieved.
+	 * @return The number of topics in the main namespace of the virtual wiki.
+	 * @throws DataAccessException Thrown if any error occurs while retrieving
+	 *  the count.
+	 */
+	public static int getArticleCount(String virtualWiki) throws DataAccessException {
+		return SiteStatistics.lookupCount(STATISTIC_ARTICLES, virtualWiki);
+	}
+
+	/**
+	 * Return the number of uploaded files for a virtual wiki.
+	 *
+	 * @param virtualWiki The virtual wiki for which the count is being
+	 *  retrieved.
+	 * @return The number of uploaded files in the virtual wiki.
+	 * @throws DataAccessException Thrown if any error occurs while retrieving
+	 *  the count.
+	 */
+	public static int getFileCount(String virtualWiki) throws DataAccessException {
+		return SiteStatistics.lookupCount(STATISTIC_FILES, virtualWiki);
+	}
+
+	/**
+	 * Return the number of topics in all namespaces for a virtual wiki.
+	 *
+	 * @param virtualWiki The virtual wiki for which the count is being
+	 *  retrieved.
+	 * @return The number of topics in all namespaces of the virtual wiki.
+	 * @throws DataAccessException Thrown if any error occurs while retrieving
+	 *  the count.
+	 */
+	public static int getTopicCount(String virtualWiki) throws DataAccessException {
+		return SiteStatistics.lookupCount(STATISTIC_TOPICS, virtualWiki);
+	}
+
+	/**
+	 * Return the number of registered users.
+	 *
+	 * @return The number of registered users.
+	 * @throws DataAccessException Thrown if any error occurs while retrieving
+	 *  the count.
+	 */
+	public static int getUserCount() throws DataAccessException {
+		return SiteStatistics.lookupCount(STATISTIC_USERS, null);
+	}
+
+	/**
+	 *
+	 */
+	private static int lookupCount(String statistic, String virtualWiki) throws DataAccessException {
+		Map<String, Integer> statistics = WikiBase.getDataHandler().lookupStatistics(virtualWiki);
+		Integer value = statistics.get(statistic);
+		return (value != null) ? value : 0;
+	}
+}
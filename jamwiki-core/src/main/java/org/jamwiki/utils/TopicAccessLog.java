@@ -0,0 +1,277 @@
+/**
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE, version 2.1, dated February 1999.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the latest version of the GNU Lesser General
+ * Public License as published by the Free Software Foundation;
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program (LICENSE.txt); if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jamwiki.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
+import org.jamwiki.Environment;
+
+/**
+ * Track how frequently each topic is viewed so that the most frequently
+ * viewed topics can be loaded into the cache when the application is
+ * restarted.  Only the {@link Environment#PROP_CACHE_WARMUP_SIZE} most
+ * frequently viewed topics of each virtual wiki are retained, and the access
+ * counts are written to a compact "hot topic" file in the system file
+ * directory periodically and at shutdown.  Counts loaded from the file at
+ * startup are halved so that topics that are no longer popular eventually
+ * drop out of the log.
+ */
+public class TopicAccessLog {
+
+	private static final WikiLogger logger = WikiLogger.getLogger(TopicAccessLog.class.getName());
+	/** Name of the file, relative to the system file directory, holding the access counts. */
+	private static final String HOT_TOPIC_FILE_NAME = "hot-topics.txt";
+	/** Number of topics that may be tracked for each virtual wiki, as a multiple of the warm-up size, before the least accessed topics are discarded. */
+	private static final int MAX_TRACKED_MULTIPLIER = 4;
+	/** Interval (in milliseconds) between saves of the access counts. */
+	private static final long SAVE_INTERVAL = 15 * 60 * 1000L;
+	private static final Map<String, ConcurrentHashMap<String, AtomicInteger>> ACCESS_COUNTS = new ConcurrentHashMap<String, ConcurrentHashMap<String, AtomicInteger>>();
+	private static Timer timer = null;
+
+	/**
+	 *
+	 */
+	private TopicAccessLog() {
+	}
+
+	/**
+	 * Return the most frequently viewed topics for a virtual wiki, sorted with
+	 * the most frequently viewed topics first.
+	 *
+	 * @param virtualWiki The virtual wiki for which topics are being returned.
+	 * @return A list of at most {@link Environment#PROP_CACHE_WARMUP_SIZE}
+	 *  topic names.
+	 */
+	public static List<String> getHotTopics(String virtualWiki) {
+		List<HotTopic> hotTopics = TopicAccessLog.sortedHotTopics(virtualWiki);
+		int size = Math.min(hotTopics.size(), Math.max(Environment.getIntValue(Environment.PROP_CACHE_WARMUP_SIZE), 0));
+		List<String> topicNames = new ArrayList<String>(size);
+		for (int i = 0; i < size; i++) {
+			topicNames.add(hotTopics.get(i).topicName);
+		}
+		return topicNames;
+	}
+
+	/**
+	 * Return the names of all virtual wikis for which topic views have been
+	 * recorded.
+	 */
+	public static List<String> getVirtualWikis() {
+		return new ArrayList<String>(ACCESS_COUNTS.keySet());
+	}
+
+	/**
+	 *
+	 */
+	private static File hotTopicFile() {
+		return new File(Environment.getValue(Environment.PROP_BASE_FILE_DIR), HOT_TOPIC_FILE_NAME);
+	}
+
+	/**
+	 * Load access counts saved by a previous run of the application and
+	 * begin saving access counts periodically.  This method should be called
+	 * when the application is started.
+	 */
+	public static synchronized void initialize() {
+		TopicAccessLog.load();
+		if (timer == null) {
+			timer = new Timer("TopicAccessLog", true);
+			timer.schedule(new TimerTask() {
+				public void run() {
+					TopicAccessLog.save();
+				}
+			}, SAVE_INTERVAL, SAVE_INTERVAL);
+		}
+	}
+
+	/**
+	 * Replace the current access counts with those from the hot topic file.
+	 */
+	protected static void load() {
+		ACCESS_COUNTS.clear();
+		File file = TopicAccessLog.hotTopicFile();
+		if (!file.exists()) {
+			return;
+		}
+		List<String> lines;
+		try {
+			lines = FileUtils.readLines(file, "UTF-8");
+		} catch (IOException e) {
+			logger.warn("Failure while reading hot topic file " + file.getPath() + ": " + e.getMessage());
+			return;
+		}
+		for (String line : lines) {
+			// each line is of the form "count<tab>virtual wiki<tab>topic name"
+			String[] tokens = StringUtils.split(line, '\t');
+			if (tokens.length != 3) {
+				continue;
+			}
+			// halve previous counts so that the log favors recent activity
+			int count = NumberUtils.toInt(tokens[0], 0) / 2;
+			if (count > 0) {
+				TopicAccessLog.virtualWikiCounts(tokens[1]).put(tokens[2], new AtomicInteger(count));
+			}
+		}
+	}
+
+	/**
+	 * Discard the least frequently viewed topics for a virtual wiki so that
+	 * only the warm-up size remain.
+	 */
+	private static synchronized void prune(String virtualWiki, int size) {
+		Map<String, AtomicInteger> counts = ACCESS_COUNTS.get(virtualWiki);
+		if (counts == null || counts.size() < (size * MAX_TRACKED_MULTIPLIER)) {
+			// already pruned by another thread
+			return;
+		}
+		List<HotTopic> hotTopics = TopicAccessLog.sortedHotTopics(virtualWiki);
+		for (int i = size; i < hotTopics.size(); i++) {
+			counts.remove(hotTopics.get(i).topicName);
+		}
+	}
+
+	/**
+	 * Record a view of a topic.
+	 *
+	 * @param virtualWiki The virtual wiki of the topic being viewed.
+	 * @param topicName The name of the topic being viewed.
+	 */
+	public static void record(String virtualWiki, String topicName) {
+		int size = Environment.getIntValue(Environment.PROP_CACHE_WARMUP_SIZE);
+		if (size <= 0 || StringUtils.isBlank(virtualWiki) || StringUtils.isBlank(topicName)) {
+			return;
+		}
+		ConcurrentHashMap<String, AtomicInteger> counts = TopicAccessLog.virtualWikiCounts(virtualWiki);
+		AtomicInteger count = counts.get(topicName);
+		if (count == null) {
+			if (counts.size() >= (size * MAX_TRACKED_MULTIPLIER)) {
+				TopicAccessLog.prune(virtualWiki, size);
+			}
+			count = new AtomicInteger();
+			AtomicInteger existing = counts.putIfAbsent(topicName, count);
+			if (existing != null) {
+				count = existing;
+			}
+		}
+		count.incrementAndGet();
+	}
+
+	/**
+	 * Write the access counts for the most frequently viewed topics of each
+	 * virtual wiki to the hot topic file.
+	 */
+	public static synchronized void save() {
+		List<String> lines = new ArrayList<String>();
+		for (String virtualWiki : ACCESS_COUNTS.keySet()) {
+			List<HotTopic> hotTopics = TopicAccessLog.sortedHotTopics(virtualWiki);
+			int size = Math.min(hotTopics.size(), Math.max(Environment.getIntValue(Environment.PROP_CACHE_WARMUP_SIZE), 0));
+			for (int i = 0; i < size; i++) {
+				HotTopic hotTopic = hotTopics.get(i);
+				lines.add(hotTopic.count + "\t" + virtualWiki + "\t" + hotTopic.topicName);
+			}
+		}
+		File file = TopicAccessLog.hotTopicFile();
+		try {
+			FileUtils.writeLines(file, "UTF-8", lines);
+		} catch (IOException e) {
+			logger.warn("Failure while writing hot topic file " + file.getPath() + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Save the access counts and stop periodic saving.  This method should be
+	 * called when the application is shut down.
+	 */
+	public static synchronized void shutdown() {
+		if (timer != null) {
+			timer.cancel();
+			timer = null;
+		}
+		TopicAccessLog.save();
+	}
+
+	/**
+	 * Return a snapshot of the access counts for a virtual wiki, sorted with
+	 * the most frequently viewed topics first.  Counts are copied before
+	 * sorting since they may be incremented by other threads.
+	 */
+	private static List<HotTopic> sortedHotTopics(String virtualWiki) {
+		Map<String, AtomicInteger> counts = ACCESS_COUNTS.get(virtualWiki);
+		if (counts == null) {
+			return Collections.emptyList();
+		}
+		List<HotTopic> hotTopics = new ArrayList<HotTopic>(counts.size());
+		for (Map.Entry<String, AtomicInteger> entry : counts.entrySet()) {
+			hotTopics.add(new HotTopic(entry.getKey(), entry.getValue().get()));
+		}
+		Collections.sort(hotTopics, new Comparator<HotTopic>() {
+			public int compare(HotTopic hotTopic1, HotTopic hotTopic2) {
+				if (hotTopic1.count != hotTopic2.count) {
+					return (hotTopic1.count > hotTopic2.count) ? -1 : 1;
+				}
+				return hotTopic1.topicName.compareTo(hotTopic2.topicName);
+			}
+		});
+		return hotTopics;
+	}
+
+	/**
+	 *
+	 */
+	private static ConcurrentHashMap<String, AtomicInteger> virtualWikiCounts(String virtualWiki) {
+		ConcurrentHashMap<String, AtomicInteger> counts = ACCESS_COUNTS.get(virtualWiki);
+		if (counts == null) {
+			synchronized (ACCESS_COUNTS) {
+				counts = ACCESS_COUNTS.get(virtualWiki);
+				if (counts == null) {
+					counts = new ConcurrentHashMap<String, AtomicInteger>();
+					ACCESS_COUNTS.put(virtualWiki, counts);
+				}
+			}
+		}
+		return counts;
+	}
+
+	/**
+	 *
+	 */
+	private static class HotTopic {
+
+		private final int count;
+		private final String topicName;
+
+		/**
+		 *
+		 */
+		private HotTopic(String topicName, int count) {
+			this.count = count;
+			this.topicName = topicName;
+		}
+	}
+}
@@ -26,13 +26,11 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
-import java.text.MessageFormat;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.ResourceBundle;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.servlet.http.HttpServletRequest;
@@ -293,7 +291,8 @@ public class Utilities {
 	}
 
 	/**
-	 * Given a message key and locale return a locale-specific message.
+	 * Given a message key and locale return a locale-specific message.  Messages
+	 * are retrieved from the {@link MessageCatalog}.
 	 *
 	 * @param key The message key that corresponds to the formatted message
 	 *  being retrieved.
@@ -301,13 +300,13 @@ public class Utilities {
 	 * @return A formatted message string that is specific to the locale.
 	 */
 	public static String formatMessage(String key, Locale locale) {
-		ResourceBundle messages = ResourceBundle.getBundle("ApplicationResources", locale);
-		return messages.getString(key);
+		return MessageCatalog.getMessage(key, locale);
 	}
 
 	/**
 	 * Given a message key, locale, and formatting parameters, return a
-	 * locale-specific message.
+	 * locale-specific message.  Messages are formatted using the pre-compiled
+	 * templates of the {@link MessageCatalog}.
 	 *
 	 * @param key The message key that corresponds to the formatted message
 	 *  being retrieved.
@@ -317,11 +316,7 @@ public class Utilities {
 	 * @return A formatted message string that is specific to the locale.
 	 */
 	public static String formatMessage(String key, Locale locale, Object[] params) {
-		MessageFormat formatter = new MessageFormat("");
-		formatter.setLocale(locale);
-		String message = Utilities.formatMessage(key, locale);
-		formatter.applyPattern(message);
-		return formatter.format(params);
+		return MessageCatalog.format(key, locale, params);
 	}
 
 	/**
@@ -19,10 +19,13 @@ package org.jamwiki.utils;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import net.sf.ehcache.Cache;
 import net.sf.ehcache.CacheException;
 import net.sf.ehcache.CacheManager;
 import net.sf.ehcache.Element;
+import net.sf.ehcache.Status;
 import net.sf.ehcache.config.CacheConfiguration;
 import net.sf.ehcache.config.Configuration;
 import net.sf.ehcache.config.DiskStoreConfiguration;
@@ -32,17 +35,35 @@ import org.jamwiki.Environment;
 /**
  * Implement utility functions that interact with the cache and provide the
  * infrastructure for storing and retrieving items from the cache.
+ *
+ * Code that accesses a cache frequently should create a single
+ * <code>WikiCache</code> instance for the cache and use its instance methods
+ * rather than the static methods that take a cache name.  An instance keeps a
+ * reference to the underlying cache so that the cache does not need to be
+ * looked up by name on every call, and its type parameters document the key
+ * and value types stored in the cache.  Instances created as heap-eligible are
+ * stored in a simple in-heap map instead of Ehcache when
+ * {@link Environment#PROP_CACHE_HEAP} is enabled.
+ *
+ * @param <K> The type of key used to store and retrieve cached values.
+ * @param <V> The type of value stored in the cache.
  */
-public class WikiCache {
+public class WikiCache<K, V> {
 
 	private static final WikiLogger logger = WikiLogger.getLogger(WikiCache.class.getName());
 	private static CacheManager cacheManager = null;
+	/** In-heap caches for heap-eligible cache instances, keyed by cache name. */
+	private static final ConcurrentMap<String, HeapCache> HEAP_CACHES = new ConcurrentHashMap<String, HeapCache>();
+	private static volatile boolean heapEnabled = false;
 	// track whether this instance was instantiated from an ehcache.xml file or using configured properties.
 	private static final boolean USES_XML_CONFIG;
 	private static final String EHCACHE_XML_CONFIG_FILENAME = "ehcache.xml";
 
 	/** Directory for cache files. */
 	private static final String CACHE_DIR = "cache";
+	private volatile Cache cache = null;
+	private final String cacheName;
+	private final HeapCache heapCache;
 
 	static {
 		boolean xmlConfig = false;
@@ -58,9 +79,129 @@ public class WikiCache {
 	}
 
 	/**
+	 * Create a handle for the cache with the given name.
+	 *
+	 * @param cacheName The name of the cache.
+	 */
+	public WikiCache(String cacheName) {
+		this(cacheName, false);
+	}
+
+	/**
+	 * Create a handle for the cache with the given name.
+	 *
+	 * @param cacheName The name of the cache.
+	 * @param heapEligible Set to <code>true</code> if the cache may be stored
+	 *  in an in-heap map rather than Ehcache when {@link Environment#PROP_CACHE_HEAP}
+	 *  is enabled.  This option should only be used for small, frequently
+	 *  accessed caches since the in-heap map cannot overflow to disk.
+	 */
+	public WikiCache(String cacheName, boolean heapEligible) {
+		this.cacheName = cacheName;
+		if (heapEligible) {
+			HEAP_CACHES.putIfAbsent(cacheName, new HeapCache());
+		}
+		this.heapCache = (heapEligible) ? HEAP_CACHES.get(cacheName) : null;
+	}
+
+	/**
+	 * Add an object to the cache.
+	 *
+	 * @param key The key for storing and retrieving this object from the cache.
+	 * @param value The object that is being stored in the cache.
+	 */
+	public void addToCache(K key, V value) {
+		if (this.heapCache != null && heapEnabled) {
+			this.heapCache.put(key, value);
+		} else {
+			this.resolveCache().put(new Element(key, value));
+		}
+	}
+
+	/**
+	 * Return the name of the cache.
+	 */
+	public String getCacheName() {
+		return this.cacheName;
+	}
+
+	/**
+	 * Remove all values from the cache.
+	 */
+	public void removeAllFromCache() {
+		if (this.heapCache != null && heapEnabled) {
+			this.heapCache.removeAll();
+		} else {
+			this.resolveCache().removeAll();
+		}
+	}
+
+	/**
+	 * Remove a value from the cache with the given key.
+	 *
+	 * @param key The key for the record that is being removed from the cache.
+	 */
+	public void removeFromCache(K key) {
+		if (this.heapCache != null && heapEnabled) {
+			this.heapCache.remove(key);
+		} else {
+			this.resolveCache().remove(key);
+		}
+	}
+
+	/**
+	 * Remove a key from the cache in a case-insensitive manner, comparing the
+	 * string form of each cached key with the string form of the given key.
+	 * This method is significantly slower than removeFromCache and should only
+	 * be used when the key values may not be exactly known.
+	 */
+	public void removeFromCacheCaseInsensitive(Object key) {
+		if (this.heapCache != null && heapEnabled) {
+			WikiCache.removeFromCacheCaseInsensitive(this.heapCache, key.toString());
+		} else {
+			WikiCache.removeFromCacheCaseInsensitive(this.resolveCache(), key.toString());
+		}
+	}
+
+	/**
+	 * Return the underlying cache, looking it up only if it has not previously
+	 * been retrieved or if it has been disposed since it was retrieved (for
+	 * example because the cache was re-initialized).
+	 */
+	private Cache resolveCache() {
+		Cache current = this.cache;
+		if (current == null || current.getStatus() != Status.STATUS_ALIVE) {
+			current = WikiCache.getCache(this.cacheName);
+			this.cache = current;
+		}
+		return current;
+	}
+
+	/**
+	 * Retrieve a cached value from the cache.  This method will return
+	 * <code>null</code> if no matching value is cached, an entry with a
+	 * <code>null</code> value if a <code>null</code> value is cached, or an
+	 * entry with a valid value if such a value is cached.
 	 *
+	 * @param key The key for the record that is being retrieved from the
+	 *  cache.
+	 * @return A <code>WikiCacheEntry</code> object containing the cached
+	 *  value, or <code>null</code> if no matching value is cached.
 	 */
-	private WikiCache() {
+	public WikiCacheEntry<V> retrieveFromCache(K key) throws DataAccessException {
+		Element element = null;
+		if (this.heapCache != null && heapEnabled) {
+			element = this.heapCache.get(key);
+		} else {
+			Cache current = null;
+			try {
+				current = this.resolveCache();
+			} catch (CacheException e) {
+				throw new DataAccessException("Failure while retrieving data from cache " + this.cacheName, e);
+			}
+			element = current.get(key);
+		}
+		return (element == null) ? null : WikiCache.<V>toEntry(element);
 	}
 
 	/**
@@ -73,7 +214,12 @@ public class WikiCache {
 	 * @param value The object that is being stored in the cache.
 	 */
 	public static void addToCache(String cacheName, Object key, Object value) {
-		WikiCache.getCache(cacheName).put(new Element(key, value));
+		HeapCache heap = WikiCache.getHeapCache(cacheName);
+		if (heap != null) {
+			heap.put(key, value);
+		} else {
+			WikiCache.getCache(cacheName).put(new Element(key, value));
+		}
 	}
 
 	/**
@@ -101,6 +247,14 @@ public class WikiCache {
 		return WikiCache.cacheManager.getCache(cacheName);
 	}
 
+	/**
+	 * Return the in-heap cache with the given name, or <code>null</code> if
+	 * in-heap caching is disabled or the cache is not heap-eligible.
+	 */
+	private static HeapCache getHeapCache(String cacheName) {
+		return (heapEnabled) ? HEAP_CACHES.get(cacheName) : null;
+	}
+
 	/**
 	 * Initialize the cache, clearing any existing cache instances and loading
 	 * a new cache instance.
@@ -133,6 +287,11 @@ public class WikiCache {
 				configuration.addDiskStore(diskStoreConfiguration);
 				WikiCache.cacheManager = new CacheManager(configuration);
 			}
+			for (HeapCache heap : HEAP_CACHES.values()) {
+				heap.removeAll();
+				heap.configure();
+			}
+			heapEnabled = Environment.getBooleanValue(Environment.PROP_CACHE_HEAP);
 		} catch (Exception e) {
 			logger.error("Failure while initializing cache", e);
 			throw new RuntimeException(e);
@@ -141,6 +300,9 @@ public class WikiCache {
 	}
 
 	public static void shutdown() {
+		for (HeapCache heap : HEAP_CACHES.values()) {
+			heap.removeAll();
+		}
 		if (WikiCache.cacheManager != null) {
 			WikiCache.cacheManager.shutdown();
 			WikiCache.cacheManager = null;
@@ -175,8 +337,12 @@ public class WikiCache {
 	 *  removed.
 	 */
 	public static void removeAllFromCache(String cacheName) {
-		Cache cache = WikiCache.getCache(cacheName);
-		cache.removeAll();
+		HeapCache heap = WikiCache.getHeapCache(cacheName);
+		if (heap != null) {
+			heap.removeAll();
+		} else {
+			WikiCache.getCache(cacheName).removeAll();
+		}
 	}
 
 	/**
@@ -186,6 +352,10 @@ public class WikiCache {
 	 * @param cacheName The name of the cache being removed.
 	 */
 	public static void removeCache(String cacheName) {
+		HeapCache heap = HEAP_CACHES.get(cacheName);
+		if (heap != null) {
+			heap.removeAll();
+		}
 		WikiCache.cacheManager.removeCache(cacheName);
 	}
 
@@ -197,8 +367,12 @@ public class WikiCache {
 	 * @param key The key for the record that is being removed from the cache.
 	 */
 	public static void removeFromCache(String cacheName, Object key) {
-		Cache cache = WikiCache.getCache(cacheName);
-		cache.remove(key);
+		HeapCache heap = WikiCache.getHeapCache(cacheName);
+		if (heap != null) {
+			heap.remove(key);
+		} else {
+			WikiCache.getCache(cacheName).remove(key);
+		}
 	}
 
 	/**
@@ -207,7 +381,18 @@ public class WikiCache {
 	 * the key values may not be exactly known.
 	 */
 	public static void removeFromCacheCaseInsensitive(String cacheName, String key) {
-		Cache cache = WikiCache.getCache(cacheName);
+		HeapCache heap = WikiCache.getHeapCache(cacheName);
+		if (heap != null) {
+			WikiCache.removeFromCacheCaseInsensitive(heap, key);
+		} else {
+			WikiCache.removeFromCacheCaseInsensitive(WikiCache.getCache(cacheName), key);
+		}
+	}
+
+	/**
+	 *
+	 */
+	private static void removeFromCacheCaseInsensitive(Cache cache, String key) {
 		List cacheKeys = cache.getKeys();
 		for (Object cacheKey : cacheKeys) {
 			// with the upgrade to ehcache 2.4.2 it seems that null cache keys are possible...
@@ -217,6 +402,17 @@ public class WikiCache {
 		}
 	}
 
+	/**
+	 *
+	 */
+	private static void removeFromCacheCaseInsensitive(HeapCache heap, String key) {
+		for (Object cacheKey : heap.keys()) {
+			if (cacheKey != null && cacheKey.toString().equalsIgnoreCase(key)) {
+				heap.remove(cacheKey);
+			}
+		}
+	}
+
 	/**
 	 * Retrieve a cached element from the cache.  This method will return
 	 * <code>null</code> if no matching element is cached, an element with
@@ -231,6 +427,10 @@ public class WikiCache {
 	 *  object value.
 	 */
 	public static Element retrieveFromCache(String cacheName, Object key) throws DataAccessException {
+		HeapCache heap = WikiCache.getHeapCache(cacheName);
+		if (heap != null) {
+			return heap.get(key);
+		}
 		Cache cache = null;
 		try {
 			cache = WikiCache.getCache(cacheName);
@@ -239,4 +439,14 @@ public class WikiCache {
 		}
 		return cache.get(key);
 	}
+
+	/**
+	 * Convert a cache element into a typed cache entry.  Values are only added
+	 * to a cache through {@link #addToCache(Object, Object)}, so the element
+	 * value is known to be of the cache value type.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <V> WikiCacheEntry<V> toEntry(Element element) {
+		return new WikiCacheEntry<V>((V)element.getObjectValue());
+	}
 }
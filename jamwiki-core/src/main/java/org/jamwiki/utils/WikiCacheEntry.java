@@ -0,0 +1,44 @@
+/**
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE, version 2.1, dated February 1999.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the latest version of the GNU Lesser General
+ * Public License as published by the Free Software Foundation;
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program (LICENSE.txt); if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jamwiki.utils;
+
+/**
+ * A value retrieved from a {@link WikiCache}.  Since <code>null</code> values
+ * may be cached (for example to record that a topic does not exist) a cache
+ * lookup returns <code>null</code> when no matching entry is cached, or an
+ * entry whose value may be <code>null</code> when a matching entry is cached.
+ *
+ * @param <V> The type of value stored in the cache.
+ */
+public class WikiCacheEntry<V> {
+
+	private final V value;
+
+	/**
+	 *
+	 */
+	WikiCacheEntry(V value) {
+		this.value = value;
+	}
+
+	/**
+	 * Return the cached value, which may be <code>null</code>.
+	 */
+	public V getValue() {
+		return this.value;
+	}
+}
@@ -0,0 +1,88 @@
+/**
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE, version 2.1, dated February 1999.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the latest version of the GNU Lesser General
+ * Public License as published by the Free Software Foundation;
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program (LICENSE.txt); if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jamwiki.utils;
+
+import java.io.Serializable;
+import org.apache.commons.lang.ObjectUtils;
+
+/**
+ * Composite key for cache entries that are identified by more than one value,
+ * such as a virtual wiki and a topic name.  Unlike {@link WikiCache#key} the
+ * individual values are not concatenated into a new string, so creating a key
+ * for a cache lookup only requires allocating this small object.  The string
+ * form of the key, which is used when removing entries in a case-insensitive
+ * manner, joins the values with a slash.
+ */
+public class WikiCacheKey implements Serializable {
+
+	private final int hashCode;
+	private final Object value1;
+	private final Object value2;
+	private final Object value3;
+
+	/**
+	 * Create a key from two values.
+	 */
+	public WikiCacheKey(Object value1, Object value2) {
+		this(value1, value2, null);
+	}
+
+	/**
+	 * Create a key from three values.
+	 */
+	public WikiCacheKey(Object value1, Object value2, Object value3) {
+		this.value1 = value1;
+		this.value2 = value2;
+		this.value3 = value3;
+		int result = ObjectUtils.hashCode(value1);
+		result = 31 * result + ObjectUtils.hashCode(value2);
+		this.hashCode = 31 * result + ObjectUtils.hashCode(value3);
+	}
+
+	/**
+	 *
+	 */
+	public boolean equals(Object object) {
+		if (this == object) {
+			return true;
+		}
+		if (!(object instanceof WikiCacheKey)) {
+			return false;
+		}
+		WikiCacheKey key = (WikiCacheKey)object;
+		return (this.hashCode == key.hashCode && ObjectUtils.equals(this.value1, key.value1) && ObjectUtils.equals(this.value2, key.value2) && ObjectUtils.equals(this.value3, key.value3));
+	}
+
+	/**
+	 *
+	 */
+	public int hashCode() {
+		return this.hashCode;
+	}
+
+	/**
+	 *
+	 */
+	public String toString() {
+		StringBuilder result = new StringBuilder();
+		result.append(ObjectUtils.toString(this.value1)).append('/').append(ObjectUtils.toString(this.value2));
+		if (this.value3 != null) {
+			result.append('/').append(this.value3);
+		}
+		return result.toString();
+	}
+}
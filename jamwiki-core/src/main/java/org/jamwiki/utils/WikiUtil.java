@@ -86,7 +86,7 @@ public class WikiUtil {
 				// invalid number
 			}
 		}
-		return new Pagination(num, offset);
+		return new Pagination(num, offset, request.getParameter("continue"));
 	}
 
 	/**
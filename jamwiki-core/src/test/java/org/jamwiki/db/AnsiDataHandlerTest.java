@@ -17,13 +17,26 @@
 package org.jamwiki.db;
 
 import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import org.jamwiki.DataAccessException;
 import org.jamwiki.JAMWikiUnitTest;
+import org.jamwiki.TopicNameCallback;
 import org.jamwiki.WikiBase;
 import org.jamwiki.WikiException;
 import org.jamwiki.model.RecentChange;
 import org.jamwiki.model.Topic;
+import org.jamwiki.model.TopicVersion;
+import org.jamwiki.model.Watchlist;
+import org.jamwiki.model.WikiUser;
 import org.jamwiki.utils.Pagination;
 import org.junit.Test;
 import static org.junit.Assert.*;
@@ -35,6 +48,148 @@ public class AnsiDataHandlerTest extends JAMWikiUnitTest {
 
 	private static boolean INITIALIZED = false;
 
+	/**
+	 * Verify that recent changes served from memory match those retrieved from
+	 * the database.
+	 */
+	@Test
+	public void testRecentChangeBuffer() throws Exception {
+		String virtualWiki = "en";
+		Pagination pagination = new Pagination(50, 0);
+		// initial request loads the buffer
+		WikiBase.getDataHandler().getRecentChanges(virtualWiki, pagination, true);
+		// a new change should be added to the buffer after commit
+		Topic topic = this.setupTopic(null, "Recent Change Buffer Test", "Test topic content");
+		List<RecentChange> buffered = WikiBase.getDataHandler().getRecentChanges(virtualWiki, pagination, true);
+		assertEquals("Most recent change", topic.getCurrentVersionId(), buffered.get(0).getTopicVersionId());
+		QueryHandler queryHandler = ((AnsiDataHandler)WikiBase.getDataHandler()).queryHandler();
+		assertEquals("Buffered changes", this.recentChangeKeys(queryHandler.getRecentChanges(virtualWiki, pagination, true)), this.recentChangeKeys(buffered));
+		// changes returned from the buffer must not be shared with the buffer
+		buffered.get(0).setChangeComment("Modified by caller");
+		assertFalse("Buffered change shared", "Modified by caller".equals(WikiBase.getDataHandler().getRecentChanges(virtualWiki, pagination, true).get(0).getChangeComment()));
+		// reloading recent changes should invalidate the buffer
+		WikiBase.getDataHandler().reloadRecentChanges();
+		buffered = WikiBase.getDataHandler().getRecentChanges(virtualWiki, pagination, true);
+		assertEquals("Buffered changes after reload", this.recentChangeKeys(queryHandler.getRecentChanges(virtualWiki, pagination, true)), this.recentChangeKeys(buffered));
+	}
+
+	/**
+	 * Return the change for a topic from a list of recent changes, or
+	 * <code>null</code> if the list contains no change for the topic.
+	 */
+	private RecentChange findChange(List<RecentChange> recentChanges, String topicName) {
+		for (RecentChange recentChange : recentChanges) {
+			if (recentChange.getTopicName().equals(topicName)) {
+				return recentChange;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Return a sorted list of keys that identify each recent change, since the
+	 * order of changes with identical change dates is not defined.
+	 */
+	private List<String> recentChangeKeys(List<RecentChange> recentChanges) {
+		List<String> keys = new ArrayList<String>();
+		for (RecentChange recentChange : recentChanges) {
+			keys.add(recentChange.getChangeDate().getTime() + "-" + recentChange.getTopicVersionId() + "-" + recentChange.getLogType() + "-" + recentChange.getCharactersChanged());
+		}
+		Collections.sort(keys);
+		return keys;
+	}
+
+	/**
+	 * Verify that streaming topic names returns the same names as a single
+	 * query, and that streaming stops when the callback returns false.
+	 */
+	@Test
+	public void testForEachTopicName() throws DataAccessException {
+		List<String> all = WikiBase.getDataHandler().getAllTopicNames("en", false);
+		assertTrue("Too few topics found", all.size() > 2);
+		final List<String> streamed = new ArrayList<String>();
+		WikiBase.getDataHandler().forEachTopicName("en", false, new TopicNameCallback() {
+			public boolean processTopicName(int topicId, String topicName) {
+				assertTrue("Invalid topic id", topicId > 0);
+				streamed.add(topicName);
+				return true;
+			}
+		});
+		assertEquals("Streamed topic names", all, streamed);
+		// verify that iteration stops when the callback returns false
+		final List<String> partial = new ArrayList<String>();
+		WikiBase.getDataHandler().forEachTopicName("en", false, new TopicNameCallback() {
+			public boolean processTopicName(int topicId, String topicName) {
+				partial.add(topicName);
+				return (partial.size() < 2);
+			}
+		});
+		assertEquals("Partial iteration", all.subList(0, 2), partial);
+	}
+
+	/**
+	 * Verify that paging through topic history and user logins with
+	 * continuation tokens returns the same results as a single query.
+	 */
+	@Test
+	public void testKeysetPagination() throws DataAccessException, IOException, WikiException {
+		Topic topic = this.setupTopic(null, "Keyset Pagination Test", "Test topic content 0");
+		for (int i = 1; i < 5; i++) {
+			topic.setTopicContent("Test topic content " + i);
+			this.setupTopic(topic);
+		}
+		List<RecentChange> all = WikiBase.getDataHandler().getTopicHistory(topic, new Pagination(1000, 0), true);
+		assertEquals("Incorrect number of test versions present", 5, all.size());
+		List<Integer> expected = new ArrayList<Integer>();
+		for (RecentChange recentChange : all) {
+			expected.add(recentChange.getTopicVersionId());
+		}
+		List<Integer> paged = new ArrayList<Integer>();
+		String continuation = null;
+		do {
+			// the offset is always zero, so later pages are only correct if the
+			// continuation token is used
+			Pagination pagination = new Pagination(2, 0, continuation);
+			assertEquals("Keyset mode", (continuation != null), pagination.isKeyset());
+			for (RecentChange recentChange : WikiBase.getDataHandler().getTopicHistory(topic, pagination, true)) {
+				paged.add(recentChange.getTopicVersionId());
+			}
+			continuation = pagination.getNextContinuation();
+		} while (continuation != null);
+		assertEquals("Topic history retrieved by continuation token", expected, paged);
+		List<String> logins = WikiBase.getDataHandler().lookupWikiUsers(new Pagination(1000, 0));
+		List<String> pagedLogins = new ArrayList<String>();
+		continuation = null;
+		do {
+			Pagination pagination = new Pagination(1, 0, continuation);
+			pagedLogins.addAll(WikiBase.getDataHandler().lookupWikiUsers(pagination));
+			continuation = pagination.getNextContinuation();
+		} while (continuation != null);
+		assertEquals("User logins retrieved by continuation token", logins, pagedLogins);
+	}
+
+	/**
+	 * Verify that topic ids retrieved in chunks are ordered and that each
+	 * chunk continues where the previous chunk ended.
+	 */
+	@Test
+	public void testLookupTopicIds() throws DataAccessException {
+		List<Integer> all = WikiBase.getDataHandler().lookupTopicIds("en", 0, Integer.MAX_VALUE);
+		assertFalse("No topic ids found", all.isEmpty());
+		List<Integer> chunked = new ArrayList<Integer>();
+		int lastTopicId = 0;
+		List<Integer> chunk;
+		while (!(chunk = WikiBase.getDataHandler().lookupTopicIds("en", lastTopicId, 7)).isEmpty()) {
+			assertTrue("Chunk too large", chunk.size() <= 7);
+			chunked.addAll(chunk);
+			lastTopicId = chunk.get(chunk.size() - 1);
+		}
+		assertEquals("Chunked topic ids", all, chunked);
+		List<Integer> sorted = new ArrayList<Integer>(all);
+		Collections.sort(sorted);
+		assertEquals("Topic ids not sorted", sorted, all);
+	}
+
 	/**
 	 *
 	 */
@@ -94,6 +249,75 @@ public class AnsiDataHandlerTest extends JAMWikiUnitTest {
 		assertEquals("Incorrect number of deleted test versions present", 1, versions.size());
 	}
 
+	/**
+	 * Verify that version lookups return the author name and the next version
+	 * id, and that cached versions and version counts reflect new and purged
+	 * versions.
+	 */
+	@Test
+	public void testTopicVersionNavigation() throws DataAccessException, IOException, WikiException {
+		Topic topic = this.setupTopic(null, "Version Navigation Test", "Test topic content");
+		int firstVersionId = topic.getCurrentVersionId();
+		TopicVersion firstVersion = WikiBase.getDataHandler().lookupTopicVersion(firstVersionId);
+		assertNull("Next version of the only version", firstVersion.getNextTopicVersionId());
+		assertNull("Author name of an anonymous edit", firstVersion.getAuthorName());
+		assertEquals("Author display of an anonymous edit", "127.0.0.1", firstVersion.getAuthorDisplay());
+		assertEquals("Initial version count", 1, WikiBase.getDataHandler().lookupTopicVersionCount(topic.getTopicId()));
+		this.setupTopic(topic);
+		int secondVersionId = topic.getCurrentVersionId();
+		firstVersion = WikiBase.getDataHandler().lookupTopicVersion(firstVersionId);
+		assertEquals("Next version after edit", Integer.valueOf(secondVersionId), firstVersion.getNextTopicVersionId());
+		TopicVersion secondVersion = WikiBase.getDataHandler().lookupTopicVersion(secondVersionId);
+		assertEquals("Previous version", Integer.valueOf(firstVersionId), secondVersion.getPreviousTopicVersionId());
+		assertNull("Next version of the current version", secondVersion.getNextTopicVersionId());
+		assertEquals("Version count after edit", 2, WikiBase.getDataHandler().lookupTopicVersionCount(topic.getTopicId()));
+		WikiBase.getDataHandler().purgeTopicVersion("en", secondVersionId, null, "127.0.0.1");
+		firstVersion = WikiBase.getDataHandler().lookupTopicVersion(firstVersionId);
+		assertNull("Next version after purge", firstVersion.getNextTopicVersionId());
+		assertEquals("Version count after purge", 1, WikiBase.getDataHandler().lookupTopicVersionCount(topic.getTopicId()));
+	}
+
+	/**
+	 * Verify that watchlist entries follow the current version of the watched
+	 * topic and that changes by other users are included in the watchlist
+	 * digest.
+	 */
+	@Test
+	public void testWatchlistChanges() throws DataAccessException, IOException, WikiException {
+		String topicName = "Watchlist Test";
+		WikiUser watcher = WikiBase.getDataHandler().lookupWikiUser("user");
+		WikiUser editor = WikiBase.getDataHandler().lookupWikiUser("watchlisteditor");
+		if (editor == null) {
+			editor = new WikiUser("watchlisteditor");
+			WikiBase.getDataHandler().writeWikiUser(editor, "watchlisteditor", "password");
+		}
+		Topic topic = this.setupTopic(null, topicName, "Test topic content");
+		Watchlist watchlist = WikiBase.getDataHandler().getWatchlist("en", watcher.getUserId());
+		if (!watchlist.containsTopic(topicName)) {
+			WikiBase.getDataHandler().writeWatchlistEntry(watchlist, "en", topicName, watcher.getUserId());
+		}
+		topic.setTopicContent("Edited by another user");
+		TopicVersion topicVersion = new TopicVersion(editor, "127.0.0.1", "Watchlist edit", topic.getTopicContent(), 1);
+		WikiBase.getDataHandler().writeTopic(topic, topicVersion, null, null);
+		RecentChange change = this.findChange(WikiBase.getDataHandler().getWatchlist("en", watcher.getUserId(), new Pagination(100, 0)), topicName);
+		assertNotNull("Watched topic in watchlist", change);
+		assertEquals("Watchlist version after edit", topic.getCurrentVersionId(), change.getTopicVersionId());
+		assertEquals("Watchlist author after edit", "watchlisteditor", change.getAuthorName());
+		Map<Integer, List<RecentChange>> digest = WikiBase.getDataHandler().getWatchlistDigest(new Timestamp(0));
+		assertNotNull("Digest for watcher", digest.get(watcher.getUserId()));
+		change = this.findChange(digest.get(watcher.getUserId()), topicName);
+		assertNotNull("Watched topic in digest", change);
+		assertEquals("Digest version after edit", topic.getCurrentVersionId(), change.getTopicVersionId());
+		// changes by the watching user are not included in the digest
+		topic.setTopicContent("Edited by the watcher");
+		topicVersion = new TopicVersion(watcher, "127.0.0.1", "Watchlist edit", topic.getTopicContent(), 1);
+		WikiBase.getDataHandler().writeTopic(topic, topicVersion, null, null);
+		change = this.findChange(WikiBase.getDataHandler().getWatchlist("en", watcher.getUserId(), new Pagination(100, 0)), topicName);
+		assertEquals("Watchlist version after own edit", topic.getCurrentVersionId(), change.getTopicVersionId());
+		digest = WikiBase.getDataHandler().getWatchlistDigest(new Timestamp(0));
+		assertNull("Own edit in digest", (digest.get(watcher.getUserId()) == null) ? null : this.findChange(digest.get(watcher.getUserId()), topicName));
+	}
+
 	/**
 	 *
 	 */
@@ -107,4 +331,67 @@ public class AnsiDataHandlerTest extends JAMWikiUnitTest {
 		topic = WikiBase.getDataHandler().lookupTopic("en", "HELP:Test", false);
 		assertEquals("Incorrect topic name (case-insensitive)", topic.getName(), TOPIC_NAME);
 	}
+
+	/**
+	 * Verify that category and link records are updated to match the values
+	 * passed when saving a topic, including when only some records change.
+	 */
+	@Test
+	public void testWriteTopicCategoriesAndLinks() throws DataAccessException, IOException, SQLException, WikiException {
+		Topic topic = this.setupTopic(null, "Write Topic Links Test", "Test topic content");
+		LinkedHashMap<String, String> categories = new LinkedHashMap<String, String>();
+		categories.put("Category:Alpha", null);
+		categories.put("Category:Beta", "Key");
+		this.writeTopic(topic, categories, Arrays.asList("Link One", "Comments:Link Two", "link One"));
+		assertEquals("Initial categories", categories, this.topicCategories(topic));
+		assertEquals("Initial links", Arrays.asList("0:Link One", "1:Link Two"), this.topicLinks(topic));
+		categories.remove("Category:Alpha");
+		categories.put("Category:Beta", "Other Key");
+		categories.put("Category:Gamma", null);
+		this.writeTopic(topic, categories, Arrays.asList("Link One", "Link Three"));
+		assertEquals("Updated categories", categories, this.topicCategories(topic));
+		assertEquals("Updated links", Arrays.asList("0:Link One", "0:Link Three"), this.topicLinks(topic));
+		this.writeTopic(topic, new LinkedHashMap<String, String>(), new ArrayList<String>());
+		assertTrue("Removed categories", this.topicCategories(topic).isEmpty());
+		assertTrue("Removed links", this.topicLinks(topic).isEmpty());
+	}
+
+	/**
+	 *
+	 */
+	private Map<String, String> topicCategories(Topic topic) throws SQLException {
+		Connection conn = null;
+		try {
+			conn = DatabaseConnection.getConnection();
+			return new HashMap<String, String>(((AnsiDataHandler)WikiBase.getDataHandler()).queryHandler().lookupTopicCategories(topic.getTopicId(), conn));
+		} finally {
+			DatabaseConnection.closeConnection(conn);
+		}
+	}
+
+	/**
+	 *
+	 */
+	private List<String> topicLinks(Topic topic) throws SQLException {
+		Connection conn = null;
+		try {
+			conn = DatabaseConnection.getConnection();
+			List<String> results = new ArrayList<String>();
+			for (Topic topicLink : ((AnsiDataHandler)WikiBase.getDataHandler()).queryHandler().lookupTopicLinkTargets(topic.getTopicId(), topic.getVirtualWiki(), conn)) {
+				results.add(topicLink.getNamespace().getId() + ":" + topicLink.getPageName());
+			}
+			Collections.sort(results);
+			return results;
+		} finally {
+			DatabaseConnection.closeConnection(conn);
+		}
+	}
+
+	/**
+	 *
+	 */
+	private void writeTopic(Topic topic, LinkedHashMap<String, String> categories, List<String> links) throws DataAccessException, WikiException {
+		TopicVersion topicVersion = new TopicVersion(null, "127.0.0.1", null, topic.getTopicContent(), topic.getTopicContent().length());
+		WikiBase.getDataHandler().writeTopic(topic, topicVersion, categories, links);
+	}
 }
@@ -0,0 +1,100 @@
+/**
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE, version 2.1, dated February 1999.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the latest version of the GNU Lesser General
+ * Public License as published by the Free Software Foundation;
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program (LICENSE.txt); if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jamwiki.db;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import org.jamwiki.DataAccessException;
+import org.jamwiki.Environment;
+import org.jamwiki.JAMWikiUnitTest;
+import org.jamwiki.WikiBase;
+import org.jamwiki.model.RecentChange;
+import org.jamwiki.model.Topic;
+import org.jamwiki.model.TopicVersion;
+import org.jamwiki.utils.Pagination;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class ChangeOutboxTest extends JAMWikiUnitTest {
+
+	/**
+	 * Verify that recent changes published to the outbox are written to the
+	 * database and that the outbox files are removed once written.
+	 */
+	@Test
+	public void testFlush() throws Throwable {
+		String changeOutbox = Environment.getValue(Environment.PROP_DB_CHANGE_OUTBOX);
+		Environment.setValue(Environment.PROP_DB_CHANGE_OUTBOX, "true");
+		try {
+			Topic topic = this.setupTopic(null, "Change Outbox Test", "Test topic content");
+			ChangeOutbox.flush();
+			assertEquals("Outbox backlog", 0, ChangeOutbox.getBacklog());
+			assertNull("Outbox error", ChangeOutbox.getLastError());
+			File directory = new File(Environment.getValue(Environment.PROP_BASE_FILE_DIR), "change-outbox");
+			String[] fileNames = directory.list();
+			assertTrue("Outbox files removed", fileNames == null || fileNames.length == 0);
+			QueryHandler queryHandler = ((AnsiDataHandler)WikiBase.getDataHandler()).queryHandler();
+			List<Integer> topicVersionIds = new ArrayList<Integer>();
+			for (RecentChange change : queryHandler.getRecentChanges(topic.getVirtualWiki(), new Pagination(50, 0), true)) {
+				topicVersionIds.add(change.getTopicVersionId());
+			}
+			assertTrue("Recent change written by outbox", topicVersionIds.contains(topic.getCurrentVersionId()));
+		} finally {
+			Environment.setValue(Environment.PROP_DB_CHANGE_OUTBOX, changeOutbox);
+			ChangeOutbox.shutdown();
+		}
+	}
+
+	/**
+	 * Verify that an entry that repeatedly fails to be written is moved out of
+	 * the outbox rather than blocking the entries behind it.
+	 */
+	@Test
+	public void testFailedEntry() throws Throwable {
+		File failedDirectory = new File(Environment.getValue(Environment.PROP_BASE_FILE_DIR), "change-outbox-failed");
+		FileUtils.deleteDirectory(failedDirectory);
+		try {
+			Topic topic = this.setupTopic(null, "Change Outbox Failure Test", "Test topic content");
+			TopicVersion topicVersion = WikiBase.getDataHandler().lookupTopicVersion(topic.getCurrentVersionId());
+			RecentChange change = RecentChange.initRecentChange(topic, topicVersion, "ChangeOutboxTest");
+			// reference a topic version that does not exist so that the write fails
+			change.setTopicVersionId(Integer.MAX_VALUE);
+			ChangeOutbox.Entry entry = ChangeOutbox.prepare(null, change);
+			ChangeOutbox.publish(entry);
+			for (int i = 0; i < 20 && ChangeOutbox.getBacklog() > 0; i++) {
+				try {
+					ChangeOutbox.flush();
+				} catch (DataAccessException e) {
+					// expected
+				}
+			}
+			assertEquals("Outbox backlog", 0, ChangeOutbox.getBacklog());
+			File directory = new File(Environment.getValue(Environment.PROP_BASE_FILE_DIR), "change-outbox");
+			String[] fileNames = directory.list();
+			assertTrue("Outbox files removed", fileNames == null || fileNames.length == 0);
+			fileNames = failedDirectory.list();
+			assertTrue("Failed entry moved", fileNames != null && fileNames.length == 1);
+		} finally {
+			ChangeOutbox.shutdown();
+		}
+	}
+}
@@ -0,0 +1,88 @@
+/**
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE, version 2.1, dated February 1999.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the latest version of the GNU Lesser General
+ * Public License as published by the Free Software Foundation;
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program (LICENSE.txt); if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jamwiki.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import org.jamwiki.Environment;
+import org.jamwiki.JAMWikiUnitTest;
+import org.junit.Test;
+import org.springframework.transaction.TransactionStatus;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class DatabaseConnectionTest extends JAMWikiUnitTest {
+
+	private static final String REPLICA_URL = "jdbc:hsqldb:mem:jamwikireplica";
+
+	/**
+	 * Return the URL of the database that a read connection is retrieved from.
+	 */
+	private String readConnectionUrl() throws SQLException {
+		Connection conn = null;
+		try {
+			conn = DatabaseConnection.getReadConnection();
+			return conn.getMetaData().getURL();
+		} finally {
+			DatabaseConnection.closeConnection(conn);
+		}
+	}
+
+	/**
+	 * Use a second embedded database as a replica and verify that reads are
+	 * routed to it except within a transaction or shortly after a commit.
+	 */
+	@Test
+	public void testReplicaRouting() throws Throwable {
+		String replicaUrls = Environment.getValue(Environment.PROP_DB_REPLICA_URLS);
+		String primaryWindow = Environment.getValue(Environment.PROP_DB_REPLICA_PRIMARY_WINDOW);
+		Environment.setValue(Environment.PROP_DB_REPLICA_URLS, REPLICA_URL);
+		Environment.setValue(Environment.PROP_DB_REPLICA_PRIMARY_WINDOW, "600");
+		try {
+			// force the connection pools to be re-created with the replica
+			DatabaseConnection.closeConnectionPool();
+			DatabaseConnection.setRoutingSession("session-1");
+			assertEquals("Read without recent changes", REPLICA_URL, this.readConnectionUrl());
+			TransactionStatus status = DatabaseConnection.startTransaction();
+			try {
+				assertFalse("Read within transaction", REPLICA_URL.equals(this.readConnectionUrl()));
+			} finally {
+				DatabaseConnection.commit(status);
+			}
+			assertFalse("Read after commit", REPLICA_URL.equals(this.readConnectionUrl()));
+			DatabaseConnection.setRoutingSession("session-2");
+			assertEquals("Read by another session", REPLICA_URL, this.readConnectionUrl());
+			DatabaseConnection.setRoutingSession("session-1");
+			Environment.setValue(Environment.PROP_DB_REPLICA_PRIMARY_WINDOW, "0");
+			assertEquals("Read after primary window", REPLICA_URL, this.readConnectionUrl());
+			List<DataSourceRoute> routes = DatabaseConnection.getDataSourceRoutes();
+			assertEquals("Number of routes", 2, routes.size());
+			assertEquals("Primary route", "primary", routes.get(0).getName());
+			assertEquals("Primary connections requested", 2, routes.get(0).getConnectionsRequested());
+			assertEquals("Replica connections requested", 3, routes.get(1).getConnectionsRequested());
+			assertEquals("Replica active connections", 0, routes.get(1).getNumActive());
+		} finally {
+			DatabaseConnection.setRoutingSession(null);
+			Environment.setValue(Environment.PROP_DB_REPLICA_URLS, replicaUrls);
+			Environment.setValue(Environment.PROP_DB_REPLICA_PRIMARY_WINDOW, primaryWindow);
+			DatabaseConnection.closeConnectionPool();
+		}
+	}
+}
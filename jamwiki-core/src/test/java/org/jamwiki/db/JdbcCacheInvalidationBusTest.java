@@ -0,0 +1,87 @@
+/**
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE, version 2.1, dated February 1999.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the latest version of the GNU Lesser General
+ * Public License as published by the Free Software Foundation;
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program (LICENSE.txt); if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jamwiki.db;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.jamwiki.Environment;
+import org.jamwiki.JAMWikiUnitTest;
+import org.jamwiki.model.CacheEvent;
+import org.jamwiki.utils.CacheEventListener;
+import org.jamwiki.utils.CacheInvalidation;
+import org.jamwiki.utils.WikiCache;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class JdbcCacheInvalidationBusTest extends JAMWikiUnitTest {
+
+	private static final String CACHE_NAME = "org.jamwiki.db.JdbcCacheInvalidationBusTest";
+
+	/**
+	 * Simulate two JAMWiki instances sharing a database and verify that cache
+	 * events published by one instance are applied exactly once by the other.
+	 */
+	@Test
+	public void testPublishAndPoll() throws Throwable {
+		String pollInterval = Environment.getValue(Environment.PROP_CACHE_INVALIDATION_POLL_INTERVAL);
+		// poll manually rather than relying on the timing of the polling threads
+		Environment.setValue(Environment.PROP_CACHE_INVALIDATION_POLL_INTERVAL, "600000");
+		JdbcCacheInvalidationBus bus1 = new JdbcCacheInvalidationBus();
+		JdbcCacheInvalidationBus bus2 = new JdbcCacheInvalidationBus();
+		final List<CacheEvent> received1 = Collections.synchronizedList(new ArrayList<CacheEvent>());
+		final List<CacheEvent> received2 = Collections.synchronizedList(new ArrayList<CacheEvent>());
+		try {
+			bus1.start("test-node-1", new CacheEventListener() {
+				public void cacheEventReceived(CacheEvent event) {
+					received1.add(event);
+				}
+			});
+			bus2.start("test-node-2", new CacheEventListener() {
+				public void cacheEventReceived(CacheEvent event) {
+					received2.add(event);
+					CacheInvalidation.apply(event);
+				}
+			});
+			WikiCache.addToCache(CACHE_NAME, "Key", "value");
+			WikiCache.addToCache(CACHE_NAME, 42, "value");
+			bus1.publish(new CacheEvent(CACHE_NAME, "Key", CacheEvent.KEY_TYPE_STRING));
+			bus1.publish(new CacheEvent(CACHE_NAME, "42", CacheEvent.KEY_TYPE_INTEGER));
+			bus1.poll();
+			bus2.poll();
+			assertEquals("Events received by publishing node", 0, received1.size());
+			assertEquals("Events received by other node", 2, received2.size());
+			assertEquals("Node id", "test-node-1", received2.get(0).getNodeId());
+			assertNull("String key not removed", WikiCache.retrieveFromCache(CACHE_NAME, "Key"));
+			assertNull("Integer key not removed", WikiCache.retrieveFromCache(CACHE_NAME, 42));
+			// events must not be applied a second time
+			bus2.poll();
+			assertEquals("Events received after second poll", 2, received2.size());
+			bus2.publish(new CacheEvent(CACHE_NAME, null, CacheEvent.KEY_TYPE_ALL));
+			bus1.poll();
+			assertEquals("Events received by first node", 1, received1.size());
+			assertEquals("Key type", CacheEvent.KEY_TYPE_ALL, received1.get(0).getKeyType());
+		} finally {
+			bus1.shutdown();
+			bus2.shutdown();
+			Environment.setValue(Environment.PROP_CACHE_INVALIDATION_POLL_INTERVAL, pollInterval);
+		}
+	}
+}
@@ -0,0 +1,64 @@
+/**
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE, version 2.1, dated February 1999.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the latest version of the GNU Lesser General
+ * Public License as published by the Free Software Foundation;
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program (LICENSE.txt); if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jamwiki.db;
+
+import java.util.Map;
+import org.jamwiki.JAMWikiUnitTest;
+import org.jamwiki.WikiBase;
+import org.jamwiki.model.Topic;
+import org.jamwiki.utils.Pagination;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class StatementRegistryTest extends JAMWikiUnitTest {
+
+	/**
+	 * Verify that statement templates are formatted only once for each
+	 * combination of values.
+	 */
+	@Test
+	public void testFormat() throws Throwable {
+		String template = "select * from jam_topic where delete_date is {0} null and topic_name = 'x'";
+		String formatted = StatementRegistry.format(template, new Object[] {"not"});
+		assertEquals("Formatted statement", "select * from jam_topic where delete_date is not null and topic_name = 'x'", formatted);
+		assertSame("Re-used statement", formatted, StatementRegistry.format(template, new Object[] {"not"}));
+		assertFalse("Statement variant", formatted.equals(StatementRegistry.format(template, new Object[] {""})));
+	}
+
+	/**
+	 * Count the statements prepared while repeatedly retrieving topic history,
+	 * which uses a formatted statement.  Each request should prepare exactly
+	 * one statement, always using the same SQL text.
+	 */
+	@Test
+	public void testPreparesPerRequest() throws Throwable {
+		Topic topic = this.setupTopic(null, "Statement Registry Test", "Test topic content");
+		QueryHandler queryHandler = ((AnsiDataHandler)WikiBase.getDataHandler()).queryHandler();
+		int requests = 20;
+		StatementRegistry.resetStatistics();
+		for (int i = 0; i < requests; i++) {
+			queryHandler.getTopicHistory(topic.getTopicId(), new Pagination(10, 0), true, false);
+		}
+		assertEquals("Statements prepared per request", 1, StatementRegistry.getTotalPrepares() / requests);
+		Map<String, Long> prepareCounts = StatementRegistry.getPrepareCounts(10);
+		assertEquals("Prepared statements", 1, prepareCounts.size());
+		assertEquals("Topic history prepares", Long.valueOf(requests), prepareCounts.get("STATEMENT_SELECT_TOPIC_HISTORY"));
+	}
+}
@@ -0,0 +1,61 @@
+/**
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE, version 2.1, dated February 1999.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the latest version of the GNU Lesser General
+ * Public License as published by the Free Software Foundation;
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program (LICENSE.txt); if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jamwiki.db;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import org.jamwiki.Environment;
+import org.jamwiki.JAMWikiUnitTest;
+import org.jamwiki.WikiBase;
+import org.jamwiki.model.Topic;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class TopicRenderJobTest extends JAMWikiUnitTest {
+
+	/**
+	 * Verify that a job processes every topic in the virtual wiki and
+	 * regenerates topic metadata.
+	 */
+	@Test
+	public void testRun() throws Throwable {
+		String rate = Environment.getValue(Environment.PROP_TOPIC_RENDER_RATE);
+		Environment.setValue(Environment.PROP_TOPIC_RENDER_RATE, "0");
+		try {
+			Topic topic = this.setupTopic(null, "Topic Render Test", "[[Category:Topic Render Test]] [[Topic Render Link]]");
+			// remove the topic metadata so that the job must regenerate it
+			WikiBase.getDataHandler().writeTopic(topic, null, new LinkedHashMap<String, String>(), new ArrayList<String>());
+			assertTrue("Category not removed", WikiBase.getDataHandler().lookupCategoryTopics("en", "Category:Topic Render Test").isEmpty());
+			int expected = WikiBase.getDataHandler().lookupTopicIds("en", 0, Integer.MAX_VALUE).size();
+			TopicRenderJob job = new TopicRenderJob("en");
+			job.run();
+			assertTrue("Job not complete", job.isComplete());
+			assertFalse("Job still running", job.isRunning());
+			assertEquals("Rendered topics", expected, job.getProcessed() + job.getErrors());
+			assertEquals("Rendering errors", 0, job.getErrors());
+			assertEquals("Category", 1, WikiBase.getDataHandler().lookupCategoryTopics("en", "Category:Topic Render Test").size());
+			// a completed job should start from the first topic when run again
+			job = new TopicRenderJob("en");
+			assertEquals("Progress after completion", 0, job.getProcessed());
+		} finally {
+			Environment.setValue(Environment.PROP_TOPIC_RENDER_RATE, rate);
+		}
+	}
+}
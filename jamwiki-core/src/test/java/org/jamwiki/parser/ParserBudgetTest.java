@@ -0,0 +1,101 @@
+/**
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE, version 2.1, dated February 1999.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the latest version of the GNU Lesser General
+ * Public License as published by the Free Software Foundation;
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program (LICENSE.txt); if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jamwiki.parser;
+
+import org.apache.commons.lang.LocaleUtils;
+import org.jamwiki.Environment;
+import org.jamwiki.JAMWikiUnitTest;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class ParserBudgetTest extends JAMWikiUnitTest {
+
+	/**
+	 *
+	 */
+	private String parse(String content) throws Throwable {
+		ParserInput parserInput = new ParserInput("en", "ParserBudgetTest");
+		parserInput.setContext("/wiki");
+		parserInput.setLocale(LocaleUtils.toLocale("en_US"));
+		ParserOutput parserOutput = new ParserOutput();
+		String result = ParserUtil.parse(parserInput, parserOutput, content);
+		assertEquals(result.indexOf("[[") != -1, parserInput.getBudget().isExceeded());
+		assertEquals(parserInput.getBudget().isExceeded(), parserOutput.getIncomplete());
+		return result;
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testNodeBudget() throws Throwable {
+		String content = "'''bold''' [[Link One]] [[Link Two]] [[Link Three]] <b>x</b> [[Link Four]]";
+		String value = Environment.getValue(Environment.PROP_PARSER_MAX_NODES);
+		long exceeded = ParserBudget.getNodesExceededCount();
+		try {
+			String result = this.parse(content);
+			assertTrue(result.indexOf("Link Four") != -1);
+			assertEquals(exceeded, ParserBudget.getNodesExceededCount());
+			// the pre-processor counts four links, so the limit is reached during processing
+			Environment.setValue(Environment.PROP_PARSER_MAX_NODES, "9");
+			result = this.parse(content);
+			// tags before the limit are parsed, the remainder is escaped source
+			assertTrue(result.indexOf("<b>bold</b>") != -1);
+			assertTrue(result.indexOf("title=\"Link One\"") != -1);
+			assertTrue(result.indexOf("[[Link Two]]") != -1);
+			assertTrue(result.indexOf("<b>x</b>") != -1);
+			assertTrue(result.indexOf("[[Link Four]]") != -1);
+			assertEquals(exceeded + 1, ParserBudget.getNodesExceededCount());
+		} finally {
+			Environment.setValue(Environment.PROP_PARSER_MAX_NODES, value);
+		}
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testTemplateSizeBudget() throws Throwable {
+		ParserBudget budget = new ParserBudget("ParserBudgetTest");
+		String value = Environment.getValue(Environment.PROP_PARSER_MAX_TEMPLATE_SIZE);
+		long exceeded = ParserBudget.getTemplateSizeExceededCount();
+		try {
+			Environment.setValue(Environment.PROP_PARSER_MAX_TEMPLATE_SIZE, "100");
+			budget.start();
+			assertTrue(budget.addTemplateSize(60));
+			// a nested run shares the budget of the enclosing run
+			budget.start();
+			assertFalse(budget.addTemplateSize(60));
+			budget.finish();
+			assertTrue(budget.isExceeded());
+			// once exhausted no further tags are parsed
+			assertFalse(budget.addNode());
+			assertEquals(exceeded + 1, ParserBudget.getTemplateSizeExceededCount());
+			budget.finish();
+			// the next top-level run has the full budget
+			budget.start();
+			assertFalse(budget.isExceeded());
+			assertTrue(budget.addNode());
+			budget.finish();
+		} finally {
+			Environment.setValue(Environment.PROP_PARSER_MAX_TEMPLATE_SIZE, value);
+		}
+	}
+}
@@ -0,0 +1,74 @@
+/**
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE, version 2.1, dated February 1999.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the latest version of the GNU Lesser General
+ * Public License as published by the Free Software Foundation;
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program (LICENSE.txt); if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jamwiki.parser.jflex;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class JFlexLexerPoolTest {
+
+	/**
+	 *
+	 */
+	@Test
+	public void testAcquireRelease() throws Throwable {
+		JAMWikiHtmlTagLexer lexer1 = JFlexLexerPool.acquire(JAMWikiHtmlTagLexer.class, "<b>");
+		// a lexer that is in use must never be handed out again
+		JAMWikiHtmlTagLexer lexer2 = JFlexLexerPool.acquire(JAMWikiHtmlTagLexer.class, "<i>");
+		assertNotSame(lexer1, lexer2);
+		JFlexLexerPool.release(lexer2);
+		JFlexLexerPool.release(lexer1);
+		JAMWikiHtmlTagLexer lexer3 = JFlexLexerPool.acquire(JAMWikiHtmlTagLexer.class, "<div class=\"test\">");
+		assertSame(lexer1, lexer3);
+		while (lexer3.yylex() != null) {
+			// parse the full tag
+		}
+		assertEquals("<div class=\"test\">", lexer3.getHtmlTagItem().toHtml());
+		JFlexLexerPool.release(lexer3);
+		// a re-used lexer must not retain the previous tag attributes
+		assertEquals("<span>", JFlexParserUtil.sanitizeHtmlTag("<span>").toHtml());
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testClear() throws Throwable {
+		JAMWikiHtmlTagLexer lexer1 = JFlexLexerPool.acquire(JAMWikiHtmlTagLexer.class, "<b>");
+		JFlexLexerPool.release(lexer1);
+		JFlexLexerPool.clear();
+		JAMWikiHtmlTagLexer lexer2 = JFlexLexerPool.acquire(JAMWikiHtmlTagLexer.class, "<i>");
+		assertNotSame(lexer1, lexer2);
+		JFlexLexerPool.release(lexer2);
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testSizeBuffer() throws Throwable {
+		char[] buffer = new char[16];
+		assertSame(buffer, JFlexLexer.sizeBuffer(buffer, 10));
+		assertEquals(101, JFlexLexer.sizeBuffer(buffer, 100).length);
+		char[] large = new char[200000];
+		assertSame(large, JFlexLexer.sizeBuffer(large, 150000));
+		assertEquals(11, JFlexLexer.sizeBuffer(large, 10).length);
+	}
+}
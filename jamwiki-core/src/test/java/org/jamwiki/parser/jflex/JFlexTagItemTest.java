@@ -0,0 +1,114 @@
+/**
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE, version 2.1, dated February 1999.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the latest version of the GNU Lesser General
+ * Public License as published by the Free Software Foundation;
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program (LICENSE.txt); if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jamwiki.parser.jflex;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Verify that the tag property registry and the bounded markup scans used by
+ * {@link JFlexTagItem} produce the same classifications as the tag lists and
+ * regular expressions that they replaced.
+ */
+public class JFlexTagItemTest {
+
+	private static final List<String> EMPTY_BODY_TAGS = Arrays.asList("br", "col", "div", "hr", "td", "th");
+	private static final List<String> LIST_ITEM_TAGS = Arrays.asList("dd", "dt", "li");
+	private static final List<String> LIST_TAGS = Arrays.asList("dd", "dl", "dt", "li", "ol", "ul");
+	private static final List<String> NON_NESTING_TAGS = Arrays.asList("col", "colgroup", "dd", "dl", "dt", "h1", "h2", "h3", "h4", "h5", "h6", "hr", "li", "ol", "table", "tbody", "td", "tfoot", "th", "thead", "tr", "ul");
+	private static final List<String> NON_TEXT_BODY_TAGS = Arrays.asList("col", "colgroup", "dl", "ol", "table", "tbody", "tfoot", "thead", "tr", "ul");
+	private static final List<String> NON_INLINE_TAGS = Arrays.asList("caption", "col", "colgroup", "dd", "div", "dl", "dt", "h1", "h2", "h3", "h4", "h5", "h6", "hr", "li", "ol", "p", "table", "tbody", "td", "tfoot", "th", "thead", "tr", "ul");
+	private static final String NON_INLINE_TAG_PATTERN = "(caption|col|colgroup|dd|div|dl|dt|h1|h2|h3|h4|h5|h6|hr|li|ol|p|table|tbody|td|tfoot|th|thead|tr|ul)";
+	private static final Pattern NON_INLINE_TAG_START_PATTERN = Pattern.compile("<" + NON_INLINE_TAG_PATTERN + "[ >].*", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+	private static final Pattern NON_INLINE_TAG_END_PATTERN = Pattern.compile(".*</" + NON_INLINE_TAG_PATTERN + ">", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+	/** Tag types to classify, including tags with no properties and tags that differ only by case. */
+	private static final String[] TAG_TYPES = {"a", "b", "big", "blockquote", "br", "caption", "center", "col", "colgroup", "dd", "div", "dl", "dt", "em", "font", "h1", "h2", "h3", "h4", "h5", "h6", "h7", "hr", "i", "li", "ol", "p", "pre", "span", "table", "tbody", "td", "tfoot", "th", "thead", "tr", "tt", "u", "ul", "UL", "Div", "unknown", JFlexTagItem.ROOT_TAG};
+	/** Markup edge cases for the open and close tag scans. */
+	private static final String[] MARKUP = {
+		"", "<", ">", "<>", "</>", "< ul>", "<ul", "<ul>", "<UL>", "<Ul class=\"list\">", "<ul\n>", "<ul/>", "<ul>text",
+		"<p>", "<p >", "<pre>", "<d>", "<divx>", "<div>", "<caption>", "<captions>", "<colgroup >", "<colgroupx>",
+		"<abcdefghijklmnop>", "<h1>heading", "<h7>", "text", "text</ul>", "</ul>", "</UL>", "</ul >", "</ ul>", "text</ul>more",
+		"x</li></ul>", "</ul></li>", "<ul><li>item</li></ul>", "</tbody>", "</tbodyx>", "</xtbody>", "a<//ul>", "</p>", "<</ul>",
+		"</colgroup>", "</abcdefghijklmnop>", "<span>text</span>", "<div>text\n</div>", "</div\n>", "<ul>\n<li>one\n</li>\n</ul>"
+	};
+
+	/**
+	 *
+	 */
+	@Test
+	public void testMarkupScans() {
+		for (String markup : MARKUP) {
+			this.assertMarkupScans(markup);
+		}
+		// compare against a large sample of random markup assembled from tag fragments
+		String[] fragments = {"<", "</", ">", " ", "\n", "/", "u", "l", "U", "L", "d", "i", "v", "t", "h", "1", "7", "p", "caption", "colgroup", "tbody", "x", "text"};
+		Random random = new Random(42);
+		for (int i = 0; i < 20000; i++) {
+			StringBuilder markup = new StringBuilder();
+			int length = random.nextInt(12);
+			for (int j = 0; j < length; j++) {
+				markup.append(fragments[random.nextInt(fragments.length)]);
+			}
+			this.assertMarkupScans(markup.toString());
+		}
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testTagProperties() throws Throwable {
+		for (String tagType : TAG_TYPES) {
+			this.assertTagProperties(new JFlexTagItem(tagType, null), tagType);
+		}
+		// changing the tag type must also change the tag properties
+		JFlexTagItem tag = new JFlexTagItem("b", null);
+		tag.changeTagType("ul");
+		this.assertTagProperties(tag, "ul");
+		tag.initialize("span", null);
+		this.assertTagProperties(tag, "span");
+	}
+
+	/**
+	 *
+	 */
+	private void assertMarkupScans(String markup) {
+		assertEquals("Open tag scan for: " + markup, markup.startsWith("<") && NON_INLINE_TAG_START_PATTERN.matcher(markup).matches(), JFlexTagItem.isNonInlineTagStart(markup));
+		assertEquals("Close tag scan for: " + markup, markup.endsWith(">") && NON_INLINE_TAG_END_PATTERN.matcher(markup).matches(), JFlexTagItem.isNonInlineTagEnd(markup));
+	}
+
+	/**
+	 *
+	 */
+	private void assertTagProperties(JFlexTagItem tag, String tagType) {
+		boolean root = tagType.equals(JFlexTagItem.ROOT_TAG);
+		assertEquals("Root tag: " + tagType, root, tag.isRootTag());
+		assertEquals("Empty body tag: " + tagType, root || EMPTY_BODY_TAGS.indexOf(tagType) != -1, tag.isEmptyBodyTag());
+		assertEquals("Inline tag: " + tagType, root || NON_INLINE_TAGS.indexOf(tagType) == -1, tag.isInlineTag());
+		assertEquals("Text body tag: " + tagType, root || NON_TEXT_BODY_TAGS.indexOf(tagType) == -1, tag.isTextBodyTag());
+		assertEquals("List item tag: " + tagType, LIST_ITEM_TAGS.indexOf(tagType) != -1, tag.isListItemTag());
+		assertEquals("List item tag type: " + tagType, LIST_ITEM_TAGS.indexOf(tagType) != -1, JFlexTagItem.isListItemTag(tagType));
+		assertEquals("List tag: " + tagType, LIST_TAGS.indexOf(tagType) != -1, tag.isListTag());
+		assertEquals("List tag type: " + tagType, LIST_TAGS.indexOf(tagType) != -1, JFlexTagItem.isListTag(tagType));
+		assertEquals("Non-nesting tag: " + tagType, NON_NESTING_TAGS.indexOf(tagType) != -1, tag.isNonNestingTag());
+		assertEquals("Non-nesting tag type: " + tagType, NON_NESTING_TAGS.indexOf(tagType) != -1, JFlexTagItem.isNonNestingTag(tagType));
+	}
+}
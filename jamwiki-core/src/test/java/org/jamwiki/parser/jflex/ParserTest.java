@@ -19,6 +19,7 @@ package org.jamwiki.parser.jflex;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import org.apache.commons.lang.LocaleUtils;
 import org.apache.commons.lang.StringUtils;
@@ -33,6 +34,7 @@ import org.jamwiki.parser.ParserException;
 import org.jamwiki.parser.ParserInput;
 import org.jamwiki.parser.ParserOutput;
 import org.jamwiki.parser.ParserUtil;
+import org.jamwiki.parser.SectionIndex;
 import org.junit.Before;
 import org.junit.Test;
 import static org.junit.Assert.*;
@@ -220,6 +222,53 @@ public class ParserTest extends JAMWikiUnitTest {
 		assertEquals("Expected two links", 2, parserOutput.getLinks().size());
 	}
 
+	/**
+	 * Verify that slicing and splicing using a section index produces the same
+	 * results as the splice lexer for every test topic.
+	 */
+	@Test
+	public void testSectionIndex() throws Throwable {
+		File topicDir = TestFileUtil.getClassLoaderFile(TestFileUtil.TEST_TOPICS_DIR);
+		File[] topicFiles = topicDir.listFiles();
+		for (File topicFile : topicFiles) {
+			String fileName = topicFile.getName();
+			String raw = StringUtils.remove(TestFileUtil.retrieveFileContent(TestFileUtil.TEST_TOPICS_DIR, fileName), '\r');
+			JFlexParser parser = new JFlexParser(this.parserInput(TestFileUtil.decodeTopicName(fileName)));
+			SectionIndex sectionIndex = parser.buildSectionIndex(raw);
+			assertTrue("Section index invalid for " + fileName, sectionIndex.isValid(raw));
+			assertFalse("Section index should not be valid for modified content " + fileName, sectionIndex.isValid(raw + "x"));
+			assertEquals("Section chunks for " + fileName, raw, StringUtils.join(sectionIndex.chunks(raw), ""));
+			for (int section = 1; section <= sectionIndex.size(); section++) {
+				ParserOutput sliceOutput = new ParserOutput();
+				String expected = parser.parseSlice(sliceOutput, raw, section);
+				assertEquals("Slice of section " + section + " for " + fileName, expected, sectionIndex.slice(raw, section));
+				ParserOutput headingOutput = new ParserOutput();
+				parser.parseSlice(headingOutput, sectionIndex.heading(raw, section), 1);
+				assertEquals("Section name of section " + section + " for " + fileName, sliceOutput.getSectionName(), headingOutput.getSectionName());
+				expected = parser.parseSplice(new ParserOutput(), raw, section, "replacement");
+				assertEquals("Splice of section " + section + " for " + fileName, expected, sectionIndex.splice(raw, section, "replacement"));
+			}
+		}
+	}
+
+	/**
+	 * Verify that metadata parsed section by section matches the metadata
+	 * generated by parsing a full topic.
+	 */
+	@Test
+	public void testParseMetadataBySection() throws Throwable {
+		String raw = "[[Link1]]\n==Heading 1==\n[[Link2]] [[Category:Test]]\n===Heading 2===\n{{Test Template}}\n==Heading 3==\n[[Link1]] [[Category:Sort Key|sort key]]\n";
+		ParserOutput expected = ParserUtil.parseMetadata(this.parserInput("Section Metadata"), raw);
+		// parse twice to verify that cached section metadata produces identical results
+		for (int i = 0; i < 2; i++) {
+			ParserOutput parserOutput = ParserUtil.parseMetadataBySection(this.parserInput("Section Metadata"), raw);
+			// link order may differ since template links are generated in an earlier parser stage
+			assertEquals("Links", new HashSet<String>(expected.getLinks()), new HashSet<String>(parserOutput.getLinks()));
+			assertEquals("Categories", expected.getCategories(), parserOutput.getCategories());
+			assertEquals("Templates", expected.getTemplates(), parserOutput.getTemplates());
+		}
+	}
+
 	/**
 	 * Generate a generic ParserInput object that can be used for testing.
 	 */
@@ -0,0 +1,113 @@
+/**
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE, version 2.1, dated February 1999.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the latest version of the GNU Lesser General
+ * Public License as published by the Free Software Foundation;
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program (LICENSE.txt); if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jamwiki.utils;
+
+import java.util.Random;
+
+/**
+ * Compare the performance of the available diff algorithms for large topics.
+ * This class is not a unit test and is not run as part of the build; run it
+ * manually from the test classpath:
+ *
+ * <pre>java -cp target/classes:target/test-classes:... org.jamwiki.utils.DiffBenchmark [lines]</pre>
+ */
+public class DiffBenchmark {
+
+	private static final int ITERATIONS = 5;
+
+	/**
+	 *
+	 */
+	public static void main(String[] args) {
+		int lines = (args.length > 0) ? Integer.parseInt(args[0]) : 10000;
+		Random random = new Random(42);
+		String original = randomTopic(random, lines);
+		String smallEdit = editLines(random, original, 10);
+		String largeEdit = editLines(random, original, lines / 4);
+		benchmark("small edit (" + lines + " lines)", smallEdit, original);
+		benchmark("large edit (" + lines + " lines)", largeEdit, original);
+		benchmark("page blanked (" + lines + " lines)", "", original);
+		benchmark("page rewritten (" + lines + " lines)", randomTopic(random, lines), original);
+	}
+
+	/**
+	 *
+	 */
+	private static void benchmark(String description, String newVersion, String oldVersion) {
+		System.out.println(description);
+		String[] algorithms = {DiffUtil.DIFF_ALGORITHM_INCAVA, DiffUtil.DIFF_ALGORITHM_MYERS};
+		for (String algorithm : algorithms) {
+			// warm up
+			DiffUtil.process(newVersion, oldVersion, algorithm);
+			Runtime runtime = Runtime.getRuntime();
+			System.gc();
+			long memory = runtime.totalMemory() - runtime.freeMemory();
+			long peak = 0;
+			long start = System.currentTimeMillis();
+			int size = 0;
+			for (int i = 0; i < ITERATIONS; i++) {
+				size = DiffUtil.process(newVersion, oldVersion, algorithm).size();
+				peak = Math.max(peak, runtime.totalMemory() - runtime.freeMemory() - memory);
+			}
+			long elapsed = (System.currentTimeMillis() - start) / ITERATIONS;
+			System.out.println("    " + algorithm + ": " + elapsed + " ms per diff, " + size + " diff entries, ~" + (peak / 1024) + " KB retained heap");
+		}
+	}
+
+	/**
+	 * Replace the specified number of random lines with new random text.
+	 */
+	private static String editLines(Random random, String original, int count) {
+		String[] lines = original.split("\n");
+		for (int i = 0; i < count; i++) {
+			int line = random.nextInt(lines.length);
+			lines[line] = randomLine(random);
+		}
+		StringBuilder result = new StringBuilder();
+		for (String line : lines) {
+			result.append(line).append('\n');
+		}
+		return result.toString();
+	}
+
+	/**
+	 *
+	 */
+	private static String randomLine(Random random) {
+		StringBuilder line = new StringBuilder();
+		int words = 5 + random.nextInt(15);
+		for (int i = 0; i < words; i++) {
+			int length = 2 + random.nextInt(8);
+			for (int j = 0; j < length; j++) {
+				line.append((char)('a' + random.nextInt(26)));
+			}
+			line.append(' ');
+		}
+		return line.toString();
+	}
+
+	/**
+	 *
+	 */
+	private static String randomTopic(Random random, int lines) {
+		StringBuilder topic = new StringBuilder();
+		for (int i = 0; i < lines; i++) {
+			topic.append(randomLine(random)).append('\n');
+		}
+		return topic.toString();
+	}
+}
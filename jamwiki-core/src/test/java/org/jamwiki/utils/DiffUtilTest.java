@@ -18,7 +18,11 @@
  */
 package org.jamwiki.utils;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import org.incava.util.diff.Diff;
+import org.incava.util.diff.Difference;
 import org.jamwiki.JAMWikiUnitTest;
 import org.jamwiki.model.WikiDiff;
 import org.junit.Test;
@@ -145,5 +149,131 @@ public class DiffUtilTest extends JAMWikiUnitTest {
 		List<WikiDiff> result = DiffUtil.diff("testString", "testString");
 		assertEquals("result.size()", 0, result.size());
 	}
-}
 
+	/**
+	 * Verify that content with the same leading characters and the same hash code
+	 * does not return cached diff information for a different diff.
+	 */
+	@Test
+	public void testDiffCacheCollision() throws Throwable {
+		// "Aa" and "BB" have the same String.hashCode() value
+		String oldVersion = "testDiffCacheCollision";
+		String newVersion1 = "testDiffCacheCollisionAa";
+		String newVersion2 = "testDiffCacheCollisionBB";
+		assertEquals("hashCode", newVersion1.hashCode(), newVersion2.hashCode());
+		List<WikiDiff> result1 = DiffUtil.diff(newVersion1, oldVersion);
+		List<WikiDiff> result2 = DiffUtil.diff(newVersion2, oldVersion);
+		assertEquals("result1", newVersion1, result1.get(0).getNewText());
+		assertEquals("result2", newVersion2, result2.get(0).getNewText());
+	}
+
+	/**
+	 * Verify that diff information keyed by topic version id is identical to the
+	 * uncached diff information after being retrieved from the cache.
+	 */
+	@Test
+	public void testDiffVersionCache() throws Throwable {
+		String oldVersion = "line one\nline two\nline three\nline four\nline five\nline six";
+		String newVersion = "line one\nline 2\nline three\nline four\nline five\n\u00e9l\u00e8ve six\nline seven";
+		List<WikiDiff> expected = DiffUtil.process(newVersion, oldVersion, DiffUtil.DIFF_ALGORITHM_MYERS);
+		DiffUtil.diff(Integer.MAX_VALUE, newVersion, Integer.MAX_VALUE - 1, oldVersion);
+		// second call should retrieve the result from the cache
+		List<WikiDiff> result = DiffUtil.diff(Integer.MAX_VALUE, newVersion, Integer.MAX_VALUE - 1, oldVersion);
+		this.assertDiffsEqual(expected, result);
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testDiffAlgorithmIncava() throws Throwable {
+		List<WikiDiff> result = DiffUtil.process("testDiffUtil\nNewVersion", "testDiffUtilOldVersion", DiffUtil.DIFF_ALGORITHM_INCAVA);
+		assertEquals("result.size()", 2, result.size());
+	}
+
+	/**
+	 * Verify that the Myers diff implementation generates a valid edit script with
+	 * the same number of changes as the org.incava implementation.
+	 */
+	@Test
+	public void testMyersDiff() throws Throwable {
+		Random random = new Random(12345);
+		for (int i = 0; i < 500; i++) {
+			String[] oldArray = this.randomArray(random);
+			String[] newArray = this.randomArray(random);
+			List<Difference> myersDiffs = MyersDiff.diff(oldArray, newArray);
+			List<Difference> incavaDiffs = new Diff<String>(oldArray, newArray).diff();
+			assertEquals("Number of changed elements", this.countChanges(incavaDiffs), this.countChanges(myersDiffs));
+			assertArrayEquals("Patched result", newArray, this.patch(oldArray, newArray, myersDiffs));
+		}
+	}
+
+	/**
+	 *
+	 */
+	private void assertDiffsEqual(List<WikiDiff> expected, List<WikiDiff> result) {
+		if (expected == null) {
+			assertNull("subDiffs", result);
+			return;
+		}
+		assertEquals("size", expected.size(), result.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals("position", expected.get(i).getPosition(), result.get(i).getPosition());
+			assertEquals("oldText", expected.get(i).getOldText(), result.get(i).getOldText());
+			assertEquals("newText", expected.get(i).getNewText(), result.get(i).getNewText());
+			this.assertDiffsEqual(expected.get(i).getSubDiffs(), result.get(i).getSubDiffs());
+		}
+	}
+
+	/**
+	 *
+	 */
+	private int countChanges(List<Difference> diffs) {
+		int count = 0;
+		for (Difference diff : diffs) {
+			if (diff.getDeletedEnd() != Difference.NONE) {
+				count += diff.getDeletedEnd() - diff.getDeletedStart() + 1;
+			}
+			if (diff.getAddedEnd() != Difference.NONE) {
+				count += diff.getAddedEnd() - diff.getAddedStart() + 1;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Apply a list of differences to the old array, returning the resulting array.
+	 */
+	private String[] patch(String[] oldArray, String[] newArray, List<Difference> diffs) {
+		List<String> result = new ArrayList<String>();
+		int oldPosition = 0;
+		for (Difference diff : diffs) {
+			while (oldPosition < diff.getDeletedStart()) {
+				result.add(oldArray[oldPosition++]);
+			}
+			if (diff.getDeletedEnd() != Difference.NONE) {
+				oldPosition = diff.getDeletedEnd() + 1;
+			}
+			if (diff.getAddedEnd() != Difference.NONE) {
+				for (int j = diff.getAddedStart(); j <= diff.getAddedEnd(); j++) {
+					result.add(newArray[j]);
+				}
+			}
+		}
+		while (oldPosition < oldArray.length) {
+			result.add(oldArray[oldPosition++]);
+		}
+		return result.toArray(new String[result.size()]);
+	}
+
+	/**
+	 *
+	 */
+	private String[] randomArray(Random random) {
+		String[] result = new String[random.nextInt(30)];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = String.valueOf((char)('a' + random.nextInt(4)));
+		}
+		return result;
+	}
+}
@@ -18,7 +18,9 @@
  */
 package org.jamwiki.utils;
 
+import java.util.List;
 import org.jamwiki.JAMWikiUnitTest;
+import org.jamwiki.WikiBase;
 import org.jamwiki.model.Namespace;
 import org.junit.Test;
 import static org.junit.Assert.*;
@@ -178,4 +180,16 @@ public class LinkUtilTest extends JAMWikiUnitTest {
 		String result = LinkUtil.retrieveTopicPageName(Namespace.namespace(Namespace.COMMENTS_ID), "en", topicName);
 		assertEquals("LinkUtil.retrieveTopicPageName", "Main Page", result);
 	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testRetrieveTopicNamespace() throws Throwable {
+		List<Namespace> namespaces = WikiBase.getDataHandler().lookupNamespaces();
+		assertEquals("Main namespace", Namespace.MAIN_ID, LinkUtil.retrieveTopicNamespace(namespaces, "en", "Main Page").getId().intValue());
+		assertEquals("Comments namespace", Namespace.COMMENTS_ID, LinkUtil.retrieveTopicNamespace(namespaces, "en", "COMMENTS:Main Page").getId().intValue());
+		assertEquals("Invalid namespace", Namespace.MAIN_ID, LinkUtil.retrieveTopicNamespace(namespaces, "en", "Invalid:Main Page").getId().intValue());
+		assertEquals("Cached namespace list", LinkUtil.retrieveTopicNamespace("en", "User:Test").getId(), LinkUtil.retrieveTopicNamespace(namespaces, "en", "User:Test").getId());
+	}
 }
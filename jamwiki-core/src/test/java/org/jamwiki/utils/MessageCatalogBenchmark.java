@@ -0,0 +1,123 @@
+/**
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE, version 2.1, dated February 1999.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the latest version of the GNU Lesser General
+ * Public License as published by the Free Software Foundation;
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program (LICENSE.txt); if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jamwiki.utils;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.text.MessageFormat;
+import java.util.Locale;
+import java.util.ResourceBundle;
+
+/**
+ * Compare the cost of formatting messages using a resource bundle lookup and
+ * a new <code>MessageFormat</code> per message against the pre-compiled
+ * {@link MessageCatalog}.  A "page" is modelled as a fixed mix of messages
+ * similar to that rendered for a topic page (user menu, tabs, edit section
+ * links, footer).  This class is not a unit test and is not run as part of
+ * the build; run it manually from the test classpath:
+ *
+ * <pre>java -cp target/classes:target/test-classes:... org.jamwiki.utils.MessageCatalogBenchmark [pages]</pre>
+ *
+ * Allocation figures require a JVM that supports per-thread allocation
+ * counting (such as HotSpot); otherwise only timings are reported.
+ */
+public class MessageCatalogBenchmark {
+
+	private static final String[] PAGE_MESSAGES = {
+		"common.sectionedit", "common.sectionedit", "common.sectionedit", "common.sectionedit",
+		"common.sectionedit", "common.sectionedit", "common.sectionedit", "common.sectionedit",
+		"common.pagination.next", "common.pagination.previous", "common.pagination.results",
+		"admin.message.nonnumeric", "error.directoryread", "error.commentsnamespace"
+	};
+	private static final Object[] PARAMS = {"StartingPoints", "User:Example"};
+
+	/**
+	 *
+	 */
+	public static void main(String[] args) {
+		int pages = (args.length > 0) ? Integer.parseInt(args[0]) : 20000;
+		Locale locale = Locale.ENGLISH;
+		// warm up both implementations
+		bundlePages(locale, pages);
+		catalogPages(locale, pages);
+		report("ResourceBundle + MessageFormat", pages, true, locale);
+		report("MessageCatalog", pages, false, locale);
+	}
+
+	/**
+	 * Format messages the way <code>Utilities.formatMessage</code> formatted
+	 * them before the message catalog was introduced.
+	 */
+	private static int bundlePages(Locale locale, int pages) {
+		int length = 0;
+		for (int i = 0; i < pages; i++) {
+			for (String key : PAGE_MESSAGES) {
+				MessageFormat formatter = new MessageFormat("");
+				formatter.setLocale(locale);
+				formatter.applyPattern(ResourceBundle.getBundle("ApplicationResources", locale).getString(key));
+				length += formatter.format(PARAMS).length();
+			}
+		}
+		return length;
+	}
+
+	/**
+	 *
+	 */
+	private static int catalogPages(Locale locale, int pages) {
+		int length = 0;
+		for (int i = 0; i < pages; i++) {
+			for (String key : PAGE_MESSAGES) {
+				length += MessageCatalog.format(key, locale, PARAMS).length();
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * Return the number of bytes allocated by the current thread, or -1 if
+	 * allocation counting is not supported.
+	 */
+	private static long allocatedBytes() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean)threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+
+	/**
+	 *
+	 */
+	private static void report(String description, int pages, boolean bundle, Locale locale) {
+		long allocated = allocatedBytes();
+		long start = System.currentTimeMillis();
+		if (bundle) {
+			bundlePages(locale, pages);
+		} else {
+			catalogPages(locale, pages);
+		}
+		long elapsed = System.currentTimeMillis() - start;
+		StringBuilder output = new StringBuilder();
+		output.append(description).append(": ");
+		output.append(String.format("%.2f", (elapsed * 1000.0) / pages)).append(" microseconds per page");
+		if (allocated != -1) {
+			output.append(", ").append((allocatedBytes() - allocated) / pages).append(" bytes allocated per page");
+		}
+		System.out.println(output);
+	}
+}
@@ -0,0 +1,86 @@
+/**
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE, version 2.1, dated February 1999.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the latest version of the GNU Lesser General
+ * Public License as published by the Free Software Foundation;
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program (LICENSE.txt); if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jamwiki.utils;
+
+import java.text.MessageFormat;
+import java.util.Enumeration;
+import java.util.Locale;
+import java.util.MissingResourceException;
+import java.util.ResourceBundle;
+import org.jamwiki.JAMWikiUnitTest;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class MessageCatalogTest extends JAMWikiUnitTest {
+
+	/**
+	 * Verify that every message is formatted exactly as MessageFormat would
+	 * format it.
+	 */
+	@Test
+	public void testFormatMatchesMessageFormat() throws Throwable {
+		Locale locale = Locale.ENGLISH;
+		Object[][] paramSets = {
+			null,
+			new Object[0],
+			new Object[]{"first"},
+			new Object[]{"first", "it''s {1}", "third", "fourth", "fifth", "sixth", "seventh"},
+			new Object[]{12345, null, 0.5, "fourth"}
+		};
+		ResourceBundle messages = ResourceBundle.getBundle("ApplicationResources", locale);
+		Enumeration<String> keys = messages.getKeys();
+		while (keys.hasMoreElements()) {
+			String key = keys.nextElement();
+			assertEquals("Message pattern: " + key, messages.getString(key), MessageCatalog.getMessage(key, locale));
+			for (Object[] params : paramSets) {
+				MessageFormat formatter = new MessageFormat(messages.getString(key), locale);
+				assertEquals("Formatted message: " + key, formatter.format(params), MessageCatalog.format(key, locale, params));
+			}
+		}
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testLocaleFallback() throws Throwable {
+		Locale locale = new Locale("xx", "YY", "variant");
+		assertEquals("Next {0}", MessageCatalog.getMessage("common.pagination.next", locale));
+		assertEquals("Next 20", MessageCatalog.format("common.pagination.next", locale, new Object[]{"20"}));
+	}
+
+	/**
+	 *
+	 */
+	@Test(expected=MissingResourceException.class)
+	public void testMissingKey() throws Throwable {
+		MessageCatalog.getMessage("no.such.message.key", Locale.ENGLISH);
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testReload() throws Throwable {
+		String message = MessageCatalog.getMessage("common.sectionedit", Locale.ENGLISH);
+		MessageCatalog.reload();
+		assertEquals(message, MessageCatalog.getMessage("common.sectionedit", Locale.ENGLISH));
+	}
+}
@@ -0,0 +1,50 @@
+/**
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE, version 2.1, dated February 1999.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the latest version of the GNU Lesser General
+ * Public License as published by the Free Software Foundation;
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program (LICENSE.txt); if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jamwiki.utils;
+
+import org.jamwiki.model.CacheEvent;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class MulticastCacheInvalidationBusTest {
+
+	/**
+	 *
+	 */
+	@Test
+	public void testEncodeDecode() throws Throwable {
+		CacheEvent event = new CacheEvent("cache", "en/Topic \u00e9", CacheEvent.KEY_TYPE_CASE_INSENSITIVE);
+		event.setNodeId("node");
+		byte[] data = MulticastCacheInvalidationBus.encode(event);
+		CacheEvent result = MulticastCacheInvalidationBus.decode(data, data.length);
+		assertEquals("Node id", "node", result.getNodeId());
+		assertEquals("Cache name", "cache", result.getCacheName());
+		assertEquals("Key", "en/Topic \u00e9", result.getKey());
+		assertEquals("Key type", CacheEvent.KEY_TYPE_CASE_INSENSITIVE, result.getKeyType());
+		event = new CacheEvent("cache", null, CacheEvent.KEY_TYPE_ALL);
+		event.setNodeId("node");
+		data = MulticastCacheInvalidationBus.encode(event);
+		result = MulticastCacheInvalidationBus.decode(data, data.length);
+		assertNull("Key", result.getKey());
+		assertEquals("Key type", CacheEvent.KEY_TYPE_ALL, result.getKeyType());
+		// packets that are not cache events are ignored
+		assertNull("Invalid packet", MulticastCacheInvalidationBus.decode(new byte[] {1, 2, 3, 4}, 4));
+	}
+}
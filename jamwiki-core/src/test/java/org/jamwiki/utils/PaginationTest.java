@@ -37,6 +37,27 @@ public class PaginationTest extends JAMWikiUnitTest {
 		assertEquals("pagination.getOffset()", 1000, pagination.getOffset());
 	}
 
+	/**
+	 *
+	 */
+	@Test
+	public void testContinuation() throws Throwable {
+		Pagination pagination = new Pagination(100, 0);
+		assertFalse("pagination.isKeyset()", pagination.isKeyset());
+		assertNull("pagination.getNextContinuation()", pagination.getNextContinuation());
+		pagination.setNextContinuation("2010-01-01 12:00:00.0 \u00e9:x", 42);
+		String token = pagination.getNextContinuation();
+		assertTrue("URL-safe token", token.matches("[A-Za-z0-9_\\-]+"));
+		pagination = new Pagination(100, 100, token);
+		assertTrue("pagination.isKeyset()", pagination.isKeyset());
+		assertEquals("pagination.getContinuationId()", 42, pagination.getContinuationId());
+		assertEquals("pagination.getContinuationValue()", "2010-01-01 12:00:00.0 \u00e9:x", pagination.getContinuationValue());
+		assertEquals("pagination.getOffset()", 100, pagination.getOffset());
+		// invalid tokens are ignored
+		assertFalse("Invalid token", new Pagination(100, 0, "not a token").isKeyset());
+		assertFalse("Empty token", new Pagination(100, 0, "").isKeyset());
+	}
+
 	/**
 	 *
 	 */
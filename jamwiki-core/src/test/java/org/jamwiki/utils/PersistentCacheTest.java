@@ -0,0 +1,60 @@
+/**
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE, version 2.1, dated February 1999.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the latest version of the GNU Lesser General
+ * Public License as published by the Free Software Foundation;
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program (LICENSE.txt); if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jamwiki.utils;
+
+import org.jamwiki.Environment;
+import org.jamwiki.JAMWikiUnitTest;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class PersistentCacheTest extends JAMWikiUnitTest {
+
+	private static final String CACHE_NAME = "org.jamwiki.utils.PersistentCacheTest";
+
+	/**
+	 *
+	 */
+	@Test
+	public void testStoreAndRetrieve() throws Throwable {
+		String enabled = Environment.getValue(Environment.PROP_CACHE_PERSISTENT);
+		Environment.setValue(Environment.PROP_CACHE_PERSISTENT, Boolean.TRUE.toString());
+		try {
+			PersistentCache.clear();
+			byte[] value = {1, 2, 3, 4};
+			PersistentCache.store(CACHE_NAME, "en/Bytes", 5, value);
+			assertArrayEquals(value, PersistentCache.retrieve(CACHE_NAME, "en/Bytes", 5));
+			String text = "<p>Parsed é content</p>";
+			PersistentCache.storeString(CACHE_NAME, "en/Text", 7, text);
+			assertEquals(text, PersistentCache.retrieveString(CACHE_NAME, "en/Text", 7));
+			// an entry for a different version is discarded
+			assertNull(PersistentCache.retrieveString(CACHE_NAME, "en/Text", 8));
+			assertNull(PersistentCache.retrieveString(CACHE_NAME, "en/Text", 7));
+			PersistentCache.remove(CACHE_NAME, "en/Bytes");
+			assertNull(PersistentCache.retrieve(CACHE_NAME, "en/Bytes", 5));
+			// nothing is stored or retrieved when the cache is disabled
+			PersistentCache.store(CACHE_NAME, "en/Bytes", 5, value);
+			Environment.setValue(Environment.PROP_CACHE_PERSISTENT, Boolean.FALSE.toString());
+			assertNull(PersistentCache.retrieve(CACHE_NAME, "en/Bytes", 5));
+		} finally {
+			Environment.setValue(Environment.PROP_CACHE_PERSISTENT, enabled);
+			PersistentCache.clear();
+		}
+	}
+}
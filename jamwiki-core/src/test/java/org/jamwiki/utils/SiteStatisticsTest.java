@@ -0,0 +1,80 @@
+/**
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE, version 2.1, dated February 1999.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the latest version of the GNU Lesser General
+ * Public License as published by the Free Software Foundation;
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program (LICENSE.txt); if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jamwiki.utils;
+
+import org.jamwiki.JAMWikiUnitTest;
+import org.jamwiki.WikiBase;
+import org.jamwiki.model.Namespace;
+import org.jamwiki.model.Topic;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class SiteStatisticsTest extends JAMWikiUnitTest {
+
+	/**
+	 *
+	 */
+	private void assertCounts(String virtualWiki) throws Throwable {
+		assertEquals("Article count", WikiBase.getDataHandler().lookupTopicCount(virtualWiki, Namespace.MAIN_ID), SiteStatistics.getArticleCount(virtualWiki));
+		assertEquals("Topic count", WikiBase.getDataHandler().lookupTopicCount(virtualWiki, null), SiteStatistics.getTopicCount(virtualWiki));
+		assertEquals("File count", WikiBase.getDataHandler().lookupWikiFileCount(virtualWiki), SiteStatistics.getFileCount(virtualWiki));
+		assertEquals("User count", WikiBase.getDataHandler().lookupWikiUserCount(), SiteStatistics.getUserCount());
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testCounts() throws Throwable {
+		String virtualWiki = "en";
+		this.assertCounts(virtualWiki);
+		assertTrue(SiteStatistics.getTopicCount(virtualWiki) >= SiteStatistics.getArticleCount(virtualWiki));
+	}
+
+	/**
+	 * Verify that statistics are re-calculated correctly.
+	 */
+	@Test
+	public void testRecount() throws Throwable {
+		WikiBase.getDataHandler().recountStatistics();
+		this.assertCounts("en");
+	}
+
+	/**
+	 * Verify that statistics are updated when topics are added and deleted.
+	 */
+	@Test
+	public void testUpdatedOnChange() throws Throwable {
+		String virtualWiki = "en";
+		String topicName = "Site Statistics Test " + System.currentTimeMillis();
+		int articleCount = SiteStatistics.getArticleCount(virtualWiki);
+		int topicCount = SiteStatistics.getTopicCount(virtualWiki);
+		Topic topic = this.setupTopic(null, topicName, "Site statistics test content");
+		assertEquals("Article count after adding an article", articleCount + 1, SiteStatistics.getArticleCount(virtualWiki));
+		assertEquals("Topic count after adding an article", topicCount + 1, SiteStatistics.getTopicCount(virtualWiki));
+		this.setupTopic(null, "Comments:" + topicName, "Site statistics test comments");
+		assertEquals("Article count after adding a comments page", articleCount + 1, SiteStatistics.getArticleCount(virtualWiki));
+		assertEquals("Topic count after adding a comments page", topicCount + 2, SiteStatistics.getTopicCount(virtualWiki));
+		WikiBase.getDataHandler().deleteTopic(topic, null);
+		assertEquals("Article count after deleting an article", articleCount, SiteStatistics.getArticleCount(virtualWiki));
+		assertEquals("Topic count after deleting an article", topicCount + 1, SiteStatistics.getTopicCount(virtualWiki));
+		this.assertCounts(virtualWiki);
+	}
+}
@@ -0,0 +1,70 @@
+/**
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE, version 2.1, dated February 1999.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the latest version of the GNU Lesser General
+ * Public License as published by the Free Software Foundation;
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program (LICENSE.txt); if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jamwiki.utils;
+
+import java.util.List;
+import org.jamwiki.Environment;
+import org.jamwiki.JAMWikiUnitTest;
+import org.jamwiki.WikiBase;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class TopicAccessLogTest extends JAMWikiUnitTest {
+
+	/**
+	 * Verify that the most frequently viewed topics are retained across a
+	 * save and load, and that they can be loaded into the cache.
+	 */
+	@Test
+	public void testRecordAndWarmUp() throws Throwable {
+		String size = Environment.getValue(Environment.PROP_CACHE_WARMUP_SIZE);
+		Environment.setValue(Environment.PROP_CACHE_WARMUP_SIZE, "2");
+		try {
+			TopicAccessLog.load();
+			for (int i = 0; i < 6; i++) {
+				TopicAccessLog.record("en", WikiBase.SPECIAL_PAGE_STYLESHEET);
+			}
+			for (int i = 0; i < 4; i++) {
+				TopicAccessLog.record("en", "StartingPoints");
+			}
+			TopicAccessLog.record("en", "Unpopular Topic");
+			// recording more topics than can be tracked discards the least viewed
+			for (int i = 0; i < 8; i++) {
+				TopicAccessLog.record("en", "Single View " + i);
+				TopicAccessLog.record("en", "StartingPoints");
+			}
+			List<String> hotTopics = TopicAccessLog.getHotTopics("en");
+			assertEquals(2, hotTopics.size());
+			assertEquals("StartingPoints", hotTopics.get(0));
+			assertEquals(WikiBase.SPECIAL_PAGE_STYLESHEET, hotTopics.get(1));
+			TopicAccessLog.save();
+			TopicAccessLog.load();
+			assertEquals(hotTopics, TopicAccessLog.getHotTopics("en"));
+			CacheWarmer cacheWarmer = new CacheWarmer();
+			assertEquals(2, cacheWarmer.getTotal());
+			cacheWarmer.run();
+			assertTrue(cacheWarmer.isComplete());
+			assertEquals(2, cacheWarmer.getLoaded());
+			assertEquals(0, cacheWarmer.getErrors());
+		} finally {
+			Environment.setValue(Environment.PROP_CACHE_WARMUP_SIZE, size);
+		}
+	}
+}
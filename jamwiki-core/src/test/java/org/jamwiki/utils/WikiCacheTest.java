@@ -18,6 +18,7 @@
  */
 package org.jamwiki.utils;
 
+import org.jamwiki.Environment;
 import org.jamwiki.JAMWikiUnitTest;
 import org.junit.Test;
 import static org.junit.Assert.*;
@@ -27,6 +28,80 @@ import static org.junit.Assert.*;
  */
 public class WikiCacheTest extends JAMWikiUnitTest {
 
+	/**
+	 *
+	 */
+	@Test
+	public void testCacheKey() throws Throwable {
+		WikiCacheKey key = new WikiCacheKey("en", 1, "Topic");
+		assertEquals("Equal keys", key, new WikiCacheKey("en", 1, "Topic"));
+		assertEquals("Equal hash codes", key.hashCode(), new WikiCacheKey("en", 1, "Topic").hashCode());
+		assertFalse("Different keys", key.equals(new WikiCacheKey("en", 1, "topic")));
+		assertFalse("Different key lengths", new WikiCacheKey("en", "Topic").equals(new WikiCacheKey("en", "Topic", "")));
+		assertEquals("String form", "en/1/Topic", key.toString());
+		assertEquals("String form", "en/Topic", new WikiCacheKey("en", "Topic").toString());
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testCacheHandle() throws Throwable {
+		WikiCache<WikiCacheKey, String> cache = new WikiCache<WikiCacheKey, String>("org.jamwiki.utils.WikiCacheTest.testCacheHandle");
+		cache.addToCache(new WikiCacheKey("en", "Topic"), "value");
+		cache.addToCache(new WikiCacheKey("en", "Missing"), null);
+		assertEquals("Cached value", "value", cache.retrieveFromCache(new WikiCacheKey("en", "Topic")).getValue());
+		assertNotNull("Cached null value", cache.retrieveFromCache(new WikiCacheKey("en", "Missing")));
+		assertNull("Cached null value", cache.retrieveFromCache(new WikiCacheKey("en", "Missing")).getValue());
+		assertNull("Uncached value", cache.retrieveFromCache(new WikiCacheKey("en", "Other")));
+		// the static and instance methods operate on the same cache
+		assertEquals("Static lookup", "value", WikiCache.retrieveFromCache(cache.getCacheName(), new WikiCacheKey("en", "Topic")).getObjectValue());
+		cache.removeFromCacheCaseInsensitive(new WikiCacheKey("EN", "topic"));
+		assertNull("Case-insensitive removal", cache.retrieveFromCache(new WikiCacheKey("en", "Topic")));
+		// the handle must remain usable after the cache is re-initialized
+		WikiCache.initialize();
+		assertNull("Cache cleared", cache.retrieveFromCache(new WikiCacheKey("en", "Missing")));
+		cache.addToCache(new WikiCacheKey("en", "Topic"), "value");
+		assertEquals("Cached value after initialization", "value", cache.retrieveFromCache(new WikiCacheKey("en", "Topic")).getValue());
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testHeapCache() throws Throwable {
+		String heap = Environment.getValue(Environment.PROP_CACHE_HEAP);
+		String individualSize = Environment.getValue(Environment.PROP_CACHE_INDIVIDUAL_SIZE);
+		try {
+			Environment.setValue(Environment.PROP_CACHE_HEAP, Boolean.TRUE.toString());
+			Environment.setValue(Environment.PROP_CACHE_INDIVIDUAL_SIZE, "2");
+			WikiCache.initialize();
+			WikiCache<Integer, String> cache = new WikiCache<Integer, String>("org.jamwiki.utils.WikiCacheTest.testHeapCache", true);
+			cache.addToCache(1, "one");
+			assertEquals("Cached value", "one", cache.retrieveFromCache(1).getValue());
+			cache.addToCache(2, "two");
+			cache.addToCache(3, "three");
+			int cached = 0;
+			for (int i = 1; i <= 3; i++) {
+				if (cache.retrieveFromCache(i) != null) {
+					cached++;
+				}
+			}
+			assertEquals("Cache size limit", 2, cached);
+			assertEquals("Most recent value retained", "three", cache.retrieveFromCache(3).getValue());
+			// static methods, which are used for events from other instances, must reach the heap cache
+			WikiCache.removeFromCache(cache.getCacheName(), 3);
+			assertNull("Static removal", cache.retrieveFromCache(3));
+			cache.addToCache(3, "three");
+			WikiCache.removeFromCacheCaseInsensitive(cache.getCacheName(), "3");
+			assertNull("Static case-insensitive removal", cache.retrieveFromCache(3));
+		} finally {
+			Environment.setValue(Environment.PROP_CACHE_HEAP, heap);
+			Environment.setValue(Environment.PROP_CACHE_INDIVIDUAL_SIZE, individualSize);
+			WikiCache.initialize();
+		}
+	}
+
 	/**
 	 *
 	 */
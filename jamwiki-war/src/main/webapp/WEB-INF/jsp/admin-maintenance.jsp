@@ -182,6 +182,71 @@
 </form>
 </fieldset>
 
+<%-- Site Statistics --%>
+<c:if test="${!empty pageInfo.messages && function == 'statistics'}">
+<div class="message green"><c:forEach items="${pageInfo.messages}" var="message"><jamwiki_t:wikiMessage message="${message}" /><br /></c:forEach></div>
+</c:if>
+<c:if test="${!empty pageInfo.errors && function == 'statistics'}">
+<div class="message red"><c:forEach items="${pageInfo.errors}" var="message"><jamwiki_t:wikiMessage message="${message}" /><br /></c:forEach></div>
+</c:if>
+<fieldset>
+<legend><fmt:message key="admin.maintenance.title.statistics" /></legend>
+<form action="<jamwiki:link value="Special:Maintenance" />#data" method="post">
+<div class="row">
+	<label><fmt:message key="admin.maintenance.caption.statistics" /></label>
+	<span><input type="submit" value="<fmt:message key="common.update" />" /></span>
+	<div class="formhelp"><fmt:message key="admin.maintenance.help.statistics" /></div>
+</div>
+<input type="hidden" name="function" value="statistics" />
+</form>
+</fieldset>
+
+<%-- Re-render All Topics --%>
+<c:if test="${!empty pageInfo.messages && function == 'render'}">
+<div class="message green"><c:forEach items="${pageInfo.messages}" var="message"><jamwiki_t:wikiMessage message="${message}" /><br /></c:forEach></div>
+</c:if>
+<c:if test="${!empty pageInfo.errors && function == 'render'}">
+<div class="message red"><c:forEach items="${pageInfo.errors}" var="message"><jamwiki_t:wikiMessage message="${message}" /><br /></c:forEach></div>
+</c:if>
+<fieldset>
+<legend><fmt:message key="admin.maintenance.title.render" /></legend>
+<form action="<jamwiki:link value="Special:Maintenance" />#data" method="post">
+<div class="row">
+	<label for="renderVirtualWiki"><fmt:message key="admin.maintenance.caption.render" /></label>
+	<span>
+		<select name="renderVirtualWiki" id="renderVirtualWiki">
+		<c:forEach items="${virtualWikiList}" var="virtualWiki"><option value="<c:out value="${virtualWiki.name}" />"<c:if test="${virtualWiki.name == pageInfo.virtualWikiName}"> selected="selected"</c:if>><c:out value="${virtualWiki.name}" /></option></c:forEach>
+		</select>
+		<input type="submit" name="renderStart" value="<fmt:message key="common.button.start" />" />
+		<input type="submit" name="renderCancel" value="<fmt:message key="common.button.cancel" />" />
+	</span>
+	<div class="formhelp"><fmt:message key="admin.maintenance.help.render" /></div>
+	<c:forEach items="${renderStatuses}" var="renderStatus"><div class="formhelp"><jamwiki_t:wikiMessage message="${renderStatus}" /></div></c:forEach>
+</div>
+<input type="hidden" name="function" value="render" />
+</form>
+</fieldset>
+
+<%-- Database Connection Pools --%>
+<c:if test="${!empty poolStatuses}">
+<fieldset>
+<legend><fmt:message key="admin.maintenance.title.pools" /></legend>
+<div class="row">
+	<c:forEach items="${poolStatuses}" var="poolStatus"><div class="formhelp"><jamwiki_t:wikiMessage message="${poolStatus}" /></div></c:forEach>
+</div>
+</fieldset>
+</c:if>
+
+<%-- Change Outbox --%>
+<c:if test="${!empty outboxStatuses}">
+<fieldset>
+<legend><fmt:message key="admin.maintenance.title.outbox" /></legend>
+<div class="row">
+	<c:forEach items="${outboxStatuses}" var="outboxStatus"><div class="formhelp"><jamwiki_t:wikiMessage message="${outboxStatus}" /></div></c:forEach>
+</div>
+</fieldset>
+</c:if>
+
 </div>
 
 <%-- Password Reset --%>
@@ -263,6 +263,11 @@
 	<span><jamwiki:text name="${PROP_PARSER_SIGNATURE_DATE_PATTERN}" value="${props[PROP_PARSER_SIGNATURE_DATE_PATTERN]}" size="50" id="${PROP_PARSER_SIGNATURE_DATE_PATTERN}" /></span>
 	<div class="formhelp"><fmt:message key="admin.parser.help.signaturedate" /> <fmt:message key="admin.help.date.common" /></div>
 </div>
+<div class="row">
+	<label><fmt:message key="admin.parser.caption.budgetexceeded" /></label>
+	<span><fmt:message key="admin.parser.budgetexceeded"><fmt:param value="${parserNodesExceeded}" /><fmt:param value="${parserTemplateSizeExceeded}" /><fmt:param value="${parserTimeExceeded}" /></fmt:message></span>
+	<div class="formhelp"><fmt:message key="admin.parser.help.budgetexceeded" /></div>
+</div>
 </fieldset>
 </div>
 
@@ -291,6 +296,12 @@ FIXME - Email not supported right now, comment this out
 	<c:set var="PROP_EMAIL_REPLY_ADDRESS"><%= Environment.PROP_EMAIL_REPLY_ADDRESS %></c:set>
 	<span><jamwiki:text name="${PROP_EMAIL_REPLY_ADDRESS}" value="${props[PROP_EMAIL_REPLY_ADDRESS]}" size="50" id="${PROP_EMAIL_REPLY_ADDRESS}" /></span>
 </div>
+<div class="row">
+	<label for="<%= Environment.PROP_EMAIL_WATCHLIST_DIGEST_INTERVAL %>"><fmt:message key="admin.smtp.caption.watchlistdigest" /></label>
+	<c:set var="PROP_EMAIL_WATCHLIST_DIGEST_INTERVAL"><%= Environment.PROP_EMAIL_WATCHLIST_DIGEST_INTERVAL %></c:set>
+	<span><jamwiki:text name="${PROP_EMAIL_WATCHLIST_DIGEST_INTERVAL}" value="${props[PROP_EMAIL_WATCHLIST_DIGEST_INTERVAL]}" size="5" id="${PROP_EMAIL_WATCHLIST_DIGEST_INTERVAL}" /></span>
+	<div class="formhelp"><fmt:message key="admin.smtp.help.watchlistdigest" /></div>
+</div>
 </fieldset>
 </div>
 
@@ -406,6 +417,24 @@ FIXME - Email not supported right now, comment this out
 	<span><jamwiki:text name="${PROP_DBCP_MAX_OPEN_PREPARED_STATEMENTS}" id="${PROP_DBCP_MAX_OPEN_PREPARED_STATEMENTS}" value="${props[PROP_DBCP_MAX_OPEN_PREPARED_STATEMENTS]}" size="5" maxlength="4" /></span>
 	<div class="formhelp"><fmt:message key="admin.persistence.help.maxopenpreparedstatements" /></div>
 </div>
+<div class="row">
+	<label for="<%= Environment.PROP_DB_REPLICA_URLS %>"><fmt:message key="admin.persistence.caption.replicaurls" /></label>
+	<c:set var="PROP_DB_REPLICA_URLS"><%= Environment.PROP_DB_REPLICA_URLS %></c:set>
+	<span><jamwiki:text name="${PROP_DB_REPLICA_URLS}" id="${PROP_DB_REPLICA_URLS}" value="${props[PROP_DB_REPLICA_URLS]}" size="50" /></span>
+	<div class="formhelp"><fmt:message key="admin.persistence.help.replicaurls" /></div>
+</div>
+<div class="row">
+	<label for="<%= Environment.PROP_DB_REPLICA_PRIMARY_WINDOW %>"><fmt:message key="admin.persistence.caption.replicaprimarywindow" /></label>
+	<c:set var="PROP_DB_REPLICA_PRIMARY_WINDOW"><%= Environment.PROP_DB_REPLICA_PRIMARY_WINDOW %></c:set>
+	<span><jamwiki:text name="${PROP_DB_REPLICA_PRIMARY_WINDOW}" id="${PROP_DB_REPLICA_PRIMARY_WINDOW}" value="${props[PROP_DB_REPLICA_PRIMARY_WINDOW]}" size="5" maxlength="4" /></span>
+	<div class="formhelp"><fmt:message key="admin.persistence.help.replicaprimarywindow" /></div>
+</div>
+<div class="row">
+	<label for="<%= Environment.PROP_DB_CHANGE_OUTBOX %>"><fmt:message key="admin.persistence.caption.changeoutbox" /></label>
+	<c:set var="PROP_DB_CHANGE_OUTBOX"><%= Environment.PROP_DB_CHANGE_OUTBOX %></c:set>
+	<span><jamwiki:checkbox name="${PROP_DB_CHANGE_OUTBOX}" value="true" checked="${props[PROP_DB_CHANGE_OUTBOX]}" id="${PROP_DB_CHANGE_OUTBOX}" /></span>
+	<div class="formhelp"><fmt:message key="admin.persistence.help.changeoutbox" /></div>
+</div>
 </fieldset>
 </div>
 
@@ -553,6 +582,30 @@ FIXME - Email not supported right now, comment this out
 	<c:set var="PROP_CACHE_MAX_IDLE_AGE"><%= Environment.PROP_CACHE_MAX_IDLE_AGE %></c:set>
 	<span><jamwiki:text name="${PROP_CACHE_MAX_IDLE_AGE}" id="${PROP_CACHE_MAX_IDLE_AGE}" value="${props[PROP_CACHE_MAX_IDLE_AGE]}" size="10" /></span>
 </div>
+<div class="row">
+	<label for="<%= Environment.PROP_CACHE_HEAP %>"><fmt:message key="admin.cache.caption.heap" /></label>
+	<c:set var="PROP_CACHE_HEAP"><%= Environment.PROP_CACHE_HEAP %></c:set>
+	<span><jamwiki:checkbox name="${PROP_CACHE_HEAP}" value="true" checked="${props[PROP_CACHE_HEAP]}" id="${PROP_CACHE_HEAP}" /></span>
+	<div class="formhelp"><fmt:message key="admin.cache.help.heap" /></div>
+</div>
+<div class="row">
+	<label for="<%= Environment.PROP_CACHE_PERSISTENT %>"><fmt:message key="admin.cache.caption.persistent" /></label>
+	<c:set var="PROP_CACHE_PERSISTENT"><%= Environment.PROP_CACHE_PERSISTENT %></c:set>
+	<span><jamwiki:checkbox name="${PROP_CACHE_PERSISTENT}" value="true" checked="${props[PROP_CACHE_PERSISTENT]}" id="${PROP_CACHE_PERSISTENT}" /></span>
+	<div class="formhelp"><fmt:message key="admin.cache.help.persistent" /></div>
+</div>
+<div class="row">
+	<label for="<%= Environment.PROP_CACHE_PERSISTENT_MAX_AGE %>"><fmt:message key="admin.cache.caption.persistentmaxage" /></label>
+	<c:set var="PROP_CACHE_PERSISTENT_MAX_AGE"><%= Environment.PROP_CACHE_PERSISTENT_MAX_AGE %></c:set>
+	<span><jamwiki:text name="${PROP_CACHE_PERSISTENT_MAX_AGE}" id="${PROP_CACHE_PERSISTENT_MAX_AGE}" value="${props[PROP_CACHE_PERSISTENT_MAX_AGE]}" size="10" /></span>
+</div>
+<div class="row">
+	<label for="<%= Environment.PROP_CACHE_WARMUP_SIZE %>"><fmt:message key="admin.cache.caption.warmupsize" /></label>
+	<c:set var="PROP_CACHE_WARMUP_SIZE"><%= Environment.PROP_CACHE_WARMUP_SIZE %></c:set>
+	<span><jamwiki:text name="${PROP_CACHE_WARMUP_SIZE}" id="${PROP_CACHE_WARMUP_SIZE}" value="${props[PROP_CACHE_WARMUP_SIZE]}" size="10" /></span>
+	<div class="formhelp"><fmt:message key="admin.cache.help.warmupsize" /></div>
+	<c:if test="${!empty cacheWarmupStatus}"><div class="formhelp"><jamwiki_t:wikiMessage message="${cacheWarmupStatus}" /></div></c:if>
+</div>
 </fieldset>
 <%-- BEGIN RSS --%>
 <fieldset>
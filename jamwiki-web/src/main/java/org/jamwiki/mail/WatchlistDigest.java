@@ -0,0 +1,251 @@
+/**
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE, version 2.1, dated February 1999.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the latest version of the GNU Lesser General
+ * Public License as published by the Free Software Foundation;
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program (LICENSE.txt); if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jamwiki.mail;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Timer;
+import java.util.TimerTask;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.LocaleUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
+import org.jamwiki.DataAccessException;
+import org.jamwiki.Environment;
+import org.jamwiki.WikiBase;
+import org.jamwiki.model.RecentChange;
+import org.jamwiki.model.WikiUser;
+import org.jamwiki.utils.Utilities;
+import org.jamwiki.utils.WikiLogger;
+
+/**
+ * Periodically email each user a single digest of the topics in their
+ * watchlist that have been changed by other users.  Digests are sent every
+ * {@link Environment#PROP_EMAIL_WATCHLIST_DIGEST_INTERVAL} minutes using
+ * {@link WikiMail}, and are built from the per-user change feed recorded in
+ * the watchlist table whenever a topic is written, so each run is a single
+ * query regardless of the number of users.  The time of the most recent
+ * change included in a digest is saved to the filesystem, along with the
+ * progress of any partially completed run, so that no changes are missed or
+ * repeated across restarts or failures.
+ */
+public class WatchlistDigest {
+
+	private static final WikiLogger logger = WikiLogger.getLogger(WatchlistDigest.class.getName());
+	/** Name of the file, relative to the system file directory, holding the digest progress. */
+	private static final String STATE_FILE_NAME = "watchlist-digest.properties";
+	/** State property holding the time of the most recent change included in a completed digest run. */
+	private static final String STATE_LAST_SENT = "lastSent";
+	/** Prefix of state properties holding the time of the most recent change sent to a user during an incomplete run. */
+	private static final String STATE_USER_PREFIX = "user.";
+	private static Timer timer = null;
+
+	/**
+	 *
+	 */
+	private WatchlistDigest() {
+	}
+
+	/**
+	 * Start sending watchlist digests if they have been enabled.  This method
+	 * should be called when the application is started.
+	 */
+	public static synchronized void initialize() {
+		int interval = Environment.getIntValue(Environment.PROP_EMAIL_WATCHLIST_DIGEST_INTERVAL);
+		if (interval <= 0 || timer != null) {
+			return;
+		}
+		long period = interval * 60 * 1000L;
+		timer = new Timer("WatchlistDigest", true);
+		timer.schedule(new TimerTask() {
+			public void run() {
+				try {
+					WatchlistDigest.send();
+				} catch (DataAccessException e) {
+					logger.warn("Failure while sending watchlist digests, will retry: " + e.getMessage());
+				} catch (RuntimeException e) {
+					// do not allow an unexpected error to cancel the timer
+					logger.error("Unexpected failure while sending watchlist digests", e);
+				}
+			}
+		}, period, period);
+	}
+
+	/**
+	 *
+	 */
+	private static File stateFile() {
+		return new File(Environment.getValue(Environment.PROP_BASE_FILE_DIR), STATE_FILE_NAME);
+	}
+
+	/**
+	 *
+	 */
+	private static Properties loadState() {
+		Properties state = new Properties();
+		File file = WatchlistDigest.stateFile();
+		if (!file.exists()) {
+			return state;
+		}
+		FileInputStream fis = null;
+		try {
+			fis = new FileInputStream(file);
+			state.load(fis);
+		} catch (IOException e) {
+			logger.warn("Failure while reading watchlist digest progress from " + file.getPath() + ": " + e.getMessage());
+		} finally {
+			IOUtils.closeQuietly(fis);
+		}
+		return state;
+	}
+
+	/**
+	 *
+	 */
+	private static void saveState(Properties state) {
+		File file = WatchlistDigest.stateFile();
+		FileOutputStream out = null;
+		try {
+			out = new FileOutputStream(file);
+			state.store(out, "JAMWiki watchlist digest progress");
+		} catch (IOException e) {
+			logger.warn("Failure while saving watchlist digest progress to " + file.getPath() + ": " + e.getMessage());
+		} finally {
+			IOUtils.closeQuietly(out);
+		}
+	}
+
+	/**
+	 * Return the time stored in a state property, or <code>null</code> if no
+	 * valid time is stored.
+	 */
+	private static Timestamp stateTime(Properties state, String key) {
+		long time = NumberUtils.toLong(state.getProperty(key), 0);
+		return (time > 0) ? new Timestamp(time) : null;
+	}
+
+	/**
+	 * Return the most recent change date in a list of changes, or
+	 * <code>since</code> if no change is more recent.
+	 */
+	private static Timestamp mostRecent(List<RecentChange> changes, Timestamp since) {
+		Timestamp result = since;
+		for (RecentChange change : changes) {
+			if (change.getChangeDate() != null && change.getChangeDate().after(result)) {
+				result = change.getChangeDate();
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Email a digest to every user with an email address whose watched topics
+	 * have changed since the previous digest.  The first time this method is
+	 * called no digests are sent; only the current time is recorded, so that
+	 * enabling digests does not send the entire history of every watchlist.
+	 * Progress is recorded after each email, so if a run fails partway then
+	 * the next run does not email the same changes to users who were already
+	 * sent them.
+	 *
+	 * @return The number of digests sent.
+	 * @throws DataAccessException Thrown if the changes cannot be retrieved,
+	 *  in which case they are included in the next digest.
+	 */
+	public static synchronized int send() throws DataAccessException {
+		Properties state = WatchlistDigest.loadState();
+		Timestamp lastSent = WatchlistDigest.stateTime(state, STATE_LAST_SENT);
+		if (lastSent == null) {
+			state.clear();
+			state.setProperty(STATE_LAST_SENT, Long.toString(System.currentTimeMillis()));
+			WatchlistDigest.saveState(state);
+			return 0;
+		}
+		Map<Integer, List<RecentChange>> digests = WikiBase.getDataHandler().getWatchlistDigest(lastSent);
+		// advance to the newest change actually read rather than the current
+		// time so that changes committed while this run executes are not skipped
+		Timestamp newest = lastSent;
+		int sent = 0;
+		for (Map.Entry<Integer, List<RecentChange>> digest : digests.entrySet()) {
+			newest = WatchlistDigest.mostRecent(digest.getValue(), newest);
+			// skip changes already sent to this user by an earlier run that did not complete
+			String userKey = STATE_USER_PREFIX + digest.getKey();
+			Timestamp userLastSent = WatchlistDigest.stateTime(state, userKey);
+			List<RecentChange> changes = new ArrayList<RecentChange>();
+			for (RecentChange change : digest.getValue()) {
+				if (userLastSent == null || change.getChangeDate() == null || change.getChangeDate().after(userLastSent)) {
+					changes.add(change);
+				}
+			}
+			if (changes.isEmpty()) {
+				continue;
+			}
+			WikiUser user = WikiBase.getDataHandler().lookupWikiUser(digest.getKey());
+			if (user == null || StringUtils.isBlank(user.getEmail())) {
+				continue;
+			}
+			WatchlistDigest.sendDigest(user, changes, lastSent);
+			state.setProperty(userKey, Long.toString(WatchlistDigest.mostRecent(changes, lastSent).getTime()));
+			WatchlistDigest.saveState(state);
+			sent++;
+		}
+		// the run completed, so per-user progress is no longer needed
+		state.clear();
+		state.setProperty(STATE_LAST_SENT, Long.toString(newest.getTime()));
+		WatchlistDigest.saveState(state);
+		if (sent > 0) {
+			logger.info("Sent " + sent + " watchlist digest emails");
+		}
+		return sent;
+	}
+
+	/**
+	 *
+	 */
+	private static void sendDigest(WikiUser user, List<RecentChange> changes, Timestamp lastSent) {
+		Locale locale = (StringUtils.isBlank(user.getDefaultLocale())) ? Locale.getDefault() : LocaleUtils.toLocale(user.getDefaultLocale());
+		String subject = Utilities.formatMessage("watchlist.digest.subject", locale, new Object[]{user.getUsername()});
+		StringBuilder body = new StringBuilder();
+		body.append(Utilities.formatMessage("watchlist.digest.body", locale, new Object[]{lastSent})).append("\n\n");
+		for (RecentChange change : changes) {
+			body.append(Utilities.formatMessage("watchlist.digest.change", locale, new Object[]{change.getTopicName(), change.getVirtualWiki(), change.getAuthorName()})).append('\n');
+			if (!StringUtils.isBlank(change.getChangeComment())) {
+				body.append("    ").append(change.getChangeComment()).append('\n');
+			}
+		}
+		body.append('\n').append(Utilities.formatMessage("watchlist.digest.footer", locale));
+		WikiMail.getInstance().sendMail(Environment.getValue(Environment.PROP_EMAIL_REPLY_ADDRESS), user.getEmail(), subject, body.toString());
+	}
+
+	/**
+	 * Stop sending watchlist digests.  This method should be called when the
+	 * application is shut down.
+	 */
+	public static synchronized void shutdown() {
+		if (timer != null) {
+			timer.cancel();
+			timer = null;
+		}
+	}
+}
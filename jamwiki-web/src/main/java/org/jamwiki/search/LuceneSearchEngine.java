@@ -51,7 +51,9 @@ import org.apache.lucene.store.SimpleFSLockFactory;
 import org.apache.lucene.util.Version;
 import org.apache.lucene.store.LockObtainFailedException;
 import org.jamwiki.Environment;
+import org.jamwiki.DataAccessException;
 import org.jamwiki.SearchEngine;
+import org.jamwiki.TopicNameCallback;
 import org.jamwiki.WikiBase;
 import org.jamwiki.model.SearchResultEntry;
 import org.jamwiki.model.Topic;
@@ -338,26 +340,33 @@ public class LuceneSearchEngine implements SearchEngine {
 	 */
 	public void refreshIndex() throws Exception {
 		List<VirtualWiki> allWikis = WikiBase.getDataHandler().getVirtualWikiList();
-		Topic topic;
-		for (VirtualWiki virtualWiki : allWikis) {
+		for (final VirtualWiki virtualWiki : allWikis) {
 			long start = System.currentTimeMillis();
-			int count = 0;
+			final int[] count = new int[1];
 			IndexWriter writer = null;
 			try {
 				writer = this.retrieveIndexWriter(virtualWiki.getName(), true);
-				List<String> topicNames = WikiBase.getDataHandler().getAllTopicNames(virtualWiki.getName(), false);
+				final IndexWriter topicWriter = writer;
 				// FIXME - parsing all documents will be intolerably slow with even a
 				// moderately large Wiki
-				for (String topicName : topicNames) {
-					topic = WikiBase.getDataHandler().lookupTopic(virtualWiki.getName(), topicName, false);
-					if (topic == null) {
-						logger.info("Unable to rebuild search index for topic: " + topicName);
-						continue;
+				WikiBase.getDataHandler().forEachTopicName(virtualWiki.getName(), false, new TopicNameCallback() {
+					public boolean processTopicName(int topicId, String topicName) throws DataAccessException {
+						Topic topic = WikiBase.getDataHandler().lookupTopic(virtualWiki.getName(), topicName, false);
+						if (topic == null) {
+							logger.info("Unable to rebuild search index for topic: " + topicName);
+							return true;
+						}
+						try {
+							// note: no delete is necessary since a new index is being created
+							addToIndex(topicWriter, topic);
+						} catch (IOException e) {
+							logger.error("Failure while refreshing search index", e);
+							return false;
+						}
+						count[0]++;
+						return true;
 					}
-					// note: no delete is necessary since a new index is being created
-					this.addToIndex(writer, topic);
-					count++;
-				}
+				});
 			} catch (Exception ex) {
 				logger.error("Failure while refreshing search index", ex);
 			} finally {
@@ -377,7 +386,7 @@ public class LuceneSearchEngine implements SearchEngine {
 				}
 			}
 			if (logger.isInfoEnabled()) {
-				logger.info("Rebuilt search index for " + virtualWiki.getName() + " (" + count + " documents) in " + ((System.currentTimeMillis() - start) / 1000.000) + " seconds");
+				logger.info("Rebuilt search index for " + virtualWiki.getName() + " (" + count[0] + " documents) in " + ((System.currentTimeMillis() - start) / 1000.000) + " seconds");
 			}
 		}
 	}
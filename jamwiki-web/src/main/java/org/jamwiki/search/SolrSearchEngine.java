@@ -25,8 +25,10 @@ import org.apache.solr.client.solrj.SolrServer;
 import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.client.solrj.impl.CommonsHttpSolrServer;
 import org.apache.solr.common.SolrInputDocument;
+import org.jamwiki.DataAccessException;
 import org.jamwiki.Environment;
 import org.jamwiki.SearchEngine;
+import org.jamwiki.TopicNameCallback;
 import org.jamwiki.WikiBase;
 import org.jamwiki.model.*;
 import org.jamwiki.utils.Pagination;
@@ -130,14 +132,15 @@ public class SolrSearchEngine implements SearchEngine {
   public void refreshIndex() throws Exception {
     solrServer.deleteByQuery("section:wiki");
     List<VirtualWiki> allWikis = WikiBase.getDataHandler().getVirtualWikiList();
-    Topic topic;
     autoCommit = false;
-    for (VirtualWiki virtualWiki : allWikis) {
-      List<String> topicNames = WikiBase.getDataHandler().getAllTopicNames(virtualWiki.getName(), false);
-      for (String topicName : topicNames) {
-        topic = WikiBase.getDataHandler().lookupTopic(virtualWiki.getName(), topicName, false);
-        addToIndex(topic);
-      }
+    for (final VirtualWiki virtualWiki : allWikis) {
+      WikiBase.getDataHandler().forEachTopicName(virtualWiki.getName(), false, new TopicNameCallback() {
+        public boolean processTopicName(int topicId, String topicName) throws DataAccessException {
+          Topic topic = WikiBase.getDataHandler().lookupTopic(virtualWiki.getName(), topicName, false);
+          addToIndex(topic);
+          return true;
+        }
+      });
     }
     autoCommit = true;
     commit(autoCommit);
@@ -16,7 +16,9 @@
  */
 package org.jamwiki.servlets;
 
+import java.sql.Timestamp;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -34,12 +36,20 @@ import org.jamwiki.WikiConfiguration;
 import org.jamwiki.WikiException;
 import org.jamwiki.WikiMessage;
 import org.jamwiki.authentication.WikiUserDetailsImpl;
+import org.jamwiki.db.ChangeOutbox;
+import org.jamwiki.db.DataSourceRoute;
+import org.jamwiki.db.DatabaseConnection;
+import org.jamwiki.db.StatementRegistry;
+import org.jamwiki.db.TopicRenderJob;
 import org.jamwiki.db.WikiDatabase;
 import org.jamwiki.model.Role;
 import org.jamwiki.model.VirtualWiki;
 import org.jamwiki.model.WikiConfigurationObject;
 import org.jamwiki.model.WikiUser;
+import org.jamwiki.parser.ParserBudget;
+import org.jamwiki.utils.CacheWarmer;
 import org.jamwiki.utils.Encryption;
+import org.jamwiki.utils.PersistentCache;
 import org.jamwiki.utils.SpamFilter;
 import org.jamwiki.utils.WikiCache;
 import org.jamwiki.utils.WikiLogger;
@@ -57,6 +67,8 @@ public class AdminServlet extends JAMWikiServlet {
 	protected static final String JSP_ADMIN = "admin.jsp";
 	/** The name of the JSP file used to render the servlet output for the admin maintenance functionality. */
 	protected static final String JSP_ADMIN_SYSTEM = "admin-maintenance.jsp";
+	/** The maximum number of SQL statements for which usage is displayed on the maintenance page. */
+	private static final int MAX_STATEMENT_STATUSES = 10;
 
 	/**
 	 * This method handles the request after its parent class receives control.
@@ -94,6 +106,10 @@ public class AdminServlet extends JAMWikiServlet {
 			namespaces(request, next, pageInfo);
 		} else if (function.equals("links")) {
 			links(request, next, pageInfo);
+		} else if (function.equals("render")) {
+			render(request, next, pageInfo);
+		} else if (function.equals("statistics")) {
+			statistics(request, next, pageInfo);
 		}
 		return next;
 	}
@@ -144,6 +160,7 @@ public class AdminServlet extends JAMWikiServlet {
 	private void cache(HttpServletRequest request, ModelAndView next, WikiPageInfo pageInfo) throws Exception {
 		try {
 			WikiCache.initialize();
+			PersistentCache.clear();
 			pageInfo.addMessage(new WikiMessage("admin.message.cache"));
 		} catch (Exception e) {
 			logger.error("Failure while clearing cache", e);
@@ -214,7 +231,7 @@ public class AdminServlet extends JAMWikiServlet {
 	/**
 	 *
 	 */
-	private void namespaces(HttpServletRequest request, ModelAndView next, WikiPageInfo pageInfo) {
+	private void namespaces(HttpServletRequest request, ModelAndView next, WikiPageInfo pageInfo) throws DataAccessException {
 		try {
 			int numUpdated = WikiDatabase.fixIncorrectTopicNamespaces();
 			pageInfo.addMessage(new WikiMessage("admin.maintenance.message.topicsUpdated", Integer.toString(numUpdated)));
@@ -311,6 +328,9 @@ public class AdminServlet extends JAMWikiServlet {
 			setNumericProperty(props, request, Environment.PROP_DBCP_TIME_BETWEEN_EVICTION_RUNS, pageInfo.getErrors());
 			setNumericProperty(props, request, Environment.PROP_DBCP_NUM_TESTS_PER_EVICTION_RUN, pageInfo.getErrors());
 			setProperty(props, request, Environment.PROP_DBCP_WHEN_EXHAUSTED_ACTION);
+			setProperty(props, request, Environment.PROP_DB_REPLICA_URLS);
+			setBooleanProperty(props, request, Environment.PROP_DB_CHANGE_OUTBOX);
+			setNumericProperty(props, request, Environment.PROP_DB_REPLICA_PRIMARY_WINDOW, pageInfo.getErrors());
 			String maxFileSizeString = request.getParameter(Environment.PROP_FILE_MAX_FILE_SIZE);
 			if (StringUtils.isBlank(maxFileSizeString) || !StringUtils.isNumeric(maxFileSizeString)) {
 				pageInfo.addError(new WikiMessage("admin.message.nonnumeric", Environment.PROP_FILE_MAX_FILE_SIZE, maxFileSizeString));
@@ -330,6 +350,7 @@ public class AdminServlet extends JAMWikiServlet {
 			setProperty(props, request, Environment.PROP_EMAIL_SMTP_USERNAME);
 			setPassword(props, request, next, Environment.PROP_EMAIL_SMTP_PASSWORD, "smtpPassword");
 			setProperty(props, request, Environment.PROP_EMAIL_REPLY_ADDRESS);
+			setNumericProperty(props, request, Environment.PROP_EMAIL_WATCHLIST_DIGEST_INTERVAL, pageInfo.getErrors());
 			*/
 			setBooleanProperty(props, request, Environment.PROP_TOPIC_SPAM_FILTER);
 			setNumericProperty(props, request, Environment.PROP_RECAPTCHA_EDIT, pageInfo.getErrors());
@@ -341,10 +362,14 @@ public class AdminServlet extends JAMWikiServlet {
 					pageInfo.addError(new WikiMessage("admin.spam.message.invalidkeys"));
 				}
 			}
+			setBooleanProperty(props, request, Environment.PROP_CACHE_HEAP);
 			setNumericProperty(props, request, Environment.PROP_CACHE_INDIVIDUAL_SIZE, pageInfo.getErrors());
 			setNumericProperty(props, request, Environment.PROP_CACHE_MAX_AGE, pageInfo.getErrors());
 			setNumericProperty(props, request, Environment.PROP_CACHE_MAX_IDLE_AGE, pageInfo.getErrors());
+			setBooleanProperty(props, request, Environment.PROP_CACHE_PERSISTENT);
+			setNumericProperty(props, request, Environment.PROP_CACHE_PERSISTENT_MAX_AGE, pageInfo.getErrors());
 			setNumericProperty(props, request, Environment.PROP_CACHE_TOTAL_SIZE, pageInfo.getErrors());
+			setNumericProperty(props, request, Environment.PROP_CACHE_WARMUP_SIZE, pageInfo.getErrors());
 			setBooleanProperty(props, request, Environment.PROP_RSS_ALLOWED);
 			setProperty(props, request, Environment.PROP_RSS_TITLE);
 			pageInfo.getErrors().addAll(ServletUtil.validateSystemSettings(props));
@@ -486,6 +511,20 @@ public class AdminServlet extends JAMWikiServlet {
 		viewAdminSystem(request, next, pageInfo);
 	}
 
+	/**
+	 *
+	 */
+	private void statistics(HttpServletRequest request, ModelAndView next, WikiPageInfo pageInfo) throws DataAccessException {
+		try {
+			WikiBase.getDataHandler().recountStatistics();
+			pageInfo.addMessage(new WikiMessage("admin.maintenance.message.statistics"));
+		} catch (DataAccessException e) {
+			logger.error("Failure while re-counting site statistics", e);
+			pageInfo.addError(new WikiMessage("admin.maintenance.error.statisticsfail", e.getMessage()));
+		}
+		viewAdminSystem(request, next, pageInfo);
+	}
+
 	/**
 	 *
 	 */
@@ -501,6 +540,15 @@ public class AdminServlet extends JAMWikiServlet {
 		next.addObject("searchEngines", searchEngines);
 		List<WikiConfigurationObject> parsers = WikiConfiguration.getInstance().getParsers();
 		next.addObject("parsers", parsers);
+		next.addObject("parserNodesExceeded", ParserBudget.getNodesExceededCount());
+		next.addObject("parserTemplateSizeExceeded", ParserBudget.getTemplateSizeExceededCount());
+		next.addObject("parserTimeExceeded", ParserBudget.getTimeExceededCount());
+		CacheWarmer cacheWarmer = CacheWarmer.getInstance();
+		if (cacheWarmer != null) {
+			String[] params = {Integer.toString(cacheWarmer.getLoaded()), Integer.toString(cacheWarmer.getTotal()), Integer.toString(cacheWarmer.getErrors())};
+			String key = (cacheWarmer.isRunning()) ? "admin.cache.message.warmup.running" : ((cacheWarmer.isComplete()) ? "admin.cache.message.warmup.complete" : "admin.cache.message.warmup.stopped");
+			next.addObject("cacheWarmupStatus", new WikiMessage(key, params));
+		}
 		LinkedHashMap<Integer, String> poolExhaustedMap = new LinkedHashMap<Integer, String>();
 		poolExhaustedMap.put(Integer.valueOf(GenericObjectPool.WHEN_EXHAUSTED_FAIL), "admin.persistence.caption.whenexhaustedaction.fail");
 		poolExhaustedMap.put(Integer.valueOf(GenericObjectPool.WHEN_EXHAUSTED_BLOCK), "admin.persistence.caption.whenexhaustedaction.block");
@@ -527,10 +575,31 @@ public class AdminServlet extends JAMWikiServlet {
 		}
 	}
 
+	/**
+	 * Start or cancel the background job that re-renders all topics in a
+	 * virtual wiki.
+	 */
+	private void render(HttpServletRequest request, ModelAndView next, WikiPageInfo pageInfo) throws DataAccessException {
+		String virtualWiki = request.getParameter("renderVirtualWiki");
+		if (StringUtils.isBlank(virtualWiki) || WikiBase.getDataHandler().lookupVirtualWiki(virtualWiki) == null) {
+			pageInfo.addError(new WikiMessage("common.exception.novirtualwiki"));
+		} else if (!StringUtils.isBlank(request.getParameter("renderCancel"))) {
+			TopicRenderJob job = TopicRenderJob.getJob(virtualWiki);
+			if (job != null && job.isRunning()) {
+				job.cancel();
+				pageInfo.addMessage(new WikiMessage("admin.maintenance.message.rendercancel", virtualWiki));
+			}
+		} else {
+			TopicRenderJob.start(virtualWiki);
+			pageInfo.addMessage(new WikiMessage("admin.maintenance.message.renderstart", virtualWiki));
+		}
+		viewAdminSystem(request, next, pageInfo);
+	}
+
 	/**
 	 *
 	 */
-	private void viewAdminSystem(HttpServletRequest request, ModelAndView next, WikiPageInfo pageInfo) {
+	private void viewAdminSystem(HttpServletRequest request, ModelAndView next, WikiPageInfo pageInfo) throws DataAccessException {
 		pageInfo.setContentJsp(JSP_ADMIN_SYSTEM);
 		pageInfo.setAdmin(true);
 		pageInfo.setPageTitle(new WikiMessage("admin.maintenance.title"));
@@ -538,5 +607,53 @@ public class AdminServlet extends JAMWikiServlet {
 		next.addObject("allowExport", allowExport);
 		List<WikiConfigurationObject> dataHandlers = WikiConfiguration.getInstance().getDataHandlers();
 		next.addObject("dataHandlers", dataHandlers);
+		List<VirtualWiki> virtualWikiList = WikiBase.getDataHandler().getVirtualWikiList();
+		next.addObject("virtualWikiList", virtualWikiList);
+		List<WikiMessage> renderStatuses = new ArrayList<WikiMessage>();
+		for (VirtualWiki virtualWiki : virtualWikiList) {
+			TopicRenderJob job = TopicRenderJob.getJob(virtualWiki.getName());
+			if (job == null) {
+				continue;
+			}
+			String processed = Integer.toString(job.getProcessed());
+			String total = Integer.toString(job.getTotal());
+			String errors = Integer.toString(job.getErrors());
+			if (job.isRunning()) {
+				long remaining = job.getEstimatedTimeRemaining();
+				String minutes = (remaining < 0) ? "?" : Long.toString((remaining / 60000) + 1);
+				renderStatuses.add(new WikiMessage("admin.maintenance.message.renderstatus.running", new String[] {virtualWiki.getName(), processed, total, errors, minutes}));
+			} else if (job.isComplete()) {
+				renderStatuses.add(new WikiMessage("admin.maintenance.message.renderstatus.complete", new String[] {virtualWiki.getName(), processed, errors}));
+			} else {
+				renderStatuses.add(new WikiMessage("admin.maintenance.message.renderstatus.stopped", new String[] {virtualWiki.getName(), processed, total, errors}));
+			}
+		}
+		next.addObject("renderStatuses", renderStatuses);
+		List<WikiMessage> poolStatuses = new ArrayList<WikiMessage>();
+		for (DataSourceRoute route : DatabaseConnection.getDataSourceRoutes()) {
+			String requested = Long.toString(route.getConnectionsRequested());
+			if (route.getNumActive() < 0) {
+				poolStatuses.add(new WikiMessage("admin.maintenance.message.poolstatus.container", new String[] {route.getName(), requested}));
+			} else {
+				poolStatuses.add(new WikiMessage("admin.maintenance.message.poolstatus", new String[] {route.getName(), requested, Integer.toString(route.getNumActive()), Integer.toString(route.getNumIdle())}));
+			}
+		}
+		if (StatementRegistry.getTotalPrepares() > 0) {
+			poolStatuses.add(new WikiMessage("admin.maintenance.message.statementtotal", Long.toString(StatementRegistry.getTotalPrepares())));
+			for (Map.Entry<String, Long> entry : StatementRegistry.getPrepareCounts(MAX_STATEMENT_STATUSES).entrySet()) {
+				poolStatuses.add(new WikiMessage("admin.maintenance.message.statementstatus", entry.getKey(), entry.getValue().toString()));
+			}
+		}
+		next.addObject("poolStatuses", poolStatuses);
+		if (Environment.getBooleanValue(Environment.PROP_DB_CHANGE_OUTBOX) || ChangeOutbox.getBacklog() > 0) {
+			List<WikiMessage> outboxStatuses = new ArrayList<WikiMessage>();
+			Timestamp oldest = ChangeOutbox.getOldestEntryDate();
+			String age = (oldest == null) ? "0" : Long.toString((System.currentTimeMillis() - oldest.getTime()) / 1000);
+			outboxStatuses.add(new WikiMessage("admin.maintenance.message.outboxstatus", Integer.toString(ChangeOutbox.getBacklog()), age));
+			if (ChangeOutbox.getLastError() != null) {
+				outboxStatuses.add(new WikiMessage("admin.maintenance.message.outboxerror", ChangeOutbox.getLastError()));
+			}
+			next.addObject("outboxStatuses", outboxStatuses);
+		}
 	}
 }
@@ -27,7 +27,6 @@ import org.jamwiki.model.RecentChange;
 import org.jamwiki.model.Topic;
 import org.jamwiki.model.TopicVersion;
 import org.jamwiki.model.WikiDiff;
-import org.jamwiki.model.WikiUser;
 import org.jamwiki.utils.DiffUtil;
 import org.jamwiki.utils.WikiLogger;
 import org.jamwiki.utils.WikiUtil;
@@ -88,19 +87,17 @@ public class DiffServlet extends JAMWikiServlet {
 			logger.error(msg);
 			throw new Exception(msg);
 		}
-		List<WikiDiff> diffs = DiffUtil.diff(contents1, contents2);
+		int versionId1 = (version1 != null) ? version1.getTopicVersionId() : -1;
+		int versionId2 = (version2 != null) ? version2.getTopicVersionId() : -1;
+		List<WikiDiff> diffs = DiffUtil.diff(versionId1, contents1, versionId2, contents2);
 		next.addObject("diffs", diffs);
 		if (version1 != null) {
-			WikiUser user = (version1.getAuthorId() != null) ? WikiBase.getDataHandler().lookupWikiUser(version1.getAuthorId()) : null;
-			String author1 = ((user != null) ? user.getUsername() : version1.getAuthorDisplay());
-			next.addObject("version1", RecentChange.initRecentChange(topic, version1, author1));
+			next.addObject("version1", RecentChange.initRecentChange(topic, version1, (version1.getAuthorName() != null) ? version1.getAuthorName() : version1.getAuthorDisplay()));
 		}
 		if (version2 != null) {
-			WikiUser user = (version2.getAuthorId() != null) ? WikiBase.getDataHandler().lookupWikiUser(version2.getAuthorId()) : null;
-			String author2 = ((user != null) ? user.getUsername() : version2.getAuthorDisplay());
-			next.addObject("version2", RecentChange.initRecentChange(topic, version2, author2));
+			next.addObject("version2", RecentChange.initRecentChange(topic, version2, (version2.getAuthorName() != null) ? version2.getAuthorName() : version2.getAuthorDisplay()));
 		}
-		Integer nextTopicVersionId = (version1 != null) ? WikiBase.getDataHandler().lookupTopicVersionNextId(version1.getTopicVersionId()) : null;
+		Integer nextTopicVersionId = (version1 != null) ? version1.getNextTopicVersionId() : null;
 		next.addObject("nextTopicVersionId", nextTopicVersionId);
 		pageInfo.setPageTitle(new WikiMessage("diff.title", topicName));
 		pageInfo.setTopicName(topicName);
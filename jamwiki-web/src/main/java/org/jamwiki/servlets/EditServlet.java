@@ -323,7 +323,8 @@ public class EditServlet extends JAMWikiServlet {
 			return;
 		}
 		ParserInput parserInput = this.parserInput(request, user, virtualWiki, topicName);
-		ParserOutput parserOutput = ParserUtil.parseMetadata(parserInput, contents);
+		// for section edits only the changed section needs to be re-parsed for metadata
+		ParserOutput parserOutput = (!StringUtils.isBlank(request.getParameter("section"))) ? ParserUtil.parseMetadataBySection(parserInput, contents) : ParserUtil.parseMetadata(parserInput, contents);
 		// parse signatures and other values that need to be updated prior to saving
 		contents = ParserUtil.parseMinimal(parserInput, contents);
 		topic.setTopicContent(contents);
@@ -341,7 +342,8 @@ public class EditServlet extends JAMWikiServlet {
 		if (request.getParameter("minorEdit") != null) {
 			topicVersion.setEditType(TopicVersion.EDIT_MINOR);
 		}
-		WikiBase.getDataHandler().writeTopic(topic, topicVersion, parserOutput.getCategories(), parserOutput.getLinks());
+		// links and categories from a parse cut short by the parser budget are incomplete, so keep the existing values
+		WikiBase.getDataHandler().writeTopic(topic, topicVersion, (parserOutput.getIncomplete()) ? null : parserOutput.getCategories(), (parserOutput.getIncomplete()) ? null : parserOutput.getLinks());
 		// update watchlist
 		WikiUserDetailsImpl userDetails = ServletUtil.currentUserDetails();
 		if (!userDetails.hasRole(Role.ROLE_ANONYMOUS)) {
@@ -26,7 +26,6 @@ import org.jamwiki.WikiMessage;
 import org.jamwiki.model.RecentChange;
 import org.jamwiki.model.Topic;
 import org.jamwiki.model.TopicVersion;
-import org.jamwiki.model.WikiUser;
 import org.jamwiki.utils.Pagination;
 import org.jamwiki.utils.WikiLogger;
 import org.jamwiki.utils.WikiUtil;
@@ -70,6 +69,9 @@ public class HistoryServlet extends JAMWikiServlet {
 		List<RecentChange> changes = WikiBase.getDataHandler().getTopicHistory(topic, pagination, true);
 		next.addObject("changes", changes);
 		next.addObject("numChanges", changes.size());
+		if (topic != null) {
+			next.addObject("numVersions", WikiBase.getDataHandler().lookupTopicVersionCount(topic.getTopicId()));
+		}
 	}
 
 	/**
@@ -89,14 +91,11 @@ public class HistoryServlet extends JAMWikiServlet {
 			throw new WikiException(new WikiMessage("history.message.notopic", topicName));
 		}
 		topic.setTopicContent(topicVersion.getVersionContent());
-		WikiUser user = (topicVersion.getAuthorId() != null) ? WikiBase.getDataHandler().lookupWikiUser(topicVersion.getAuthorId()) : null;
-		String author = ((user != null) ? user.getUsername() : topicVersion.getAuthorDisplay());
-		next.addObject("version", RecentChange.initRecentChange(topic, topicVersion, author));
+		next.addObject("version", RecentChange.initRecentChange(topic, topicVersion, (topicVersion.getAuthorName() != null) ? topicVersion.getAuthorName() : topicVersion.getAuthorDisplay()));
 		if (topic.getDeleted()) {
 			ServletUtil.viewTopicSource(next, pageInfo, topic);
 		} else {
-			Integer nextTopicVersionId = WikiBase.getDataHandler().lookupTopicVersionNextId(topicVersion.getTopicVersionId());
-			next.addObject("nextTopicVersionId", nextTopicVersionId);
+			next.addObject("nextTopicVersionId", topicVersion.getNextTopicVersionId());
 			WikiMessage pageTitle = new WikiMessage("topic.title", topicName);
 			ServletUtil.viewTopic(request, next, pageInfo, pageTitle, topic, false, false);
 		}
@@ -25,15 +25,18 @@ import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
 import org.jamwiki.authentication.JAMWikiAuthenticationConstants;
+import org.jamwiki.db.DatabaseConnection;
 import org.jamwiki.model.VirtualWiki;
+import org.jamwiki.parser.jflex.JFlexLexerPool;
 import org.jamwiki.utils.WikiLogger;
 import org.jamwiki.utils.WikiUtil;
 
 /**
  * Perform filtering of all Wiki page requests, including setting the
- * character encoding to UTF-8 and verifying that no setup or upgrade is
- * required.
+ * character encoding to UTF-8, verifying that no setup or upgrade is
+ * required, and identifying the session for database replica routing.
  */
 public class JAMWikiFilter implements Filter {
 
@@ -60,7 +63,15 @@ public class JAMWikiFilter implements Filter {
 		if (redirectNeeded(request, response)) {
 			return;
 		}
-		chain.doFilter(request, response);
+		if (request instanceof HttpServletRequest) {
+			DatabaseConnection.setRoutingSession(this.routingSessionKey((HttpServletRequest)request));
+		}
+		try {
+			chain.doFilter(request, response);
+		} finally {
+			DatabaseConnection.setRoutingSession(null);
+			JFlexLexerPool.clear();
+		}
 	}
 
 	/**
@@ -116,6 +127,16 @@ public class JAMWikiFilter implements Filter {
 		return false;
 	}
 
+	/**
+	 * Return a value identifying the user making the request, used to route
+	 * database reads made after the user's changes to the primary database.
+	 * Requests without an HTTP session are identified by IP address.
+	 */
+	private String routingSessionKey(HttpServletRequest request) {
+		HttpSession session = request.getSession(false);
+		return (session != null) ? session.getId() : ServletUtil.getIpAddress(request);
+	}
+
 	/**
 	 * Determine whether or not to redirect to the setup page.
 	 */
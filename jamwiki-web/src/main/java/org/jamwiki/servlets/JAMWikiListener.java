@@ -18,8 +18,17 @@ package org.jamwiki.servlets;
 
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
+import org.jamwiki.DataAccessException;
+import org.jamwiki.WikiBase;
+import org.jamwiki.db.ChangeOutbox;
 import org.jamwiki.db.WikiDatabase;
+import org.jamwiki.mail.WatchlistDigest;
+import org.jamwiki.utils.CacheInvalidation;
+import org.jamwiki.utils.CacheWarmer;
+import org.jamwiki.utils.PersistentCache;
+import org.jamwiki.utils.TopicAccessLog;
 import org.jamwiki.utils.WikiCache;
+import org.jamwiki.utils.WikiLogger;
 import org.jamwiki.utils.WikiUtil;
 
 /**
@@ -28,6 +37,8 @@ import org.jamwiki.utils.WikiUtil;
  */
 public class JAMWikiListener implements ServletContextListener {
 
+	private static final WikiLogger logger = WikiLogger.getLogger(JAMWikiListener.class.getName());
+
 	/**
 	 * Initialize the database connection pool and disk cache.
 	 *
@@ -37,6 +48,20 @@ public class JAMWikiListener implements ServletContextListener {
 		if (!WikiUtil.isFirstUse()) {
 			WikiDatabase.initialize();
 			WikiCache.initialize();
+			CacheInvalidation.initialize();
+			// load unwritten outbox entries before the recent changes so that
+			// they are written ahead of any new changes
+			ChangeOutbox.initialize();
+			try {
+				WikiBase.getDataHandler().initializeRecentChanges();
+			} catch (DataAccessException e) {
+				// not fatal, recent changes will be loaded on first use
+				logger.warn("Failure while loading recent changes", e);
+			}
+			PersistentCache.purgeExpired();
+			TopicAccessLog.initialize();
+			CacheWarmer.start();
+			WatchlistDigest.initialize();
 		}
 	}
 
@@ -46,6 +71,10 @@ public class JAMWikiListener implements ServletContextListener {
 	 * @see javax.servlet.ServletContextListener#contextDestroyed(javax.servlet.ServletContextEvent)
 	 */
 	public void contextDestroyed(ServletContextEvent arg0) {
+		WatchlistDigest.shutdown();
+		TopicAccessLog.shutdown();
+		ChangeOutbox.shutdown();
+		CacheInvalidation.shutdown();
 		WikiDatabase.shutdown();
 		WikiCache.shutdown();
 	}
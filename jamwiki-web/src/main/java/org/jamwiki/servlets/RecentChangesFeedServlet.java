@@ -16,10 +16,14 @@
  */
 package org.jamwiki.servlets;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import com.sun.syndication.feed.synd.SyndContent;
@@ -35,6 +39,8 @@ import org.jamwiki.WikiBase;
 import org.jamwiki.model.RecentChange;
 import org.jamwiki.utils.Pagination;
 import org.jamwiki.utils.Utilities;
+import org.jamwiki.utils.WikiCache;
+import org.jamwiki.utils.WikiCacheEntry;
 import org.jamwiki.utils.WikiLogger;
 import org.jamwiki.utils.WikiUtil;
 import org.springframework.web.bind.ServletRequestUtils;
@@ -53,6 +59,13 @@ import org.springframework.web.servlet.mvc.AbstractController;
  * {@link WikiUtil#buildPagination(HttpServletRequest)})</li>
  * </ul>
  *
+ * Generated feeds are cached as serialized (and optionally gzipped) bytes,
+ * keyed by the request parameters and validated against a fingerprint of the
+ * recent changes used to build them, so that repeated polls by feed readers do
+ * not require the feed to be regenerated.  Conditional requests using
+ * <code>If-None-Match</code> or <code>If-Modified-Since</code> are answered
+ * with a <code>304 Not Modified</code> response when the feed is unchanged.
+ *
  * @author Rainer Schmitz
  * @since 22.12.2006
  */
@@ -65,11 +78,26 @@ public class RecentChangesFeedServlet extends AbstractController {
 	private static final String FEED_TYPE = "feedType";
 	private static final String MINOR_EDITS = "minorEdits";
 	private static final String LINK_TO_VERSION = "linkToVersion";
+	/** Cache of generated feeds, keyed by virtual wiki and feed parameters. */
+	private static final WikiCache<String, CachedFeed> CACHE_RECENT_CHANGES_FEED = new WikiCache<String, CachedFeed>("org.jamwiki.servlets.RecentChangesFeedServlet.CACHE_RECENT_CHANGES_FEED");
+	private boolean compressFeed = true;
 	private String defaultFeedType = DEFAULT_FEED_TYPE;
 	private boolean defaultIncludeMinorEdits = false;
 	private boolean defaultLinkToVersion = false;
 	private String feedUrlPrefix = "";
 
+	/**
+	 * Sets whether a gzipped copy of each generated feed is cached and served
+	 * to clients that send an <code>Accept-Encoding: gzip</code> header.
+	 * Default is true.
+	 *
+	 * @param compressFeed
+	 *            <code>true</code> if gzipped feeds shall be served.
+	 */
+	public void setCompressFeed(boolean compressFeed) {
+		this.compressFeed = compressFeed;
+	}
+
 	/**
 	 * Sets the default feed type.
 	 *
@@ -137,12 +165,31 @@ public class RecentChangesFeedServlet extends AbstractController {
 		try {
 			String feedType = ServletRequestUtils.getStringParameter(request, FEED_TYPE, defaultFeedType);
 			logger.trace("Serving xml feed of type " + feedType);
-			SyndFeed feed = getFeed(request);
-			feed.setFeedType(feedType);
+			CachedFeed cachedFeed = this.retrieveFeed(request, feedType);
+			boolean gzip = false;
+			if (cachedFeed.getGzippedContent() != null) {
+				// the response depends on Accept-Encoding, including for 304 responses
+				response.setHeader("Vary", "Accept-Encoding");
+				gzip = this.acceptsGzip(request);
+			}
+			String eTag = cachedFeed.getETag(gzip);
+			response.setHeader("ETag", eTag);
+			if (cachedFeed.getLastModified() > 0) {
+				response.setDateHeader("Last-Modified", cachedFeed.getLastModified());
+			}
+			if (this.isNotModified(request, cachedFeed, eTag)) {
+				response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+				return null;
+			}
 			response.setContentType(MIME_TYPE);
 			response.setCharacterEncoding(FEED_ENCODING);
-			SyndFeedOutput output = new SyndFeedOutput();
-			output.output(feed, response.getWriter());
+			byte[] content = cachedFeed.getContent();
+			if (gzip) {
+				response.setHeader("Content-Encoding", "gzip");
+				content = cachedFeed.getGzippedContent();
+			}
+			response.setContentLength(content.length);
+			response.getOutputStream().write(content);
 		} catch (Exception e) {
 			logger.error("Could not generate feed: " + e.getMessage(), e);
 			response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Could not generate feed: "
@@ -152,22 +199,55 @@ public class RecentChangesFeedServlet extends AbstractController {
 	}
 
 	/**
-	 * TODO cache feed to avoid high load caused by RSS aggregators
+	 * Determine whether the client will accept a gzipped response.
+	 */
+	private boolean acceptsGzip(HttpServletRequest request) {
+		String acceptEncoding = request.getHeader("Accept-Encoding");
+		return (acceptEncoding != null && acceptEncoding.toLowerCase().indexOf("gzip") != -1);
+	}
+
+	/**
+	 * Generate a fingerprint of the recent changes used to build a feed.  Any
+	 * new, deleted or purged change alters the fingerprint, making it
+	 * suitable for validating a cached feed without generating new XML.
+	 */
+	private long fingerprint(List<RecentChange> changes) {
+		long fingerprint = changes.size();
+		for (RecentChange change : changes) {
+			fingerprint = 31 * fingerprint + ((change.getChangeDate() == null) ? 0 : change.getChangeDate().getTime());
+			fingerprint = 31 * fingerprint + ((change.getTopicVersionId() == null) ? 0 : change.getTopicVersionId());
+			fingerprint = 31 * fingerprint + ((change.getLogType() == null) ? 0 : change.getLogType());
+		}
+		return fingerprint;
+	}
+
+	/**
+	 * Serialize a feed, returning the cached form of the feed.
+	 */
+	private CachedFeed generateFeed(List<RecentChange> changes, String feedType, boolean includeMinorEdits, boolean linkToVersion, String feedURL, long fingerprint) throws Exception {
+		SyndFeed feed = getFeed(changes, includeMinorEdits, linkToVersion, feedURL);
+		feed.setFeedType(feedType);
+		SyndFeedOutput output = new SyndFeedOutput();
+		byte[] content = output.outputString(feed).getBytes(FEED_ENCODING);
+		byte[] gzippedContent = (this.compressFeed) ? this.gzip(content) : null;
+		long lastModified = 0;
+		for (RecentChange change : changes) {
+			if (change.getChangeDate() != null && change.getChangeDate().getTime() > lastModified) {
+				lastModified = change.getChangeDate().getTime();
+			}
+		}
+		return new CachedFeed(content, gzippedContent, lastModified, fingerprint, feedURL);
+	}
+
+	/**
 	 *
-	 * @throws Exception
 	 */
-	private SyndFeed getFeed(HttpServletRequest request) throws Exception {
-		List<RecentChange> changes = getChanges(request);
+	private SyndFeed getFeed(List<RecentChange> changes, boolean includeMinorEdits, boolean linkToVersion, String feedURL) {
 		SyndFeed feed = new SyndFeedImpl();
 		feed.setEncoding(FEED_ENCODING);
 		feed.setTitle(Environment.getValue(Environment.PROP_RSS_TITLE));
-		StringBuffer requestURL = request.getRequestURL();
-		String feedURL = feedUrlPrefix + requestURL.substring(0, requestURL.length() - WikiUtil.getTopicFromURI(request).length());
 		feed.setLink(feedURL);
 		feed.setDescription("List of the last " + changes.size() + " changed wiki pages.");
-		boolean includeMinorEdits = ServletRequestUtils.getBooleanParameter(request, MINOR_EDITS,
-				defaultIncludeMinorEdits);
-		boolean linkToVersion = ServletRequestUtils.getBooleanParameter(request, LINK_TO_VERSION, defaultLinkToVersion);
 		feed.setEntries(getFeedEntries(changes, includeMinorEdits, linkToVersion, feedURL));
 		return feed;
 	}
@@ -232,9 +312,135 @@ public class RecentChangesFeedServlet extends AbstractController {
 	/**
 	 *
 	 */
-	private List<RecentChange> getChanges(HttpServletRequest request) throws Exception {
+	private byte[] gzip(byte[] content) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(content.length / 4);
+		GZIPOutputStream gzip = new GZIPOutputStream(bytes);
+		try {
+			gzip.write(content);
+		} finally {
+			gzip.close();
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Determine whether the client's copy of the feed is current, as indicated
+	 * by the <code>If-None-Match</code> header or, if that header is not
+	 * present, the <code>If-Modified-Since</code> header.
+	 */
+	private boolean isNotModified(HttpServletRequest request, CachedFeed cachedFeed, String eTag) {
+		String ifNoneMatch = request.getHeader("If-None-Match");
+		if (ifNoneMatch != null) {
+			return (ifNoneMatch.trim().equals("*") || ifNoneMatch.indexOf(eTag) != -1);
+		}
+		long ifModifiedSince = -1;
+		try {
+			ifModifiedSince = request.getDateHeader("If-Modified-Since");
+		} catch (IllegalArgumentException e) {
+			// invalid date header, ignore it
+		}
+		// HTTP dates have a one second resolution
+		return (ifModifiedSince != -1 && cachedFeed.getLastModified() > 0 && (cachedFeed.getLastModified() / 1000) <= (ifModifiedSince / 1000));
+	}
+
+	/**
+	 * Retrieve the feed for the current request from the cache, generating
+	 * and caching a new feed if no cached feed exists or if the recent changes
+	 * have been modified since the cached feed was generated.  Recent changes
+	 * are normally served from memory by the data handler, so validating a
+	 * cached feed is far cheaper than generating one.  The feed URL is taken
+	 * from the request and so is not part of the cache key; a request for a
+	 * different feed URL replaces the cached feed rather than adding a new
+	 * cache entry.
+	 */
+	private CachedFeed retrieveFeed(HttpServletRequest request, String feedType) throws Exception {
 		String virtualWiki = WikiUtil.getVirtualWikiFromURI(request);
 		Pagination pagination = WikiUtil.buildPagination(request);
-		return WikiBase.getDataHandler().getRecentChanges(virtualWiki, pagination, true);
+		boolean includeMinorEdits = ServletRequestUtils.getBooleanParameter(request, MINOR_EDITS, defaultIncludeMinorEdits);
+		boolean linkToVersion = ServletRequestUtils.getBooleanParameter(request, LINK_TO_VERSION, defaultLinkToVersion);
+		StringBuffer requestURL = request.getRequestURL();
+		String feedURL = feedUrlPrefix + requestURL.substring(0, requestURL.length() - WikiUtil.getTopicFromURI(request).length());
+		List<RecentChange> changes = WikiBase.getDataHandler().getRecentChanges(virtualWiki, pagination, true);
+		long fingerprint = this.fingerprint(changes);
+		String key = virtualWiki + "/" + feedType + "/" + includeMinorEdits + "/" + linkToVersion + "/" + pagination.getOffset() + "/" + pagination.getNumResults();
+		WikiCacheEntry<CachedFeed> cacheEntry = CACHE_RECENT_CHANGES_FEED.retrieveFromCache(key);
+		if (cacheEntry != null) {
+			CachedFeed cachedFeed = cacheEntry.getValue();
+			if (cachedFeed.getFingerprint() == fingerprint && (cachedFeed.getGzippedContent() != null) == this.compressFeed && cachedFeed.getFeedURL().equals(feedURL)) {
+				return cachedFeed;
+			}
+		}
+		CachedFeed cachedFeed = this.generateFeed(changes, feedType, includeMinorEdits, linkToVersion, feedURL, fingerprint);
+		CACHE_RECENT_CHANGES_FEED.addToCache(key, cachedFeed);
+		return cachedFeed;
+	}
+
+	/**
+	 * A serialized feed and the information needed to validate it.
+	 */
+	private static class CachedFeed implements Serializable {
+
+		private final byte[] content;
+		private final String feedURL;
+		private final long fingerprint;
+		private final byte[] gzippedContent;
+		private final long lastModified;
+
+		/**
+		 *
+		 */
+		private CachedFeed(byte[] content, byte[] gzippedContent, long lastModified, long fingerprint, String feedURL) {
+			this.content = content;
+			this.feedURL = feedURL;
+			this.fingerprint = fingerprint;
+			this.gzippedContent = gzippedContent;
+			this.lastModified = lastModified;
+		}
+
+		/**
+		 *
+		 */
+		private byte[] getContent() {
+			return this.content;
+		}
+
+		/**
+		 * Return an entity tag that changes whenever the feed content changes.
+		 * The gzipped and uncompressed forms of a feed are different entities
+		 * and so have different tags.
+		 */
+		private String getETag(boolean gzipped) {
+			return "\"" + Long.toHexString(this.fingerprint) + "-" + Integer.toHexString(this.content.length) + ((gzipped) ? "-gzip" : "") + "\"";
+		}
+
+		/**
+		 *
+		 */
+		private String getFeedURL() {
+			return this.feedURL;
+		}
+
+		/**
+		 *
+		 */
+		private long getFingerprint() {
+			return this.fingerprint;
+		}
+
+		/**
+		 * Return the gzipped feed content, or <code>null</code> if compression
+		 * is disabled.
+		 */
+		private byte[] getGzippedContent() {
+			return this.gzippedContent;
+		}
+
+		/**
+		 * Return the date of the most recent change in the feed, or zero if the
+		 * feed is empty.
+		 */
+		private long getLastModified() {
+			return this.lastModified;
+		}
 	}
 }
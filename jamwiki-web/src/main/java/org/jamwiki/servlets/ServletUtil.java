@@ -29,7 +29,6 @@ import java.util.Properties;
 import java.util.TreeMap;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
-import net.sf.ehcache.Element;
 import org.apache.commons.fileupload.FileUploadException;
 import org.apache.commons.fileupload.disk.DiskFileItemFactory;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
@@ -64,8 +63,10 @@ import org.jamwiki.utils.Encryption;
 import org.jamwiki.utils.LinkUtil;
 import org.jamwiki.utils.Pagination;
 import org.jamwiki.utils.SpamFilter;
+import org.jamwiki.utils.TopicAccessLog;
 import org.jamwiki.utils.Utilities;
-import org.jamwiki.utils.WikiCache;
+import org.jamwiki.utils.WikiCacheEntry;
+import org.jamwiki.utils.WikiCacheKey;
 import org.jamwiki.utils.WikiLink;
 import org.jamwiki.utils.WikiLogger;
 import org.jamwiki.utils.WikiUtil;
@@ -135,24 +136,30 @@ public class ServletUtil {
 	 */
 	protected static String cachedContent(String context, Locale locale, String virtualWiki, String topicName, boolean cook) throws DataAccessException {
 		String content = null;
-		String key = WikiCache.key(virtualWiki, topicName);
-		Element cacheElement = WikiCache.retrieveFromCache(WikiBase.CACHE_PARSED_TOPIC_CONTENT, key);
-		if (cacheElement != null) {
-			content = (String)cacheElement.getObjectValue();
+		WikiCacheKey key = new WikiCacheKey(virtualWiki, topicName);
+		WikiCacheEntry<String> cacheEntry = WikiBase.CACHE_PARSED_TOPIC_CONTENT.retrieveFromCache(key);
+		if (cacheEntry != null) {
+			content = cacheEntry.getValue();
 			return (content == null) ? null : content;
 		}
 		try {
 			Topic topic = WikiBase.getDataHandler().lookupTopic(virtualWiki, topicName, false);
 			content = topic.getTopicContent();
+			boolean incomplete = false;
 			if (cook) {
 				ParserInput parserInput = new ParserInput(virtualWiki, topicName);
 				parserInput.setAllowSectionEdit(false);
 				parserInput.setAllowTableOfContents(false);
 				parserInput.setContext(context);
 				parserInput.setLocale(locale);
-				content = ParserUtil.parse(parserInput, null, content);
+				ParserOutput parserOutput = new ParserOutput();
+				content = ParserUtil.parse(parserInput, parserOutput, content);
+				// content cut short by the parser budget is re-parsed on the next request
+				incomplete = parserOutput.getIncomplete();
+			}
+			if (!incomplete) {
+				WikiBase.CACHE_PARSED_TOPIC_CONTENT.addToCache(key, content);
 			}
-			WikiCache.addToCache(WikiBase.CACHE_PARSED_TOPIC_CONTENT, key, content);
 		} catch (Exception e) {
 			logger.warn("error getting cached page " + virtualWiki + " / " + topicName);
 			return null;
@@ -540,6 +547,8 @@ public class ServletUtil {
 		Pagination pagination = WikiUtil.buildPagination(request);
 		next.addObject("num", pagination.getNumResults());
 		next.addObject("offset", pagination.getOffset());
+		// query methods set the continuation token for the next page on this object
+		next.addObject("pagination", pagination);
 		return pagination;
 	}
 
@@ -885,6 +894,7 @@ public class ServletUtil {
 		}
 		String virtualWiki = topic.getVirtualWiki();
 		String topicName = topic.getName();
+		TopicAccessLog.record(virtualWiki, topicName);
 		WikiUserDetailsImpl userDetails = ServletUtil.currentUserDetails();
 		if (sectionEdit && !ServletUtil.isEditable(virtualWiki, topicName, userDetails)) {
 			sectionEdit = false;
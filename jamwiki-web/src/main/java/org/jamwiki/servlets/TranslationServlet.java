@@ -33,6 +33,7 @@ import org.jamwiki.model.Topic;
 import org.jamwiki.model.TopicType;
 import org.jamwiki.model.TopicVersion;
 import org.jamwiki.model.WikiUser;
+import org.jamwiki.utils.MessageCatalog;
 import org.jamwiki.utils.SortedProperties;
 import org.jamwiki.utils.Utilities;
 import org.jamwiki.utils.WikiLogger;
@@ -40,8 +41,9 @@ import org.springframework.web.servlet.ModelAndView;
 
 /**
  * Used to provide admins with the ability to create and edit JAMWiki message
- * keys.  Note that the application server must be restarted for any
- * translation changes to be visible on the site.
+ * keys.  Saving a translation reloads the {@link MessageCatalog}; note that
+ * messages rendered directly by JSTL tags in JSP files are not reloaded until
+ * the application server is restarted.
  */
 public class TranslationServlet extends JAMWikiServlet {
 
@@ -151,6 +153,7 @@ public class TranslationServlet extends JAMWikiServlet {
 			translations.setProperty(key, value);
 		}
 		Environment.saveProperties(filename(language), translations, null);
+		MessageCatalog.reload();
 		this.writeTopic(request, pageInfo);
 	}
 
@@ -184,6 +184,12 @@ public class UpgradeServlet extends JAMWikiServlet {
 				DatabaseUpgrades.upgrade110(messages);
 			}
 		}
+		if (oldVersion.before(1, 1, 6)) {
+			upgradeRequired = true;
+			if (performUpgrade) {
+				DatabaseUpgrades.upgrade116(messages);
+			}
+		}
 		return upgradeRequired;
 	}
 
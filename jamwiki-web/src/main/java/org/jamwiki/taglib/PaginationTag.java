@@ -34,6 +34,8 @@ import org.jamwiki.utils.WikiUtil;
 public class PaginationTag extends BodyTagSupport {
 
 	private static final WikiLogger logger = WikiLogger.getLogger(PaginationTag.class.getName());
+	/** Request attribute containing the pagination object used to retrieve the current page. */
+	public static final String PAGINATION_ATTRIBUTE = "pagination";
 
 	private String rootUrl = null;
 	private String total = null;
@@ -121,6 +123,10 @@ public class PaginationTag extends BodyTagSupport {
 		}
 		String query = LinkUtil.appendQueryParam(wikiLink.getQuery(), "num", Integer.toString(pagination.getNumResults()));
 		query += "&amp;offset=" + offset;
+		if (!previous && pagination.getNextContinuation() != null) {
+			// continuation tokens are URL-safe and do not require encoding
+			query += "&amp;continue=" + pagination.getNextContinuation();
+		}
 		wikiLink.setQuery(query);
 		try {
 			output.append(LinkUtil.buildTopicUrl(request.getContextPath(), virtualWiki, wikiLink));
@@ -164,7 +170,8 @@ public class PaginationTag extends BodyTagSupport {
 	 */
 	private String pagination(String baseUrl, int count) {
 		HttpServletRequest request = (HttpServletRequest)this.pageContext.getRequest();
-		Pagination pagination = WikiUtil.buildPagination(request);
+		Object attribute = request.getAttribute(PAGINATION_ATTRIBUTE);
+		Pagination pagination = (attribute instanceof Pagination) ? (Pagination)attribute : WikiUtil.buildPagination(request);
 		StringBuilder output = new StringBuilder();
 		output.append(this.nextPage(pagination, baseUrl, count, true));
 		output.append("&#160;|&#160;");
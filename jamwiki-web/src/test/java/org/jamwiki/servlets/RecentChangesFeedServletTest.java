@@ -0,0 +1,96 @@
+/**
+ * Licensed under the GNU LESSER GENERAL PUBLIC LICENSE, version 2.1, dated February 1999.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the latest version of the GNU Lesser General
+ * Public License as published by the Free Software Foundation;
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program (LICENSE.txt); if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jamwiki.servlets;
+
+import java.io.ByteArrayInputStream;
+import java.util.zip.GZIPInputStream;
+import org.apache.commons.io.IOUtils;
+import org.jamwiki.JAMWikiUnitTest;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+import static org.junit.Assert.*;
+
+public class RecentChangesFeedServletTest extends JAMWikiUnitTest {
+
+	/**
+	 * Verify that gzipped and uncompressed feeds are served with different
+	 * entity tags and with the headers appropriate to each.
+	 */
+	@Test
+	public void testGzip() throws Exception {
+		RecentChangesFeedServlet servlet = new RecentChangesFeedServlet();
+		MockHttpServletResponse plainResponse = this.handleRequest(servlet, null, null);
+		assertEquals("Plain status", 200, plainResponse.getStatus());
+		assertNull("Plain Content-Encoding", plainResponse.getHeader("Content-Encoding"));
+		assertEquals("Plain Vary", "Accept-Encoding", plainResponse.getHeader("Vary"));
+		MockHttpServletResponse gzipResponse = this.handleRequest(servlet, "gzip, deflate", null);
+		assertEquals("Gzip status", 200, gzipResponse.getStatus());
+		assertEquals("Gzip Content-Encoding", "gzip", gzipResponse.getHeader("Content-Encoding"));
+		assertEquals("Gzip Vary", "Accept-Encoding", gzipResponse.getHeader("Vary"));
+		assertFalse("Distinct ETags", plainResponse.getHeader("ETag").equals(gzipResponse.getHeader("ETag")));
+		byte[] content = IOUtils.toByteArray(new GZIPInputStream(new ByteArrayInputStream(gzipResponse.getContentAsByteArray())));
+		assertEquals("Gzipped content", plainResponse.getContentAsString(), new String(content, "UTF-8"));
+		// the ETag of one form must not validate a cached copy of the other
+		MockHttpServletResponse response = this.handleRequest(servlet, null, (String)gzipResponse.getHeader("ETag"));
+		assertEquals("Plain request with gzip ETag", 200, response.getStatus());
+		// without compression the response does not vary by encoding
+		servlet.setCompressFeed(false);
+		response = this.handleRequest(servlet, "gzip", null);
+		assertEquals("Uncompressed status", 200, response.getStatus());
+		assertNull("Uncompressed Content-Encoding", response.getHeader("Content-Encoding"));
+		assertNull("Uncompressed Vary", response.getHeader("Vary"));
+	}
+
+	/**
+	 * Verify that a request with a matching If-None-Match header receives a
+	 * 304 response with no content.
+	 */
+	@Test
+	public void testNotModified() throws Exception {
+		RecentChangesFeedServlet servlet = new RecentChangesFeedServlet();
+		MockHttpServletResponse response = this.handleRequest(servlet, "gzip", null);
+		assertEquals("Initial status", 200, response.getStatus());
+		String eTag = (String)response.getHeader("ETag");
+		assertNotNull("ETag", eTag);
+		response = this.handleRequest(servlet, "gzip", eTag);
+		assertEquals("Conditional status", 304, response.getStatus());
+		assertEquals("Conditional content", 0, response.getContentAsByteArray().length);
+		assertEquals("Conditional ETag", eTag, response.getHeader("ETag"));
+		assertEquals("Conditional Vary", "Accept-Encoding", response.getHeader("Vary"));
+		response = this.handleRequest(servlet, "gzip", "\"stale\"");
+		assertEquals("Stale ETag status", 200, response.getStatus());
+	}
+
+	/**
+	 *
+	 */
+	private MockHttpServletResponse handleRequest(RecentChangesFeedServlet servlet, String acceptEncoding, String ifNoneMatch) throws Exception {
+		MockServletContext mockContext = new MockServletContext("context");
+		MockHttpServletRequest request = new MockHttpServletRequest(mockContext, "GET", "/en/Special:RecentChangesFeed");
+		if (acceptEncoding != null) {
+			request.addHeader("Accept-Encoding", acceptEncoding);
+		}
+		if (ifNoneMatch != null) {
+			request.addHeader("If-None-Match", ifNoneMatch);
+		}
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		servlet.handleRequestInternal(request, response);
+		return response;
+	}
+}